@@ -0,0 +1,51 @@
+#!/bin/sh
+# Copyright 2015 Philip Cronje
+#
+# Licensed under the Apache License, Version 2.0 (the "License"); you may not
+# use this file except in compliance with the License. You may obtain a copy of
+# the License at
+#
+#     http://www.apache.org/licenses/LICENSE-2.0
+#
+# Unless required by applicable law or agreed to in writing, software
+# distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+# WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+# License for the specific language governing permissions and limitations under
+# the License.
+#
+# Measures the memory footprint of a Dyn53 process. The given Java command is
+# started, left to run for the given number of seconds, and then sampled for its
+# resident set size and, if jstat is available, its used heap and metaspace.
+#
+# Usage: footprint.sh SECONDS JAVA_BIN [JVM_OPTIONS...] -jar DYN53_JAR_FILE
+#
+# To measure without AWS, point the application at a local stub of Route 53
+# with -Dnet.za.slyfox.dyn53.route53.client.endpoint=http://127.0.0.1:PORT.
+
+if [ $# -lt 2 ]; then
+	echo "Usage: $0 SECONDS JAVA_BIN [JVM_OPTIONS...] -jar DYN53_JAR_FILE" >&2
+	exit 2
+fi
+
+DURATION=$1
+shift
+
+"$@" &
+PID=$!
+sleep "$DURATION"
+
+if ! kill -0 $PID 2>/dev/null; then
+	echo "Process exited before it could be measured" >&2
+	exit 1
+fi
+
+grep -E '^Vm(RSS|HWM)' /proc/$PID/status
+if command -v jstat >/dev/null 2>&1; then
+	jstat -gc $PID | awk 'NR == 1 { for(i = 1; i <= NF; i++) column[$i] = i }
+		NR == 2 { printf "HeapUsed:\t%8.0f kB\nMetaspace:\t%8.0f kB\n",
+			$column["S0U"] + $column["S1U"] + $column["EU"] + $column["OU"], $column["MU"] }'
+fi
+
+kill $PID
+wait $PID 2>/dev/null
+exit 0
@@ -0,0 +1,54 @@
+#!/bin/sh
+# Copyright 2015 Philip Cronje
+#
+# Licensed under the Apache License, Version 2.0 (the "License"); you may not
+# use this file except in compliance with the License. You may obtain a copy of
+# the License at
+#
+#     http://www.apache.org/licenses/LICENSE-2.0
+#
+# Unless required by applicable law or agreed to in writing, software
+# distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+# WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+# License for the specific language governing permissions and limitations under
+# the License.
+#
+# Measures the wall-clock time and, if GNU time is installed, the peak resident
+# set size of one-shot Dyn53 runs. The given command is run the given number of
+# times.
+#
+# Usage: startup.sh RUNS COMMAND [ARGUMENTS...]
+#
+# For example, with a local stub of Route 53 listening on port 8053:
+#
+#   startup.sh 10 java -Dnet.za.slyfox.dyn53.oneShot=true \
+#       -Dnet.za.slyfox.dyn53.route53.client.endpoint=http://127.0.0.1:8053 \
+#       ... -jar dyn53-lite.jar
+
+if [ $# -lt 2 ]; then
+	echo "Usage: $0 RUNS COMMAND [ARGUMENTS...]" >&2
+	exit 2
+fi
+
+RUNS=$1
+shift
+
+TOTAL=0
+PEAK=0
+RUN=0
+while [ $RUN -lt "$RUNS" ]; do
+	START=$(date +%s%N)
+	if [ -x /usr/bin/time ]; then
+		RSS=$(/usr/bin/time -f %M "$@" 2>&1 >/dev/null | tail -n 1)
+		[ "$RSS" -gt "$PEAK" ] 2>/dev/null && PEAK=$RSS
+	else
+		"$@" >/dev/null 2>&1
+	fi
+	END=$(date +%s%N)
+	TOTAL=$((TOTAL + (END - START) / 1000000))
+	RUN=$((RUN + 1))
+done
+
+printf 'Mean time:\t%d ms\n' $((TOTAL / RUNS))
+[ "$PEAK" -gt 0 ] && printf 'Peak RSS:\t%d kB\n' "$PEAK"
+exit 0
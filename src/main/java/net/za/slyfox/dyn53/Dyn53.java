@@ -18,43 +18,78 @@ import ch.qos.logback.classic.spi.ILoggingEvent;
 import ch.qos.logback.core.Appender;
 import ch.qos.logback.core.joran.spi.JoranException;
 import ch.qos.logback.core.util.StatusPrinter;
+import com.amazonaws.ClientConfiguration;
+import com.amazonaws.retry.PredefinedRetryPolicies;
+import com.amazonaws.retry.RetryPolicy;
+import com.amazonaws.services.route53.AmazonRoute53;
 import com.google.inject.Guice;
 import com.google.inject.Injector;
 import com.google.inject.Module;
 import com.google.inject.Stage;
-import net.za.slyfox.dyn53.bean.Lifecycle;
+import com.google.inject.util.Modules;
+import net.za.slyfox.dyn53.admin.AdminModule;
+import net.za.slyfox.dyn53.bean.LifecycleManager;
+import net.za.slyfox.dyn53.cluster.ClusterModule;
+import net.za.slyfox.dyn53.cluster.FileMembershipModule;
+import net.za.slyfox.dyn53.cluster.StaticMembershipModule;
+import net.za.slyfox.dyn53.credentials.AccountCredentials;
+import net.za.slyfox.dyn53.credentials.CredentialsModule;
+import net.za.slyfox.dyn53.dns.Rfc2136Module;
+import net.za.slyfox.dyn53.extip.DebounceModule;
 import net.za.slyfox.dyn53.extip.ExternalIpModule;
 import net.za.slyfox.dyn53.extip.StatefulUpdateModule;
 import net.za.slyfox.dyn53.extip.UnconditionalUpdateModule;
+import net.za.slyfox.dyn53.health.HealthModule;
+import net.za.slyfox.dyn53.jfr.FlightRecorderModule;
+import net.za.slyfox.dyn53.lease.FileLeaseModule;
+import net.za.slyfox.dyn53.lease.LeaseModule;
+import net.za.slyfox.dyn53.route53.AdaptiveTtl;
+import net.za.slyfox.dyn53.route53.Reconciler;
+import net.za.slyfox.dyn53.route53.Route53ClientModule;
+import net.za.slyfox.dyn53.route53.Route53LeaseModule;
+import net.za.slyfox.dyn53.route53.Route53MembershipModule;
 import net.za.slyfox.dyn53.route53.Route53Module;
+import net.za.slyfox.dyn53.route53.Route53Record;
+import net.za.slyfox.dyn53.route53.RoutingPolicy;
+import org.slf4j.ILoggerFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.inject.Inject;
-import javax.inject.Named;
 import java.io.BufferedReader;
 import java.io.IOException;
+import java.net.InetAddress;
+import java.net.URI;
+import java.net.UnknownHostException;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Properties;
 import java.util.Set;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Application launcher class.
  */
 public final class Dyn53 implements Runnable {
-	private static final AtomicInteger shutdownThreadCounter = new AtomicInteger(1);
+	private static final Long DEFAULT_CHECK_INTERVAL = 300L;
 
-	private final Set<Lifecycle> lifecycleObjects;
+	private final LifecycleManager lifecycleManager;
 	private final Logger logger = LoggerFactory.getLogger(getClass());
 	private final Runtime runtime;
 
 	@Inject
-	public Dyn53(Set<Lifecycle> lifecycleObjects, Runtime runtime) {
-		this.lifecycleObjects = Objects.requireNonNull(lifecycleObjects);
+	public Dyn53(LifecycleManager lifecycleManager, Runtime runtime) {
+		this.lifecycleManager = Objects.requireNonNull(lifecycleManager);
 		this.runtime = Objects.requireNonNull(runtime);
 	}
 
@@ -89,13 +124,24 @@ public final class Dyn53 implements Runnable {
 
 		final String logFile = properties.getProperty("net.za.slyfox.dyn53.logFile");
 		if(logFile != null) {
+			final String logFormat = properties.getProperty("net.za.slyfox.dyn53.logFormat", "text");
+			final String logConfiguration;
+			if(logFormat.equals("text")) {
+				logConfiguration = "/logback-file.xml";
+			} else if(logFormat.equals("json")) {
+				logConfiguration = "/logback-file-json.xml";
+			} else {
+				throw new IllegalArgumentException("Unsupported log format " + logFormat);
+			}
+
 			final LoggerContext context = (LoggerContext)LoggerFactory.getILoggerFactory();
 			context.putProperty("logFile", logFile);
+			context.putProperty("logSampleRate", properties.getProperty("net.za.slyfox.dyn53.logSampleRate", "1"));
 			final ch.qos.logback.classic.Logger rootLogger = context.getLogger(Logger.ROOT_LOGGER_NAME);
 			final JoranConfigurator configurator = new JoranConfigurator();
 			configurator.setContext(context);
 			try {
-				configurator.doConfigure(Dyn53.class.getResourceAsStream("/logback-file.xml"));
+				configurator.doConfigure(Dyn53.class.getResourceAsStream(logConfiguration));
 			} catch(JoranException ignored) {
 			}
 
@@ -113,18 +159,134 @@ public final class Dyn53 implements Runnable {
 		final Logger logger = LoggerFactory.getLogger(Dyn53.class);
 		logger.info("Initializing Dyn53 application");
 
+		final Map<String, String> uplinkInterfaces = new LinkedHashMap<>();
+		final Map<String, RoutingPolicy> routingPolicies = new LinkedHashMap<>();
+		configureUplinks(properties, uplinkInterfaces, routingPolicies);
+
 		final Set<Module> modules = new HashSet<>();
-		modules.add(new ExternalIpModule());
-		modules.add(new SystemModule());
-
-		final String hostedZoneId = properties.getProperty("net.za.slyfox.dyn53.route53.hostedZoneId");
-		if(hostedZoneId == null) throw new IllegalArgumentException("Hosted zone ID missing");
-		final String resourceRecordSetName = properties.getProperty(
-				"net.za.slyfox.dyn53.route53.resourceRecordSetName");
-		if(resourceRecordSetName == null) throw new IllegalArgumentException("Resource record set name missing");
-		final Long resourceRecordSetTtl =
-				Long.valueOf(properties.getProperty("net.za.slyfox.dyn53.route53.resourceRecordSetTtl", "300"));
-		modules.add(new Route53Module(hostedZoneId, resourceRecordSetName, resourceRecordSetTtl));
+		final boolean leaderElected = configureLease(properties, modules);
+		final List<String> discoveryProviders = new ArrayList<>();
+		for(String provider : properties.getProperty("net.za.slyfox.dyn53.discovery.providers", "api.ipify.org")
+				.split(",")) {
+			if(!provider.trim().isEmpty()) discoveryProviders.add(provider.trim());
+		}
+		final String backend = properties.getProperty("net.za.slyfox.dyn53.backend", "route53");
+		final String inventoryFile = properties.getProperty("net.za.slyfox.dyn53.reconcile.file");
+		final List<Route53Record> records = (backend.equals("route53") && inventoryFile == null)
+				? getRecords(properties) : Collections.emptyList();
+		final long checkTick = getCheckTick(records);
+		final Module externalIpModule = new ExternalIpModule(uplinkInterfaces, leaderElected, discoveryProviders,
+				TimeUnit.SECONDS.toMillis(Long.valueOf(properties.getProperty(
+						"net.za.slyfox.dyn53.discovery.cacheTtl", "5"))), checkTick);
+		final long settleWindow = Long.valueOf(properties.getProperty(
+				"net.za.slyfox.dyn53.debounce.settleWindow", "0"));
+		if(checkTick > 0 && (settleWindow > 0
+				|| !properties.getProperty("net.za.slyfox.dyn53.health.probes", "").trim().isEmpty())) {
+			throw new IllegalArgumentException("Check intervals cannot be combined with debouncing or health probes");
+		}
+		if(settleWindow > 0) {
+			modules.add(Modules.override(externalIpModule).with(new DebounceModule(settleWindow,
+					Long.valueOf(properties.getProperty("net.za.slyfox.dyn53.debounce.maxDelay", "900")),
+					Integer.valueOf(properties.getProperty("net.za.slyfox.dyn53.debounce.flapThreshold", "4")),
+					Long.valueOf(properties.getProperty("net.za.slyfox.dyn53.debounce.flapWindow", "3600")))));
+		} else {
+			modules.add(externalIpModule);
+		}
+		modules.add(new SystemModule(TimeUnit.SECONDS.toMillis(Long.valueOf(properties.getProperty(
+				"net.za.slyfox.dyn53.shutdownTimeout", "30")))));
+
+		final List<AccountCredentials> accounts = getAccounts(properties);
+		final List<String> credentialSources = new ArrayList<>();
+		for(String source : properties.getProperty("net.za.slyfox.dyn53.credentials.sources", "profile").split(",")) {
+			if(!source.trim().isEmpty()) credentialSources.add(source.trim());
+		}
+		final Module credentialsModule = new CredentialsModule(credentialSources,
+				properties.getProperty("net.za.slyfox.dyn53.credentials.profile", "dyn53"),
+				TimeUnit.SECONDS.toMillis(Long.valueOf(properties.getProperty(
+						"net.za.slyfox.dyn53.credentials.refreshMargin", "300"))),
+				TimeUnit.SECONDS.toMillis(Long.valueOf(properties.getProperty(
+						"net.za.slyfox.dyn53.credentials.refreshInterval", "3600"))), accounts);
+		final Module route53ClientModule = new Route53ClientModule(getRoute53ClientConfiguration(properties),
+				properties.getProperty("net.za.slyfox.dyn53.route53.client.endpoint",
+						Route53ClientModule.DEFAULT_ENDPOINT),
+				Double.valueOf(properties.getProperty("net.za.slyfox.dyn53.route53.accountRequestRate",
+						String.valueOf(Route53ClientModule.DEFAULT_ACCOUNT_REQUEST_RATE))));
+
+		if(inventoryFile != null) {
+			System.exit(reconcile(properties, Paths.get(inventoryFile), credentialsModule, route53ClientModule)
+					? 0 : 1);
+		}
+
+		final Module updateModule;
+		if(backend.equals("rfc2136")) {
+			if(!routingPolicies.isEmpty() || properties.getProperty("net.za.slyfox.dyn53.lease.recordName") != null
+					|| properties.getProperty("net.za.slyfox.dyn53.cluster.membership") != null
+					|| getAdaptiveTtl(properties) != null) {
+				throw new IllegalArgumentException("Uplinks, lease records, clusters and adaptive TTLs require the "
+						+ "route53 backend");
+			}
+			updateModule = getRfc2136Module(properties);
+		} else if(backend.equals("route53")) {
+			final Set<String> accountNames = new HashSet<>();
+			accounts.forEach(account -> accountNames.add(account.getName()));
+			for(Route53Record record : records) {
+				if(record.getAccount() != null && !accountNames.contains(record.getAccount())) {
+					throw new IllegalArgumentException("Record " + record + " refers to an unknown account");
+				}
+			}
+
+			final Module route53Module = new Route53Module(records, routingPolicies,
+					Integer.valueOf(properties.getProperty("net.za.slyfox.dyn53.route53.shards",
+							String.valueOf(Runtime.getRuntime().availableProcessors()))),
+					Double.valueOf(properties.getProperty("net.za.slyfox.dyn53.route53.zoneRequestRate", "1")),
+					getAdaptiveTtl(properties));
+			final Module clusterModule = configureCluster(properties, modules);
+			if(clusterModule == null) {
+				updateModule = route53Module;
+			} else {
+				if(leaderElected || !routingPolicies.isEmpty() || records.size() < 2) {
+					throw new IllegalArgumentException("Cluster mode requires more than one record, and cannot be "
+							+ "combined with leases or uplinks");
+				}
+				updateModule = Modules.override(route53Module).with(clusterModule);
+			}
+			modules.add(credentialsModule);
+			modules.add(route53ClientModule);
+		} else {
+			throw new IllegalArgumentException("Unsupported backend " + backend);
+		}
+
+		final List<URI> healthProbes = new ArrayList<>();
+		for(String probe : properties.getProperty("net.za.slyfox.dyn53.health.probes", "").split(",")) {
+			if(!probe.trim().isEmpty()) healthProbes.add(URI.create(probe.trim()));
+		}
+		if(healthProbes.isEmpty()) {
+			modules.add(updateModule);
+		} else {
+			final long healthCheckInterval = Long.valueOf(properties.getProperty(
+					"net.za.slyfox.dyn53.health.interval", "5"));
+			final long healthCacheTtl = Long.valueOf(properties.getProperty(
+					"net.za.slyfox.dyn53.health.cacheTtl", "2000"));
+			final int healthProbeTimeout = Integer.valueOf(properties.getProperty(
+					"net.za.slyfox.dyn53.health.timeout", "2000"));
+			modules.add(Modules.override(updateModule).with(
+					new HealthModule(healthProbes, healthCheckInterval, healthCacheTtl, healthProbeTimeout,
+							!uplinkInterfaces.isEmpty())));
+		}
+
+		final String adminPort = properties.getProperty("net.za.slyfox.dyn53.admin.port");
+		if(adminPort != null) modules.add(new AdminModule(Integer.valueOf(adminPort)));
+
+		if(Boolean.parseBoolean(properties.getProperty("net.za.slyfox.dyn53.jfr.recording"))) {
+			final String settings = properties.getProperty("net.za.slyfox.dyn53.jfr.settings");
+			final String destination = properties.getProperty("net.za.slyfox.dyn53.jfr.destination");
+			modules.add(new FlightRecorderModule((settings == null) ? null : Paths.get(settings),
+					Duration.ofSeconds(Long.valueOf(properties.getProperty("net.za.slyfox.dyn53.jfr.maxAge",
+							String.valueOf(FlightRecorderModule.DEFAULT_MAX_AGE.getSeconds())))),
+					Long.valueOf(properties.getProperty("net.za.slyfox.dyn53.jfr.maxSize",
+							String.valueOf(FlightRecorderModule.DEFAULT_MAX_SIZE / (1024 * 1024)))) * 1024 * 1024,
+					(destination == null) ? null : Paths.get(destination)));
+		}
 
 		final String pidFile = properties.getProperty("net.za.slyfox.dyn53.daemon.pidFile");
 		if(pidFile != null) modules.add(new DaemonModule(pidFile));
@@ -141,21 +303,349 @@ public final class Dyn53 implements Runnable {
 		}
 	}
 
+	/**
+	 * Reconciles a hosted zone with an inventory file, as configured by the {@code net.za.slyfox.dyn53.reconcile.*}
+	 * properties, writing the changes made to standard output. Only the credentials and Route 53 client modules are
+	 * used, and their lifecycles are started for the duration of the reconciliation.
+	 *
+	 * @param properties the configuration properties
+	 * @param inventory the path of the inventory file
+	 * @param credentialsModule the module binding the credentials to sign requests with
+	 * @param route53ClientModule the module binding the Route 53 client
+	 * @return {@code true} if every change was made, or would be made by a dry run
+	 * @throws IllegalArgumentException if no hosted zone identifier is configured
+	 */
+	private static boolean reconcile(Properties properties, Path inventory, Module credentialsModule,
+			Module route53ClientModule) {
+		final String prefix = "net.za.slyfox.dyn53.reconcile.";
+		final String hostedZoneId = properties.getProperty(prefix + "hostedZoneId",
+				properties.getProperty("net.za.slyfox.dyn53.route53.hostedZoneId"));
+		if(hostedZoneId == null) throw new IllegalArgumentException("Hosted zone ID missing: " + prefix);
+		final Set<String> types = new HashSet<>();
+		for(String type : properties.getProperty(prefix + "types", "A,AAAA,CNAME,MX,TXT").split(",")) {
+			if(!type.trim().isEmpty()) types.add(type.trim());
+		}
+
+		final Injector injector = Guice.createInjector(Stage.PRODUCTION, credentialsModule, route53ClientModule,
+				new SystemModule(TimeUnit.SECONDS.toMillis(Long.valueOf(properties.getProperty(
+						"net.za.slyfox.dyn53.shutdownTimeout", "30")))));
+		final LifecycleManager lifecycleManager = injector.getInstance(LifecycleManager.class);
+		final Logger logger = LoggerFactory.getLogger(Dyn53.class);
+		lifecycleManager.start();
+		try {
+			final Reconciler reconciler = new Reconciler(injector.getInstance(AmazonRoute53.class), types,
+					Integer.valueOf(properties.getProperty(prefix + "parallelism", "4")),
+					Double.valueOf(properties.getProperty("net.za.slyfox.dyn53.route53.accountRequestRate",
+							String.valueOf(Route53ClientModule.DEFAULT_ACCOUNT_REQUEST_RATE))),
+					Integer.valueOf(properties.getProperty(prefix + "maxRecordsInMemory",
+							String.valueOf(Reconciler.DEFAULT_MAX_RECORDS_IN_MEMORY))));
+			final Reconciler.Result result = reconciler.reconcile(hostedZoneId, inventory,
+					Boolean.valueOf(properties.getProperty(prefix + "prune", "false")),
+					Boolean.valueOf(properties.getProperty(prefix + "dryRun", "false")), System.out::println);
+			System.out.println(result);
+			return result.getFailedBatches() == 0;
+		} catch(IOException | RuntimeException e) {
+			logger.error("Failed to reconcile hosted zone {} with {}", hostedZoneId, inventory, e);
+			return false;
+		} finally {
+			lifecycleManager.stop();
+		}
+	}
+
+	/**
+	 * Reads the resource record sets to update. If the {@code net.za.slyfox.dyn53.route53.records} property names any
+	 * records, each is configured by its own {@code net.za.slyfox.dyn53.route53.record.<name>.*} properties;
+	 * otherwise, the single record configured by the {@code net.za.slyfox.dyn53.route53.*} properties is used.
+	 *
+	 * @param properties the configuration properties
+	 * @return the records to update
+	 * @throws IllegalArgumentException if a record lacks a hosted zone identifier or resource record set name
+	 */
+	private static List<Route53Record> getRecords(Properties properties) {
+		final Long defaultTtl =
+				Long.valueOf(properties.getProperty("net.za.slyfox.dyn53.route53.resourceRecordSetTtl", "300"));
+		final String defaultCheckInterval = properties.getProperty("net.za.slyfox.dyn53.route53.checkInterval");
+		final List<String> prefixes = new ArrayList<>();
+		for(String record : properties.getProperty("net.za.slyfox.dyn53.route53.records", "").split(",")) {
+			if(!record.trim().isEmpty()) prefixes.add("net.za.slyfox.dyn53.route53.record." + record.trim() + '.');
+		}
+		if(prefixes.isEmpty()) prefixes.add("net.za.slyfox.dyn53.route53.");
+
+		final List<Route53Record> records = new ArrayList<>(prefixes.size());
+		for(String prefix : prefixes) {
+			final String hostedZoneId = properties.getProperty(prefix + "hostedZoneId");
+			if(hostedZoneId == null) throw new IllegalArgumentException("Hosted zone ID missing: " + prefix);
+			final String resourceRecordSetName = properties.getProperty(prefix + "resourceRecordSetName");
+			if(resourceRecordSetName == null) {
+				throw new IllegalArgumentException("Resource record set name missing: " + prefix);
+			}
+			final String ttl = properties.getProperty(prefix + "resourceRecordSetTtl");
+			final String checkInterval = properties.getProperty(prefix + "checkInterval", defaultCheckInterval);
+			records.add(new Route53Record(hostedZoneId, resourceRecordSetName,
+					(ttl == null) ? defaultTtl : Long.valueOf(ttl), properties.getProperty(prefix + "account"),
+					(checkInterval == null) ? null : Long.valueOf(checkInterval)));
+		}
+
+		// Once any record has its own check interval, the others are checked at the default discovery interval
+		if(records.stream().anyMatch(record -> record.getCheckInterval() != null)) {
+			records.replaceAll(record -> (record.getCheckInterval() != null) ? record
+					: new Route53Record(record.getHostedZoneId(), record.getName(), record.getTtl(),
+							record.getAccount(), DEFAULT_CHECK_INTERVAL));
+		}
+		return records;
+	}
+
+	/**
+	 * Reads the adaptive TTL policy from the application configuration.
+	 *
+	 * @param properties the application configuration
+	 * @return the adaptive TTL policy, or {@code null} if the configured TTLs of the records are used
+	 */
+	private static AdaptiveTtl getAdaptiveTtl(Properties properties) {
+		if(!Boolean.parseBoolean(properties.getProperty("net.za.slyfox.dyn53.route53.adaptiveTtl"))) return null;
+		return new AdaptiveTtl(
+				Long.valueOf(properties.getProperty("net.za.slyfox.dyn53.route53.adaptiveTtl.min", "60")),
+				Long.valueOf(properties.getProperty("net.za.slyfox.dyn53.route53.adaptiveTtl.max", "3600")));
+	}
+
+	/**
+	 * Returns the tick of the per-record discovery schedules, which is the greatest common divisor of the check
+	 * intervals of the records, so that every record comes due exactly on a tick with as few ticks as possible.
+	 *
+	 * @param records the records to update
+	 * @return the tick in seconds, or zero if the records do not have check intervals
+	 */
+	private static long getCheckTick(List<Route53Record> records) {
+		long tick = 0;
+		for(Route53Record record : records) {
+			if(record.getCheckInterval() == null) return 0;
+			long interval = record.getCheckInterval();
+			while(interval != 0) {
+				final long remainder = tick % interval;
+				tick = interval;
+				interval = remainder;
+			}
+		}
+		return tick;
+	}
+
+	/**
+	 * Creates the module updating resource record sets on a name server with RFC 2136 dynamic updates, as configured
+	 * by the {@code net.za.slyfox.dyn53.rfc2136.*} properties.
+	 *
+	 * @param properties the configuration properties
+	 * @return the module
+	 * @throws IllegalArgumentException if the server, zone or record names are missing
+	 */
+	private static Module getRfc2136Module(Properties properties) {
+		final String prefix = "net.za.slyfox.dyn53.rfc2136.";
+		final String server = properties.getProperty(prefix + "server");
+		final String zone = properties.getProperty(prefix + "zone");
+		if(server == null || zone == null) throw new IllegalArgumentException("Server or zone missing: " + prefix);
+		final List<String> names = new ArrayList<>();
+		for(String name : properties.getProperty(prefix + "names", "").split(",")) {
+			if(!name.trim().isEmpty()) names.add(name.trim());
+		}
+
+		return new Rfc2136Module(server, zone, names, Long.valueOf(properties.getProperty(prefix + "ttl", "300")),
+				properties.getProperty(prefix + "tsig.keyName"),
+				properties.getProperty(prefix + "tsig.algorithm", "hmac-sha256"),
+				properties.getProperty(prefix + "tsig.secret"));
+	}
+
+	/**
+	 * Reads the credentials of each additional account named in the {@code net.za.slyfox.dyn53.accounts} property.
+	 * Each account requires either a credentials profile or a role to assume with the default credentials.
+	 *
+	 * @param properties the configuration properties
+	 * @return the credentials of the additional accounts
+	 * @throws IllegalArgumentException if an account is not configured with exactly one of a profile or role
+	 */
+	private static List<AccountCredentials> getAccounts(Properties properties) {
+		final List<AccountCredentials> accounts = new ArrayList<>();
+		for(String account : properties.getProperty("net.za.slyfox.dyn53.accounts", "").split(",")) {
+			account = account.trim();
+			if(account.isEmpty()) continue;
+
+			final String prefix = "net.za.slyfox.dyn53.account." + account + '.';
+			final String profile = properties.getProperty(prefix + "profile");
+			final String roleArn = properties.getProperty(prefix + "roleArn");
+			if((profile == null) == (roleArn == null)) {
+				throw new IllegalArgumentException("Account " + account + " requires either a profile or role ARN");
+			}
+			accounts.add((profile != null) ? AccountCredentials.profile(account, profile)
+					: AccountCredentials.role(account, roleArn, properties.getProperty(prefix + "externalId")));
+		}
+		return accounts;
+	}
+
+	/**
+	 * Reads the configuration of each uplink named in the {@code net.za.slyfox.dyn53.uplinks} property. Each uplink
+	 * requires either a weight or a failover role for its resource record set.
+	 *
+	 * @param properties the configuration properties
+	 * @param uplinkInterfaces the map to populate with the network interface name of each uplink
+	 * @param routingPolicies the map to populate with the routing policy of each uplink
+	 * @throws IllegalArgumentException if an uplink is not configured with exactly one of a weight or failover role
+	 */
+	private static void configureUplinks(Properties properties, Map<String, String> uplinkInterfaces,
+			Map<String, RoutingPolicy> routingPolicies) {
+		final String uplinks = properties.getProperty("net.za.slyfox.dyn53.uplinks", "");
+		for(String uplink : uplinks.split(",")) {
+			uplink = uplink.trim();
+			if(uplink.isEmpty()) continue;
+
+			uplinkInterfaces.put(uplink,
+					properties.getProperty("net.za.slyfox.dyn53.uplink." + uplink + ".interface", ""));
+
+			final String prefix = "net.za.slyfox.dyn53.route53.uplink." + uplink + '.';
+			final String setIdentifier = properties.getProperty(prefix + "setIdentifier", uplink);
+			final String weight = properties.getProperty(prefix + "weight");
+			final String failover = properties.getProperty(prefix + "failover");
+			final String healthCheckId = properties.getProperty(prefix + "healthCheckId");
+			if((weight == null) == (failover == null)) {
+				throw new IllegalArgumentException("Uplink " + uplink + " requires either a weight or failover role");
+			}
+			routingPolicies.put(uplink, (weight != null)
+					? RoutingPolicy.weighted(setIdentifier, Long.valueOf(weight), healthCheckId)
+					: RoutingPolicy.failover(setIdentifier, failover, healthCheckId));
+		}
+	}
+
+	/**
+	 * Reads the configuration of the Route 53 client from the {@code net.za.slyfox.dyn53.route53.client.*}
+	 * properties. The defaults suit a single long-running process making a handful of requests at a time.
+	 *
+	 * @param properties the configuration properties
+	 * @return the client configuration
+	 */
+	private static ClientConfiguration getRoute53ClientConfiguration(Properties properties) {
+		final String prefix = "net.za.slyfox.dyn53.route53.client.";
+		final int maxErrorRetry = Integer.valueOf(properties.getProperty(prefix + "maxErrorRetry", "3"));
+		return new ClientConfiguration()
+				.withMaxConnections(Integer.valueOf(properties.getProperty(prefix + "maxConnections", "10")))
+				.withConnectionTimeout(Integer.valueOf(properties.getProperty(prefix + "connectionTimeout", "10000")))
+				.withSocketTimeout(Integer.valueOf(properties.getProperty(prefix + "socketTimeout", "20000")))
+				.withTcpKeepAlive(Boolean.valueOf(properties.getProperty(prefix + "tcpKeepAlive", "true")))
+				.withGzip(Boolean.valueOf(properties.getProperty(prefix + "gzip", "true")))
+				.withRetryPolicy(new RetryPolicy(PredefinedRetryPolicies.DEFAULT_RETRY_CONDITION,
+						PredefinedRetryPolicies.DEFAULT_BACKOFF_STRATEGY, maxErrorRetry, false));
+	}
+
+	/**
+	 * Adds the modules for leader election to {@code modules} if a lease backend is configured, through either the
+	 * {@code net.za.slyfox.dyn53.lease.file} or {@code net.za.slyfox.dyn53.lease.recordName} property.
+	 *
+	 * @param properties the configuration properties
+	 * @param modules the set of modules to add to
+	 * @return {@code true} if leader election is enabled
+	 * @throws IllegalArgumentException if both lease backends are configured
+	 */
+	private static boolean configureLease(Properties properties, Set<Module> modules) {
+		final String leaseFile = properties.getProperty("net.za.slyfox.dyn53.lease.file");
+		final String leaseRecordName = properties.getProperty("net.za.slyfox.dyn53.lease.recordName");
+		if(leaseFile == null && leaseRecordName == null) return false;
+		if(leaseFile != null && leaseRecordName != null) {
+			throw new IllegalArgumentException("Only one of a lease file and lease record name may be specified");
+		}
+
+		final String holder = getInstanceId(properties, "net.za.slyfox.dyn53.lease.holder");
+		final long leaseDuration = TimeUnit.SECONDS.toMillis(Long.valueOf(properties.getProperty(
+				"net.za.slyfox.dyn53.lease.duration", "30")));
+
+		modules.add(new LeaseModule(leaseDuration, holder));
+		modules.add((leaseFile != null) ? new FileLeaseModule(leaseFile) : new Route53LeaseModule(leaseRecordName));
+		return true;
+	}
+
+	/**
+	 * Configures partitioning of records across a cluster of instances, if the
+	 * {@code net.za.slyfox.dyn53.cluster.membership} property names a membership source. The module binding the
+	 * membership source is added to {@code modules}, and the module binding the record ownership is returned, to
+	 * override that of the DNS backend.
+	 *
+	 * @param properties the configuration properties
+	 * @param modules the set of modules to add the membership module to
+	 * @return the cluster module, or {@code null} if cluster mode is not configured
+	 * @throws IllegalArgumentException if the membership source is unsupported or incompletely configured
+	 */
+	private static Module configureCluster(Properties properties, Set<Module> modules) {
+		final String prefix = "net.za.slyfox.dyn53.cluster.";
+		final String source = properties.getProperty(prefix + "membership");
+		if(source == null) return null;
+
+		final String memberId = getInstanceId(properties, prefix + "memberId");
+		if(source.equals("file")) {
+			final String file = properties.getProperty(prefix + "file");
+			if(file == null) throw new IllegalArgumentException("Membership file missing: " + prefix + "file");
+			modules.add(new FileMembershipModule(file));
+		} else if(source.equals("route53")) {
+			final String recordName = properties.getProperty(prefix + "recordName");
+			if(recordName == null) {
+				throw new IllegalArgumentException("Membership record name missing: " + prefix + "recordName");
+			}
+			modules.add(new Route53MembershipModule(recordName));
+		} else if(source.equals("static")) {
+			final List<String> members = new ArrayList<>();
+			for(String member : properties.getProperty(prefix + "members", "").split(",")) {
+				if(!member.trim().isEmpty()) members.add(member.trim());
+			}
+			if(!members.contains(memberId)) {
+				throw new IllegalArgumentException("Static members must include the member ID " + memberId);
+			}
+			modules.add(new StaticMembershipModule(members));
+		} else {
+			throw new IllegalArgumentException("Unsupported membership source " + source);
+		}
+
+		return new ClusterModule(memberId,
+				TimeUnit.SECONDS.toMillis(Long.valueOf(properties.getProperty(prefix + "memberTtl", "30"))),
+				Integer.valueOf(properties.getProperty(prefix + "virtualNodes",
+						String.valueOf(ClusterModule.DEFAULT_VIRTUAL_NODES))));
+	}
+
+	/**
+	 * Returns the identifier of this instance among redundant or clustered instances, which defaults to the host name
+	 * with a random suffix, so that it is unique even among instances on the same host.
+	 *
+	 * @param properties the configuration properties
+	 * @param property the name of the property that may specify the identifier
+	 * @return the identifier
+	 */
+	private static String getInstanceId(Properties properties, String property) {
+		String id = properties.getProperty(property);
+		if(id == null) {
+			try {
+				id = InetAddress.getLocalHost().getHostName();
+			} catch(UnknownHostException e) {
+				id = "dyn53";
+			}
+			id += '-' + UUID.randomUUID().toString().substring(0, 8);
+		}
+		return id;
+	}
+
 	@Override
 	public void run() {
 		logger.info("Starting Dyn53 application");
-		if(lifecycleObjects.isEmpty()) throw new IllegalStateException("No lifecycle objects registered");
-		lifecycleObjects.forEach(lifecycle -> {
-			logger.debug("Starting {}", lifecycle);
-			lifecycle.start();
-			logger.debug("Registering shutdown hook for {}", lifecycle);
-			runtime.addShutdownHook(new Thread(lifecycle::stop, getShutdownThreadName(lifecycle)));
-		});
+		if(lifecycleManager.isEmpty()) throw new IllegalStateException("No lifecycle objects registered");
+		logger.debug("Registering shutdown hook");
+		runtime.addShutdownHook(new Thread(() -> {
+			try {
+				lifecycleManager.stop();
+			} finally {
+				stopLogging();
+			}
+		}, "shutdown"));
+		lifecycleManager.start();
 	}
 
-	private static String getShutdownThreadName(Lifecycle lifecycle) {
-		final Named nameAnnotation = lifecycle.getClass().getAnnotation(Named.class);
-		return "shutdown-"
-				+ ((nameAnnotation != null) ? nameAnnotation.value() : shutdownThreadCounter.getAndIncrement());
+	/**
+	 * Stops the logging system once the lifecycles have stopped, so that asynchronous appenders write out the events
+	 * they still hold, including those logged while stopping.
+	 */
+	private static void stopLogging() {
+		final ILoggerFactory loggerFactory = LoggerFactory.getILoggerFactory();
+		if(loggerFactory instanceof LoggerContext) ((LoggerContext)loggerFactory).stop();
 	}
 }
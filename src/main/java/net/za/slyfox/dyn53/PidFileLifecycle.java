@@ -12,16 +12,15 @@
  */
 package net.za.slyfox.dyn53;
 
-import com.sun.jna.Library;
-import com.sun.jna.Native;
-import com.sun.jna.Platform;
 import net.za.slyfox.dyn53.bean.Lifecycle;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.inject.Inject;
+import java.io.File;
 import java.io.IOException;
 import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
@@ -31,7 +30,7 @@ import java.util.Objects;
 /**
  * Implements a {@link Lifecycle} object that manages a PID file for the JVM process.
  */
-final class PidFileLifecycle implements Lifecycle {
+public final class PidFileLifecycle implements Lifecycle {
 	private final Logger logger = LoggerFactory.getLogger(getClass());
 	private final Path pidFilePath;
 
@@ -41,7 +40,7 @@ final class PidFileLifecycle implements Lifecycle {
 	 * @param pidFilePath the path to the PID file
 	 */
 	@Inject
-	PidFileLifecycle(Path pidFilePath) {
+	public PidFileLifecycle(Path pidFilePath) {
 		this.pidFilePath = Objects.requireNonNull(pidFilePath);
 	}
 
@@ -62,16 +61,28 @@ final class PidFileLifecycle implements Lifecycle {
 	}
 
 	/**
-	 * Returns the PID of the JVM process.
+	 * Returns the PID of the JVM process. The PID is read from {@code /proc/self} where the platform provides it, and
+	 * otherwise from the name of the runtime management bean, which the JVM gives as {@code pid@hostname}. Neither
+	 * requires a native library.
 	 *
 	 * @return a string containing the PID of the JVM process
+	 * @throws IOException if the PID cannot be determined
 	 */
-	private String getPid() {
-		if(Platform.isWindows()) {
-			return String.valueOf(WindowsKernelLibrary.INSTANCE.GetCurrentProcessId());
-		} else {
-			return String.valueOf(UnixCLibrary.INSTANCE.getpid());
+	static String getPid() throws IOException {
+		final File procSelf = new File("/proc/self");
+		if(procSelf.exists()) {
+			final String pid = procSelf.getCanonicalFile().getName();
+			if(isNumeric(pid)) return pid;
 		}
+
+		final String name = ManagementFactory.getRuntimeMXBean().getName();
+		final String pid = name.substring(0, Math.max(name.indexOf('@'), 0));
+		if(isNumeric(pid)) return pid;
+		throw new IOException("Cannot determine the PID of the JVM process");
+	}
+
+	private static boolean isNumeric(String value) {
+		return !value.isEmpty() && value.chars().allMatch(Character::isDigit);
 	}
 
 	/**
@@ -85,15 +96,4 @@ final class PidFileLifecycle implements Lifecycle {
 			logger.warn("Failed to delete PID file \"{}\"", pidFilePath, e);
 		}
 	}
-
-	private interface UnixCLibrary extends Library {
-		UnixCLibrary INSTANCE = (UnixCLibrary)Native.loadLibrary("c", UnixCLibrary.class);
-		int getpid();
-	}
-
-	private interface WindowsKernelLibrary extends Library {
-		WindowsKernelLibrary INSTANCE
-				= (WindowsKernelLibrary)Native.loadLibrary("kernel32", WindowsKernelLibrary.class);
-		int GetCurrentProcessId();
-	}
 }
@@ -13,10 +13,23 @@
 package net.za.slyfox.dyn53;
 
 import com.google.inject.AbstractModule;
+import com.google.inject.name.Names;
 
 final class SystemModule extends AbstractModule {
+	private final long shutdownTimeout;
+
+	/**
+	 * Initializes the module.
+	 *
+	 * @param shutdownTimeout the maximum time to wait for all components to stop on shutdown, in milliseconds
+	 */
+	SystemModule(long shutdownTimeout) {
+		this.shutdownTimeout = shutdownTimeout;
+	}
+
 	@Override
 	protected void configure() {
 		bind(Runtime.class).toInstance(Runtime.getRuntime());
+		bind(Long.class).annotatedWith(Names.named("shutdownTimeout")).toInstance(shutdownTimeout);
 	}
 }
@@ -0,0 +1,57 @@
+/*
+ * Copyright 2015 Philip Cronje
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package net.za.slyfox.dyn53.admin;
+
+import com.google.inject.AbstractModule;
+import com.google.inject.Provides;
+import com.google.inject.multibindings.Multibinder;
+import com.google.inject.name.Names;
+import net.za.slyfox.dyn53.bean.Lifecycle;
+import net.za.slyfox.dyn53.concurrent.NamedPoolThreadFactory;
+
+import javax.inject.Named;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Adds an admin server on the loopback interface, through which external IP discovery can be triggered, reset and
+ * inspected. This module requires the {@code DiscoveryControl} binding of the external IP module.
+ */
+public final class AdminModule extends AbstractModule {
+	private static final int RECENT_EVENTS = 256;
+
+	private final int port;
+
+	/**
+	 * Initializes the module with the admin server configuration.
+	 *
+	 * @param port the loopback port to listen on
+	 */
+	public AdminModule(int port) {
+		this.port = port;
+	}
+
+	@Override
+	protected void configure() {
+		Multibinder.newSetBinder(binder(), Lifecycle.class).addBinding().to(AdminServer.class);
+
+		bind(Integer.class).annotatedWith(Names.named("adminPort")).toInstance(port);
+		bind(RecentEventsAppender.class).toInstance(new RecentEventsAppender(RECENT_EVENTS));
+	}
+
+	@Provides
+	@Named("admin")
+	ExecutorService executorService() {
+		return Executors.newCachedThreadPool(new NamedPoolThreadFactory("admin"));
+	}
+}
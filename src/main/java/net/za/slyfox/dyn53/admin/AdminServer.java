@@ -0,0 +1,314 @@
+/*
+ * Copyright 2015 Philip Cronje
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package net.za.slyfox.dyn53.admin;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import net.za.slyfox.dyn53.bean.Lifecycle;
+import net.za.slyfox.dyn53.extip.DiscoveryControl;
+import net.za.slyfox.dyn53.extip.DiscoveryStatus;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Provider;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.io.UnsupportedEncodingException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Implements a {@link Lifecycle} object that manages a small HTTP server on the loopback interface, through which an
+ * operator can control and inspect external IP discovery. The server exposes the following endpoints:
+ *
+ * <dl>
+ *     <dt>{@code POST /refresh}</dt>
+ *     <dd>runs a discovery and update cycle immediately</dd>
+ *     <dt>{@code POST /reset[?key=<key>]}</dt>
+ *     <dd>resets the update predicate of one address, or of every address, so that the next cycle publishes the
+ *     discovered address even if it has not changed. The key names an uplink when uplinks are configured, or a record
+ *     when records are checked at their own intervals, as listed by {@code /status}</dd>
+ *     <dt>{@code GET /status}</dt>
+ *     <dd>returns the state of each discovered address and the timing of the scheduler, as JSON</dd>
+ *     <dt>{@code GET /events[?follow=true]}</dt>
+ *     <dd>returns the recent change events as lines of JSON, and optionally keeps streaming new events</dd>
+ * </dl>
+ *
+ * <p>Requests whose {@code Host} or {@code Origin} header names anything other than the loopback interface are
+ * refused, so that web pages open in a local browser cannot reach the server, whether directly or through DNS
+ * rebinding.</p>
+ */
+final class AdminServer implements Lifecycle {
+	private static final String JSON = "application/json";
+	private static final String JSON_LINES = "application/x-ndjson";
+
+	private final DiscoveryControl discoveryControl;
+	private final Provider<ExecutorService> executorServiceProvider;
+	private final Logger logger = LoggerFactory.getLogger(getClass());
+	private final ObjectMapper objectMapper = new ObjectMapper();
+	private final int port;
+	private final RecentEventsAppender recentEvents;
+
+	private ExecutorService executorService;
+	private HttpServer server;
+	private volatile boolean stopped;
+
+	/**
+	 * Initializes the {@code AdminServer} with configuration values, and injects dependencies.
+	 *
+	 * @param port the loopback port to listen on, or 0 to select a free port
+	 * @param discoveryControl the interface used to control and inspect external IP discovery
+	 * @param recentEvents the appender retaining the recent change events
+	 * @param executorServiceProvider a {@code Provider} that will supply a new executor service to handle requests
+	 *                                each time the lifecycle is started
+	 * @throws NullPointerException if a required dependency is {@code null}
+	 */
+	@Inject
+	AdminServer(@Named("adminPort") int port, DiscoveryControl discoveryControl, RecentEventsAppender recentEvents,
+			@Named("admin") Provider<ExecutorService> executorServiceProvider) {
+		this.discoveryControl = Objects.requireNonNull(discoveryControl);
+		this.executorServiceProvider = Objects.requireNonNull(executorServiceProvider);
+		this.port = port;
+		this.recentEvents = Objects.requireNonNull(recentEvents);
+	}
+
+	/**
+	 * Starts listening for requests on the loopback interface.
+	 *
+	 * @throws UncheckedIOException if the server cannot bind to its port
+	 */
+	@Override
+	public synchronized void start() {
+		try {
+			server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+		} catch(IOException e) {
+			throw new UncheckedIOException(e);
+		}
+
+		server.createContext("/refresh", handler("POST", this::refresh));
+		server.createContext("/reset", handler("POST", this::reset));
+		server.createContext("/status", handler("GET", this::status));
+		server.createContext("/events", handler("GET", this::events));
+
+		stopped = false;
+		executorService = executorServiceProvider.get();
+		server.setExecutor(executorService);
+		recentEvents.attach();
+		server.start();
+		logger.info("Admin server listening on {}", server.getAddress());
+	}
+
+	/**
+	 * Stops the server, ending any event streams.
+	 */
+	@Override
+	public synchronized void stop() {
+		if(server == null) return;
+		logger.info("Stopping admin server");
+		stopped = true;
+		server.stop(0);
+		recentEvents.detach();
+		executorService.shutdownNow();
+		server = null;
+		executorService = null;
+	}
+
+	/**
+	 * Returns the address the server is listening on.
+	 *
+	 * @return the socket address, or {@code null} if the server is not running
+	 */
+	synchronized InetSocketAddress getAddress() {
+		return (server == null) ? null : server.getAddress();
+	}
+
+	private void refresh(HttpExchange exchange) throws IOException {
+		if(discoveryControl.trigger()) {
+			send(exchange, 202, JSON, "{\"triggered\":true}\n");
+		} else {
+			send(exchange, 503, JSON, "{\"triggered\":false}\n");
+		}
+	}
+
+	private void reset(HttpExchange exchange) throws IOException {
+		final String key = getQueryParameters(exchange).get("key");
+		if(discoveryControl.reset(key)) {
+			send(exchange, 200, JSON, "{\"reset\":true}\n");
+		} else {
+			send(exchange, 404, JSON, "{\"reset\":false}\n");
+		}
+	}
+
+	private void status(HttpExchange exchange) throws IOException {
+		final DiscoveryStatus status = discoveryControl.getStatus();
+		final ObjectNode root = objectMapper.createObjectNode();
+		root.put("running", status.isRunning());
+		root.put("lastRunStart", (status.getLastRunStart() == 0) ? null
+				: Instant.ofEpochMilli(status.getLastRunStart()).toString());
+		root.put("lastRunDuration", status.getLastRunDuration());
+		root.put("nextRunDelay", status.getNextRunDelay());
+
+		final ObjectNode addresses = root.putObject("addresses");
+		status.getAddresses().forEach((key, addressStatus) -> {
+			final ObjectNode address = addresses.putObject(key);
+			address.put("address",
+					(addressStatus.getAddress() == null) ? null : addressStatus.getAddress().getHostAddress());
+			address.put("lastChecked", Instant.ofEpochMilli(addressStatus.getLastChecked()).toString());
+			address.put("outcome", addressStatus.getOutcome().toString());
+		});
+		send(exchange, 200, JSON, objectMapper.writeValueAsString(root) + '\n');
+	}
+
+	private void events(HttpExchange exchange) throws IOException {
+		if(!Boolean.valueOf(getQueryParameters(exchange).get("follow"))) {
+			send(exchange, 200, JSON_LINES, String.join("", recentEvents.getEvents()));
+			return;
+		}
+
+		final BlockingQueue<String> follower = recentEvents.follow();
+		exchange.getResponseHeaders().set("Content-Type", JSON_LINES);
+		exchange.sendResponseHeaders(200, 0);
+		try(OutputStream output = exchange.getResponseBody()) {
+			for(String event : recentEvents.getEvents()) output.write(event.getBytes(StandardCharsets.UTF_8));
+			output.flush();
+			while(!stopped) {
+				final String event = follower.poll(1, TimeUnit.SECONDS);
+				if(event == null) continue;
+				output.write(event.getBytes(StandardCharsets.UTF_8));
+				output.flush();
+			}
+		} catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} finally {
+			recentEvents.unfollow(follower);
+		}
+	}
+
+	/**
+	 * Wraps an endpoint so that it only accepts a single request method, and so that failures are logged and
+	 * reported to the client.
+	 *
+	 * @param method the request method accepted by the endpoint
+	 * @param endpoint the endpoint logic
+	 * @return the handler to register with the server
+	 */
+	private HttpHandler handler(String method, HttpHandler endpoint) {
+		return exchange -> {
+			try {
+				if(!isLoopback(exchange)) {
+					logger.warn("Refusing admin request {} {} with Host {} and Origin {}", exchange.getRequestMethod(),
+							exchange.getRequestURI(), exchange.getRequestHeaders().getFirst("Host"),
+							exchange.getRequestHeaders().getFirst("Origin"));
+					send(exchange, 403, JSON, "{\"error\":\"Forbidden\"}\n");
+				} else if(!exchange.getRequestMethod().equals(method)) {
+					exchange.getResponseHeaders().set("Allow", method);
+					send(exchange, 405, JSON, "{\"error\":\"Method not allowed\"}\n");
+				} else {
+					endpoint.handle(exchange);
+				}
+			} catch(IOException e) {
+				logger.debug("Admin request {} {} failed", exchange.getRequestMethod(), exchange.getRequestURI(), e);
+			} catch(RuntimeException e) {
+				logger.error("Admin request {} {} failed", exchange.getRequestMethod(), exchange.getRequestURI(), e);
+				send(exchange, 500, JSON, "{\"error\":\"Internal error\"}\n");
+			} finally {
+				exchange.close();
+			}
+		};
+	}
+
+	/**
+	 * Checks that a request is addressed to the loopback interface. A request without a {@code Host} header, which
+	 * browsers always send, is accepted, but a request with an {@code Origin} header must come from a page served by
+	 * the loopback interface.
+	 *
+	 * @param exchange the exchange of the request
+	 * @return {@code true} if the {@code Host} and {@code Origin} headers of the request name the loopback interface
+	 */
+	private static boolean isLoopback(HttpExchange exchange) {
+		final String host = exchange.getRequestHeaders().getFirst("Host");
+		if(host != null && !isLoopbackHost(host.replaceFirst(":\\d*$", ""))) return false;
+
+		final String origin = exchange.getRequestHeaders().getFirst("Origin");
+		if(origin == null) return true;
+		try {
+			final String originHost = new URI(origin).getHost();
+			return originHost != null && isLoopbackHost(originHost);
+		} catch(URISyntaxException e) {
+			return false;
+		}
+	}
+
+	private static boolean isLoopbackHost(String host) {
+		return host.equalsIgnoreCase("localhost") || host.equals("[::1]") || host.matches("127(\\.\\d{1,3}){3}");
+	}
+
+	/**
+	 * Sends a complete response.
+	 *
+	 * @param exchange the exchange to respond to
+	 * @param status the HTTP status code
+	 * @param contentType the content type of the body
+	 * @param body the response body
+	 * @throws IOException if the response cannot be written
+	 */
+	private static void send(HttpExchange exchange, int status, String contentType, String body) throws IOException {
+		final byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+		exchange.getResponseHeaders().set("Content-Type", contentType);
+		exchange.sendResponseHeaders(status, (bytes.length == 0) ? -1 : bytes.length);
+		if(bytes.length > 0) {
+			try(OutputStream output = exchange.getResponseBody()) {
+				output.write(bytes);
+			}
+		}
+	}
+
+	/**
+	 * Parses the query string of a request.
+	 *
+	 * @param exchange the exchange of the request
+	 * @return a map of parameter names to their first values
+	 * @throws UnsupportedEncodingException never, since UTF-8 is always supported
+	 */
+	private static Map<String, String> getQueryParameters(HttpExchange exchange) throws UnsupportedEncodingException {
+		final Map<String, String> parameters = new HashMap<>();
+		final String query = exchange.getRequestURI().getRawQuery();
+		if(query == null) return parameters;
+		for(String parameter : query.split("&")) {
+			if(parameter.isEmpty()) continue;
+			final int separator = parameter.indexOf('=');
+			final String name = URLDecoder.decode((separator < 0) ? parameter : parameter.substring(0, separator),
+					"UTF-8");
+			final String value = (separator < 0) ? "" : URLDecoder.decode(parameter.substring(separator + 1), "UTF-8");
+			parameters.putIfAbsent(name, value);
+		}
+		return parameters;
+	}
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright 2015 Philip Cronje
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package net.za.slyfox.dyn53.admin;
+
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.AppenderBase;
+import net.za.slyfox.dyn53.logging.JsonLayout;
+import net.za.slyfox.dyn53.logging.LogField;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * Implements an appender that retains the most recent change events logged by the DNS updaters, rendered as lines of
+ * JSON, so that they can be inspected and followed through the admin server. Only events carrying an
+ * {@code outcome} {@link LogField} are retained, which are the results of change requests.
+ */
+final class RecentEventsAppender extends AppenderBase<ILoggingEvent> {
+	static final String LOGGER_NAME = "net.za.slyfox.dyn53.route53";
+
+	private final int capacity;
+	private final Deque<String> events;
+	private final Set<BlockingQueue<String>> followers = ConcurrentHashMap.newKeySet();
+	private final JsonLayout layout = new JsonLayout();
+
+	/**
+	 * Initializes the appender.
+	 *
+	 * @param capacity the number of events to retain
+	 */
+	RecentEventsAppender(int capacity) {
+		this.capacity = capacity;
+		this.events = new ArrayDeque<>(capacity);
+		setName("recentEvents");
+	}
+
+	/**
+	 * Starts the appender, and attaches it to the logger of the DNS updaters.
+	 */
+	void attach() {
+		final LoggerContext context = (LoggerContext)LoggerFactory.getILoggerFactory();
+		setContext(context);
+		layout.setContext(context);
+		layout.start();
+		start();
+		context.getLogger(LOGGER_NAME).addAppender(this);
+	}
+
+	/**
+	 * Detaches the appender from the logger of the DNS updaters, and stops it.
+	 */
+	void detach() {
+		((LoggerContext)LoggerFactory.getILoggerFactory()).getLogger(LOGGER_NAME).detachAppender(this);
+		stop();
+		layout.stop();
+	}
+
+	@Override
+	protected void append(ILoggingEvent event) {
+		if(!isChangeEvent(event)) return;
+
+		final String line = layout.doLayout(event);
+		synchronized(events) {
+			if(events.size() == capacity) events.removeFirst();
+			events.addLast(line);
+		}
+		followers.forEach(follower -> follower.offer(line));
+	}
+
+	/**
+	 * Returns the retained events, oldest first.
+	 *
+	 * @return a list of JSON lines
+	 */
+	List<String> getEvents() {
+		synchronized(events) {
+			return new ArrayList<>(events);
+		}
+	}
+
+	/**
+	 * Registers a queue to receive each event appended from now on.
+	 *
+	 * @return the queue that will receive events, which must be passed to {@link #unfollow(BlockingQueue)} when no
+	 *         longer needed
+	 */
+	BlockingQueue<String> follow() {
+		final BlockingQueue<String> follower = new LinkedBlockingQueue<>(capacity);
+		followers.add(follower);
+		return follower;
+	}
+
+	/**
+	 * Deregisters a queue obtained from {@link #follow()}.
+	 *
+	 * @param follower the queue to deregister
+	 */
+	void unfollow(BlockingQueue<String> follower) {
+		followers.remove(follower);
+	}
+
+	/**
+	 * Determines whether an event is the result of a change request.
+	 *
+	 * @param event the event to examine
+	 * @return {@code true} if the event carries an {@code outcome} field
+	 */
+	private static boolean isChangeEvent(ILoggingEvent event) {
+		final Object[] arguments = event.getArgumentArray();
+		if(arguments == null) return false;
+		for(Object argument : arguments) {
+			if(argument instanceof LogField && ((LogField)argument).getName().equals("outcome")) return true;
+		}
+		return false;
+	}
+}
@@ -25,4 +25,14 @@ public interface Lifecycle {
 	 * Stops the bean.
 	 */
 	void stop();
+
+	/**
+	 * Stops the bean, returning no later than a deadline. Beans that wait for work in progress while stopping override
+	 * this method to bound the wait by the deadline; the default implementation calls {@link #stop()}.
+	 *
+	 * @param deadline the time by which to return, as a value of {@link System#nanoTime()}
+	 */
+	default void stop(long deadline) {
+		stop();
+	}
 }
@@ -0,0 +1,234 @@
+/*
+ * Copyright 2015 Philip Cronje
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package net.za.slyfox.dyn53.bean;
+
+import com.google.inject.Binding;
+import com.google.inject.Injector;
+import com.google.inject.Key;
+import com.google.inject.spi.Dependency;
+import com.google.inject.spi.HasDependencies;
+import com.google.inject.spi.LinkedKeyBinding;
+import com.google.inject.spi.ProviderBinding;
+import com.google.inject.spi.ProviderKeyBinding;
+import net.za.slyfox.dyn53.concurrent.NamedPoolThreadFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Starts and stops a set of {@link Lifecycle} objects in dependency order. A lifecycle is started only after every
+ * lifecycle it depends on, and stopped only after every lifecycle that depends on it, so that, for example, discovery
+ * stops before the updaters it publishes to, and the updaters drain before the clients they use are shut down.
+ *
+ * <p>Lifecycles that do not depend on each other are stopped in parallel, and the whole shutdown is bounded by a
+ * single deadline, which is passed to each lifecycle so that it can bound its own waits. Lifecycles still stopping
+ * when the deadline passes are abandoned, so that the process can exit.</p>
+ */
+public final class LifecycleManager {
+	private final Map<Lifecycle, Set<Lifecycle>> dependencies;
+	private final Logger logger = LoggerFactory.getLogger(getClass());
+	private final long shutdownTimeout;
+	private final List<Lifecycle> started = new ArrayList<>();
+
+	/**
+	 * Initializes the manager with the lifecycles bound in an injector, deriving their dependencies from the
+	 * injector's bindings.
+	 *
+	 * @param injector the injector that created the lifecycles
+	 * @param lifecycles the lifecycles to manage
+	 * @param shutdownTimeout the maximum time to wait for all lifecycles to stop, in milliseconds
+	 */
+	@Inject
+	LifecycleManager(Injector injector, Set<Lifecycle> lifecycles, @Named("shutdownTimeout") long shutdownTimeout) {
+		this(getDependencies(injector, lifecycles), shutdownTimeout);
+	}
+
+	/**
+	 * Initializes the manager.
+	 *
+	 * @param dependencies a map of each lifecycle to manage to the lifecycles it depends on
+	 * @param shutdownTimeout the maximum time to wait for all lifecycles to stop, in milliseconds
+	 */
+	LifecycleManager(Map<Lifecycle, Set<Lifecycle>> dependencies, long shutdownTimeout) {
+		this.dependencies = new LinkedHashMap<>(dependencies);
+		this.shutdownTimeout = shutdownTimeout;
+	}
+
+	/**
+	 * Returns whether there are no lifecycles to manage.
+	 *
+	 * @return {@code true} if there are no lifecycles
+	 */
+	public boolean isEmpty() {
+		return dependencies.isEmpty();
+	}
+
+	/**
+	 * Starts each lifecycle after the lifecycles it depends on. If a lifecycle fails to start, the lifecycles already
+	 * started remain started, and are stopped by {@link #stop()}.
+	 *
+	 * @throws RuntimeException if a lifecycle fails to start
+	 */
+	public void start() {
+		final Set<Lifecycle> remaining = new LinkedHashSet<>(dependencies.keySet());
+		while(!remaining.isEmpty()) {
+			Lifecycle next = null;
+			for(Lifecycle lifecycle : remaining) {
+				if(Collections.disjoint(dependencies.get(lifecycle), remaining)) {
+					next = lifecycle;
+					break;
+				}
+			}
+			if(next == null) {
+				next = remaining.iterator().next();
+				logger.warn("Dependency cycle among {}, starting {} first", remaining, next);
+			}
+			remaining.remove(next);
+
+			logger.debug("Starting {}", next);
+			next.start();
+			synchronized(started) {
+				started.add(next);
+			}
+		}
+	}
+
+	/**
+	 * Stops the started lifecycles in reverse dependency order. Each round stops, in parallel, every lifecycle that no
+	 * running lifecycle depends on. This method returns once every lifecycle has stopped, or the shutdown deadline
+	 * has passed.
+	 */
+	public void stop() {
+		final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(shutdownTimeout);
+		final Set<Lifecycle> remaining;
+		synchronized(started) {
+			remaining = new LinkedHashSet<>(started);
+			started.clear();
+		}
+		logger.info("Stopping {} components within {} ms", remaining.size(), shutdownTimeout);
+
+		final ExecutorService executorService = Executors.newCachedThreadPool(new NamedPoolThreadFactory("shutdown"));
+		try {
+			while(!remaining.isEmpty()) {
+				List<Lifecycle> round = new ArrayList<>();
+				for(Lifecycle lifecycle : remaining) {
+					if(remaining.stream().noneMatch(other -> other != lifecycle
+							&& dependencies.get(other).contains(lifecycle))) {
+						round.add(lifecycle);
+					}
+				}
+				if(round.isEmpty()) {
+					logger.warn("Dependency cycle among {}, stopping them together", remaining);
+					round = new ArrayList<>(remaining);
+				}
+				remaining.removeAll(round);
+
+				final Map<Lifecycle, Future<?>> stops = new LinkedHashMap<>();
+				round.forEach(lifecycle -> stops.put(lifecycle,
+						executorService.submit(() -> stop(lifecycle, deadline))));
+				for(Map.Entry<Lifecycle, Future<?>> stop : stops.entrySet()) {
+					try {
+						stop.getValue().get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+					} catch(TimeoutException e) {
+						logger.warn("Shutdown deadline passed while stopping {}, abandoning {} remaining components",
+								stop.getKey(), remaining.size());
+						return;
+					} catch(ExecutionException e) {
+						logger.error("Failed to stop {}", stop.getKey(), e.getCause());
+					} catch(InterruptedException e) {
+						logger.warn("Interrupted while stopping {}", stop.getKey());
+						Thread.currentThread().interrupt();
+						return;
+					}
+				}
+			}
+			logger.info("All components stopped");
+		} finally {
+			executorService.shutdown();
+		}
+	}
+
+	private void stop(Lifecycle lifecycle, long deadline) {
+		logger.debug("Stopping {}", lifecycle);
+		final long start = System.nanoTime();
+		lifecycle.stop(deadline);
+		logger.debug("Stopped {} in {} ms", lifecycle, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+	}
+
+	/**
+	 * Derives the dependencies between lifecycles from the bindings of the injector that created them. A lifecycle
+	 * depends on another if the other's class is reachable through the bindings the lifecycle's class is injected
+	 * with, including through linked bindings, provider bindings and injected {@link javax.inject.Provider}s.
+	 *
+	 * @param injector the injector that created the lifecycles
+	 * @param lifecycles the lifecycles
+	 * @return a map of each lifecycle to the lifecycles it depends on
+	 */
+	static Map<Lifecycle, Set<Lifecycle>> getDependencies(Injector injector, Collection<Lifecycle> lifecycles) {
+		final Map<Key<?>, Lifecycle> lifecyclesByKey = new HashMap<>();
+		lifecycles.forEach(lifecycle -> lifecyclesByKey.put(Key.get(lifecycle.getClass()), lifecycle));
+
+		final Map<Lifecycle, Set<Lifecycle>> dependencies = new LinkedHashMap<>();
+		for(Lifecycle lifecycle : lifecycles) {
+			final Set<Lifecycle> lifecycleDependencies = new LinkedHashSet<>();
+			final Set<Key<?>> visited = new HashSet<>();
+			final Deque<Key<?>> pending = new ArrayDeque<>(getDirectDependencies(injector,
+					Key.get(lifecycle.getClass())));
+			while(!pending.isEmpty()) {
+				final Key<?> key = pending.pop();
+				if(!visited.add(key)) continue;
+				final Lifecycle dependency = lifecyclesByKey.get(key);
+				if(dependency != null && dependency != lifecycle) lifecycleDependencies.add(dependency);
+				pending.addAll(getDirectDependencies(injector, key));
+			}
+			dependencies.put(lifecycle, lifecycleDependencies);
+		}
+		return dependencies;
+	}
+
+	private static Collection<Key<?>> getDirectDependencies(Injector injector, Key<?> key) {
+		final Binding<?> binding = injector.getExistingBinding(key);
+		if(binding instanceof LinkedKeyBinding) {
+			return Collections.singleton(((LinkedKeyBinding<?>)binding).getLinkedKey());
+		} else if(binding instanceof ProviderKeyBinding) {
+			return Collections.singleton(((ProviderKeyBinding<?>)binding).getProviderKey());
+		} else if(binding instanceof ProviderBinding) {
+			return Collections.singleton(((ProviderBinding<?>)binding).getProvidedKey());
+		} else if(binding instanceof HasDependencies) {
+			final List<Key<?>> keys = new ArrayList<>();
+			for(Dependency<?> dependency : ((HasDependencies)binding).getDependencies()) keys.add(dependency.getKey());
+			return keys;
+		}
+		return Collections.emptyList();
+	}
+}
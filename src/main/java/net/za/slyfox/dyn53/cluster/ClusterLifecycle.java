@@ -0,0 +1,205 @@
+/*
+ * Copyright 2015 Philip Cronje
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package net.za.slyfox.dyn53.cluster;
+
+import net.za.slyfox.dyn53.bean.Lifecycle;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Implements a {@link Lifecycle} object that keeps this instance a member of a cluster, and partitions records across
+ * the live members with a {@link HashRing}. The membership is renewed three times per member TTL. Whenever the live
+ * members change, the ring is rebuilt and the ownership listeners are notified, so that records move to their new
+ * owners.
+ *
+ * <p>If the membership cannot be renewed for a full member TTL, the other members will have dropped this instance
+ * and taken over its records, so this instance gives up all of its records until it can renew its membership
+ * again.</p>
+ */
+@Singleton
+final class ClusterLifecycle implements Lifecycle, RecordOwnership {
+	private final LongSupplier clock;
+	private final ScheduledExecutorService executorService;
+	private final long heartbeatInterval;
+	private final List<Runnable> listeners = new CopyOnWriteArrayList<>();
+	private final Logger logger = LoggerFactory.getLogger(getClass());
+	private final String memberId;
+	private final Membership membership;
+	private final long memberTtl;
+	private final int virtualNodes;
+
+	private long lastHeartbeat;
+	private Set<String> members = Collections.emptySet();
+	private volatile HashRing ring;
+
+	/**
+	 * Initializes the {@code ClusterLifecycle} with configuration variables and dependencies.
+	 *
+	 * @param memberId the identifier of this instance, unique among the members of the cluster
+	 * @param memberTtl the time after which a member that has not renewed its membership is dropped, in milliseconds
+	 * @param virtualNodes the number of points each member is placed at on the hash ring
+	 * @param membership the shared membership source of the cluster
+	 * @param executorService the scheduled executor service that will schedule membership renewal
+	 * @throws IllegalArgumentException if {@code virtualNodes} is not positive
+	 * @throws NullPointerException if a required dependency is {@code null}
+	 */
+	@Inject
+	ClusterLifecycle(@Named("memberId") String memberId, @Named("memberTtl") long memberTtl,
+			@Named("virtualNodes") int virtualNodes, Membership membership,
+			@Named("cluster") ScheduledExecutorService executorService) {
+		this(memberId, memberTtl, virtualNodes, membership, executorService,
+				() -> TimeUnit.NANOSECONDS.toMillis(System.nanoTime()));
+	}
+
+	/**
+	 * Initializes the {@code ClusterLifecycle} with configuration variables, dependencies, and a clock.
+	 *
+	 * @param memberId the identifier of this instance, unique among the members of the cluster
+	 * @param memberTtl the time after which a member that has not renewed its membership is dropped, in milliseconds
+	 * @param virtualNodes the number of points each member is placed at on the hash ring
+	 * @param membership the shared membership source of the cluster
+	 * @param executorService the scheduled executor service that will schedule membership renewal
+	 * @param clock a source of monotonic time in milliseconds
+	 * @throws IllegalArgumentException if {@code virtualNodes} is not positive
+	 * @throws NullPointerException if a required dependency is {@code null}
+	 */
+	ClusterLifecycle(String memberId, long memberTtl, int virtualNodes, Membership membership,
+			ScheduledExecutorService executorService, LongSupplier clock) {
+		this.clock = Objects.requireNonNull(clock);
+		this.executorService = Objects.requireNonNull(executorService);
+		this.heartbeatInterval = Math.max(1, memberTtl / 3);
+		this.memberId = Objects.requireNonNull(memberId);
+		this.membership = Objects.requireNonNull(membership);
+		this.memberTtl = memberTtl;
+		this.virtualNodes = virtualNodes;
+		this.ring = new HashRing(members, virtualNodes);
+	}
+
+	/**
+	 * Joins the cluster, and schedules membership renewal. The first heartbeat is made before this method returns, so
+	 * that the records this instance owns are known before discovery starts.
+	 */
+	@Override
+	public void start() {
+		logger.info("Joining cluster as {}, renewing membership every {} milliseconds", memberId, heartbeatInterval);
+		heartbeat();
+		executorService.scheduleAtFixedRate(this::heartbeat, heartbeatInterval, heartbeatInterval,
+				TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Stops membership renewal, and leaves the cluster so that the other members take over this instance's records.
+	 */
+	@Override
+	public void stop() {
+		stop(System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(heartbeatInterval));
+	}
+
+	/**
+	 * Stops membership renewal, waiting for a renewal in progress for up to one heartbeat interval or until the
+	 * deadline, and leaves the cluster so that the other members take over this instance's records.
+	 *
+	 * @param deadline the time by which to return, as a value of {@link System#nanoTime()}
+	 */
+	@Override
+	public void stop(long deadline) {
+		logger.info("Shutting down cluster membership renewal");
+		executorService.shutdown();
+		try {
+			if(!executorService.awaitTermination(Math.min(TimeUnit.MILLISECONDS.toNanos(heartbeatInterval),
+					deadline - System.nanoTime()), TimeUnit.NANOSECONDS)) {
+				logger.warn("Membership renewal is still running, stopping anyway");
+			}
+		} catch(InterruptedException e) {
+			logger.debug("Interrupted while waiting for termination of membership renewal");
+		}
+
+		try {
+			membership.leave();
+			logger.info("Left cluster as {}", memberId);
+		} catch(RuntimeException e) {
+			logger.warn("Failed to leave cluster, records will move when the membership expires", e);
+		}
+	}
+
+	@Override
+	public boolean owns(String key) {
+		return memberId.equals(ring.getOwner(key));
+	}
+
+	@Override
+	public void addListener(Runnable listener) {
+		listeners.add(Objects.requireNonNull(listener));
+	}
+
+	/**
+	 * Renews the membership of this instance, and rebuilds the hash ring if the live members have changed.
+	 */
+	synchronized void heartbeat() {
+		final long now = clock.getAsLong();
+		final Set<String> current;
+		try {
+			current = new TreeSet<>(membership.heartbeat());
+		} catch(RuntimeException e) {
+			if(!members.isEmpty() && now - lastHeartbeat >= memberTtl) {
+				logger.warn("Failed to renew cluster membership within {} milliseconds, giving up all records",
+						memberTtl, e);
+				setMembers(Collections.emptySet());
+			} else {
+				logger.warn("Failed to renew cluster membership", e);
+			}
+			return;
+		}
+
+		lastHeartbeat = now;
+		current.add(memberId);
+		if(!current.equals(members)) {
+			logger.info("Cluster members changed from {} to {}", members, current);
+			setMembers(Collections.unmodifiableSet(current));
+		}
+	}
+
+	/**
+	 * Returns the live members of the cluster, as of the last heartbeat.
+	 *
+	 * @return the identifiers of the live members, or an empty set if this instance is not a member
+	 */
+	synchronized Set<String> getMembers() {
+		return members;
+	}
+
+	private void setMembers(Set<String> members) {
+		this.members = members;
+		ring = new HashRing(members, virtualNodes);
+		for(Runnable listener : listeners) {
+			try {
+				listener.run();
+			} catch(RuntimeException e) {
+				logger.error("Failed to notify listener of cluster membership change", e);
+			}
+		}
+	}
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright 2015 Philip Cronje
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package net.za.slyfox.dyn53.cluster;
+
+import com.google.inject.AbstractModule;
+import com.google.inject.multibindings.Multibinder;
+import com.google.inject.name.Names;
+import net.za.slyfox.dyn53.bean.Lifecycle;
+import net.za.slyfox.dyn53.concurrent.NamedPoolThreadFactory;
+
+import java.util.Objects;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+/**
+ * Partitions records across the instances of a cluster, binding the {@link RecordOwnership} of this instance. This
+ * module overrides the ownership bound by the module of the DNS backend, under which an instance owns every record.
+ * The {@link Membership} implementation is bound by a separate module, such as {@link FileMembershipModule}.
+ */
+public final class ClusterModule extends AbstractModule {
+	public static final int DEFAULT_VIRTUAL_NODES = 128;
+
+	private final String memberId;
+	private final long memberTtl;
+	private final int virtualNodes;
+
+	/**
+	 * Initializes the module.
+	 *
+	 * @param memberId the identifier of this instance, unique among the members of the cluster
+	 * @param memberTtl the time after which a member that has not renewed its membership is dropped, in milliseconds
+	 * @param virtualNodes the number of points each member is placed at on the hash ring. More points spread records
+	 *                     more evenly, at the cost of memory.
+	 * @throws IllegalArgumentException if {@code virtualNodes} is not positive
+	 * @throws NullPointerException if {@code memberId} is {@code null}
+	 */
+	public ClusterModule(String memberId, long memberTtl, int virtualNodes) {
+		if(virtualNodes < 1) throw new IllegalArgumentException("At least one virtual node is required");
+		this.memberId = Objects.requireNonNull(memberId);
+		this.memberTtl = memberTtl;
+		this.virtualNodes = virtualNodes;
+	}
+
+	@Override
+	protected void configure() {
+		Multibinder.newSetBinder(binder(), Lifecycle.class).addBinding().to(ClusterLifecycle.class);
+		bind(RecordOwnership.class).to(ClusterLifecycle.class);
+
+		bind(ScheduledExecutorService.class).annotatedWith(Names.named("cluster"))
+				.toInstance(Executors.newSingleThreadScheduledExecutor(new NamedPoolThreadFactory("cluster")));
+		bind(String.class).annotatedWith(Names.named("memberId")).toInstance(memberId);
+		bind(Long.class).annotatedWith(Names.named("memberTtl")).toInstance(memberTtl);
+		bind(Integer.class).annotatedWith(Names.named("virtualNodes")).toInstance(virtualNodes);
+	}
+}
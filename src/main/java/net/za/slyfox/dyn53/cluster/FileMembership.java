@@ -0,0 +1,163 @@
+/*
+ * Copyright 2015 Philip Cronje
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package net.za.slyfox.dyn53.cluster;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+
+/**
+ * Implements a {@link Membership} stored in a local file, with one line per member holding its identifier and the wall
+ * clock time at which its membership expires. The file is read and rewritten under an exclusive lock, so that members
+ * do not overwrite each other's updates. This makes it suitable for instances on a single host, and for local
+ * testing.
+ */
+final class FileMembership implements Membership {
+	/** File locks are held by the whole process, so instances in one process also take turns on this lock. */
+	private static final Object PROCESS_LOCK = new Object();
+
+	private final LongSupplier clock;
+	private final Path filePath;
+	private final Logger logger = LoggerFactory.getLogger(getClass());
+	private final String memberId;
+	private final long memberTtl;
+
+	/**
+	 * Initializes the membership with the path of the membership file.
+	 *
+	 * @param filePath the path of the membership file, which is created if it does not exist
+	 * @param memberId the identifier of this instance
+	 * @param memberTtl the time for which a heartbeat renews the membership, in milliseconds
+	 * @throws IllegalArgumentException if {@code memberId} contains whitespace
+	 * @throws NullPointerException if a parameter is {@code null}
+	 */
+	@Inject
+	FileMembership(@Named("membershipFile") Path filePath, @Named("memberId") String memberId,
+			@Named("memberTtl") long memberTtl) {
+		this(filePath, memberId, memberTtl, System::currentTimeMillis);
+	}
+
+	/**
+	 * Initializes the membership with the path of the membership file and a clock.
+	 *
+	 * @param filePath the path of the membership file, which is created if it does not exist
+	 * @param memberId the identifier of this instance
+	 * @param memberTtl the time for which a heartbeat renews the membership, in milliseconds
+	 * @param clock a source of wall clock time in milliseconds since the epoch
+	 * @throws IllegalArgumentException if {@code memberId} contains whitespace
+	 * @throws NullPointerException if a parameter is {@code null}
+	 */
+	FileMembership(Path filePath, String memberId, long memberTtl, LongSupplier clock) {
+		this.clock = Objects.requireNonNull(clock);
+		this.filePath = Objects.requireNonNull(filePath);
+		this.memberId = Objects.requireNonNull(memberId);
+		this.memberTtl = memberTtl;
+		if(!memberId.matches("\\S+")) throw new IllegalArgumentException("Invalid member identifier: " + memberId);
+	}
+
+	/**
+	 * Renews the membership of this instance in the membership file, dropping expired members.
+	 *
+	 * @return the identifiers of the live members
+	 * @throws UncheckedIOException if the membership file could not be read or written
+	 */
+	@Override
+	public Set<String> heartbeat() {
+		final long now = clock.getAsLong();
+		final Map<String, Long> members = update(current -> {
+			current.values().removeIf(expiry -> expiry <= now);
+			current.put(memberId, now + memberTtl);
+		});
+		return Collections.unmodifiableSet(members.keySet());
+	}
+
+	/**
+	 * Removes this instance from the membership file.
+	 *
+	 * @throws UncheckedIOException if the membership file could not be read or written
+	 */
+	@Override
+	public void leave() {
+		update(current -> current.remove(memberId));
+	}
+
+	/**
+	 * Reads the membership file, applies a change to the members it lists, and writes it back, while holding an
+	 * exclusive lock on it. Lines that cannot be parsed are dropped.
+	 *
+	 * @param change the change to apply to the map of member identifiers to expiry times
+	 * @return the members after the change
+	 * @throws UncheckedIOException if the membership file could not be read or written
+	 */
+	private Map<String, Long> update(Consumer<Map<String, Long>> change) {
+		synchronized(PROCESS_LOCK) {
+			return lockAndUpdate(change);
+		}
+	}
+
+	private Map<String, Long> lockAndUpdate(Consumer<Map<String, Long>> change) {
+		try(FileChannel channel = FileChannel.open(filePath, StandardOpenOption.CREATE, StandardOpenOption.READ,
+				StandardOpenOption.WRITE)) {
+			final FileLock lock = channel.lock();
+			try {
+				return rewrite(channel, change);
+			} finally {
+				lock.release();
+			}
+		} catch(IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	private Map<String, Long> rewrite(FileChannel channel, Consumer<Map<String, Long>> change) throws IOException {
+		final ByteBuffer buffer = ByteBuffer.allocate((int)channel.size());
+		while(buffer.hasRemaining() && channel.read(buffer) >= 0) {
+			// Read the whole file
+		}
+
+		final Map<String, Long> members = new TreeMap<>();
+		for(String line : new String(buffer.array(), 0, buffer.position(), StandardCharsets.UTF_8).split("\n")) {
+			final String[] fields = line.trim().split("\\s+");
+			if(fields.length == 2 && fields[1].matches("\\d+")) {
+				members.put(fields[0], Long.valueOf(fields[1]));
+			} else if(!line.trim().isEmpty()) {
+				logger.warn("Ignoring invalid line in membership file {}: {}", filePath, line);
+			}
+		}
+		change.accept(members);
+
+		final StringBuilder content = new StringBuilder();
+		members.forEach((member, expiry) -> content.append(member).append(' ').append(expiry).append('\n'));
+		channel.truncate(0);
+		channel.write(ByteBuffer.wrap(content.toString().getBytes(StandardCharsets.UTF_8)), 0);
+		channel.force(false);
+		return members;
+	}
+}
@@ -0,0 +1,36 @@
+/*
+ * Copyright 2015 Philip Cronje
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package net.za.slyfox.dyn53.cluster;
+
+import com.google.inject.AbstractModule;
+import com.google.inject.name.Names;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Binds a {@link Membership} stored in a local file.
+ */
+public final class FileMembershipModule extends AbstractModule {
+	private final Path membershipFilePath;
+
+	public FileMembershipModule(String membershipFile) {
+		this.membershipFilePath = Paths.get(membershipFile);
+	}
+
+	@Override
+	protected void configure() {
+		bind(Membership.class).to(FileMembership.class);
+		bind(Path.class).annotatedWith(Names.named("membershipFile")).toInstance(membershipFilePath);
+	}
+}
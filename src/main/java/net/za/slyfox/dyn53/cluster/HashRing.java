@@ -0,0 +1,79 @@
+/*
+ * Copyright 2015 Philip Cronje
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package net.za.slyfox.dyn53.cluster;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * Implements a consistent-hash ring, which assigns each key to one of a set of members. Each member is placed on the
+ * ring at a number of pseudo-random points, its virtual nodes, and owns the keys that hash to the arc before each of
+ * its points. When a member joins or leaves, only the keys on the arcs it gains or loses change owner, which is about
+ * one in every {@code n} keys for {@code n} members. Instances are immutable.
+ */
+final class HashRing {
+	private final NavigableMap<Long, String> points = new TreeMap<>();
+
+	/**
+	 * Initializes the ring.
+	 *
+	 * @param members the identifiers of the members
+	 * @param virtualNodes the number of points each member is placed at
+	 * @throws IllegalArgumentException if {@code virtualNodes} is not positive
+	 */
+	HashRing(Collection<String> members, int virtualNodes) {
+		if(virtualNodes < 1) throw new IllegalArgumentException("At least one virtual node is required");
+		for(String member : members) {
+			for(int i = 0; i < virtualNodes; i++) {
+				// Of two members that collide on a point, the lesser takes it, so that every instance agrees
+				points.merge(hash(member + '#' + i), member, (a, b) -> (a.compareTo(b) <= 0) ? a : b);
+			}
+		}
+	}
+
+	/**
+	 * Returns the member that owns a key.
+	 *
+	 * @param key the key
+	 * @return the identifier of the owner, or {@code null} if the ring has no members
+	 */
+	String getOwner(String key) {
+		if(points.isEmpty()) return null;
+		final Map.Entry<Long, String> point = points.ceilingEntry(hash(key));
+		return ((point != null) ? point : points.firstEntry()).getValue();
+	}
+
+	/**
+	 * Hashes a string to a point on the ring, using the first eight bytes of its MD5 digest. MD5 is used for its
+	 * uniform distribution, which is the same on every instance, rather than for security.
+	 *
+	 * @param value the string to hash
+	 * @return the point on the ring
+	 */
+	static long hash(String value) {
+		final byte[] digest;
+		try {
+			digest = MessageDigest.getInstance("MD5").digest(value.getBytes(StandardCharsets.UTF_8));
+		} catch(NoSuchAlgorithmException e) {
+			throw new IllegalStateException("MD5 is not supported", e);
+		}
+		long hash = 0;
+		for(int i = 0; i < 8; i++) hash = (hash << 8) | (digest[i] & 0xff);
+		return hash;
+	}
+}
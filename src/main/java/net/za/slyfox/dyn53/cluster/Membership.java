@@ -0,0 +1,38 @@
+/*
+ * Copyright 2015 Philip Cronje
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package net.za.slyfox.dyn53.cluster;
+
+import java.util.Set;
+
+/**
+ * Interface for the shared source through which the instances of a cluster discover each other. Each instance
+ * announces itself periodically, and is considered to have left the cluster if it stops doing so for longer than the
+ * member TTL.
+ */
+public interface Membership {
+	/**
+	 * Announces that this instance is a live member for another member TTL, and returns the live members.
+	 *
+	 * @return the identifiers of the live members, including this instance
+	 * @throws RuntimeException if the membership could not be read or updated
+	 */
+	Set<String> heartbeat();
+
+	/**
+	 * Removes this instance from the membership, so that the other members take over its records without waiting for
+	 * its membership to expire.
+	 *
+	 * @throws RuntimeException if the membership could not be updated
+	 */
+	void leave();
+}
@@ -0,0 +1,35 @@
+/*
+ * Copyright 2015 Philip Cronje
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package net.za.slyfox.dyn53.cluster;
+
+/**
+ * Interface for deciding which records this instance updates, when records are partitioned across the instances of a
+ * cluster. An instance that is not part of a cluster owns every record.
+ */
+public interface RecordOwnership {
+	/**
+	 * Returns whether this instance is responsible for updating a record.
+	 *
+	 * @param key the key of the record
+	 * @return {@code true} if this instance owns the record
+	 */
+	boolean owns(String key);
+
+	/**
+	 * Registers a listener to be run whenever the ownership of records may have changed. The default implementation
+	 * ignores the listener, for ownership that never changes.
+	 *
+	 * @param listener the listener to run
+	 */
+	default void addListener(Runnable listener) { }
+}
@@ -0,0 +1,48 @@
+/*
+ * Copyright 2015 Philip Cronje
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package net.za.slyfox.dyn53.cluster;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import java.util.Collections;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Implements a {@link Membership} with a fixed list of members, which are always considered live. Records are still
+ * partitioned across the members, but are not taken over when a member fails, so this is a stand-in for local
+ * testing, or for deployments in which failed instances are replaced under the same identifier.
+ */
+final class StaticMembership implements Membership {
+	private final Set<String> members;
+
+	/**
+	 * Initializes the membership.
+	 *
+	 * @param members the identifiers of the members
+	 * @throws NullPointerException if {@code members} is {@code null}
+	 */
+	@Inject
+	StaticMembership(@Named("staticMembers") Set<String> members) {
+		this.members = Collections.unmodifiableSet(new TreeSet<>(members));
+	}
+
+	@Override
+	public Set<String> heartbeat() {
+		return members;
+	}
+
+	@Override
+	public void leave() {
+	}
+}
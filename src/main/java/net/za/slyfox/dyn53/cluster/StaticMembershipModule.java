@@ -0,0 +1,46 @@
+/*
+ * Copyright 2015 Philip Cronje
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package net.za.slyfox.dyn53.cluster;
+
+import com.google.inject.AbstractModule;
+import com.google.inject.TypeLiteral;
+import com.google.inject.name.Names;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Binds a {@link Membership} with a fixed list of members.
+ */
+public final class StaticMembershipModule extends AbstractModule {
+	private final Set<String> members;
+
+	/**
+	 * Initializes the module.
+	 *
+	 * @param members the identifiers of the members
+	 * @throws IllegalArgumentException if {@code members} is empty
+	 */
+	public StaticMembershipModule(Collection<String> members) {
+		this.members = Collections.unmodifiableSet(new LinkedHashSet<>(members));
+		if(this.members.isEmpty()) throw new IllegalArgumentException("At least one member is required");
+	}
+
+	@Override
+	protected void configure() {
+		bind(Membership.class).to(StaticMembership.class);
+		bind(new TypeLiteral<Set<String>>(){}).annotatedWith(Names.named("staticMembers")).toInstance(members);
+	}
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright 2015 Philip Cronje
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package net.za.slyfox.dyn53.credentials;
+
+import java.util.Objects;
+
+/**
+ * Describes how to obtain the credentials of an additional AWS account, either from a profile of its own, or by
+ * assuming a role in the account with the default credentials.
+ */
+public final class AccountCredentials {
+	private final String externalId;
+	private final String name;
+	private final String profileName;
+	private final String roleArn;
+
+	private AccountCredentials(String name, String profileName, String roleArn, String externalId) {
+		this.externalId = externalId;
+		this.name = Objects.requireNonNull(name);
+		this.profileName = profileName;
+		this.roleArn = roleArn;
+		if(this.name.isEmpty()) throw new IllegalArgumentException("Account name may not be empty");
+	}
+
+	/**
+	 * Describes an account whose credentials are read from a profile in the AWS credentials file.
+	 *
+	 * @param name the name the account is referred to by in the configuration
+	 * @param profileName the name of the profile
+	 * @return the account credentials
+	 * @throws IllegalArgumentException if {@code name} is empty
+	 * @throws NullPointerException if a parameter is {@code null}
+	 */
+	public static AccountCredentials profile(String name, String profileName) {
+		return new AccountCredentials(name, Objects.requireNonNull(profileName), null, null);
+	}
+
+	/**
+	 * Describes an account whose credentials are obtained by assuming a role with the default credentials.
+	 *
+	 * @param name the name the account is referred to by in the configuration
+	 * @param roleArn the ARN of the role to assume
+	 * @param externalId the external ID required by the role's trust policy, or {@code null} if there is none
+	 * @return the account credentials
+	 * @throws IllegalArgumentException if {@code name} is empty
+	 * @throws NullPointerException if {@code name} or {@code roleArn} is {@code null}
+	 */
+	public static AccountCredentials role(String name, String roleArn, String externalId) {
+		return new AccountCredentials(name, null, Objects.requireNonNull(roleArn), externalId);
+	}
+
+	String getExternalId() {
+		return externalId;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	String getProfileName() {
+		return profileName;
+	}
+
+	String getRoleArn() {
+		return roleArn;
+	}
+
+	@Override
+	public String toString() {
+		return "AccountCredentials{name=" + name + ", profileName=" + profileName + ", roleArn=" + roleArn + '}';
+	}
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright 2015 Philip Cronje
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package net.za.slyfox.dyn53.credentials;
+
+import com.amazonaws.auth.AWSCredentialsProvider;
+import net.za.slyfox.dyn53.bean.Lifecycle;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
+
+/**
+ * Provides the credentials of each configured AWS account. The credentials provider of an account is created and
+ * started on first use, so that accounts without records to update never fetch credentials, and is stopped with this
+ * lifecycle.
+ */
+public final class AccountCredentialsProviders implements Lifecycle {
+	private final AWSCredentialsProvider defaultProvider;
+	private final Logger logger = LoggerFactory.getLogger(getClass());
+	private final Function<AccountCredentials, RefreshingCredentialsProvider> providerFactory;
+	private final Map<String, AccountCredentials> accounts = new LinkedHashMap<>();
+	private final Map<String, RefreshingCredentialsProvider> providers = new LinkedHashMap<>();
+
+	private boolean stopped;
+
+	/**
+	 * Initializes the registry.
+	 *
+	 * @param accounts the additional accounts
+	 * @param defaultProvider the provider of the default credentials
+	 * @param providerFactory creates the credentials provider of an account
+	 * @throws IllegalArgumentException if two accounts have the same name
+	 * @throws NullPointerException if a parameter is {@code null}
+	 */
+	AccountCredentialsProviders(Collection<AccountCredentials> accounts, AWSCredentialsProvider defaultProvider,
+			Function<AccountCredentials, RefreshingCredentialsProvider> providerFactory) {
+		this.defaultProvider = Objects.requireNonNull(defaultProvider);
+		this.providerFactory = Objects.requireNonNull(providerFactory);
+		for(AccountCredentials account : accounts) {
+			if(this.accounts.put(account.getName(), account) != null) {
+				throw new IllegalArgumentException("Duplicate account " + account.getName());
+			}
+		}
+	}
+
+	/**
+	 * Returns the credentials provider of an account, creating and starting it on first use.
+	 *
+	 * @param account the name of the account, or {@code null} for the default credentials
+	 * @return the credentials provider of the account
+	 * @throws IllegalArgumentException if the account is not configured
+	 * @throws IllegalStateException if the registry has been stopped
+	 */
+	public synchronized AWSCredentialsProvider get(String account) {
+		if(account == null) return defaultProvider;
+		if(stopped) throw new IllegalStateException("Account credentials have been stopped");
+
+		RefreshingCredentialsProvider provider = providers.get(account);
+		if(provider == null) {
+			final AccountCredentials accountCredentials = accounts.get(account);
+			if(accountCredentials == null) throw new IllegalArgumentException("Unknown account " + account);
+			logger.info("Starting credentials provider of account {}", account);
+			provider = providerFactory.apply(accountCredentials);
+			provider.start();
+			providers.put(account, provider);
+		}
+		return provider;
+	}
+
+	/**
+	 * Returns whether an account is configured.
+	 *
+	 * @param account the name of the account
+	 * @return {@code true} if the account is configured
+	 */
+	public boolean contains(String account) {
+		return accounts.containsKey(account);
+	}
+
+	@Override
+	public void start() {
+		logger.debug("{} additional accounts configured", accounts.size());
+	}
+
+	/**
+	 * Stops the credentials provider of every account that has been used.
+	 */
+	@Override
+	public synchronized void stop() {
+		stopped = true;
+		providers.values().forEach(RefreshingCredentialsProvider::stop);
+		providers.clear();
+	}
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright 2015 Philip Cronje
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package net.za.slyfox.dyn53.credentials;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.DefaultRequest;
+import com.amazonaws.auth.AWS4Signer;
+import com.amazonaws.auth.AWSCredentialsProvider;
+import com.amazonaws.http.HttpMethodName;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Implements a {@link CredentialSource} that obtains the temporary credentials of an IAM role through the STS
+ * {@code AssumeRole} action, signed with the credentials of another provider. This allows a single set of base
+ * credentials to act in several AWS accounts, each through a role that trusts the base principal.
+ */
+final class AssumeRoleCredentialSource implements CredentialSource {
+	static final URI DEFAULT_ENDPOINT = URI.create("https://sts.amazonaws.com/");
+
+	private final AWSCredentialsProvider baseCredentials;
+	private final URI endpoint;
+	private final String externalId;
+	private final String roleArn;
+	private final String sessionName;
+	private final int timeout;
+
+	/**
+	 * Initializes the source.
+	 *
+	 * @param roleArn the ARN of the role to assume
+	 * @param externalId the external ID required by the role's trust policy, or {@code null} if there is none
+	 * @param sessionName the name of the role session
+	 * @param baseCredentials the provider of the credentials used to sign {@code AssumeRole} requests
+	 * @param endpoint the STS endpoint to send requests to
+	 * @param timeout the connect and read timeout of each request, in milliseconds
+	 * @throws NullPointerException if a required parameter is {@code null}
+	 */
+	AssumeRoleCredentialSource(String roleArn, String externalId, String sessionName,
+			AWSCredentialsProvider baseCredentials, URI endpoint, int timeout) {
+		this.baseCredentials = Objects.requireNonNull(baseCredentials);
+		this.endpoint = Objects.requireNonNull(endpoint);
+		this.externalId = externalId;
+		this.roleArn = Objects.requireNonNull(roleArn);
+		this.sessionName = Objects.requireNonNull(sessionName);
+		this.timeout = timeout;
+	}
+
+	@Override
+	public ExpiringCredentials fetch() throws IOException {
+		final DefaultRequest<Void> request = new DefaultRequest<>("sts");
+		request.setEndpoint(endpoint);
+		request.setHttpMethod(HttpMethodName.GET);
+		request.addParameter("Action", "AssumeRole");
+		request.addParameter("Version", "2011-06-15");
+		request.addParameter("RoleArn", roleArn);
+		request.addParameter("RoleSessionName", sessionName);
+		if(externalId != null) request.addParameter("ExternalId", externalId);
+
+		final AWS4Signer signer = new AWS4Signer();
+		signer.setServiceName("sts");
+		signer.setRegionName("us-east-1");
+		try {
+			signer.sign(request, baseCredentials.getCredentials());
+		} catch(AmazonClientException e) {
+			throw new IOException("No base credentials to assume role " + roleArn, e);
+		}
+
+		final URI uri = endpoint.resolve("?" + encodeQuery(request.getParameters()));
+		final HttpURLConnection connection = (HttpURLConnection)uri.toURL().openConnection();
+		try {
+			connection.setConnectTimeout(timeout);
+			connection.setReadTimeout(timeout);
+			request.getHeaders().forEach((name, value) -> {
+				if(!name.equalsIgnoreCase("Host")) connection.setRequestProperty(name, value);
+			});
+			final int status = connection.getResponseCode();
+			if(status != HttpURLConnection.HTTP_OK) {
+				throw new IOException("AssumeRole for " + roleArn + " returned HTTP " + status);
+			}
+			try(InputStream input = connection.getInputStream()) {
+				return WebIdentityCredentialSource.parse(input, "AssumeRole");
+			}
+		} finally {
+			connection.disconnect();
+		}
+	}
+
+	/**
+	 * Encodes request parameters as a query string. Spaces are encoded as {@code %20} rather than {@code +}, which is
+	 * the form Signature Version 4 canonicalizes them to.
+	 *
+	 * @param parameters the parameters to encode
+	 * @return the encoded query string, without a leading {@code ?}
+	 * @throws IOException if UTF-8 is not supported
+	 */
+	private static String encodeQuery(Map<String, String> parameters) throws IOException {
+		final StringBuilder query = new StringBuilder();
+		for(Map.Entry<String, String> parameter : parameters.entrySet()) {
+			if(query.length() > 0) query.append('&');
+			query.append(URLEncoder.encode(parameter.getKey(), "UTF-8").replace("+", "%20")).append('=')
+					.append(URLEncoder.encode(parameter.getValue(), "UTF-8").replace("+", "%20"));
+		}
+		return query.toString();
+	}
+
+	@Override
+	public String toString() {
+		return "role " + roleArn;
+	}
+}
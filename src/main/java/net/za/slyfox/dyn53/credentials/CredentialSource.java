@@ -0,0 +1,29 @@
+/*
+ * Copyright 2015 Philip Cronje
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package net.za.slyfox.dyn53.credentials;
+
+import java.io.IOException;
+
+/**
+ * Interface for a source of AWS credentials. Fetching credentials may perform file or network I/O, and is only done
+ * by {@link RefreshingCredentialsProvider} on its background refresh thread.
+ */
+interface CredentialSource {
+	/**
+	 * Fetches the current credentials from this source.
+	 *
+	 * @return the credentials, and the time at which they expire
+	 * @throws IOException if this source is not configured, or the credentials could not be fetched
+	 */
+	ExpiringCredentials fetch() throws IOException;
+}
@@ -0,0 +1,158 @@
+/*
+ * Copyright 2015 Philip Cronje
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package net.za.slyfox.dyn53.credentials;
+
+import com.amazonaws.auth.AWSCredentialsProvider;
+import com.google.inject.AbstractModule;
+import com.google.inject.Provides;
+import com.google.inject.multibindings.Multibinder;
+import net.za.slyfox.dyn53.bean.Lifecycle;
+import net.za.slyfox.dyn53.concurrent.NamedPoolThreadFactory;
+
+import javax.inject.Singleton;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Binds the {@link AWSCredentialsProvider} used to sign requests to AWS, backed by a chain of credential sources that
+ * is refreshed in the background, and the {@link AccountCredentialsProviders} of any additional accounts.
+ */
+public final class CredentialsModule extends AbstractModule {
+	private static final int INSTANCE_METADATA_TIMEOUT = 1000;
+	private static final long RETRY_DELAY = TimeUnit.SECONDS.toMillis(30);
+	private static final int STS_TIMEOUT = 10000;
+
+	private final List<AccountCredentials> accounts;
+	private final long refreshInterval;
+	private final long refreshMargin;
+	private final List<CredentialSource> sources = new ArrayList<>();
+
+	/**
+	 * Initializes the module with the credential configuration.
+	 *
+	 * <p>The {@code webIdentity} source is configured through the {@code AWS_ROLE_ARN},
+	 * {@code AWS_WEB_IDENTITY_TOKEN_FILE} and optional {@code AWS_ROLE_SESSION_NAME} environment variables, and the
+	 * {@code instanceMetadata} source through the optional {@code AWS_EC2_METADATA_SERVICE_ENDPOINT} environment
+	 * variable, as with the AWS command line tools.</p>
+	 *
+	 * @param sourceNames the credential sources to try, in order of preference: any of {@code environment},
+	 *                    {@code webIdentity}, {@code profile} and {@code instanceMetadata}
+	 * @param profileName the name of the profile used by the {@code profile} source
+	 * @param refreshMargin the time before expiry at which temporary credentials are refreshed, in milliseconds
+	 * @param refreshInterval the maximum time between refreshes, in milliseconds
+	 * @throws IllegalArgumentException if {@code sourceNames} is empty, or contains an unsupported source
+	 */
+	public CredentialsModule(List<String> sourceNames, String profileName, long refreshMargin,
+			long refreshInterval) {
+		this(sourceNames, profileName, refreshMargin, refreshInterval, Collections.emptyList());
+	}
+
+	/**
+	 * Initializes the module with the credential configuration, and the credentials of additional accounts. Roles
+	 * of additional accounts are assumed with the default credentials.
+	 *
+	 * @param sourceNames the credential sources to try for the default credentials, in order of preference: any of
+	 *                    {@code environment}, {@code webIdentity}, {@code profile} and {@code instanceMetadata}
+	 * @param profileName the name of the profile used by the {@code profile} source
+	 * @param refreshMargin the time before expiry at which temporary credentials are refreshed, in milliseconds
+	 * @param refreshInterval the maximum time between refreshes, in milliseconds
+	 * @param accounts the credentials of additional accounts
+	 * @throws IllegalArgumentException if {@code sourceNames} is empty, or contains an unsupported source
+	 */
+	public CredentialsModule(List<String> sourceNames, String profileName, long refreshMargin, long refreshInterval,
+			List<AccountCredentials> accounts) {
+		this.accounts = new ArrayList<>(accounts);
+		this.refreshInterval = refreshInterval;
+		this.refreshMargin = refreshMargin;
+		for(String sourceName : sourceNames) {
+			switch(sourceName) {
+			case "environment":
+				sources.add(new EnvironmentCredentialSource());
+				break;
+			case "webIdentity":
+				sources.add(createWebIdentitySource());
+				break;
+			case "profile":
+				sources.add(new ProfileCredentialSource(profileName));
+				break;
+			case "instanceMetadata":
+				final String endpoint = System.getenv("AWS_EC2_METADATA_SERVICE_ENDPOINT");
+				sources.add(new InstanceMetadataCredentialSource((endpoint == null)
+						? InstanceMetadataCredentialSource.DEFAULT_ENDPOINT : URI.create(endpoint),
+						INSTANCE_METADATA_TIMEOUT));
+				break;
+			default:
+				throw new IllegalArgumentException("Unsupported credential source: " + sourceName);
+			}
+		}
+		if(sources.isEmpty()) throw new IllegalArgumentException("At least one credential source is required");
+	}
+
+	@Override
+	protected void configure() {
+		final Multibinder<Lifecycle> lifecycles = Multibinder.newSetBinder(binder(), Lifecycle.class);
+		lifecycles.addBinding().to(RefreshingCredentialsProvider.class);
+		lifecycles.addBinding().to(AccountCredentialsProviders.class);
+		bind(AWSCredentialsProvider.class).to(RefreshingCredentialsProvider.class);
+	}
+
+	@Provides
+	@Singleton
+	RefreshingCredentialsProvider refreshingCredentialsProvider() {
+		return new RefreshingCredentialsProvider(sources, refreshMargin, refreshInterval, RETRY_DELAY,
+				Executors.newSingleThreadScheduledExecutor(new NamedPoolThreadFactory("credentials")),
+				System::currentTimeMillis);
+	}
+
+	@Provides
+	@Singleton
+	AccountCredentialsProviders accountCredentialsProviders(RefreshingCredentialsProvider defaultProvider) {
+		return new AccountCredentialsProviders(accounts, defaultProvider, account -> {
+			final CredentialSource source = (account.getRoleArn() != null)
+					? new AssumeRoleCredentialSource(account.getRoleArn(), account.getExternalId(), "dyn53",
+							defaultProvider, AssumeRoleCredentialSource.DEFAULT_ENDPOINT, STS_TIMEOUT)
+					: new ProfileCredentialSource(account.getProfileName());
+			return new RefreshingCredentialsProvider(Collections.singletonList(source), refreshMargin,
+					refreshInterval, RETRY_DELAY,
+					Executors.newSingleThreadScheduledExecutor(new NamedPoolThreadFactory("credentials")),
+					System::currentTimeMillis);
+		});
+	}
+
+	/**
+	 * Creates the web identity source from the environment, or a source that always fails if the environment does
+	 * not configure one, so that the remaining sources in the chain are still tried.
+	 *
+	 * @return the web identity credential source
+	 */
+	private static CredentialSource createWebIdentitySource() {
+		final String roleArn = System.getenv("AWS_ROLE_ARN");
+		final String tokenFile = System.getenv("AWS_WEB_IDENTITY_TOKEN_FILE");
+		if(roleArn == null || tokenFile == null) {
+			return () -> {
+				throw new IOException("AWS_ROLE_ARN and AWS_WEB_IDENTITY_TOKEN_FILE are not set");
+			};
+		}
+
+		final String sessionName = System.getenv("AWS_ROLE_SESSION_NAME");
+		return new WebIdentityCredentialSource(roleArn, Paths.get(tokenFile),
+				(sessionName == null) ? "dyn53" : sessionName, WebIdentityCredentialSource.DEFAULT_ENDPOINT,
+				STS_TIMEOUT);
+	}
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright 2015 Philip Cronje
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package net.za.slyfox.dyn53.credentials;
+
+import com.amazonaws.auth.BasicAWSCredentials;
+import com.amazonaws.auth.BasicSessionCredentials;
+
+import java.io.IOException;
+import java.util.Objects;
+import java.util.function.UnaryOperator;
+
+/**
+ * Implements a {@link CredentialSource} that reads credentials from the {@code AWS_ACCESS_KEY_ID},
+ * {@code AWS_SECRET_ACCESS_KEY} and optional {@code AWS_SESSION_TOKEN} environment variables.
+ */
+final class EnvironmentCredentialSource implements CredentialSource {
+	private final UnaryOperator<String> environment;
+
+	EnvironmentCredentialSource() {
+		this(System::getenv);
+	}
+
+	/**
+	 * Initializes the source with the environment to read variables from.
+	 *
+	 * @param environment a function returning the value of an environment variable, or {@code null} if it is unset
+	 */
+	EnvironmentCredentialSource(UnaryOperator<String> environment) {
+		this.environment = Objects.requireNonNull(environment);
+	}
+
+	@Override
+	public ExpiringCredentials fetch() throws IOException {
+		final String accessKeyId = environment.apply("AWS_ACCESS_KEY_ID");
+		final String secretKey = environment.apply("AWS_SECRET_ACCESS_KEY");
+		if(accessKeyId == null || secretKey == null) {
+			throw new IOException("AWS_ACCESS_KEY_ID and AWS_SECRET_ACCESS_KEY are not set");
+		}
+
+		final String sessionToken = environment.apply("AWS_SESSION_TOKEN");
+		return new ExpiringCredentials((sessionToken == null)
+				? new BasicAWSCredentials(accessKeyId, secretKey)
+				: new BasicSessionCredentials(accessKeyId, secretKey, sessionToken), ExpiringCredentials.NEVER);
+	}
+
+	@Override
+	public String toString() {
+		return "environment";
+	}
+}
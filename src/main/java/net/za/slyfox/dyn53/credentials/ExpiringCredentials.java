@@ -0,0 +1,50 @@
+/*
+ * Copyright 2015 Philip Cronje
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package net.za.slyfox.dyn53.credentials;
+
+import com.amazonaws.auth.AWSCredentials;
+
+import java.util.Objects;
+
+/**
+ * Associates a set of AWS credentials with the time at which they expire.
+ */
+final class ExpiringCredentials {
+	/**
+	 * The expiration time of credentials that do not expire, such as long-term access keys.
+	 */
+	static final long NEVER = Long.MAX_VALUE;
+
+	private final AWSCredentials credentials;
+	private final long expiration;
+
+	/**
+	 * Initializes the instance.
+	 *
+	 * @param credentials the credentials
+	 * @param expiration the time at which the credentials expire, in milliseconds since the epoch, or {@link #NEVER}
+	 * @throws NullPointerException if {@code credentials} is {@code null}
+	 */
+	ExpiringCredentials(AWSCredentials credentials, long expiration) {
+		this.credentials = Objects.requireNonNull(credentials);
+		this.expiration = expiration;
+	}
+
+	AWSCredentials getCredentials() {
+		return credentials;
+	}
+
+	long getExpiration() {
+		return expiration;
+	}
+}
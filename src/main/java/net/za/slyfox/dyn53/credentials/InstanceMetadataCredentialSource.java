@@ -0,0 +1,121 @@
+/*
+ * Copyright 2015 Philip Cronje
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package net.za.slyfox.dyn53.credentials;
+
+import com.amazonaws.auth.BasicSessionCredentials;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.Objects;
+
+/**
+ * Implements a {@link CredentialSource} that obtains the temporary credentials of the IAM role attached to an EC2
+ * instance from the instance metadata service, using session-oriented (IMDSv2) requests.
+ */
+final class InstanceMetadataCredentialSource implements CredentialSource {
+	static final URI DEFAULT_ENDPOINT = URI.create("http://169.254.169.254");
+
+	private static final String CREDENTIALS_PATH = "/latest/meta-data/iam/security-credentials/";
+	private static final String TOKEN_HEADER = "X-aws-ec2-metadata-token";
+	private static final String TOKEN_PATH = "/latest/api/token";
+	private static final String TOKEN_TTL_HEADER = "X-aws-ec2-metadata-token-ttl-seconds";
+
+	private final URI endpoint;
+	private final ObjectMapper objectMapper = new ObjectMapper();
+	private final int timeout;
+
+	/**
+	 * Initializes the source.
+	 *
+	 * @param endpoint the base URI of the instance metadata service
+	 * @param timeout the connect and read timeout of each request, in milliseconds
+	 * @throws NullPointerException if {@code endpoint} is {@code null}
+	 */
+	InstanceMetadataCredentialSource(URI endpoint, int timeout) {
+		this.endpoint = Objects.requireNonNull(endpoint);
+		this.timeout = timeout;
+	}
+
+	@Override
+	public ExpiringCredentials fetch() throws IOException {
+		final String token = request("PUT", TOKEN_PATH, TOKEN_TTL_HEADER, "300").trim();
+
+		final String roles = request("GET", CREDENTIALS_PATH, TOKEN_HEADER, token).trim();
+		if(roles.isEmpty()) throw new IOException("No IAM role is attached to the instance");
+		final String role = roles.split("\n", 2)[0].trim();
+
+		final JsonNode document = objectMapper.readTree(request("GET", CREDENTIALS_PATH + role, TOKEN_HEADER, token));
+		if(!"Success".equals(document.path("Code").asText())) {
+			throw new IOException("Instance metadata service returned " + document.path("Code").asText());
+		}
+		try {
+			return new ExpiringCredentials(new BasicSessionCredentials(document.path("AccessKeyId").asText(),
+					document.path("SecretAccessKey").asText(), document.path("Token").asText()),
+					Instant.parse(document.path("Expiration").asText()).toEpochMilli());
+		} catch(DateTimeParseException e) {
+			throw new IOException("Invalid credential expiration: " + document.path("Expiration").asText(), e);
+		}
+	}
+
+	/**
+	 * Makes a request to the instance metadata service.
+	 *
+	 * @param method the HTTP method of the request
+	 * @param path the path of the resource to request
+	 * @param header the name of the header to send with the request
+	 * @param value the value of {@code header}
+	 * @return the response body
+	 * @throws IOException if the request fails, or the response is not successful
+	 */
+	private String request(String method, String path, String header, String value) throws IOException {
+		final HttpURLConnection connection = (HttpURLConnection)endpoint.resolve(path).toURL().openConnection();
+		try {
+			connection.setConnectTimeout(timeout);
+			connection.setReadTimeout(timeout);
+			connection.setInstanceFollowRedirects(false);
+			connection.setRequestMethod(method);
+			connection.setRequestProperty(header, value);
+
+			final int status = connection.getResponseCode();
+			if(status != HttpURLConnection.HTTP_OK) {
+				throw new IOException("Instance metadata request for " + path + " returned HTTP " + status);
+			}
+			try(InputStream input = connection.getInputStream()) {
+				return readFully(input);
+			}
+		} finally {
+			connection.disconnect();
+		}
+	}
+
+	static String readFully(InputStream input) throws IOException {
+		final ByteArrayOutputStream output = new ByteArrayOutputStream();
+		final byte[] buffer = new byte[4096];
+		int read;
+		while((read = input.read(buffer)) >= 0) output.write(buffer, 0, read);
+		return new String(output.toByteArray(), StandardCharsets.UTF_8);
+	}
+
+	@Override
+	public String toString() {
+		return "instance metadata at " + endpoint;
+	}
+}
@@ -0,0 +1,52 @@
+/*
+ * Copyright 2015 Philip Cronje
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package net.za.slyfox.dyn53.credentials;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.auth.profile.ProfilesConfigFile;
+
+import java.io.IOException;
+import java.util.Objects;
+
+/**
+ * Implements a {@link CredentialSource} that reads long-term credentials from a profile in the AWS credentials file.
+ * The file is re-read on every fetch, so that rotated keys are picked up on the next refresh.
+ */
+final class ProfileCredentialSource implements CredentialSource {
+	private final String profileName;
+
+	/**
+	 * Initializes the source.
+	 *
+	 * @param profileName the name of the profile to read credentials from
+	 * @throws NullPointerException if {@code profileName} is {@code null}
+	 */
+	ProfileCredentialSource(String profileName) {
+		this.profileName = Objects.requireNonNull(profileName);
+	}
+
+	@Override
+	public ExpiringCredentials fetch() throws IOException {
+		try {
+			return new ExpiringCredentials(new ProfilesConfigFile().getCredentials(profileName),
+					ExpiringCredentials.NEVER);
+		} catch(AmazonClientException | IllegalArgumentException e) {
+			throw new IOException("Failed to read credentials of profile " + profileName, e);
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "profile " + profileName;
+	}
+}
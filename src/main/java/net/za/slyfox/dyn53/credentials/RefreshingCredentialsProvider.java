@@ -0,0 +1,196 @@
+/*
+ * Copyright 2015 Philip Cronje
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package net.za.slyfox.dyn53.credentials;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.auth.AWSCredentials;
+import com.amazonaws.auth.AWSCredentialsProvider;
+import net.za.slyfox.dyn53.bean.Lifecycle;
+import net.za.slyfox.dyn53.jfr.CredentialFetchEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Implements an {@link AWSCredentialsProvider} that serves cached credentials, and refreshes them from a chain of
+ * {@link CredentialSource}s on a background thread. Temporary credentials are refreshed a configurable margin before
+ * they expire, and long-term credentials at a fixed interval, so that requests to AWS never wait on credential I/O.
+ *
+ * <p>The first source in the chain that yields credentials is used. If every source fails, the previous credentials
+ * are retained and the refresh is retried after a short delay. Each attempt to fetch credentials from a source is
+ * recorded as a {@link CredentialFetchEvent}.</p>
+ */
+final class RefreshingCredentialsProvider implements AWSCredentialsProvider, Lifecycle {
+	private final LongSupplier clock;
+	private final ScheduledExecutorService executorService;
+	private final Logger logger = LoggerFactory.getLogger(getClass());
+	private final long refreshInterval;
+	private final long refreshMargin;
+	private final long retryDelay;
+	private final List<CredentialSource> sources;
+
+	private volatile ExpiringCredentials credentials;
+	private ScheduledFuture<?> scheduledRefresh;
+
+	/**
+	 * Initializes the provider.
+	 *
+	 * @param sources the credential sources to try, in order of preference
+	 * @param refreshMargin the time before expiry at which temporary credentials are refreshed, in milliseconds
+	 * @param refreshInterval the maximum time between refreshes, in milliseconds
+	 * @param retryDelay the time to wait before retrying a failed refresh, in milliseconds
+	 * @param executorService the scheduled executor service that runs refreshes
+	 * @param clock a source of the current time, in milliseconds since the epoch
+	 * @throws IllegalArgumentException if {@code sources} is empty
+	 * @throws NullPointerException if a parameter is {@code null}
+	 */
+	RefreshingCredentialsProvider(List<CredentialSource> sources, long refreshMargin, long refreshInterval,
+			long retryDelay, ScheduledExecutorService executorService, LongSupplier clock) {
+		this.clock = Objects.requireNonNull(clock);
+		this.executorService = Objects.requireNonNull(executorService);
+		this.refreshInterval = refreshInterval;
+		this.refreshMargin = refreshMargin;
+		this.retryDelay = retryDelay;
+		this.sources = new ArrayList<>(sources);
+		if(this.sources.isEmpty()) throw new IllegalArgumentException("At least one credential source is required");
+	}
+
+	/**
+	 * Returns the cached credentials. Credentials are only fetched by the calling thread if none have been fetched
+	 * yet, which can only happen if this method is called before the provider has been started.
+	 *
+	 * @return the current credentials
+	 * @throws AmazonClientException if no credentials have been fetched, and none could be
+	 */
+	@Override
+	public AWSCredentials getCredentials() {
+		ExpiringCredentials current = credentials;
+		if(current == null) {
+			synchronized(this) {
+				current = credentials;
+				if(current == null) current = fetch();
+			}
+		}
+		return current.getCredentials();
+	}
+
+	/**
+	 * Requests an immediate background refresh of the credentials, without waiting for it to complete.
+	 */
+	@Override
+	public void refresh() {
+		schedule(0);
+	}
+
+	/**
+	 * Fetches the initial credentials, and schedules their refresh. A failure to fetch is logged and retried in the
+	 * background, so that a credential source that is temporarily unavailable does not prevent startup.
+	 */
+	@Override
+	public void start() {
+		try {
+			synchronized(this) {
+				fetch();
+			}
+			schedule(getRefreshDelay());
+		} catch(AmazonClientException e) {
+			logger.warn("Failed to fetch initial credentials, retrying in {} ms", retryDelay, e);
+			schedule(retryDelay);
+		}
+	}
+
+	/**
+	 * Stops refreshing the credentials.
+	 */
+	@Override
+	public void stop() {
+		logger.info("Shutting down credential refresh");
+		executorService.shutdownNow();
+	}
+
+	/**
+	 * Fetches credentials from the first source in the chain that yields them, and caches them. Must be called while
+	 * holding this object's monitor.
+	 *
+	 * @return the fetched credentials
+	 * @throws AmazonClientException if no source yields credentials
+	 */
+	private ExpiringCredentials fetch() {
+		final AmazonClientException failure = new AmazonClientException("Unable to fetch credentials from " + sources);
+		for(CredentialSource source : sources) {
+			final CredentialFetchEvent event = new CredentialFetchEvent();
+			event.begin();
+			event.source = source.toString();
+			try {
+				final ExpiringCredentials fetched = source.fetch();
+				event.outcome = "SUCCESS";
+				event.commit();
+				logger.debug("Fetched credentials from {}", source);
+				credentials = fetched;
+				return fetched;
+			} catch(IOException | RuntimeException e) {
+				event.outcome = "FAILED";
+				event.commit();
+				logger.debug("Failed to fetch credentials from {}", source, e);
+				failure.addSuppressed(e);
+			}
+		}
+		throw failure;
+	}
+
+	/**
+	 * Refreshes the credentials on the background thread, and schedules the next refresh.
+	 */
+	private void backgroundRefresh() {
+		try {
+			synchronized(this) {
+				fetch();
+			}
+			schedule(getRefreshDelay());
+		} catch(AmazonClientException e) {
+			logger.warn("Failed to refresh credentials, retrying in {} ms", retryDelay, e);
+			schedule(retryDelay);
+		}
+	}
+
+	/**
+	 * Returns the delay until the current credentials should next be refreshed. The delay is never shorter than the
+	 * retry delay, so that credentials issued close to their expiry do not cause a tight refresh loop.
+	 *
+	 * @return the refresh delay, in milliseconds
+	 */
+	long getRefreshDelay() {
+		final long expiration = credentials.getExpiration();
+		if(expiration == ExpiringCredentials.NEVER) return refreshInterval;
+		return Math.max(retryDelay, Math.min(refreshInterval, expiration - refreshMargin - clock.getAsLong()));
+	}
+
+	/**
+	 * Replaces any pending refresh with one after the given delay.
+	 *
+	 * @param delay the delay before the refresh, in milliseconds
+	 */
+	private synchronized void schedule(long delay) {
+		if(executorService.isShutdown()) return;
+		if(scheduledRefresh != null) scheduledRefresh.cancel(false);
+		scheduledRefresh = executorService.schedule(this::backgroundRefresh, delay, TimeUnit.MILLISECONDS);
+	}
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright 2015 Philip Cronje
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package net.za.slyfox.dyn53.credentials;
+
+import com.amazonaws.auth.BasicSessionCredentials;
+import org.w3c.dom.Document;
+import org.w3c.dom.NodeList;
+import org.xml.sax.SAXException;
+
+import javax.xml.XMLConstants;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.Objects;
+
+/**
+ * Implements a {@link CredentialSource} that exchanges an OpenID Connect token, read from a file, for the temporary
+ * credentials of an IAM role through the STS {@code AssumeRoleWithWebIdentity} action. The action does not need to be
+ * signed, so this source has no dependency on other credentials. The token file is re-read on every fetch, since the
+ * token is typically rotated by the platform that writes it.
+ */
+final class WebIdentityCredentialSource implements CredentialSource {
+	static final URI DEFAULT_ENDPOINT = URI.create("https://sts.amazonaws.com/");
+
+	private final URI endpoint;
+	private final String roleArn;
+	private final String sessionName;
+	private final int timeout;
+	private final Path tokenFile;
+
+	/**
+	 * Initializes the source.
+	 *
+	 * @param roleArn the ARN of the role to assume
+	 * @param tokenFile the file containing the web identity token
+	 * @param sessionName the name of the role session
+	 * @param endpoint the STS endpoint to send requests to
+	 * @param timeout the connect and read timeout of each request, in milliseconds
+	 * @throws NullPointerException if a parameter is {@code null}
+	 */
+	WebIdentityCredentialSource(String roleArn, Path tokenFile, String sessionName, URI endpoint, int timeout) {
+		this.endpoint = Objects.requireNonNull(endpoint);
+		this.roleArn = Objects.requireNonNull(roleArn);
+		this.sessionName = Objects.requireNonNull(sessionName);
+		this.timeout = timeout;
+		this.tokenFile = Objects.requireNonNull(tokenFile);
+	}
+
+	@Override
+	public ExpiringCredentials fetch() throws IOException {
+		final String token = new String(Files.readAllBytes(tokenFile), StandardCharsets.UTF_8).trim();
+		final URI uri = endpoint.resolve("?Action=AssumeRoleWithWebIdentity&Version=2011-06-15"
+				+ "&RoleArn=" + URLEncoder.encode(roleArn, "UTF-8")
+				+ "&RoleSessionName=" + URLEncoder.encode(sessionName, "UTF-8")
+				+ "&WebIdentityToken=" + URLEncoder.encode(token, "UTF-8"));
+
+		final HttpURLConnection connection = (HttpURLConnection)uri.toURL().openConnection();
+		try {
+			connection.setConnectTimeout(timeout);
+			connection.setReadTimeout(timeout);
+			final int status = connection.getResponseCode();
+			if(status != HttpURLConnection.HTTP_OK) {
+				throw new IOException("AssumeRoleWithWebIdentity for " + roleArn + " returned HTTP " + status);
+			}
+			try(InputStream input = connection.getInputStream()) {
+				return parse(input, "AssumeRoleWithWebIdentity");
+			}
+		} finally {
+			connection.disconnect();
+		}
+	}
+
+	/**
+	 * Parses the credentials from the response to an STS action that assumes a role, such as
+	 * {@code AssumeRoleWithWebIdentity} or {@code AssumeRole}.
+	 *
+	 * @param input the response body
+	 * @param action the name of the action, for error messages
+	 * @return the credentials in the response
+	 * @throws IOException if the response cannot be read or does not contain credentials
+	 */
+	static ExpiringCredentials parse(InputStream input, String action) throws IOException {
+		final Document document;
+		try {
+			final DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+			factory.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, true);
+			factory.setFeature("http://apache.org/xml/features/disallow-doctype-decl", true);
+			document = factory.newDocumentBuilder().parse(input);
+		} catch(ParserConfigurationException | SAXException e) {
+			throw new IOException("Invalid " + action + " response", e);
+		}
+
+		final String expiration = getElementText(document, "Expiration", action);
+		try {
+			return new ExpiringCredentials(new BasicSessionCredentials(
+					getElementText(document, "AccessKeyId", action),
+					getElementText(document, "SecretAccessKey", action),
+					getElementText(document, "SessionToken", action)),
+					Instant.parse(expiration).toEpochMilli());
+		} catch(DateTimeParseException e) {
+			throw new IOException("Invalid credential expiration: " + expiration, e);
+		}
+	}
+
+	private static String getElementText(Document document, String name, String action) throws IOException {
+		final NodeList elements = document.getElementsByTagName(name);
+		if(elements.getLength() == 0) throw new IOException(action + " response lacks " + name);
+		return elements.item(0).getTextContent().trim();
+	}
+
+	@Override
+	public String toString() {
+		return "web identity for " + roleArn;
+	}
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright 2015 Philip Cronje
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package net.za.slyfox.dyn53.dns;
+
+import net.za.slyfox.dyn53.logging.LogField;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.Inet4Address;
+import java.net.Inet6Address;
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Implements a {@link Consumer} that publishes an address to address resource record sets of a single zone through a
+ * {@link DnsBackend}, and can withdraw it again. All resource record sets are changed in a single request.
+ */
+final class BackendUpdater implements Consumer<InetAddress> {
+	private final DnsBackend backend;
+	private final Logger logger = LoggerFactory.getLogger(getClass());
+	private final List<String> names;
+	private final Long ttl;
+	private final String zone;
+
+	/**
+	 * Initializes the updater with configuration values, and injects dependencies.
+	 *
+	 * @param backend the backend to change the resource record sets through
+	 * @param zone the zone containing the resource record sets
+	 * @param names the names of the resource record sets to update
+	 * @param ttl the TTL to set on each resource record set
+	 * @throws NullPointerException if a parameter is {@code null}
+	 */
+	@Inject
+	BackendUpdater(DnsBackend backend, @Named("dnsZone") String zone, @Named("dnsRecordNames") List<String> names,
+			@Named("dnsRecordTtl") Long ttl) {
+		this.backend = Objects.requireNonNull(backend);
+		this.names = new ArrayList<>(names);
+		this.ttl = Objects.requireNonNull(ttl);
+		this.zone = Objects.requireNonNull(zone);
+	}
+
+	/**
+	 * Updates the configured resource record sets with the value of an IP address.
+	 *
+	 * @param inetAddress the address to update the resource record sets with
+	 * @throws UncheckedIOException if the backend fails to make the change
+	 */
+	@Override
+	public void accept(InetAddress inetAddress) {
+		logger.info("Updating resource record sets {} in zone {} to {}", names, zone, inetAddress.getHostAddress());
+		change(true, inetAddress);
+	}
+
+	/**
+	 * Deletes the configured resource record sets.
+	 *
+	 * @param inetAddress the address the resource record sets currently hold
+	 * @throws UncheckedIOException if the backend fails to make the change
+	 */
+	void withdraw(InetAddress inetAddress) {
+		logger.info("Withdrawing resource record sets {} in zone {} from {}", names, zone,
+				inetAddress.getHostAddress());
+		change(false, inetAddress);
+	}
+
+	private void change(boolean upsert, InetAddress inetAddress) {
+		final String type;
+		if(inetAddress instanceof Inet4Address) {
+			type = "A";
+		} else if(inetAddress instanceof Inet6Address) {
+			type = "AAAA";
+		} else {
+			throw new IllegalArgumentException("Unsupported address type " + inetAddress.getClass());
+		}
+		final List<DnsRecord> records = new ArrayList<>(names.size());
+		names.forEach(name -> records.add(new DnsRecord(name, type, ttl,
+				Collections.singletonList(inetAddress.getHostAddress()))));
+
+		final long start = System.nanoTime();
+		try {
+			if(upsert) {
+				backend.upsert(zone, records);
+			} else {
+				backend.delete(zone, records);
+			}
+		} catch(IOException e) {
+			logger.warn("Change request for {} in zone {} {} after {} ms", LogField.of("record", names),
+					LogField.of("zone", zone), LogField.of("outcome", "FAILED"),
+					LogField.of("latency", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)));
+			throw new UncheckedIOException(e);
+		}
+		logger.info("Result of change request for {} in zone {}: {} after {} ms", LogField.of("record", names),
+				LogField.of("zone", zone), LogField.of("outcome", "INSYNC"),
+				LogField.of("latency", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)));
+	}
+}
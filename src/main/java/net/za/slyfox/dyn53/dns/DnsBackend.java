@@ -0,0 +1,47 @@
+/*
+ * Copyright 2015 Philip Cronje
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package net.za.slyfox.dyn53.dns;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Service provider interface for the DNS services that address records are published to in place of Route 53. Each
+ * operation applies to the resource record sets of a single zone, identified as the implementation requires, such as
+ * by the zone name of an RFC 2136 server. The changes of a single call are applied atomically where the service allows
+ * it.
+ *
+ * <p>Route 53 is not a backend: its updaters batch changes per hosted zone, rate-limit them, adapt TTLs and publish
+ * routing policies and health checks, none of which this interface can express, so they use the Route 53 API
+ * directly.</p>
+ */
+public interface DnsBackend {
+	/**
+	 * Creates or replaces resource record sets.
+	 *
+	 * @param zone the zone containing the resource record sets
+	 * @param records the resource record sets to create, each replacing any existing set of the same name and type
+	 * @throws IOException if the service cannot be reached, or rejects the change
+	 */
+	void upsert(String zone, List<DnsRecord> records) throws IOException;
+
+	/**
+	 * Deletes resource record sets.
+	 *
+	 * @param zone the zone containing the resource record sets
+	 * @param records the resource record sets to delete, holding the values they currently have, which some services
+	 *                require to match exactly
+	 * @throws IOException if the service cannot be reached, or rejects the change
+	 */
+	void delete(String zone, List<DnsRecord> records) throws IOException;
+}
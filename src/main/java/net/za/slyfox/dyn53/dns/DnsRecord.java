@@ -0,0 +1,84 @@
+/*
+ * Copyright 2015 Philip Cronje
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package net.za.slyfox.dyn53.dns;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+
+/**
+ * Represents a resource record set: the resource records of one name and type, with the TTL they share. Values are
+ * given in presentation format, such as {@code 192.0.2.1} for an {@code A} record or {@code "text"} for a {@code TXT}
+ * record.
+ */
+public final class DnsRecord {
+	private final String name;
+	private final long ttl;
+	private final String type;
+	private final List<String> values;
+
+	/**
+	 * Initializes the record.
+	 *
+	 * @param name the name of the resource record set, to which a trailing dot is added if missing
+	 * @param type the resource record type, such as {@code A}
+	 * @param ttl the TTL of the resource record set, in seconds
+	 * @param values the values of the resource records
+	 * @throws IllegalArgumentException if {@code ttl} is negative
+	 * @throws NullPointerException if a parameter is {@code null}
+	 */
+	public DnsRecord(String name, String type, long ttl, List<String> values) {
+		if(ttl < 0) throw new IllegalArgumentException("TTL must not be negative");
+		this.name = name.endsWith(".") ? name : name + '.';
+		this.ttl = ttl;
+		this.type = type.toUpperCase(Locale.ROOT);
+		this.values = Collections.unmodifiableList(new ArrayList<>(values));
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public long getTtl() {
+		return ttl;
+	}
+
+	public String getType() {
+		return type;
+	}
+
+	public List<String> getValues() {
+		return values;
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if(this == o) return true;
+		if(!(o instanceof DnsRecord)) return false;
+		final DnsRecord that = (DnsRecord)o;
+		return ttl == that.ttl && name.equalsIgnoreCase(that.name) && type.equals(that.type)
+				&& values.equals(that.values);
+	}
+
+	@Override
+	public int hashCode() {
+		return Objects.hash(name.toLowerCase(Locale.ROOT), ttl, type, values);
+	}
+
+	@Override
+	public String toString() {
+		return name + ' ' + ttl + ' ' + type + ' ' + values;
+	}
+}
@@ -0,0 +1,295 @@
+/*
+ * Copyright 2015 Philip Cronje
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package net.za.slyfox.dyn53.dns;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.Inet6Address;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Encodes and decodes the parts of DNS messages (RFC 1035) needed for dynamic updates and queries: names, resource
+ * records, and the data of the resource record types Dyn53 publishes. Names are written without compression, and
+ * compressed names are followed when read.
+ */
+final class DnsWire {
+	static final int CLASS_ANY = 255;
+	static final int CLASS_IN = 1;
+	static final int HEADER_LENGTH = 12;
+	static final int TYPE_SOA = 6;
+	static final int TYPE_TSIG = 250;
+
+	private static final Pattern IPV4_LITERAL = Pattern.compile("\\d{1,3}(\\.\\d{1,3}){3}");
+	private static final int MAX_COMPRESSION_POINTERS = 64;
+	private static final Map<Integer, String> TYPE_NAMES = new HashMap<>();
+	private static final Map<String, Integer> TYPES = new HashMap<>();
+
+	static {
+		TYPES.put("A", 1);
+		TYPES.put("NS", 2);
+		TYPES.put("CNAME", 5);
+		TYPES.put("PTR", 12);
+		TYPES.put("MX", 15);
+		TYPES.put("TXT", 16);
+		TYPES.put("AAAA", 28);
+		TYPES.forEach((name, code) -> TYPE_NAMES.put(code, name));
+	}
+
+	private DnsWire() {
+	}
+
+	/**
+	 * Returns the numeric code of a resource record type.
+	 *
+	 * @param type the name of the type, such as {@code A}
+	 * @return the code of the type
+	 * @throws IllegalArgumentException if the type is not supported
+	 */
+	static int getTypeCode(String type) {
+		final Integer code = TYPES.get(type);
+		if(code == null) throw new IllegalArgumentException("Unsupported resource record type " + type);
+		return code;
+	}
+
+	/**
+	 * Returns the name of a resource record type.
+	 *
+	 * @param code the numeric code of the type
+	 * @return the name of the type, or {@code null} if the type is not supported
+	 */
+	static String getTypeName(int code) {
+		return TYPE_NAMES.get(code);
+	}
+
+	/**
+	 * Writes a name as a sequence of labels.
+	 *
+	 * @param output the stream to write to
+	 * @param name the name, with or without a trailing dot
+	 * @throws IllegalArgumentException if the name has an empty label, or a label or the name is too long
+	 */
+	static void writeName(DataOutputStream output, String name) throws IOException {
+		final String relative = name.endsWith(".") ? name.substring(0, name.length() - 1) : name;
+		int length = 1;
+		if(!relative.isEmpty()) {
+			for(String label : relative.split("\\.", -1)) {
+				final byte[] bytes = label.getBytes(StandardCharsets.US_ASCII);
+				if(bytes.length == 0 || bytes.length > 63) throw new IllegalArgumentException("Invalid name " + name);
+				length += bytes.length + 1;
+				output.writeByte(bytes.length);
+				output.write(bytes);
+			}
+		}
+		if(length > 255) throw new IllegalArgumentException("Name too long: " + name);
+		output.writeByte(0);
+	}
+
+	/**
+	 * Reads a name, following compression pointers.
+	 *
+	 * @param buffer the buffer positioned at the name, which is left positioned after it
+	 * @return the name, with a trailing dot
+	 * @throws IllegalArgumentException if the name is malformed
+	 */
+	static String readName(ByteBuffer buffer) {
+		final StringBuilder name = new StringBuilder();
+		int position = buffer.position();
+		int end = -1;
+		int pointers = 0;
+		while(true) {
+			final int length = buffer.get(position) & 0xff;
+			if((length & 0xc0) == 0xc0) {
+				if(++pointers > MAX_COMPRESSION_POINTERS) throw new IllegalArgumentException("Compression loop");
+				if(end < 0) end = position + 2;
+				position = ((length & 0x3f) << 8) | (buffer.get(position + 1) & 0xff);
+			} else if(length == 0) {
+				break;
+			} else {
+				for(int i = 1; i <= length; i++) name.append((char)(buffer.get(position + i) & 0xff));
+				name.append('.');
+				position += length + 1;
+			}
+		}
+		buffer.position((end < 0) ? position + 1 : end);
+		return (name.length() == 0) ? "." : name.toString();
+	}
+
+	/**
+	 * Writes a resource record.
+	 *
+	 * @param output the stream to write to
+	 * @param name the owner name of the record
+	 * @param type the numeric code of the record type
+	 * @param dnsClass the class of the record
+	 * @param ttl the TTL of the record, in seconds
+	 * @param data the data of the record
+	 */
+	static void writeRecord(DataOutputStream output, String name, int type, int dnsClass, long ttl, byte[] data)
+			throws IOException {
+		writeName(output, name);
+		output.writeShort(type);
+		output.writeShort(dnsClass);
+		output.writeInt((int)ttl);
+		output.writeShort(data.length);
+		output.write(data);
+	}
+
+	/**
+	 * Encodes a value given in presentation format as record data.
+	 *
+	 * @param type the name of the record type
+	 * @param value the value
+	 * @return the record data
+	 * @throws IllegalArgumentException if the value is not valid for the type, or the type is not supported
+	 */
+	static byte[] encodeData(String type, String value) {
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		final DataOutputStream output = new DataOutputStream(bytes);
+		try {
+			switch(type) {
+				case "A":
+					if(!IPV4_LITERAL.matcher(value).matches()) throw new IllegalArgumentException("Invalid A " + value);
+					output.write(getAddress(value, 4));
+					break;
+				case "AAAA":
+					if(value.indexOf(':') < 0) throw new IllegalArgumentException("Invalid AAAA " + value);
+					output.write(getAddress(value, 16));
+					break;
+				case "CNAME":
+				case "NS":
+				case "PTR":
+					writeName(output, value);
+					break;
+				case "MX":
+					final String[] fields = value.trim().split("\\s+");
+					if(fields.length != 2) throw new IllegalArgumentException("Invalid MX " + value);
+					output.writeShort(Integer.parseInt(fields[0]));
+					writeName(output, fields[1]);
+					break;
+				case "TXT":
+					for(String string : splitCharacterStrings(value)) {
+						final byte[] data = string.getBytes(StandardCharsets.UTF_8);
+						if(data.length > 255) throw new IllegalArgumentException("TXT string too long: " + value);
+						output.writeByte(data.length);
+						output.write(data);
+					}
+					break;
+				default:
+					throw new IllegalArgumentException("Unsupported resource record type " + type);
+			}
+		} catch(IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		return bytes.toByteArray();
+	}
+
+	/**
+	 * Decodes record data into presentation format.
+	 *
+	 * @param buffer the buffer positioned at the record data, which is left positioned after it
+	 * @param type the numeric code of the record type
+	 * @param length the length of the record data
+	 * @return the value, or {@code null} if the type is not supported
+	 * @throws IllegalArgumentException if the record data is malformed
+	 */
+	static String decodeData(ByteBuffer buffer, int type, int length) {
+		final int end = buffer.position() + length;
+		final String typeName = String.valueOf(getTypeName(type));
+		final String value;
+		switch(typeName) {
+			case "A":
+			case "AAAA":
+				final byte[] address = new byte[length];
+				buffer.get(address);
+				try {
+					value = InetAddress.getByAddress(address).getHostAddress();
+				} catch(UnknownHostException e) {
+					throw new IllegalArgumentException("Invalid address of length " + length, e);
+				}
+				break;
+			case "CNAME":
+			case "NS":
+			case "PTR":
+				value = readName(buffer);
+				break;
+			case "MX":
+				value = (buffer.getShort() & 0xffff) + " " + readName(buffer);
+				break;
+			case "TXT":
+				final List<String> strings = new ArrayList<>();
+				while(buffer.position() < end) {
+					final byte[] data = new byte[buffer.get() & 0xff];
+					buffer.get(data);
+					strings.add('"' + new String(data, StandardCharsets.UTF_8).replace("\\", "\\\\")
+							.replace("\"", "\\\"") + '"');
+				}
+				value = String.join(" ", strings);
+				break;
+			default:
+				value = null;
+		}
+		buffer.position(end);
+		return value;
+	}
+
+	/**
+	 * Splits the value of a {@code TXT} record into its character strings, each either enclosed in double quotes,
+	 * within which a backslash escapes the next character, or delimited by whitespace.
+	 */
+	private static List<String> splitCharacterStrings(String value) {
+		final List<String> strings = new ArrayList<>();
+		int i = 0;
+		while(i < value.length()) {
+			if(Character.isWhitespace(value.charAt(i))) {
+				i++;
+			} else if(value.charAt(i) == '"') {
+				final StringBuilder string = new StringBuilder();
+				for(i++; i < value.length() && value.charAt(i) != '"'; i++) {
+					if(value.charAt(i) == '\\' && i + 1 < value.length()) i++;
+					string.append(value.charAt(i));
+				}
+				if(i == value.length()) throw new IllegalArgumentException("Unterminated TXT string: " + value);
+				strings.add(string.toString());
+				i++;
+			} else {
+				final int start = i;
+				while(i < value.length() && !Character.isWhitespace(value.charAt(i))) i++;
+				strings.add(value.substring(start, i));
+			}
+		}
+		if(strings.isEmpty()) strings.add("");
+		return strings;
+	}
+
+	private static byte[] getAddress(String literal, int length) {
+		try {
+			final InetAddress address = InetAddress.getByName(literal);
+			if(length == 16 && !(address instanceof Inet6Address) || address.getAddress().length != length) {
+				throw new IllegalArgumentException("Invalid address " + literal);
+			}
+			return address.getAddress();
+		} catch(UnknownHostException e) {
+			throw new IllegalArgumentException("Invalid address " + literal, e);
+		}
+	}
+}
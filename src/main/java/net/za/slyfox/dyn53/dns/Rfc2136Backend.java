@@ -0,0 +1,229 @@
+/*
+ * Copyright 2015 Philip Cronje
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package net.za.slyfox.dyn53.dns;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
+import java.security.SecureRandom;
+import java.util.List;
+import java.util.Objects;
+import java.util.Random;
+
+/**
+ * Implements a {@link DnsBackend} that changes a zone on an authoritative name server with DNS UPDATE messages, as
+ * specified by RFC 2136. Messages are optionally signed with a TSIG key, and the signatures of responses are
+ * verified.
+ *
+ * <p>Messages are sent over UDP, and retransmitted if no response arrives within the timeout. A response that is
+ * truncated is requested again over TCP. An upsert deletes each resource record set and adds its new records in the
+ * same message, which the server applies atomically.</p>
+ */
+final class Rfc2136Backend implements DnsBackend {
+	private static final int FLAG_RESPONSE = 0x8000;
+	private static final int FLAG_TRUNCATED = 0x0200;
+	private static final int MAX_UDP_LENGTH = 65535;
+	private static final int OPCODE_UPDATE = 5;
+	private static final String[] RCODES = {"NOERROR", "FORMERR", "SERVFAIL", "NXDOMAIN", "NOTIMP", "REFUSED",
+			"YXDOMAIN", "YXRRSET", "NXRRSET", "NOTAUTH", "NOTZONE"};
+
+	private final int attempts;
+	private final TsigKey key;
+	private final Logger logger = LoggerFactory.getLogger(getClass());
+	private final Random random = new SecureRandom();
+	private final InetSocketAddress server;
+	private final int timeout;
+
+	/**
+	 * Initializes the backend.
+	 *
+	 * @param server the unresolved address of the name server, which is resolved for every message
+	 * @param key the key to sign messages with, or {@code null} to send them unsigned
+	 * @param timeout the time to wait for a response to each transmission, in milliseconds
+	 * @param attempts the number of times a message is sent over UDP before the request fails
+	 * @throws IllegalArgumentException if {@code timeout} or {@code attempts} is not positive
+	 * @throws NullPointerException if {@code server} is {@code null}
+	 */
+	Rfc2136Backend(InetSocketAddress server, TsigKey key, int timeout, int attempts) {
+		if(timeout < 1) throw new IllegalArgumentException("Timeout must be positive");
+		if(attempts < 1) throw new IllegalArgumentException("Attempts must be positive");
+		this.attempts = attempts;
+		this.key = key;
+		this.server = Objects.requireNonNull(server);
+		this.timeout = timeout;
+	}
+
+	@Override
+	public void upsert(String zone, List<DnsRecord> records) throws IOException {
+		update(zone, records, true);
+	}
+
+	@Override
+	public void delete(String zone, List<DnsRecord> records) throws IOException {
+		update(zone, records, false);
+	}
+
+	@Override
+	public String toString() {
+		return server.getHostString() + ':' + server.getPort();
+	}
+
+	/**
+	 * Sends an UPDATE message that deletes each resource record set and, if {@code add} is set, adds its records.
+	 *
+	 * @param zone the name of the zone to update
+	 * @param records the resource record sets to change
+	 * @param add whether to add the records after deleting the resource record sets
+	 * @throws IOException if the server cannot be reached, or rejects the update
+	 */
+	private void update(String zone, List<DnsRecord> records, boolean add) throws IOException {
+		int changes = records.size();
+		if(add) {
+			for(DnsRecord record : records) changes += record.getValues().size();
+		}
+
+		final int id = random.nextInt(0x10000);
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		final DataOutputStream output = new DataOutputStream(bytes);
+		writeHeader(output, id, OPCODE_UPDATE << 11, 1, changes);
+		DnsWire.writeName(output, zone);
+		output.writeShort(DnsWire.TYPE_SOA);
+		output.writeShort(DnsWire.CLASS_IN);
+		for(DnsRecord record : records) {
+			final int type = DnsWire.getTypeCode(record.getType());
+			DnsWire.writeRecord(output, record.getName(), type, DnsWire.CLASS_ANY, 0, new byte[0]);
+			if(!add) continue;
+			for(String value : record.getValues()) {
+				DnsWire.writeRecord(output, record.getName(), type, DnsWire.CLASS_IN, record.getTtl(),
+						DnsWire.encodeData(record.getType(), value));
+			}
+		}
+
+		final long start = System.nanoTime();
+		exchange(bytes.toByteArray(), id);
+		if(logger.isDebugEnabled()) {
+			logger.debug("Update of {} records in zone {} accepted by {} after {} us", records.size(), zone, this,
+					(System.nanoTime() - start) / 1000);
+		}
+	}
+
+	/**
+	 * Signs a message if a key is configured, sends it to the server, and returns the verified response.
+	 *
+	 * @param message the message to send
+	 * @param id the identifier of the message
+	 * @return the response, which has a response code of {@code NOERROR}
+	 * @throws IOException if no valid response is received, or the response code indicates an error
+	 */
+	private ByteBuffer exchange(byte[] message, int id) throws IOException {
+		byte[] requestMac = null;
+		if(key != null) {
+			final long timeSigned = System.currentTimeMillis() / 1000;
+			requestMac = key.sign(message, null, timeSigned);
+			message = key.append(message, requestMac, timeSigned);
+		}
+
+		final InetSocketAddress target = new InetSocketAddress(server.getHostString(), server.getPort());
+		if(target.isUnresolved()) throw new UnknownHostException(server.getHostString());
+		byte[] response = sendUdp(target, message, id);
+		if((ByteBuffer.wrap(response).getShort(2) & FLAG_TRUNCATED) != 0) {
+			logger.debug("Response from {} truncated, retrying over TCP", this);
+			response = sendTcp(target, message, id);
+		}
+
+		final int rcode = ByteBuffer.wrap(response).getShort(2) & 0x0f;
+		if(rcode != 0) {
+			throw new IOException("Request rejected by " + this + " with "
+					+ ((rcode < RCODES.length) ? RCODES[rcode] : "RCODE " + rcode));
+		}
+		if(key != null) key.verify(response, requestMac, System.currentTimeMillis() / 1000);
+		return ByteBuffer.wrap(response);
+	}
+
+	private byte[] sendUdp(InetSocketAddress target, byte[] message, int id) throws IOException {
+		try(final DatagramSocket socket = new DatagramSocket()) {
+			socket.connect(target);
+			socket.setSoTimeout(timeout);
+			final DatagramPacket packet = new DatagramPacket(new byte[MAX_UDP_LENGTH], MAX_UDP_LENGTH);
+			for(int attempt = 1; attempt <= attempts; attempt++) {
+				socket.send(new DatagramPacket(message, message.length));
+				try {
+					while(true) {
+						packet.setLength(MAX_UDP_LENGTH);
+						socket.receive(packet);
+						if(isResponse(packet.getData(), packet.getLength(), id)) {
+							return copy(packet);
+						}
+					}
+				} catch(SocketTimeoutException e) {
+					logger.debug("No response from {} to attempt {}", this, attempt);
+				}
+			}
+		}
+		throw new SocketTimeoutException("No response from " + this + " after " + attempts + " attempts");
+	}
+
+	private byte[] sendTcp(InetSocketAddress target, byte[] message, int id) throws IOException {
+		try(final Socket socket = new Socket()) {
+			socket.connect(target, timeout);
+			socket.setSoTimeout(timeout);
+			final DataOutputStream output = new DataOutputStream(socket.getOutputStream());
+			output.writeShort(message.length);
+			output.write(message);
+			output.flush();
+
+			final DataInputStream input = new DataInputStream(socket.getInputStream());
+			final byte[] response = new byte[input.readUnsignedShort()];
+			input.readFully(response);
+			if(!isResponse(response, response.length, id)) throw new IOException("Invalid response from " + this);
+			return response;
+		}
+	}
+
+	private static byte[] copy(DatagramPacket packet) {
+		final byte[] data = new byte[packet.getLength()];
+		System.arraycopy(packet.getData(), packet.getOffset(), data, 0, data.length);
+		return data;
+	}
+
+	private static boolean isResponse(byte[] message, int length, int id) {
+		if(length < DnsWire.HEADER_LENGTH) return false;
+		final ByteBuffer header = ByteBuffer.wrap(message);
+		return (header.getShort(0) & 0xffff) == id && (header.getShort(2) & FLAG_RESPONSE) != 0;
+	}
+
+	/**
+	 * Writes a message header. The question section of a query and the zone section of an update share the first
+	 * count, and the authority section of a query and the update section of an update share the third.
+	 */
+	private static void writeHeader(DataOutputStream output, int id, int flags, int questions, int updates)
+			throws IOException {
+		output.writeShort(id);
+		output.writeShort(flags);
+		output.writeShort(questions);
+		output.writeShort(0);
+		output.writeShort(updates);
+		output.writeShort(0);
+	}
+}
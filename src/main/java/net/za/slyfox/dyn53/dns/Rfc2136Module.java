@@ -0,0 +1,106 @@
+/*
+ * Copyright 2015 Philip Cronje
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package net.za.slyfox.dyn53.dns;
+
+import com.google.inject.AbstractModule;
+import com.google.inject.Provides;
+import com.google.inject.TypeLiteral;
+import com.google.inject.name.Names;
+
+import javax.inject.Named;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Consumer;
+
+/**
+ * Binds a {@link DnsBackend} that updates a zone on an authoritative name server with RFC 2136 dynamic updates, and
+ * publishes discovered addresses to resource record sets in that zone through it, in place of {@link
+ * net.za.slyfox.dyn53.route53.Route53Module}.
+ */
+public final class Rfc2136Module extends AbstractModule {
+	public static final int DEFAULT_PORT = 53;
+	private static final int ATTEMPTS = 3;
+	private static final int TIMEOUT = 1000;
+
+	private final TsigKey key;
+	private final List<String> names;
+	private final InetSocketAddress server;
+	private final long ttl;
+	private final String zone;
+
+	/**
+	 * Initializes the module.
+	 *
+	 * @param server the name server to send updates to, as {@code host}, {@code host:port} or {@code [address]:port}
+	 * @param zone the name of the zone to update
+	 * @param names the names of the resource record sets in the zone to update
+	 * @param ttl the TTL to set on each resource record set, in seconds
+	 * @param keyName the name of the TSIG key to sign updates with, or {@code null} to send them unsigned
+	 * @param algorithm the TSIG algorithm of the key, such as {@code hmac-sha256}
+	 * @param secret the Base64-encoded secret of the key
+	 * @throws IllegalArgumentException if {@code names} is empty, the server address is invalid, or the key is
+	 *                                  incomplete or uses an unsupported algorithm
+	 * @throws NullPointerException if a required parameter is {@code null}
+	 */
+	public Rfc2136Module(String server, String zone, List<String> names, long ttl, String keyName, String algorithm,
+			String secret) {
+		this.names = new ArrayList<>(names);
+		this.server = parseServer(server);
+		this.ttl = ttl;
+		this.zone = Objects.requireNonNull(zone);
+		if(this.names.isEmpty()) throw new IllegalArgumentException("At least one record name is required");
+		if(keyName == null) {
+			key = null;
+		} else {
+			if(secret == null) throw new IllegalArgumentException("TSIG key " + keyName + " requires a secret");
+			key = new TsigKey(keyName, algorithm, Base64.getDecoder().decode(secret.trim()));
+		}
+	}
+
+	@Override
+	protected void configure() {
+		bind(DnsBackend.class).toInstance(new Rfc2136Backend(server, key, TIMEOUT, ATTEMPTS));
+		bind(new TypeLiteral<Consumer<InetAddress>>(){}).to(BackendUpdater.class);
+		bind(new TypeLiteral<Consumer<InetAddress>>(){}).annotatedWith(Names.named("publish"))
+				.to(BackendUpdater.class);
+
+		bind(String.class).annotatedWith(Names.named("dnsZone")).toInstance(zone);
+		bind(new TypeLiteral<List<String>>(){}).annotatedWith(Names.named("dnsRecordNames"))
+				.toInstance(Collections.unmodifiableList(names));
+		bind(Long.class).annotatedWith(Names.named("dnsRecordTtl")).toInstance(ttl);
+	}
+
+	@Provides
+	@Named("withdraw")
+	protected Consumer<InetAddress> withdrawal(BackendUpdater updater) {
+		return updater::withdraw;
+	}
+
+	private static InetSocketAddress parseServer(String server) {
+		final int portStart = server.startsWith("[") ? server.indexOf("]:") + 1 : server.lastIndexOf(':');
+		if(server.startsWith("[") && portStart == 0) {
+			return InetSocketAddress.createUnresolved(server.replaceAll("^\\[|]$", ""), DEFAULT_PORT);
+		}
+		if(portStart <= 0 || !server.startsWith("[") && server.indexOf(':') != portStart) {
+			return InetSocketAddress.createUnresolved(server, DEFAULT_PORT);
+		}
+		final String host = server.substring(0, portStart);
+		return InetSocketAddress.createUnresolved(host.startsWith("[") ? host.substring(1, host.length() - 1) : host,
+				Integer.parseInt(server.substring(portStart + 1)));
+	}
+}
@@ -0,0 +1,207 @@
+/*
+ * Copyright 2015 Philip Cronje
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package net.za.slyfox.dyn53.dns;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Signs DNS messages and verifies their signatures with a shared secret key, as specified for TSIG by RFC 8945. A
+ * request is signed over the message and the TSIG variables, and a response over the MAC of the request it answers,
+ * the response message and its TSIG variables.
+ */
+final class TsigKey {
+	private static final int FUDGE = 300;
+	private static final Map<String, String> MAC_ALGORITHMS = new HashMap<>();
+
+	static {
+		MAC_ALGORITHMS.put("hmac-md5.sig-alg.reg.int.", "HmacMD5");
+		MAC_ALGORITHMS.put("hmac-sha1.", "HmacSHA1");
+		MAC_ALGORITHMS.put("hmac-sha256.", "HmacSHA256");
+		MAC_ALGORITHMS.put("hmac-sha512.", "HmacSHA512");
+	}
+
+	private final String algorithm;
+	private final String macAlgorithm;
+	private final String name;
+	private final byte[] secret;
+
+	/**
+	 * Initializes the key.
+	 *
+	 * @param name the name of the key, as configured on the server
+	 * @param algorithm the name of the TSIG algorithm, such as {@code hmac-sha256}, or {@code hmac-md5} for
+	 *                  {@code hmac-md5.sig-alg.reg.int.}
+	 * @param secret the shared secret
+	 * @throws IllegalArgumentException if the algorithm is not supported
+	 * @throws NullPointerException if a parameter is {@code null}
+	 */
+	TsigKey(String name, String algorithm, byte[] secret) {
+		String canonical = algorithm.toLowerCase(Locale.ROOT);
+		if(canonical.equals("hmac-md5")) canonical = "hmac-md5.sig-alg.reg.int";
+		if(!canonical.endsWith(".")) canonical += '.';
+		this.macAlgorithm = MAC_ALGORITHMS.get(canonical);
+		if(macAlgorithm == null) throw new IllegalArgumentException("Unsupported TSIG algorithm " + algorithm);
+		this.algorithm = canonical;
+		this.name = name.toLowerCase(Locale.ROOT).endsWith(".") ? name.toLowerCase(Locale.ROOT)
+				: name.toLowerCase(Locale.ROOT) + '.';
+		this.secret = Objects.requireNonNull(secret).clone();
+	}
+
+	/**
+	 * Computes the MAC of a message.
+	 *
+	 * @param message the message, without a TSIG record
+	 * @param requestMac the MAC of the request if {@code message} is a response, otherwise {@code null}
+	 * @param timeSigned the time of signing, in seconds since the epoch
+	 * @return the MAC
+	 */
+	byte[] sign(byte[] message, byte[] requestMac, long timeSigned) {
+		return sign(message, requestMac, timeSigned, FUDGE);
+	}
+
+	private byte[] sign(byte[] message, byte[] requestMac, long timeSigned, int fudge) {
+		try {
+			final Mac mac = Mac.getInstance(macAlgorithm);
+			mac.init(new SecretKeySpec(secret, macAlgorithm));
+			if(requestMac != null) {
+				mac.update((byte)(requestMac.length >>> 8));
+				mac.update((byte)requestMac.length);
+				mac.update(requestMac);
+			}
+			mac.update(message);
+
+			final ByteArrayOutputStream variables = new ByteArrayOutputStream();
+			final DataOutputStream output = new DataOutputStream(variables);
+			DnsWire.writeName(output, name);
+			output.writeShort(DnsWire.CLASS_ANY);
+			output.writeInt(0);
+			DnsWire.writeName(output, algorithm);
+			output.writeShort((int)(timeSigned >>> 32));
+			output.writeInt((int)timeSigned);
+			output.writeShort(fudge);
+			output.writeShort(0);
+			output.writeShort(0);
+			return mac.doFinal(variables.toByteArray());
+		} catch(GeneralSecurityException e) {
+			throw new IllegalStateException("Could not compute " + macAlgorithm, e);
+		} catch(IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * Appends a TSIG record to a message, incrementing the count of additional records.
+	 *
+	 * @param message the message to sign
+	 * @param mac the MAC of the message, as computed by {@link #sign(byte[], byte[], long)}
+	 * @param timeSigned the time the MAC was computed for, in seconds since the epoch
+	 * @return the signed message
+	 */
+	byte[] append(byte[] message, byte[] mac, long timeSigned) {
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		final DataOutputStream output = new DataOutputStream(bytes);
+		try {
+			output.write(message);
+			final ByteArrayOutputStream data = new ByteArrayOutputStream();
+			final DataOutputStream dataOutput = new DataOutputStream(data);
+			DnsWire.writeName(dataOutput, algorithm);
+			dataOutput.writeShort((int)(timeSigned >>> 32));
+			dataOutput.writeInt((int)timeSigned);
+			dataOutput.writeShort(FUDGE);
+			dataOutput.writeShort(mac.length);
+			dataOutput.write(mac);
+			dataOutput.write(message, 0, 2);
+			dataOutput.writeShort(0);
+			dataOutput.writeShort(0);
+			DnsWire.writeRecord(output, name, DnsWire.TYPE_TSIG, DnsWire.CLASS_ANY, 0, data.toByteArray());
+		} catch(IOException e) {
+			throw new UncheckedIOException(e);
+		}
+
+		final byte[] signed = bytes.toByteArray();
+		final ByteBuffer header = ByteBuffer.wrap(signed);
+		header.putShort(10, (short)(header.getShort(10) + 1));
+		return signed;
+	}
+
+	/**
+	 * Verifies the TSIG record at the end of a message.
+	 *
+	 * @param message the signed message
+	 * @param requestMac the MAC of the request if {@code message} is a response, otherwise {@code null}
+	 * @param now the current time, in seconds since the epoch
+	 * @return the MAC of the message
+	 * @throws IOException if the message is not signed with this key, its MAC is invalid, or it was signed too long
+	 *                     before or after {@code now}
+	 */
+	byte[] verify(byte[] message, byte[] requestMac, long now) throws IOException {
+		try {
+			final ByteBuffer buffer = ByteBuffer.wrap(message);
+			buffer.position(4);
+			final int questions = buffer.getShort() & 0xffff;
+			final int records = (buffer.getShort() & 0xffff) + (buffer.getShort() & 0xffff);
+			final int additional = buffer.getShort() & 0xffff;
+			if(additional == 0) throw new IOException("Message is not signed");
+			for(int i = 0; i < questions; i++) {
+				DnsWire.readName(buffer);
+				buffer.position(buffer.position() + 4);
+			}
+			for(int i = 0; i < records + additional - 1; i++) {
+				DnsWire.readName(buffer);
+				buffer.position(buffer.position() + 8);
+				buffer.position((buffer.getShort() & 0xffff) + buffer.position());
+			}
+
+			final int start = buffer.position();
+			final String keyName = DnsWire.readName(buffer);
+			if(buffer.getShort() != DnsWire.TYPE_TSIG) throw new IOException("Message is not signed");
+			buffer.position(buffer.position() + 8);
+			final String keyAlgorithm = DnsWire.readName(buffer);
+			final long timeSigned = ((buffer.getShort() & 0xffffL) << 32) | (buffer.getInt() & 0xffffffffL);
+			final int fudge = buffer.getShort() & 0xffff;
+			final byte[] mac = new byte[buffer.getShort() & 0xffff];
+			buffer.get(mac);
+			final short originalId = buffer.getShort();
+			final int error = buffer.getShort() & 0xffff;
+			if(error != 0) throw new IOException("Signature rejected with TSIG error " + error);
+			if(!keyName.equalsIgnoreCase(name) || !keyAlgorithm.equalsIgnoreCase(algorithm)) {
+				throw new IOException("Message is signed with another key " + keyName);
+			}
+
+			final ByteBuffer unsigned = ByteBuffer.wrap(Arrays.copyOf(message, start));
+			unsigned.putShort(0, originalId);
+			unsigned.putShort(10, (short)(additional - 1));
+			if(!MessageDigest.isEqual(mac, sign(unsigned.array(), requestMac, timeSigned, fudge))) {
+				throw new IOException("Message signature is invalid");
+			}
+			if(Math.abs(now - timeSigned) > fudge) throw new IOException("Message signed at " + timeSigned);
+			return mac;
+		} catch(BufferUnderflowException | IllegalArgumentException | IndexOutOfBoundsException e) {
+			throw new IOException("Malformed signed message", e);
+		}
+	}
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright 2015 Philip Cronje
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package net.za.slyfox.dyn53.extip;
+
+import com.google.inject.AbstractModule;
+import com.google.inject.Injector;
+import com.google.inject.Key;
+import com.google.inject.Provides;
+import com.google.inject.TypeLiteral;
+import com.google.inject.multibindings.Multibinder;
+import com.google.inject.name.Names;
+import net.za.slyfox.dyn53.bean.Lifecycle;
+import net.za.slyfox.dyn53.concurrent.NamedPoolThreadFactory;
+
+import javax.inject.Named;
+import javax.inject.Provider;
+import javax.inject.Singleton;
+import java.net.InetAddress;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Debounces discovered addresses before they are published. This module overrides the {@code "discovered"}
+ * {@code Consumer} bindings of {@link ExternalIpModule}, placing a {@link DebouncingConsumer} between the update
+ * predicates and the unqualified consumers. The unqualified consumer of uplink addresses is only looked up once
+ * addresses of uplinks are discovered, so that it need not be bound when no uplinks are configured.
+ */
+public final class DebounceModule extends AbstractModule {
+	private static final Key<Consumer<Map<String, InetAddress>>> UPLINK_CONSUMER
+			= Key.get(new TypeLiteral<Consumer<Map<String, InetAddress>>>(){});
+
+	private final int flapThreshold;
+	private final long flapWindow;
+	private final long maxDelay;
+	private final long settleWindow;
+
+	/**
+	 * Initializes the module with the debouncing configuration.
+	 *
+	 * @param settleWindow the time an address must remain unchanged before it is published, in seconds
+	 * @param maxDelay the maximum time a change is held, in seconds
+	 * @param flapThreshold the number of changes within the flap window at which an address is considered to be
+	 *                      flapping, or zero to disable flap detection
+	 * @param flapWindow the window over which changes are counted for flap detection, in seconds
+	 * @throws IllegalArgumentException if {@code maxDelay} is less than {@code settleWindow}
+	 */
+	public DebounceModule(long settleWindow, long maxDelay, int flapThreshold, long flapWindow) {
+		if(maxDelay < settleWindow) throw new IllegalArgumentException("Maximum delay is less than settle window");
+		this.flapThreshold = flapThreshold;
+		this.flapWindow = TimeUnit.SECONDS.toNanos(flapWindow);
+		this.maxDelay = TimeUnit.SECONDS.toNanos(maxDelay);
+		this.settleWindow = TimeUnit.SECONDS.toNanos(settleWindow);
+	}
+
+	@Override
+	protected void configure() {
+		Multibinder.newSetBinder(binder(), Lifecycle.class).addBinding().to(DebouncingConsumer.class);
+
+		bind(ScheduledExecutorService.class).annotatedWith(Names.named("debounce"))
+				.toInstance(Executors.newSingleThreadScheduledExecutor(new NamedPoolThreadFactory("debounce")));
+	}
+
+	@Provides
+	@Singleton
+	DebouncingConsumer debouncingConsumer(Provider<Consumer<InetAddress>> consumer, Injector injector,
+			@Named("debounce") ScheduledExecutorService executorService) {
+		return new DebouncingConsumer(addresses -> {
+			if(addresses.containsKey(DiscoveryControl.SINGLE_ADDRESS)) {
+				consumer.get().accept(addresses.get(DiscoveryControl.SINGLE_ADDRESS));
+			} else {
+				injector.getInstance(UPLINK_CONSUMER).accept(addresses);
+			}
+		}, settleWindow, maxDelay, flapThreshold, flapWindow, executorService, System::nanoTime);
+	}
+
+	@Provides
+	@Named("discovered")
+	Consumer<InetAddress> discovered(DebouncingConsumer debouncingConsumer) {
+		return address -> debouncingConsumer.accept(
+				Collections.singletonMap(DiscoveryControl.SINGLE_ADDRESS, address));
+	}
+
+	@Provides
+	@Named("discovered")
+	Consumer<Map<String, InetAddress>> discoveredUplinks(DebouncingConsumer debouncingConsumer) {
+		return debouncingConsumer;
+	}
+}
@@ -0,0 +1,255 @@
+/*
+ * Copyright 2015 Philip Cronje
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package net.za.slyfox.dyn53.extip;
+
+import net.za.slyfox.dyn53.bean.Lifecycle;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.net.InetAddress;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+
+/**
+ * Implements a {@link Consumer} that holds changes to discovered addresses until they have settled, before passing
+ * them on to a delegate. Addresses are keyed by uplink name, and each uplink is debounced independently; a single
+ * external IP address is keyed by {@link DiscoveryControl#SINGLE_ADDRESS}.
+ *
+ * <p>A change is passed on once no further change has been seen for the settle window. A change that reverts to the
+ * last address passed on before it settles is discarded, so that a brief A&rarr;B&rarr;A sequence causes no update.
+ * An uplink is considered to be flapping once it changes {@code flapThreshold} times within the flap window, and
+ * remains so until the number of changes within the window drops to half of that; while flapping, changes are held
+ * for the full maximum delay. No change is held for longer than the maximum delay.</p>
+ *
+ * <p>This implementation is safe to concurrently use from multiple threads, as its state is only accessed while
+ * synchronized.</p>
+ */
+final class DebouncingConsumer implements Consumer<Map<String, InetAddress>>, Lifecycle {
+	private static final long STOP_TIMEOUT = TimeUnit.MINUTES.toNanos(1);
+
+	private final LongSupplier clock;
+	private final Consumer<Map<String, InetAddress>> delegate;
+	private final ScheduledExecutorService executorService;
+	private final int flapThreshold;
+	private final long flapWindow;
+	private final Logger logger = LoggerFactory.getLogger(getClass());
+	private final long maxDelay;
+	private final long settleWindow;
+	private final Map<String, State> states = new HashMap<>();
+
+	private ScheduledFuture<?> scheduledEmit;
+
+	/**
+	 * Initializes the consumer.
+	 *
+	 * @param delegate the consumer to pass settled changes on to
+	 * @param settleWindow the time an address must remain unchanged before it is passed on, in nanoseconds
+	 * @param maxDelay the maximum time a change is held, in nanoseconds
+	 * @param flapThreshold the number of changes within the flap window at which an uplink is considered to be
+	 *                      flapping, or zero to disable flap detection
+	 * @param flapWindow the window over which changes are counted for flap detection, in nanoseconds
+	 * @param executorService the scheduled executor service that passes on changes once they have settled
+	 * @param clock a source of monotonic time, in nanoseconds
+	 * @throws IllegalArgumentException if {@code maxDelay} is less than {@code settleWindow}
+	 * @throws NullPointerException if a parameter is {@code null}
+	 */
+	DebouncingConsumer(Consumer<Map<String, InetAddress>> delegate, long settleWindow, long maxDelay,
+			int flapThreshold, long flapWindow, ScheduledExecutorService executorService, LongSupplier clock) {
+		if(maxDelay < settleWindow) throw new IllegalArgumentException("Maximum delay is less than settle window");
+		this.clock = Objects.requireNonNull(clock);
+		this.delegate = Objects.requireNonNull(delegate);
+		this.executorService = Objects.requireNonNull(executorService);
+		this.flapThreshold = flapThreshold;
+		this.flapWindow = flapWindow;
+		this.maxDelay = maxDelay;
+		this.settleWindow = settleWindow;
+	}
+
+	/**
+	 * Records changed addresses, and schedules them to be passed on once they have settled.
+	 *
+	 * @param addresses a map of uplink names to their newly discovered addresses
+	 */
+	@Override
+	public synchronized void accept(Map<String, InetAddress> addresses) {
+		final long now = clock.getAsLong();
+		addresses.forEach((key, address) -> {
+			final State state = states.computeIfAbsent(key, k -> new State());
+			if(!address.equals(state.observed)) {
+				state.observed = address;
+				state.changes.addLast(now);
+			}
+			updateFlapping(key, state, now);
+
+			if(address.equals(state.published)) {
+				if(state.pending != null) {
+					logger.info("Address of {} returned to {} before settling, discarding change to {}",
+							describe(key), address.getHostAddress(), state.pending.getHostAddress());
+					state.pending = null;
+				}
+			} else {
+				if(state.pending == null) state.pendingSince = now;
+				state.pending = address;
+				state.lastChange = now;
+			}
+		});
+		emit(now);
+	}
+
+	@Override
+	public void start() {
+	}
+
+	/**
+	 * Stops passing on changes, waiting up to one minute for settled changes already being passed on.
+	 *
+	 * @see #stop(long)
+	 */
+	@Override
+	public void stop() {
+		stop(System.nanoTime() + STOP_TIMEOUT);
+	}
+
+	/**
+	 * Stops passing on changes. Changes that have not yet settled are discarded, but settled changes already being
+	 * passed on are allowed to complete until the deadline.
+	 *
+	 * @param deadline the time by which to return, as a value of {@link System#nanoTime()}
+	 */
+	@Override
+	public void stop(long deadline) {
+		logger.info("Shutting down debouncing scheduler");
+		synchronized(this) {
+			if(scheduledEmit != null) scheduledEmit.cancel(false);
+		}
+		executorService.shutdown();
+		try {
+			if(!executorService.awaitTermination(deadline - System.nanoTime(), TimeUnit.NANOSECONDS)) {
+				logger.warn("Debounced changes are still being passed on, stopping anyway");
+			}
+		} catch(InterruptedException e) {
+			logger.debug("Interrupted while waiting for termination of debouncing scheduler");
+		}
+	}
+
+	/**
+	 * Passes on every change that is due, and schedules the next check for changes that are not.
+	 *
+	 * @param now the current time, in nanoseconds
+	 */
+	private void emit(long now) {
+		final Map<String, InetAddress> due = new LinkedHashMap<>();
+		Long next = null;
+		for(Map.Entry<String, State> entry : states.entrySet()) {
+			final State state = entry.getValue();
+			updateFlapping(entry.getKey(), state, now);
+			if(state.pending == null) continue;
+
+			final long dueTime = getDueTime(state);
+			if(dueTime - now <= 0) {
+				due.put(entry.getKey(), state.pending);
+			} else if(next == null || dueTime - next < 0) {
+				next = dueTime;
+			}
+		}
+
+		if(!due.isEmpty()) {
+			try {
+				delegate.accept(due);
+				due.forEach((key, address) -> {
+					final State state = states.get(key);
+					state.published = address;
+					state.pending = null;
+				});
+			} catch(RuntimeException e) {
+				logger.error("Failed to process settled addresses ({}), retrying after settle window", due, e);
+				due.keySet().forEach(key -> {
+					final State state = states.get(key);
+					state.pendingSince = now;
+					state.lastChange = now;
+				});
+				if(next == null || now + settleWindow - next < 0) next = now + settleWindow;
+			}
+		}
+
+		if(scheduledEmit != null) scheduledEmit.cancel(false);
+		scheduledEmit = null;
+		if(next != null && !executorService.isShutdown()) {
+			scheduledEmit = executorService.schedule(this::emitScheduled, next - now, TimeUnit.NANOSECONDS);
+		}
+	}
+
+	private synchronized void emitScheduled() {
+		emit(clock.getAsLong());
+	}
+
+	/**
+	 * Returns the time at which the pending change of an uplink is due to be passed on.
+	 *
+	 * @param state the state of the uplink
+	 * @return the due time, in nanoseconds
+	 */
+	private long getDueTime(State state) {
+		final long deadline = state.pendingSince + maxDelay;
+		if(state.flapping) return deadline;
+		final long settled = state.lastChange + settleWindow;
+		return (settled - deadline < 0) ? settled : deadline;
+	}
+
+	/**
+	 * Discards changes that have left the flap window, and updates whether an uplink is flapping.
+	 *
+	 * @param key the key of the uplink
+	 * @param state the state of the uplink
+	 * @param now the current time, in nanoseconds
+	 */
+	private void updateFlapping(String key, State state, long now) {
+		while(!state.changes.isEmpty() && now - state.changes.peekFirst() > flapWindow) state.changes.removeFirst();
+		if(flapThreshold <= 0) return;
+
+		if(!state.flapping && state.changes.size() >= flapThreshold) {
+			logger.warn("Address of {} is flapping, holding changes for up to {} seconds", describe(key),
+					TimeUnit.NANOSECONDS.toSeconds(maxDelay));
+			state.flapping = true;
+		} else if(state.flapping && state.changes.size() <= flapThreshold / 2) {
+			logger.info("Address of {} has stabilized", describe(key));
+			state.flapping = false;
+		}
+	}
+
+	private static String describe(String key) {
+		return key.equals(DiscoveryControl.SINGLE_ADDRESS) ? "external IP" : "uplink " + key;
+	}
+
+	/**
+	 * Holds the debouncing state of a single uplink.
+	 */
+	private static final class State {
+		final Deque<Long> changes = new ArrayDeque<>();
+		boolean flapping;
+		long lastChange;
+		InetAddress observed;
+		InetAddress pending;
+		long pendingSince;
+		InetAddress published;
+	}
+}
@@ -0,0 +1,45 @@
+/*
+ * Copyright 2015 Philip Cronje
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package net.za.slyfox.dyn53.extip;
+
+import java.util.Map;
+
+/**
+ * Interface for the task that discovers external IP addresses, exposing its state for {@link DiscoveryControl}.
+ */
+interface DiscoveryCommand extends Runnable {
+	/**
+	 * Runs the command outside of its schedule, for {@link DiscoveryControl#trigger()}. The default implementation
+	 * calls {@link #run()}; commands that only discover the addresses that have come due on each scheduled run
+	 * discover all of them instead.
+	 */
+	default void runNow() {
+		run();
+	}
+
+	/**
+	 * Resets the update predicate of an address.
+	 *
+	 * @param key the key of the address, or {@code null} to reset every predicate
+	 * @return {@code true} if a predicate was reset, or {@code false} if {@code key} is unknown
+	 * @see DiscoveryControl#reset(String)
+	 */
+	boolean reset(String key);
+
+	/**
+	 * Returns the state of each address discovered by this command.
+	 *
+	 * @return a map of address keys to their states
+	 */
+	Map<String, DiscoveryStatus.AddressStatus> getAddressStatus();
+}
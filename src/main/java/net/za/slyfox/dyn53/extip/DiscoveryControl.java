@@ -0,0 +1,51 @@
+/*
+ * Copyright 2015 Philip Cronje
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package net.za.slyfox.dyn53.extip;
+
+/**
+ * Interface for controlling and inspecting external IP discovery while the application is running.
+ */
+public interface DiscoveryControl {
+	/**
+	 * The key of the address when a single external IP address is discovered, rather than one per uplink or record.
+	 */
+	String SINGLE_ADDRESS = "";
+
+	/**
+	 * Runs a discovery and update cycle immediately, without waiting for the next scheduled cycle. The scheduled
+	 * cycles are unaffected.
+	 *
+	 * @return {@code true} if a cycle was started, or {@code false} if discovery is not running, such as on a standby
+	 *         instance
+	 */
+	boolean trigger();
+
+	/**
+	 * Resets the update predicate of an address, so that the next cycle updates its resource record sets even if the
+	 * address has not changed.
+	 *
+	 * @param key the key of the address whose predicate to reset, which is the name of an uplink when uplinks are
+	 *            configured, the key of a record when records are checked at their own intervals, and
+	 *            {@link #SINGLE_ADDRESS} otherwise; or {@code null} to reset every predicate
+	 * @return {@code true} if a predicate was reset, or {@code false} if discovery is not running or {@code key} is
+	 *         unknown
+	 */
+	boolean reset(String key);
+
+	/**
+	 * Returns a snapshot of the state of discovery.
+	 *
+	 * @return the discovery status
+	 */
+	DiscoveryStatus getStatus();
+}
@@ -0,0 +1,142 @@
+/*
+ * Copyright 2015 Philip Cronje
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package net.za.slyfox.dyn53.extip;
+
+import java.net.InetAddress;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A snapshot of the state of external IP discovery, as returned by {@link DiscoveryControl#getStatus()}.
+ */
+public final class DiscoveryStatus {
+	private final Map<String, AddressStatus> addresses;
+	private final long lastRunDuration;
+	private final long lastRunStart;
+	private final long nextRunDelay;
+	private final boolean running;
+
+	/**
+	 * Initializes the snapshot.
+	 *
+	 * @param running whether discovery is running
+	 * @param lastRunStart the start of the last discovery cycle, in milliseconds since the epoch, or 0
+	 * @param lastRunDuration the duration of the last discovery cycle, in milliseconds, or -1
+	 * @param nextRunDelay the time until the next scheduled discovery cycle, in milliseconds, or -1
+	 * @param addresses the state of each discovered address
+	 */
+	public DiscoveryStatus(boolean running, long lastRunStart, long lastRunDuration, long nextRunDelay,
+			Map<String, AddressStatus> addresses) {
+		this.addresses = Collections.unmodifiableMap(new LinkedHashMap<>(addresses));
+		this.lastRunDuration = lastRunDuration;
+		this.lastRunStart = lastRunStart;
+		this.nextRunDelay = nextRunDelay;
+		this.running = running;
+	}
+
+	/**
+	 * Returns the state of each discovered address.
+	 *
+	 * @return a map of uplink names, or an empty string for the single external IP address, to address states
+	 */
+	public Map<String, AddressStatus> getAddresses() {
+		return addresses;
+	}
+
+	/**
+	 * @return the duration of the last discovery cycle, in milliseconds, or -1 if no cycle has completed
+	 */
+	public long getLastRunDuration() {
+		return lastRunDuration;
+	}
+
+	/**
+	 * @return the time at which the last discovery cycle started, in milliseconds since the epoch, or 0 if no cycle
+	 *         has started
+	 */
+	public long getLastRunStart() {
+		return lastRunStart;
+	}
+
+	/**
+	 * @return the time until the next scheduled discovery cycle, in milliseconds, or -1 if none is scheduled
+	 */
+	public long getNextRunDelay() {
+		return nextRunDelay;
+	}
+
+	/**
+	 * @return {@code true} if discovery is running on this instance
+	 */
+	public boolean isRunning() {
+		return running;
+	}
+
+	/**
+	 * The state of a single discovered address.
+	 */
+	public static final class AddressStatus {
+		/**
+		 * Describes the result of the last discovery of an address.
+		 */
+		public enum Outcome {
+			/** The address changed, and was passed on to be published. */
+			UPDATED,
+			/** The address has not changed since it was last published. */
+			UNCHANGED,
+			/** The address could not be discovered. */
+			DISCOVERY_FAILED,
+			/** The address changed, but could not be passed on to be published. */
+			UPDATE_FAILED
+		}
+
+		private final InetAddress address;
+		private final long lastChecked;
+		private final Outcome outcome;
+
+		/**
+		 * Initializes the address state.
+		 *
+		 * @param address the last address discovered, or {@code null}
+		 * @param lastChecked the time of the last discovery attempt, in milliseconds since the epoch
+		 * @param outcome the outcome of the last discovery attempt
+		 */
+		public AddressStatus(InetAddress address, long lastChecked, Outcome outcome) {
+			this.address = address;
+			this.lastChecked = lastChecked;
+			this.outcome = outcome;
+		}
+
+		/**
+		 * @return the last address discovered, or {@code null} if none has been
+		 */
+		public InetAddress getAddress() {
+			return address;
+		}
+
+		/**
+		 * @return the time of the last discovery attempt, in milliseconds since the epoch
+		 */
+		public long getLastChecked() {
+			return lastChecked;
+		}
+
+		/**
+		 * @return the outcome of the last discovery attempt
+		 */
+		public Outcome getOutcome() {
+			return outcome;
+		}
+	}
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright 2015 Philip Cronje
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package net.za.slyfox.dyn53.extip;
+
+import net.za.slyfox.dyn53.bean.Lifecycle;
+import net.za.slyfox.dyn53.concurrent.NamedPoolThreadFactory;
+import net.za.slyfox.dyn53.extip.DiscoveryStatus.AddressStatus.Outcome;
+
+import java.net.InetAddress;
+import java.util.Objects;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+
+/**
+ * Assembles external IP discovery without dependency injection, for launchers that avoid the start-up cost of Guice.
+ * The objects created are the same as those bound by {@link ExternalIpModule} for a single external IP address.
+ */
+public final class ExternalIpDiscovery {
+	private ExternalIpDiscovery() {
+	}
+
+	/**
+	 * Creates a lifecycle that discovers the external IP address on a schedule, starting immediately.
+	 *
+	 * @param consumer the consumer that will process discovered addresses that pass the update predicate
+	 * @param alwaysUpdate if {@code true}, every discovered address is passed on; otherwise, only changed addresses are
+	 * @param delay the delay between discovery tasks, in seconds
+	 * @return the discovery lifecycle, which also implements {@link DiscoveryControl}
+	 * @throws NullPointerException if {@code consumer} is {@code null}
+	 */
+	public static Lifecycle newLifecycle(Consumer<InetAddress> consumer, boolean alwaysUpdate, long delay) {
+		Objects.requireNonNull(consumer);
+		final ExternalIpProvider externalIpProvider = new IpifyProvider();
+		return new ExternalIpDiscoveryLifecycle(0, delay,
+				() -> new ExternalIpDiscoveryCommand(() -> consumer,
+						alwaysUpdate ? new UnconditionalUpdatePredicate() : new StatefulUpdatePredicate(),
+						externalIpProvider),
+				() -> Executors.newSingleThreadScheduledExecutor(new NamedPoolThreadFactory("externalIpDiscovery")));
+	}
+
+	/**
+	 * Discovers the external IP address once, on the calling thread, and passes it to a consumer regardless of
+	 * whether it has changed, since no previous address is known to compare it to.
+	 *
+	 * @param consumer the consumer that will process the discovered address
+	 * @return the outcome of the discovery
+	 * @throws NullPointerException if {@code consumer} is {@code null}
+	 */
+	public static Outcome runOnce(Consumer<InetAddress> consumer) {
+		Objects.requireNonNull(consumer);
+		final DiscoveryCommand command = new ExternalIpDiscoveryCommand(() -> consumer,
+				new UnconditionalUpdatePredicate(), new IpifyProvider());
+		command.run();
+		return command.getAddressStatus().get(DiscoveryControl.SINGLE_ADDRESS).getOutcome();
+	}
+}
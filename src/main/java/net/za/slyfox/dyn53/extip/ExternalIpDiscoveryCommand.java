@@ -12,75 +12,131 @@
  */
 package net.za.slyfox.dyn53.extip;
 
+import net.za.slyfox.dyn53.extip.DiscoveryStatus.AddressStatus;
+import net.za.slyfox.dyn53.extip.DiscoveryStatus.AddressStatus.Outcome;
+import net.za.slyfox.dyn53.jfr.DiscoveryEvent;
+import net.za.slyfox.dyn53.logging.LogMarkers;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.inject.Inject;
+import javax.inject.Named;
 import javax.inject.Provider;
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStreamReader;
 import java.net.InetAddress;
-import java.net.URI;
-import java.net.URLConnection;
+import java.util.Collections;
+import java.util.Map;
 import java.util.Objects;
 import java.util.function.Consumer;
 
 /**
  * Implements the task logic to obtain the external IP address of the network the application is running in.
  */
-final class ExternalIpDiscoveryCommand implements Runnable {
+final class ExternalIpDiscoveryCommand implements DiscoveryCommand {
 	private final Provider<Consumer<InetAddress>> consumerProvider;
+	private final ExternalIpProvider externalIpProvider;
 	private final Logger logger = LoggerFactory.getLogger(getClass());
 	private final InetAddressPredicate updatePredicate;
 
+	private volatile AddressStatus status;
+
 	/**
 	 * Injects dependencies into the instance.
 	 *
 	 * @param consumerProvider a provider used to obtain a {@link Consumer} that will process the discovered IP address
 	 * @param updatePredicate a predicate used to evaluate whether the command will invoke the consumer or not
-	 * @throws NullPointerException if {@code consumerProvider} is {@code null}
+	 * @param externalIpProvider the service used to discover the external IP address
+	 * @throws NullPointerException if a required dependency is {@code null}
 	 */
 	@Inject
-	ExternalIpDiscoveryCommand(Provider<Consumer<InetAddress>> consumerProvider, InetAddressPredicate updatePredicate) {
+	ExternalIpDiscoveryCommand(@Named("discovered") Provider<Consumer<InetAddress>> consumerProvider,
+			InetAddressPredicate updatePredicate, ExternalIpProvider externalIpProvider) {
 		this.consumerProvider = Objects.requireNonNull(consumerProvider);
+		this.externalIpProvider = Objects.requireNonNull(externalIpProvider);
 		this.updatePredicate = Objects.requireNonNull(updatePredicate);
 	}
 
 	/**
-	 * Requests the external IP from the ipify web service, and passes it on to the {@link Consumer} obtained from the
-	 * {@link Provider} this object was initialized with.
+	 * Requests the external IP from the {@link ExternalIpProvider}, and passes it on to the {@link Consumer} obtained
+	 * from the {@link Provider} this object was initialized with. Each run is recorded as a {@link DiscoveryEvent}.
 	 */
 	@Override
 	public void run() {
+		final DiscoveryEvent event = new DiscoveryEvent();
+		event.begin();
 		try {
-			logger.info("Requesting external IP from https://api.ipify.org/");
-			final InetAddress address;
-			try {
-				URLConnection connection = URI.create("https://api.ipify.org").toURL().openConnection();
-
-				final String ip;
-				try(BufferedReader reader = new BufferedReader(new InputStreamReader(connection.getInputStream()))) {
-					ip = reader.readLine();
-				}
+			discoverAndUpdate();
+		} catch(Error e) {
+			logger.error("JVM encountered error while executing command, aborting application execution", e);
+			System.exit(1);
+		}
 
-				address = InetAddress.getByName(ip);
-			} catch(IOException e) {
-				logger.warn("Failed to retrieve external IP from remote service", e);
-				return;
-			} catch(RuntimeException e) {
-				logger.error("Failed to retrieve external IP from remote service", e);
-				return;
+		final AddressStatus current = status;
+		if(current != null && event.shouldCommit()) {
+			if(current.getOutcome() != Outcome.DISCOVERY_FAILED) {
+				event.address = current.getAddress().getHostAddress();
 			}
+			event.outcome = current.getOutcome().name();
+			event.commit();
+		}
+	}
 
-			try {
-				if(updatePredicate.test(address)) consumerProvider.get().accept(address);
-			} catch(RuntimeException e) {
-				logger.error("Failed to process external IP ({}) received from remote service", address, e);
+	/**
+	 * Discovers the external IP address, and passes it on to the consumer if the update predicate passes, recording
+	 * the outcome in the discovery status.
+	 */
+	private void discoverAndUpdate() {
+		logger.info(LogMarkers.SAMPLED, "Requesting external IP from remote service");
+		final InetAddress address;
+		try {
+			address = externalIpProvider.discover(null);
+		} catch(IOException e) {
+			logger.warn("Failed to retrieve external IP from remote service", e);
+			setStatus(null, Outcome.DISCOVERY_FAILED);
+			return;
+		} catch(RuntimeException e) {
+			logger.error("Failed to retrieve external IP from remote service", e);
+			setStatus(null, Outcome.DISCOVERY_FAILED);
+			return;
+		}
+
+		try {
+			if(updatePredicate.test(address)) {
+				consumerProvider.get().accept(address);
+				setStatus(address, Outcome.UPDATED);
+			} else {
+				setStatus(address, Outcome.UNCHANGED);
 			}
-		} catch(Error e) {
-			logger.error("JVM encountered error while executing command, aborting application execution", e);
-			System.exit(1);
+		} catch(RuntimeException e) {
+			logger.error("Failed to process external IP ({}) received from remote service", address, e);
+			setStatus(address, Outcome.UPDATE_FAILED);
 		}
 	}
+
+	@Override
+	public boolean reset(String key) {
+		if(key != null && !key.equals(DiscoveryControl.SINGLE_ADDRESS)) return false;
+		logger.info("Resetting update predicate of external IP");
+		updatePredicate.reset();
+		return true;
+	}
+
+	@Override
+	public Map<String, AddressStatus> getAddressStatus() {
+		final AddressStatus current = status;
+		return (current == null) ? Collections.emptyMap()
+				: Collections.singletonMap(DiscoveryControl.SINGLE_ADDRESS, current);
+	}
+
+	/**
+	 * Records the outcome of a discovery attempt. A failed discovery retains the previously discovered address.
+	 *
+	 * @param address the discovered address, or {@code null} if discovery failed
+	 * @param outcome the outcome of the attempt
+	 */
+	private void setStatus(InetAddress address, Outcome outcome) {
+		final AddressStatus previous = status;
+		status = new AddressStatus((address == null && previous != null) ? previous.getAddress() : address,
+				System.currentTimeMillis(), outcome);
+	}
 }
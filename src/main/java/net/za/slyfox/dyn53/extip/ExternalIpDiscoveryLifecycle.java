@@ -19,60 +19,101 @@ import org.slf4j.LoggerFactory;
 import javax.inject.Inject;
 import javax.inject.Named;
 import javax.inject.Provider;
+import javax.inject.Singleton;
+import java.util.Collections;
 import java.util.Objects;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 
 /**
  * Implements a {@link Lifecycle} object that manages a scheduled task to discover the external IP of the network the
- * application is running in.
+ * application is running in. The task can also be run on demand, and inspected, through {@link DiscoveryControl}.
  */
-final class ExternalIpDiscoveryLifecycle implements Lifecycle {
-	private final Provider<Runnable> commandProvider;
+@Singleton
+final class ExternalIpDiscoveryLifecycle implements Lifecycle, DiscoveryControl {
+	private static final long STOP_TIMEOUT = TimeUnit.MINUTES.toNanos(1);
+
+	private final Provider<DiscoveryCommand> commandProvider;
 	private final long delay;
-	private final ScheduledExecutorService executorService;
+	private final Provider<ScheduledExecutorService> executorServiceProvider;
 	private final long initialDelay;
 	private final Logger logger = LoggerFactory.getLogger(getClass());
 
+	private DiscoveryCommand command;
+	private ScheduledExecutorService executorService;
+	private volatile long lastRunDuration = -1;
+	private volatile long lastRunStart;
+	private ScheduledFuture<?> scheduledRun;
+
 	/**
 	 * Initializes the {@code ExternalIpDiscoveryLifecycle} with configuration variables and dependencies.
 	 *
 	 * @param initialDelay the delay before the initial scheduled task should begin executing
 	 * @param delay the delay between scheduled tasks, measured from the end of the previous task
 	 * @param commandProvider a {@code Provider} that will supply the tasks to execute
-	 * @param executorService the scheduled executor service that will schedule and execute tasks
+	 * @param executorServiceProvider a {@code Provider} that will supply a new scheduled executor service that will
+	 *                                schedule and execute tasks each time the lifecycle is started
 	 * @throws NullPointerException if a required dependency is {@code null}
 	 */
 	@Inject
 	ExternalIpDiscoveryLifecycle(@Named("initialDelay") long initialDelay, @Named("delay") long delay,
-			Provider<Runnable> commandProvider, ScheduledExecutorService executorService) {
+			Provider<DiscoveryCommand> commandProvider, Provider<ScheduledExecutorService> executorServiceProvider) {
 		this.commandProvider = Objects.requireNonNull(commandProvider);
 		this.delay = delay;
-		this.executorService = Objects.requireNonNull(executorService);
+		this.executorServiceProvider = Objects.requireNonNull(executorServiceProvider);
 		this.initialDelay = initialDelay;
 	}
 
 	/**
-	 * Schedules the external IP discovery task.
+	 * Schedules the external IP discovery task. The lifecycle may be started again after it has been stopped, in
+	 * which case discovery starts over with a new task and executor service.
 	 */
 	@Override
-	public void start() {
+	public synchronized void start() {
 		logger.info("Scheduling external IP discovery to execute every {} seconds, after initial delay of {} seconds",
 				delay, initialDelay);
-		executorService.scheduleWithFixedDelay(commandProvider.get(), initialDelay, delay, TimeUnit.SECONDS);
+		executorService = executorServiceProvider.get();
+		command = commandProvider.get();
+		final DiscoveryCommand scheduledCommand = command;
+		scheduledRun = executorService.scheduleWithFixedDelay(() -> run(scheduledCommand), initialDelay, delay,
+				TimeUnit.SECONDS);
 	}
 
 	/**
-	 * Gracefully shuts down the scheduled executor service. If, after one minute, the executor service has not shut
-	 * down, this method will return, but may result in dangling threads/tasks.
+	 * Gracefully shuts down the scheduled executor service, waiting up to one minute for a run in progress.
+	 *
+	 * @see #stop(long)
 	 */
 	@Override
 	public void stop() {
-		logger.info("Shutting down external IP discovery scheduler");
-		executorService.shutdownNow();
+		stop(System.nanoTime() + STOP_TIMEOUT);
+	}
+
+	/**
+	 * Gracefully shuts down the scheduled executor service. Future runs are cancelled, but a run in progress is not
+	 * interrupted, so that an update it is making to Route 53 completes. If the executor service has not shut down by
+	 * the deadline, this method will return, but may result in dangling threads/tasks. The wait happens outside the
+	 * lifecycle's lock, so that discovery can still be inspected while it completes.
+	 *
+	 * @param deadline the time by which to return, as a value of {@link System#nanoTime()}
+	 */
+	@Override
+	public void stop(long deadline) {
+		final ScheduledExecutorService stoppingExecutorService;
+		synchronized(this) {
+			if(executorService == null) return;
+			logger.info("Shutting down external IP discovery scheduler");
+			stoppingExecutorService = executorService;
+			stoppingExecutorService.shutdown();
+			command = null;
+			executorService = null;
+			scheduledRun = null;
+		}
+
 		logger.info("Waiting for termination of scheduled task");
 		try {
-			if(!executorService.awaitTermination(1, TimeUnit.MINUTES)) {
+			if(!stoppingExecutorService.awaitTermination(deadline - System.nanoTime(), TimeUnit.NANOSECONDS)) {
 				logger.warn("Scheduled task is still running, stopping anyway");
 			} else {
 				logger.info("Shutdown of external IP discovery schedule complete");
@@ -81,4 +122,40 @@ final class ExternalIpDiscoveryLifecycle implements Lifecycle {
 			logger.debug("Interrupted while waiting for termination of scheduled task");
 		}
 	}
+
+	@Override
+	public synchronized boolean trigger() {
+		if(executorService == null) return false;
+		logger.info("Triggering immediate external IP discovery");
+		final DiscoveryCommand triggeredCommand = command;
+		executorService.execute(() -> run(triggeredCommand::runNow));
+		return true;
+	}
+
+	@Override
+	public synchronized boolean reset(String key) {
+		return command != null && command.reset(key);
+	}
+
+	@Override
+	public synchronized DiscoveryStatus getStatus() {
+		return new DiscoveryStatus(executorService != null, lastRunStart, lastRunDuration,
+				(scheduledRun == null) ? -1 : Math.max(0, scheduledRun.getDelay(TimeUnit.MILLISECONDS)),
+				(command == null) ? Collections.emptyMap() : command.getAddressStatus());
+	}
+
+	/**
+	 * Runs a discovery command, recording its timing.
+	 *
+	 * @param discoveryCommand the command to run
+	 */
+	private void run(Runnable discoveryCommand) {
+		lastRunStart = System.currentTimeMillis();
+		final long start = System.nanoTime();
+		try {
+			discoveryCommand.run();
+		} finally {
+			lastRunDuration = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+		}
+	}
 }
@@ -13,25 +13,162 @@
 package net.za.slyfox.dyn53.extip;
 
 import com.google.inject.AbstractModule;
+import com.google.inject.Provides;
+import com.google.inject.TypeLiteral;
 import com.google.inject.multibindings.Multibinder;
 import com.google.inject.name.Names;
 import net.za.slyfox.dyn53.bean.Lifecycle;
 import net.za.slyfox.dyn53.concurrent.NamedPoolThreadFactory;
 
+import javax.inject.Singleton;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
 public final class ExternalIpModule extends AbstractModule {
+	private static final int FAILURE_THRESHOLD = 3;
+	private static final long INITIAL_COOLDOWN = TimeUnit.SECONDS.toNanos(60);
+	private static final long MAX_COOLDOWN = TimeUnit.MINUTES.toNanos(30);
+	private static final int STUN_MAX_TRANSMISSIONS = 4;
+	private static final long STUN_RETRANSMISSION_TIMEOUT = 500;
+
+	private final long cacheTtl;
+	private final boolean leaderElected;
+	private final List<String> providerHosts;
+	private final long tick;
+	private final Map<String, String> uplinkInterfaces;
+
+	public ExternalIpModule() {
+		this(Collections.emptyMap(), false);
+	}
+
+	/**
+	 * Initializes the module.
+	 *
+	 * @param uplinkInterfaces a map of uplink names to network interface names, or an empty map to discover a single
+	 *                         external IP address
+	 * @param leaderElected if {@code true}, the discovery lifecycle is bound as the {@code "leaderLifecycle"} to be
+	 *                      started and stopped by leader election, rather than being started with the application
+	 */
+	public ExternalIpModule(Map<String, String> uplinkInterfaces, boolean leaderElected) {
+		this(uplinkInterfaces, leaderElected, Collections.singletonList(IpifyProvider.DEFAULT_HOST), 0);
+	}
+
+	/**
+	 * Initializes the module with the web services to discover the external IP address from. Each discovery is
+	 * routed to the healthiest service, and services that fail repeatedly are skipped for a cool-down period.
+	 *
+	 * @param uplinkInterfaces a map of uplink names to network interface names, or an empty map to discover a single
+	 *                         external IP address
+	 * @param leaderElected if {@code true}, the discovery lifecycle is bound as the {@code "leaderLifecycle"} to be
+	 *                      started and stopped by leader election, rather than being started with the application
+	 * @param providerHosts the host names of the web services, in order of preference. Entries of the form
+	 *                      {@code stun:host[:port]} name STUN servers instead, which are queried together.
+	 * @param cacheTtl the time a discovered address is reused without making another request, in milliseconds
+	 * @throws IllegalArgumentException if {@code providerHosts} is empty, or contains an invalid STUN server
+	 * @throws NullPointerException if a parameter is {@code null}
+	 */
+	public ExternalIpModule(Map<String, String> uplinkInterfaces, boolean leaderElected, List<String> providerHosts,
+			long cacheTtl) {
+		this(uplinkInterfaces, leaderElected, providerHosts, cacheTtl, 0);
+	}
+
+	/**
+	 * Initializes the module, optionally checking each record at its own interval. The intervals are bound as the
+	 * {@code "checkIntervals"} map of record keys, and the records that come due are published through the
+	 * {@code "scheduledPublish"} {@code BiConsumer}, both of which must be bound by another module.
+	 *
+	 * @param uplinkInterfaces a map of uplink names to network interface names, or an empty map to discover a single
+	 *                         external IP address
+	 * @param leaderElected if {@code true}, the discovery lifecycle is bound as the {@code "leaderLifecycle"} to be
+	 *                      started and stopped by leader election, rather than being started with the application
+	 * @param providerHosts the host names of the web services, in order of preference. Entries of the form
+	 *                      {@code stun:host[:port]} name STUN servers instead, which are queried together.
+	 * @param cacheTtl the time a discovered address is reused without making another request, in milliseconds
+	 * @param tick the resolution of the per-record schedules in seconds, which should divide every check interval, or
+	 *             zero to discover addresses for every record on a single schedule
+	 * @throws IllegalArgumentException if {@code providerHosts} is empty or contains an invalid STUN server, or if
+	 *                                  {@code tick} is positive and uplinks are configured
+	 * @throws NullPointerException if a parameter is {@code null}
+	 */
+	public ExternalIpModule(Map<String, String> uplinkInterfaces, boolean leaderElected, List<String> providerHosts,
+			long cacheTtl, long tick) {
+		this.cacheTtl = cacheTtl;
+		this.tick = tick;
+		this.leaderElected = leaderElected;
+		this.providerHosts = new ArrayList<>(providerHosts);
+		this.uplinkInterfaces = new LinkedHashMap<>(Objects.requireNonNull(uplinkInterfaces));
+		if(this.providerHosts.isEmpty()) throw new IllegalArgumentException("At least one provider is required");
+		this.providerHosts.stream().filter(host -> host.startsWith(StunProvider.SCHEME))
+				.forEach(StunProvider::parseServer);
+		if(tick > 0 && !this.uplinkInterfaces.isEmpty()) {
+			throw new IllegalArgumentException("Per-record schedules cannot be combined with uplinks");
+		}
+	}
+
 	@Override
 	protected void configure() {
-		Multibinder.newSetBinder(binder(), Lifecycle.class).addBinding().to(ExternalIpDiscoveryLifecycle.class);
+		if(leaderElected) {
+			bind(Lifecycle.class).annotatedWith(Names.named("leaderLifecycle")).to(ExternalIpDiscoveryLifecycle.class);
+		} else {
+			Multibinder.newSetBinder(binder(), Lifecycle.class).addBinding().to(ExternalIpDiscoveryLifecycle.class);
+		}
 
-		bind(Runnable.class).to(ExternalIpDiscoveryCommand.class);
+		if(tick > 0) {
+			bind(DiscoveryCommand.class).to(ScheduledDiscoveryCommand.class);
+		} else if(uplinkInterfaces.isEmpty()) {
+			bind(DiscoveryCommand.class).to(ExternalIpDiscoveryCommand.class);
+		} else {
+			bind(DiscoveryCommand.class).to(UplinkDiscoveryCommand.class);
+			bind(new TypeLiteral<Map<String, String>>(){}).annotatedWith(Names.named("uplinkInterfaces"))
+					.toInstance(uplinkInterfaces);
+			bind(new TypeLiteral<Consumer<Map<String, InetAddress>>>(){}).annotatedWith(Names.named("discovered"))
+					.to(new TypeLiteral<Consumer<Map<String, InetAddress>>>(){});
+		}
+		bind(DiscoveryControl.class).to(ExternalIpDiscoveryLifecycle.class);
+
+		bind(new TypeLiteral<Consumer<InetAddress>>(){}).annotatedWith(Names.named("discovered"))
+				.to(new TypeLiteral<Consumer<InetAddress>>(){});
 
-		bind(ScheduledExecutorService.class)
-				.toInstance(Executors.newSingleThreadScheduledExecutor(
-						new NamedPoolThreadFactory("externalIpDiscovery")));
 		bind(Long.class).annotatedWith(Names.named("initialDelay")).toInstance(0L);
-		bind(Long.class).annotatedWith(Names.named("delay")).toInstance(300L);
+		bind(Long.class).annotatedWith(Names.named("delay")).toInstance((tick > 0) ? tick : 300L);
+	}
+
+	@Provides
+	@Singleton
+	ExternalIpProvider externalIpProvider() {
+		final Map<String, ExternalIpProvider> providers = new LinkedHashMap<>();
+		final List<InetSocketAddress> stunServers = new ArrayList<>();
+		for(String host : providerHosts) {
+			if(!host.startsWith(StunProvider.SCHEME)) {
+				providers.put(host, new IpifyProvider(host));
+				continue;
+			}
+
+			// All STUN servers are queried together, in the position of the first
+			if(stunServers.isEmpty()) providers.put(StunProvider.SCHEME, null);
+			stunServers.add(StunProvider.parseServer(host));
+		}
+		if(!stunServers.isEmpty()) {
+			final StunProvider stunProvider = new StunProvider(stunServers, STUN_RETRANSMISSION_TIMEOUT,
+					STUN_MAX_TRANSMISSIONS);
+			providers.replace(StunProvider.SCHEME, stunProvider);
+		}
+		return new HealthScoringProvider(providers, TimeUnit.MILLISECONDS.toNanos(cacheTtl), FAILURE_THRESHOLD,
+				INITIAL_COOLDOWN, MAX_COOLDOWN, System::nanoTime);
+	}
+
+	@Provides
+	ScheduledExecutorService externalIpDiscoveryExecutorService() {
+		return Executors.newSingleThreadScheduledExecutor(new NamedPoolThreadFactory("externalIpDiscovery"));
 	}
 }
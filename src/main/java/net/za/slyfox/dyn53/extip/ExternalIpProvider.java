@@ -0,0 +1,32 @@
+/*
+ * Copyright 2015 Philip Cronje
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package net.za.slyfox.dyn53.extip;
+
+import java.io.IOException;
+import java.net.InetAddress;
+
+/**
+ * Interface for services that discover the external IP address of the network the application is running in.
+ */
+interface ExternalIpProvider {
+	/**
+	 * Discovers the external IP address, optionally binding the outgoing request to a specific local address so that
+	 * the request leaves the host through a particular network interface.
+	 *
+	 * @param localAddress the local address to bind the request to, or {@code null} to let the operating system
+	 *                     select one
+	 * @return the discovered external IP address
+	 * @throws IOException if the request to the remote service fails
+	 */
+	InetAddress discover(InetAddress localAddress) throws IOException;
+}
@@ -0,0 +1,222 @@
+/*
+ * Copyright 2015 Philip Cronje
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package net.za.slyfox.dyn53.extip;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Implements an {@link ExternalIpProvider} that routes each discovery to the healthiest of several providers, and
+ * caches the last good result for a short time.
+ *
+ * <p>Providers are tried in order of their {@link ProviderHealth#getScore() score}, skipping those whose circuit
+ * breaker is open, until one of them returns an address. A degraded provider therefore costs its timeout only until
+ * its breaker opens, rather than on every discovery.</p>
+ *
+ * <p>Health and cached results are kept separately for each local address discovery is bound to, since the failure
+ * of one uplink says nothing about the providers' health when reached through another. Concurrent discoveries for the
+ * same local address share a single request.</p>
+ */
+final class HealthScoringProvider implements ExternalIpProvider {
+	private final Map<Optional<InetAddress>, CachedAddress> cache = new ConcurrentHashMap<>();
+	private final long cacheTtl;
+	private final LongSupplier clock;
+	private final int failureThreshold;
+	private final Map<Optional<InetAddress>, CompletableFuture<InetAddress>> inFlight = new ConcurrentHashMap<>();
+	private final long initialCooldown;
+	private final Logger logger = LoggerFactory.getLogger(getClass());
+	private final long maxCooldown;
+	private final Map<String, ExternalIpProvider> providers;
+	private final Map<Optional<InetAddress>, Map<String, ProviderHealth>> routes = new ConcurrentHashMap<>();
+
+	/**
+	 * Initializes the provider.
+	 *
+	 * @param providers a map of provider names to providers, in order of preference among providers of equal health
+	 * @param cacheTtl the time a discovered address is returned without making another request, in nanoseconds
+	 * @param failureThreshold the number of consecutive failures of a provider that opens its circuit breaker
+	 * @param initialCooldown the time a circuit breaker stays open after it first opens, in nanoseconds
+	 * @param maxCooldown the maximum time a circuit breaker stays open, in nanoseconds
+	 * @param clock a source of monotonic time, in nanoseconds
+	 * @throws IllegalArgumentException if {@code providers} is empty, or {@code failureThreshold} is not positive
+	 * @throws NullPointerException if a parameter is {@code null}
+	 */
+	HealthScoringProvider(Map<String, ExternalIpProvider> providers, long cacheTtl, int failureThreshold,
+			long initialCooldown, long maxCooldown, LongSupplier clock) {
+		if(providers.isEmpty()) throw new IllegalArgumentException("At least one provider is required");
+		if(failureThreshold < 1) throw new IllegalArgumentException("Failure threshold must be positive");
+		this.cacheTtl = cacheTtl;
+		this.clock = Objects.requireNonNull(clock);
+		this.failureThreshold = failureThreshold;
+		this.initialCooldown = initialCooldown;
+		this.maxCooldown = maxCooldown;
+		this.providers = new LinkedHashMap<>(providers);
+	}
+
+	/**
+	 * Returns the cached address if it is recent enough, and otherwise discovers the external IP address through the
+	 * healthiest available provider, waiting for a discovery already in progress if there is one.
+	 *
+	 * @param localAddress the local address to bind the request to, or {@code null} to let the operating system
+	 *                     select one
+	 * @return the discovered external IP address
+	 * @throws IOException if every available provider fails, or every provider's circuit breaker is open
+	 */
+	@Override
+	public InetAddress discover(InetAddress localAddress) throws IOException {
+		final Optional<InetAddress> route = Optional.ofNullable(localAddress);
+		final CachedAddress cached = cache.get(route);
+		if(cached != null && clock.getAsLong() - cached.discovered < cacheTtl) {
+			logger.debug("Using external IP {} discovered {} ms ago", cached.address.getHostAddress(),
+					TimeUnit.NANOSECONDS.toMillis(clock.getAsLong() - cached.discovered));
+			return cached.address;
+		}
+
+		final CompletableFuture<InetAddress> discovery = new CompletableFuture<>();
+		final CompletableFuture<InetAddress> existing = inFlight.putIfAbsent(route, discovery);
+		if(existing != null) return await(existing);
+
+		try {
+			final long start = clock.getAsLong();
+			final InetAddress address = discoverUncached(route);
+			cache.put(route, new CachedAddress(address, start));
+			discovery.complete(address);
+			return address;
+		} catch(IOException | RuntimeException e) {
+			discovery.completeExceptionally(e);
+			throw e;
+		} finally {
+			inFlight.remove(route, discovery);
+		}
+	}
+
+	/**
+	 * Returns the health of each provider when reached through a local address.
+	 *
+	 * @param localAddress the local address, or {@code null} for the address selected by the operating system
+	 * @return a map of provider names to their health, in order of preference
+	 */
+	Map<String, ProviderHealth> getHealth(InetAddress localAddress) {
+		return routes.computeIfAbsent(Optional.ofNullable(localAddress), key -> {
+			final Map<String, ProviderHealth> health = new LinkedHashMap<>();
+			providers.keySet().forEach(name -> health.put(name,
+					new ProviderHealth(failureThreshold, initialCooldown, maxCooldown, clock)));
+			return health;
+		});
+	}
+
+	/**
+	 * Tries each available provider in order of health until one of them returns an address.
+	 *
+	 * @param route the local address to bind requests to
+	 * @return the discovered external IP address
+	 * @throws IOException if no provider returned an address
+	 */
+	private InetAddress discoverUncached(Optional<InetAddress> route) throws IOException {
+		final Map<String, ProviderHealth> health = getHealth(route.orElse(null));
+		final List<Candidate> candidates = new ArrayList<>(health.size());
+		health.forEach((name, providerHealth) -> candidates.add(new Candidate(name, providerHealth)));
+		candidates.sort(Comparator.comparingDouble(candidate -> candidate.score));
+
+		IOException failure = null;
+		for(Candidate candidate : candidates) {
+			if(!candidate.health.tryAcquire()) {
+				logger.debug("Skipping external IP provider {} while its circuit breaker is open", candidate.name);
+				continue;
+			}
+
+			final long start = clock.getAsLong();
+			try {
+				final InetAddress address = providers.get(candidate.name).discover(route.orElse(null));
+				if(candidate.health.recordSuccess(clock.getAsLong() - start)) {
+					logger.info("Closed circuit breaker of external IP provider {}", candidate.name);
+				}
+				return address;
+			} catch(IOException | RuntimeException e) {
+				final long elapsed = clock.getAsLong() - start;
+				logger.warn("External IP provider {} failed after {} ms: {}", candidate.name,
+						TimeUnit.NANOSECONDS.toMillis(elapsed), e.toString());
+				if(candidate.health.recordFailure(elapsed)) {
+					logger.warn("Opened circuit breaker of external IP provider {}", candidate.name);
+				}
+				if(failure == null) failure = new IOException("All external IP providers failed");
+				failure.addSuppressed(e);
+			}
+		}
+		throw (failure != null) ? failure : new IOException("Circuit breakers of all external IP providers are open: "
+				+ Arrays.toString(health.keySet().toArray()));
+	}
+
+	/**
+	 * Waits for a discovery started by another thread.
+	 *
+	 * @param discovery the discovery in progress
+	 * @return the address discovered
+	 * @throws IOException if the discovery failed, or the thread was interrupted while waiting
+	 */
+	private static InetAddress await(CompletableFuture<InetAddress> discovery) throws IOException {
+		try {
+			return discovery.get();
+		} catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while waiting for external IP discovery");
+		} catch(ExecutionException e) {
+			if(e.getCause() instanceof IOException) throw (IOException)e.getCause();
+			if(e.getCause() instanceof RuntimeException) throw (RuntimeException)e.getCause();
+			throw new IOException(e.getCause());
+		}
+	}
+
+	/**
+	 * Captures the score of a provider at the start of a discovery, so that concurrent updates to its health do not
+	 * change the ordering while it is being sorted.
+	 */
+	private static final class Candidate {
+		final ProviderHealth health;
+		final String name;
+		final double score;
+
+		Candidate(String name, ProviderHealth health) {
+			this.health = health;
+			this.name = name;
+			this.score = health.getScore();
+		}
+	}
+
+	private static final class CachedAddress {
+		final InetAddress address;
+		final long discovered;
+
+		CachedAddress(InetAddress address, long discovered) {
+			this.address = address;
+			this.discovered = discovered;
+		}
+	}
+}
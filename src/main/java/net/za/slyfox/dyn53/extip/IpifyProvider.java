@@ -0,0 +1,211 @@
+/*
+ * Copyright 2015 Philip Cronje
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package net.za.slyfox.dyn53.extip;
+
+import net.za.slyfox.dyn53.jfr.ProviderRequestEvent;
+
+import javax.net.ssl.HttpsURLConnection;
+import javax.net.ssl.SSLParameters;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.SSLSocketFactory;
+import java.io.BufferedReader;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.Objects;
+
+/**
+ * Implements an {@link ExternalIpProvider} that requests the external IP address from the ipify web service, or from
+ * another web service that responds to {@code GET /} with the address in plain text, such as
+ * {@code checkip.amazonaws.com} or {@code icanhazip.com}.
+ *
+ * <p>Requests that are not bound to a local address are made through an {@link HttpsURLConnection}, which honours the
+ * proxy settings of the JVM. Requests that are bound to a local address, such as those made over a particular uplink,
+ * are made over a socket managed by this class instead, so that the socket can be bound before it is connected. Host
+ * name resolution, connection and the TLS handshake of such a request are performed as separate steps, so that the
+ * time spent on each can be recorded in the {@link ProviderRequestEvent} of the request.</p>
+ */
+final class IpifyProvider implements ExternalIpProvider {
+	static final String DEFAULT_HOST = "api.ipify.org";
+	private static final int PORT = 443;
+	private static final int TIMEOUT = 10000;
+
+	private final String host;
+
+	IpifyProvider() {
+		this(DEFAULT_HOST);
+	}
+
+	/**
+	 * Initializes the provider.
+	 *
+	 * @param host the host name of the web service
+	 * @throws NullPointerException if {@code host} is {@code null}
+	 */
+	IpifyProvider(String host) {
+		this.host = Objects.requireNonNull(host);
+	}
+
+	/**
+	 * Requests the external IP address from the root of the web service over HTTPS.
+	 *
+	 * @param localAddress the local address to bind the request to, or {@code null} to let the operating system
+	 *                     select one
+	 * @return the external IP address reported by the web service
+	 * @throws IOException if the request fails, or the response is not a successful HTTP response
+	 */
+	@Override
+	public InetAddress discover(InetAddress localAddress) throws IOException {
+		final ProviderRequestEvent event = new ProviderRequestEvent();
+		event.begin();
+		event.provider = host;
+		try {
+			final InetAddress address = discover(localAddress, event);
+			event.address = address.getHostAddress();
+			event.outcome = "SUCCESS";
+			return address;
+		} catch(IOException | RuntimeException e) {
+			event.outcome = "FAILED";
+			throw e;
+		} finally {
+			event.commit();
+		}
+	}
+
+	private InetAddress discover(InetAddress localAddress, ProviderRequestEvent event) throws IOException {
+		if(localAddress == null) return discover(event);
+
+		long phase = System.nanoTime();
+		final InetAddress hostAddress = InetAddress.getByName(host);
+		event.resolution = System.nanoTime() - phase;
+
+		try(Socket plainSocket = new Socket()) {
+			if(localAddress != null) plainSocket.bind(new InetSocketAddress(localAddress, 0));
+			phase = System.nanoTime();
+			plainSocket.connect(new InetSocketAddress(hostAddress, PORT), TIMEOUT);
+			event.connection = System.nanoTime() - phase;
+			plainSocket.setSoTimeout(TIMEOUT);
+
+			try(SSLSocket socket = (SSLSocket)((SSLSocketFactory)SSLSocketFactory.getDefault())
+					.createSocket(plainSocket, host, PORT, true)) {
+				final SSLParameters parameters = socket.getSSLParameters();
+				parameters.setEndpointIdentificationAlgorithm("HTTPS");
+				socket.setSSLParameters(parameters);
+				phase = System.nanoTime();
+				socket.startHandshake();
+				event.handshake = System.nanoTime() - phase;
+
+				final byte[] request = ("GET / HTTP/1.0\r\nHost: " + host + "\r\nUser-Agent: Dyn53\r\n\r\n")
+						.getBytes(StandardCharsets.US_ASCII);
+				final OutputStream output = socket.getOutputStream();
+				output.write(request);
+				output.flush();
+				event.bytesSent = request.length;
+
+				final CountingInputStream input = new CountingInputStream(socket.getInputStream());
+				try(BufferedReader reader = new BufferedReader(
+						new InputStreamReader(input, StandardCharsets.US_ASCII))) {
+					return InetAddress.getByName(readBody(reader));
+				} finally {
+					event.bytesReceived = input.count;
+				}
+			}
+		}
+	}
+
+	private InetAddress discover(ProviderRequestEvent event) throws IOException {
+		final HttpsURLConnection connection = (HttpsURLConnection)URI.create("https://" + host + "/").toURL()
+				.openConnection();
+		connection.setConnectTimeout(TIMEOUT);
+		connection.setReadTimeout(TIMEOUT);
+		connection.setRequestProperty("User-Agent", "Dyn53");
+		try {
+			final int status = connection.getResponseCode();
+			if(status < 200 || status > 299) throw new IOException("Unsuccessful response: " + status);
+
+			final CountingInputStream input = new CountingInputStream(connection.getInputStream());
+			try(BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.US_ASCII))) {
+				final String body = reader.readLine();
+				if(body == null || body.trim().isEmpty()) throw new IOException("Response body is empty");
+				return InetAddress.getByName(body.trim());
+			} finally {
+				event.bytesReceived = input.count;
+			}
+		} finally {
+			connection.disconnect();
+		}
+	}
+
+	@Override
+	public String toString() {
+		return host;
+	}
+
+	/**
+	 * Reads an HTTP/1.0 response, verifies that the status is successful, and returns the first line of the body.
+	 *
+	 * @param reader the reader positioned at the start of the response
+	 * @return the first line of the response body
+	 * @throws IOException if reading fails, or the response is malformed or unsuccessful
+	 */
+	static String readBody(BufferedReader reader) throws IOException {
+		final String statusLine = reader.readLine();
+		if(statusLine == null) throw new IOException("Empty response");
+		final String[] status = statusLine.split(" ", 3);
+		if(status.length < 2 || !status[0].startsWith("HTTP/") || !status[1].startsWith("2")) {
+			throw new IOException("Unsuccessful response: " + statusLine);
+		}
+
+		String line;
+		do {
+			line = reader.readLine();
+			if(line == null) throw new IOException("Response ended before body");
+		} while(!line.isEmpty());
+
+		final String body = reader.readLine();
+		if(body == null || body.trim().isEmpty()) throw new IOException("Response body is empty");
+		return body.trim();
+	}
+
+	/**
+	 * Counts the bytes read from a stream.
+	 */
+	private static final class CountingInputStream extends FilterInputStream {
+		long count;
+
+		CountingInputStream(InputStream in) {
+			super(in);
+		}
+
+		@Override
+		public int read() throws IOException {
+			final int b = super.read();
+			if(b >= 0) count++;
+			return b;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			final int read = super.read(b, off, len);
+			if(read > 0) count += read;
+			return read;
+		}
+	}
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright 2015 Philip Cronje
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package net.za.slyfox.dyn53.extip;
+
+import java.util.function.LongSupplier;
+
+/**
+ * Tracks the health of an external IP provider: exponentially weighted moving averages of the latency and error rate
+ * of its requests, and a circuit breaker that takes it out of rotation after consecutive failures.
+ *
+ * <p>The breaker opens after a number of consecutive failures, and stays open for a cool-down period. Once the
+ * cool-down has elapsed, a single trial request is allowed through; if it succeeds the breaker closes, otherwise it
+ * opens again with double the cool-down, up to a maximum.</p>
+ */
+final class ProviderHealth {
+	/**
+	 * The weight given to each new sample in the moving averages.
+	 */
+	private static final double ALPHA = 0.3;
+
+	private final LongSupplier clock;
+	private final int failureThreshold;
+	private final long initialCooldown;
+	private final long maxCooldown;
+
+	private int consecutiveFailures;
+	private long cooldown;
+	private double errorRate;
+	private double latency = Double.NaN;
+	private boolean open;
+	private long openUntil;
+	private boolean trialInProgress;
+
+	/**
+	 * Initializes the health of a provider that has not yet been used.
+	 *
+	 * @param failureThreshold the number of consecutive failures that opens the circuit breaker
+	 * @param initialCooldown the time the breaker stays open after it first opens, in nanoseconds
+	 * @param maxCooldown the maximum time the breaker stays open, in nanoseconds
+	 * @param clock a source of monotonic time, in nanoseconds
+	 * @throws IllegalArgumentException if {@code failureThreshold} is not positive
+	 */
+	ProviderHealth(int failureThreshold, long initialCooldown, long maxCooldown, LongSupplier clock) {
+		if(failureThreshold < 1) throw new IllegalArgumentException("Failure threshold must be positive");
+		this.clock = clock;
+		this.cooldown = initialCooldown;
+		this.failureThreshold = failureThreshold;
+		this.initialCooldown = initialCooldown;
+		this.maxCooldown = Math.max(initialCooldown, maxCooldown);
+	}
+
+	/**
+	 * Returns whether a request may be made to the provider. While the breaker is open, this is only the case for a
+	 * single trial request once the cool-down has elapsed.
+	 *
+	 * @return {@code true} if a request may be made, in which case its outcome must be recorded
+	 */
+	synchronized boolean tryAcquire() {
+		if(!open) return true;
+		if(trialInProgress || clock.getAsLong() - openUntil < 0) return false;
+		trialInProgress = true;
+		return true;
+	}
+
+	/**
+	 * Records a successful request, closing the breaker if it was open.
+	 *
+	 * @param elapsed the latency of the request, in nanoseconds
+	 * @return {@code true} if the breaker was closed by this request
+	 */
+	synchronized boolean recordSuccess(long elapsed) {
+		updateLatency(elapsed);
+		errorRate = (1 - ALPHA) * errorRate;
+		consecutiveFailures = 0;
+		cooldown = initialCooldown;
+		trialInProgress = false;
+		final boolean closed = open;
+		open = false;
+		return closed;
+	}
+
+	/**
+	 * Records a failed request. The latency of failures counts towards the latency average, so that a provider that
+	 * fails by timing out is ranked below one that fails quickly.
+	 *
+	 * @param elapsed the time until the request failed, in nanoseconds
+	 * @return {@code true} if the breaker was opened by this request
+	 */
+	synchronized boolean recordFailure(long elapsed) {
+		updateLatency(elapsed);
+		errorRate = ALPHA + (1 - ALPHA) * errorRate;
+		consecutiveFailures++;
+		if(open) {
+			cooldown = Math.min(maxCooldown, cooldown * 2);
+			openUntil = clock.getAsLong() + cooldown;
+			trialInProgress = false;
+			return false;
+		}
+		if(consecutiveFailures < failureThreshold) return false;
+		open = true;
+		openUntil = clock.getAsLong() + cooldown;
+		return true;
+	}
+
+	/**
+	 * Returns the expected time until the provider returns an address, treating each failure as a retry: the average
+	 * latency divided by the success rate. A provider that has not been used scores zero, so that it is tried before
+	 * providers that are known to be slower.
+	 *
+	 * @return the score of the provider, lower being healthier
+	 */
+	synchronized double getScore() {
+		if(Double.isNaN(latency)) return 0;
+		return latency / Math.max(0.01, 1 - errorRate);
+	}
+
+	synchronized boolean isOpen() {
+		return open;
+	}
+
+	private void updateLatency(long elapsed) {
+		latency = Double.isNaN(latency) ? elapsed : ALPHA * elapsed + (1 - ALPHA) * latency;
+	}
+
+	@Override
+	public synchronized String toString() {
+		return "ProviderHealth{latency=" + (long)latency / 1000000 + " ms, errorRate=" + errorRate + ", open=" + open
+				+ '}';
+	}
+}
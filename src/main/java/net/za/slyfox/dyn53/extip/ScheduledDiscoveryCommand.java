@@ -0,0 +1,274 @@
+/*
+ * Copyright 2015 Philip Cronje
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package net.za.slyfox.dyn53.extip;
+
+import net.za.slyfox.dyn53.extip.DiscoveryStatus.AddressStatus;
+import net.za.slyfox.dyn53.extip.DiscoveryStatus.AddressStatus.Outcome;
+import net.za.slyfox.dyn53.jfr.DiscoveryEvent;
+import net.za.slyfox.dyn53.logging.LogMarkers;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Provider;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.function.LongSupplier;
+
+/**
+ * Implements the task logic to keep each of many records fresh at its own check interval. The records are scheduled
+ * on a {@link TimingWheel}, which is advanced to the current tick each time the command runs. All records that come
+ * due on the same run share a single discovery of the external IP address, and those whose address has changed are
+ * passed to the consumer together, so that they can be published as a single batch.
+ *
+ * <p>The command is intended to be run at a fixed delay of one tick, so that a single timer thread serves every record
+ * regardless of their number. A run that starts late catches up on the ticks it missed.</p>
+ */
+final class ScheduledDiscoveryCommand implements DiscoveryCommand {
+	private static final int MAX_BUCKETS = 4096;
+
+	private final LongSupplier clock;
+	private final Provider<BiConsumer<InetAddress, Collection<String>>> consumerProvider;
+	private final Map<String, Long> checkTicks = new LinkedHashMap<>();
+	private final ExternalIpProvider externalIpProvider;
+	private final Logger logger = LoggerFactory.getLogger(getClass());
+	private final Map<String, AddressStatus> statuses = new ConcurrentHashMap<>();
+	private final long tick;
+	private final Map<String, InetAddressPredicate> updatePredicates = new LinkedHashMap<>();
+	private final TimingWheel<String> wheel;
+
+	private long start = -1;
+
+	/**
+	 * Injects dependencies into the instance.
+	 *
+	 * @param checkIntervals a map of record keys to the intervals at which to check the addresses of the records, in
+	 *                       seconds
+	 * @param tick the interval at which the command is run, in seconds
+	 * @param consumerProvider a provider used to obtain a {@link BiConsumer} that will publish a discovered address to
+	 *                         the records with the given keys
+	 * @param predicateProvider a provider used to obtain an independent update predicate for each record
+	 * @param externalIpProvider the service used to discover the external IP address
+	 * @throws IllegalArgumentException if {@code checkIntervals} is empty or contains an interval that is not
+	 *                                  positive, or {@code tick} is not positive
+	 * @throws NullPointerException if a required dependency is {@code null}
+	 */
+	@Inject
+	ScheduledDiscoveryCommand(@Named("checkIntervals") Map<String, Long> checkIntervals, @Named("delay") long tick,
+			@Named("scheduledPublish") Provider<BiConsumer<InetAddress, Collection<String>>> consumerProvider,
+			Provider<InetAddressPredicate> predicateProvider, ExternalIpProvider externalIpProvider) {
+		this(checkIntervals, tick, consumerProvider, predicateProvider, externalIpProvider, System::nanoTime);
+	}
+
+	/**
+	 * Initializes the command, scheduling each record on a timing wheel with enough buckets to hold the longest check
+	 * interval, up to a limit.
+	 *
+	 * @param checkIntervals a map of record keys to the intervals at which to check the addresses of the records, in
+	 *                       seconds
+	 * @param tick the interval at which the command is run, in seconds
+	 * @param consumerProvider a provider used to obtain a {@link BiConsumer} that will publish a discovered address to
+	 *                         the records with the given keys
+	 * @param predicateProvider a provider used to obtain an independent update predicate for each record
+	 * @param externalIpProvider the service used to discover the external IP address
+	 * @param clock a source of monotonic time, in nanoseconds
+	 * @throws IllegalArgumentException if {@code checkIntervals} is empty or contains an interval that is not
+	 *                                  positive, or {@code tick} is not positive
+	 * @throws NullPointerException if a required dependency is {@code null}
+	 */
+	ScheduledDiscoveryCommand(Map<String, Long> checkIntervals, long tick,
+			Provider<BiConsumer<InetAddress, Collection<String>>> consumerProvider,
+			Provider<InetAddressPredicate> predicateProvider, ExternalIpProvider externalIpProvider,
+			LongSupplier clock) {
+		if(checkIntervals.isEmpty()) throw new IllegalArgumentException("At least one record is required");
+		if(tick < 1) throw new IllegalArgumentException("Tick must be positive");
+		this.clock = Objects.requireNonNull(clock);
+		this.consumerProvider = Objects.requireNonNull(consumerProvider);
+		this.externalIpProvider = Objects.requireNonNull(externalIpProvider);
+		this.tick = TimeUnit.SECONDS.toNanos(tick);
+
+		long maxTicks = 1;
+		for(Map.Entry<String, Long> entry : checkIntervals.entrySet()) {
+			if(entry.getValue() < 1) throw new IllegalArgumentException("Invalid check interval: " + entry);
+			final long ticks = (entry.getValue() + tick - 1) / tick;
+			checkTicks.put(entry.getKey(), ticks);
+			updatePredicates.put(entry.getKey(), predicateProvider.get());
+			maxTicks = Math.max(maxTicks, ticks);
+		}
+		wheel = new TimingWheel<>((int)Math.min(MAX_BUCKETS, maxTicks));
+	}
+
+	/**
+	 * Advances the timing wheel to the current tick, and checks the addresses of the records that have come due. The
+	 * first run checks every record.
+	 */
+	@Override
+	public void run() {
+		try {
+			final List<String> due = new ArrayList<>();
+			final long now = clock.getAsLong();
+			if(start < 0) {
+				start = now;
+				due.addAll(checkTicks.keySet());
+			} else {
+				final long currentTick = (now - start) / tick;
+				while(wheel.getTick() < currentTick) wheel.advance(due);
+			}
+			due.forEach(key -> wheel.schedule(key, checkTicks.get(key)));
+
+			if(due.isEmpty()) {
+				logger.debug("No records are due for checking at tick {}", wheel.getTick());
+				return;
+			}
+			check(due);
+		} catch(Error e) {
+			logger.error("JVM encountered error while executing command, aborting application execution", e);
+			System.exit(1);
+		}
+	}
+
+	/**
+	 * Checks the address of every record immediately. Their schedules are unaffected.
+	 */
+	@Override
+	public void runNow() {
+		if(start < 0) {
+			run();
+			return;
+		}
+		try {
+			check(new ArrayList<>(checkTicks.keySet()));
+		} catch(Error e) {
+			logger.error("JVM encountered error while executing command, aborting application execution", e);
+			System.exit(1);
+		}
+	}
+
+	@Override
+	public boolean reset(String key) {
+		if(key == null) {
+			logger.info("Resetting update predicates of all records");
+			updatePredicates.values().forEach(InetAddressPredicate::reset);
+			return true;
+		}
+
+		final InetAddressPredicate predicate = updatePredicates.get(key);
+		if(predicate == null) return false;
+		logger.info("Resetting update predicate of record {}", key);
+		predicate.reset();
+		return true;
+	}
+
+	@Override
+	public Map<String, AddressStatus> getAddressStatus() {
+		final Map<String, AddressStatus> result = new LinkedHashMap<>();
+		checkTicks.keySet().forEach(key -> {
+			final AddressStatus status = statuses.get(key);
+			if(status != null) result.put(key, status);
+		});
+		return result;
+	}
+
+	/**
+	 * Discovers the external IP address once for a group of records, and passes it on to the consumer together with
+	 * the keys of the records whose update predicates pass, recording the cycle as a {@link DiscoveryEvent}.
+	 *
+	 * @param keys the keys of the records to check
+	 */
+	private void check(List<String> keys) {
+		final DiscoveryEvent event = new DiscoveryEvent();
+		event.begin();
+		final Outcome outcome = check(keys, event);
+		if(event.shouldCommit()) {
+			event.records = keys.size();
+			event.outcome = outcome.name();
+			event.commit();
+		}
+	}
+
+	/**
+	 * Discovers the external IP address once for a group of records, and passes it on to the consumer together with
+	 * the keys of the records whose update predicates pass.
+	 *
+	 * @param keys the keys of the records to check
+	 * @param event the event recording the cycle, which is given the discovered address
+	 * @return the outcome of the cycle, which is {@link Outcome#UNCHANGED} only if no record required updating
+	 */
+	private Outcome check(List<String> keys, DiscoveryEvent event) {
+		logger.info(LogMarkers.SAMPLED, "Requesting external IP from remote service for {} records", keys.size());
+		final InetAddress address;
+		try {
+			address = externalIpProvider.discover(null);
+		} catch(IOException e) {
+			logger.warn("Failed to retrieve external IP from remote service", e);
+			keys.forEach(key -> setStatus(key, null, Outcome.DISCOVERY_FAILED));
+			return Outcome.DISCOVERY_FAILED;
+		} catch(RuntimeException e) {
+			logger.error("Failed to retrieve external IP from remote service", e);
+			keys.forEach(key -> setStatus(key, null, Outcome.DISCOVERY_FAILED));
+			return Outcome.DISCOVERY_FAILED;
+		}
+		event.address = address.getHostAddress();
+
+		final List<String> changed = new ArrayList<>();
+		for(String key : keys) {
+			if(updatePredicates.get(key).test(address)) {
+				changed.add(key);
+			} else {
+				setStatus(key, address, Outcome.UNCHANGED);
+			}
+		}
+		if(changed.isEmpty()) {
+			logger.debug("No records require updating");
+			return Outcome.UNCHANGED;
+		}
+
+		try {
+			consumerProvider.get().accept(address, Collections.unmodifiableList(changed));
+			changed.forEach(key -> setStatus(key, address, Outcome.UPDATED));
+			return Outcome.UPDATED;
+		} catch(RuntimeException e) {
+			logger.error("Failed to process external IP ({}) for {} records", address, changed.size(), e);
+			changed.forEach(key -> {
+				updatePredicates.get(key).reset();
+				setStatus(key, address, Outcome.UPDATE_FAILED);
+			});
+			return Outcome.UPDATE_FAILED;
+		}
+	}
+
+	/**
+	 * Records the outcome of a discovery attempt for a record. A failed discovery retains the previously discovered
+	 * address.
+	 *
+	 * @param key the key of the record
+	 * @param address the discovered address, or {@code null} if discovery failed
+	 * @param outcome the outcome of the attempt
+	 */
+	private void setStatus(String key, InetAddress address, Outcome outcome) {
+		final AddressStatus previous = statuses.get(key);
+		statuses.put(key, new AddressStatus((address == null && previous != null) ? previous.getAddress() : address,
+				System.currentTimeMillis(), outcome));
+	}
+}
@@ -12,19 +12,21 @@
  */
 package net.za.slyfox.dyn53.extip;
 
+import net.za.slyfox.dyn53.jfr.PredicateTestEvent;
+import net.za.slyfox.dyn53.logging.LogMarkers;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import javax.inject.Singleton;
 import java.net.InetAddress;
 
 /**
  * A stateful predicate that compares the input argument to a previous value, and only returns a positive result if the
  * two differ.
  *
- * <p>This implementation is safe to concurrently use from multiple threads, as its methods are synchronized.</p>
+ * <p>This implementation is safe to concurrently use from multiple threads, as its methods are synchronized. Each
+ * instance tracks a single address, so every source of addresses must be evaluated by its own instance. Each test is
+ * recorded as a {@link PredicateTestEvent}, including the time spent waiting for the lock.</p>
  */
-@Singleton
 final class StatefulUpdatePredicate implements InetAddressPredicate {
 	private final Logger logger = LoggerFactory.getLogger(getClass());
 	private InetAddress previousAddress;
@@ -39,15 +41,26 @@ final class StatefulUpdatePredicate implements InetAddressPredicate {
 	 * @throws NullPointerException if {@code address} is {@code null}
 	 */
 	@Override
-	public synchronized boolean test(InetAddress address) {
-		if(!address.equals(previousAddress)) {
-			logger.info("Previous address {} differs from current {}, allowing update", previousAddress, address);
-			previousAddress = address;
-			return true;
-		} else {
-			logger.info("Previous address {} is still current, disallowing update", previousAddress);
-			return false;
+	public boolean test(InetAddress address) {
+		final PredicateTestEvent event = new PredicateTestEvent();
+		event.begin();
+		final boolean passed;
+		synchronized(this) {
+			passed = !address.equals(previousAddress);
+			if(passed) {
+				logger.info("Previous address {} differs from current {}, allowing update", previousAddress, address);
+				previousAddress = address;
+			} else {
+				logger.info(LogMarkers.SAMPLED, "Previous address {} is still current, disallowing update",
+						previousAddress);
+			}
 		}
+		if(event.shouldCommit()) {
+			event.address = address.getHostAddress();
+			event.passed = passed;
+			event.commit();
+		}
+		return passed;
 	}
 
 	/**
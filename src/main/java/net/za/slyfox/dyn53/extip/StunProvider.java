@@ -0,0 +1,309 @@
+/*
+ * Copyright 2015 Philip Cronje
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package net.za.slyfox.dyn53.extip;
+
+import net.za.slyfox.dyn53.jfr.ProviderRequestEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Implements an {@link ExternalIpProvider} that discovers the external IP address with STUN (RFC 5389) Binding
+ * Requests, which take a single UDP round trip rather than the TCP, TLS and HTTP exchanges of a web service.
+ *
+ * <p>A Binding Request is sent to every configured STUN server at once from a single socket, and the mapped address
+ * in the first valid success response is returned. Requests are retransmitted to the servers that have not responded
+ * with an interval starting at the retransmission timeout and doubling after each transmission, as RFC 5389
+ * specifies, and discovery fails once the last interval passes without a response.</p>
+ */
+final class StunProvider implements ExternalIpProvider {
+	static final int DEFAULT_PORT = 3478;
+	static final String SCHEME = "stun:";
+
+	private static final int ATTRIBUTE_MAPPED_ADDRESS = 0x0001;
+	private static final int ATTRIBUTE_XOR_MAPPED_ADDRESS = 0x0020;
+	private static final int BINDING_REQUEST = 0x0001;
+	private static final int BINDING_SUCCESS_RESPONSE = 0x0101;
+	private static final int FAMILY_IPV4 = 0x01;
+	private static final int FAMILY_IPV6 = 0x02;
+	private static final int HEADER_LENGTH = 20;
+	private static final int MAGIC_COOKIE = 0x2112A442;
+	private static final int MAX_MESSAGE_LENGTH = 548;
+
+	private final Logger logger = LoggerFactory.getLogger(getClass());
+	private final int maxTransmissions;
+	private final Random random = new SecureRandom();
+	private final long retransmissionTimeout;
+	private final List<InetSocketAddress> servers;
+
+	/**
+	 * Initializes the provider.
+	 *
+	 * @param servers the unresolved addresses of the STUN servers, which are resolved on every discovery
+	 * @param retransmissionTimeout the initial interval between transmissions of a request, in milliseconds
+	 * @param maxTransmissions the number of times a request is sent before discovery fails
+	 * @throws IllegalArgumentException if {@code servers} is empty, or {@code retransmissionTimeout} or
+	 *                                  {@code maxTransmissions} is not positive
+	 */
+	StunProvider(List<InetSocketAddress> servers, long retransmissionTimeout, int maxTransmissions) {
+		if(servers.isEmpty()) throw new IllegalArgumentException("At least one STUN server is required");
+		if(retransmissionTimeout < 1) throw new IllegalArgumentException("Retransmission timeout must be positive");
+		if(maxTransmissions < 1) throw new IllegalArgumentException("Transmissions must be positive");
+		this.maxTransmissions = maxTransmissions;
+		this.retransmissionTimeout = TimeUnit.MILLISECONDS.toNanos(retransmissionTimeout);
+		this.servers = new ArrayList<>(servers);
+	}
+
+	/**
+	 * Parses the address of a STUN server given as {@code stun:host}, {@code stun:host:port} or
+	 * {@code stun:[address]:port}.
+	 *
+	 * @param server the address of the server
+	 * @return the unresolved socket address of the server
+	 * @throws IllegalArgumentException if {@code server} is not a valid STUN server address
+	 */
+	static InetSocketAddress parseServer(String server) {
+		if(!server.startsWith(SCHEME)) throw new IllegalArgumentException("Not a STUN server: " + server);
+		final String authority = server.substring(SCHEME.length());
+		final String host;
+		String port = null;
+		if(authority.startsWith("[")) {
+			final int end = authority.indexOf(']');
+			if(end < 0) throw new IllegalArgumentException("Invalid STUN server: " + server);
+			host = authority.substring(1, end);
+			if(end + 1 < authority.length()) {
+				if(authority.charAt(end + 1) != ':') {
+					throw new IllegalArgumentException("Invalid STUN server: " + server);
+				}
+				port = authority.substring(end + 2);
+			}
+		} else {
+			final int colon = authority.indexOf(':');
+			if(colon != authority.lastIndexOf(':')) {
+				throw new IllegalArgumentException("Invalid STUN server: " + server);
+			}
+			host = (colon < 0) ? authority : authority.substring(0, colon);
+			if(colon >= 0) port = authority.substring(colon + 1);
+		}
+		if(host.isEmpty()) throw new IllegalArgumentException("Invalid STUN server: " + server);
+		return InetSocketAddress.createUnresolved(host, (port == null) ? DEFAULT_PORT : Integer.parseInt(port));
+	}
+
+	/**
+	 * Sends a Binding Request to each STUN server, and returns the mapped address of the first valid response.
+	 *
+	 * @param localAddress the local address to bind the requests to, or {@code null} to let the operating system
+	 *                     select one
+	 * @return the external IP address reported by a STUN server
+	 * @throws IOException if no STUN server could be resolved, or none responded before the final retransmission
+	 *                     interval passed
+	 */
+	@Override
+	public InetAddress discover(InetAddress localAddress) throws IOException {
+		final ProviderRequestEvent event = new ProviderRequestEvent();
+		event.begin();
+		event.provider = toString();
+		try {
+			final InetAddress address = discover(localAddress, event);
+			event.address = address.getHostAddress();
+			event.outcome = "SUCCESS";
+			return address;
+		} catch(IOException | RuntimeException e) {
+			event.outcome = "FAILED";
+			throw e;
+		} finally {
+			event.commit();
+		}
+	}
+
+	private InetAddress discover(InetAddress localAddress, ProviderRequestEvent event) throws IOException {
+		long phase = System.nanoTime();
+		final Map<ByteBuffer, InetSocketAddress> transactions = new HashMap<>();
+		for(InetSocketAddress server : servers) {
+			final InetSocketAddress target = new InetSocketAddress(server.getHostString(), server.getPort());
+			if(target.isUnresolved()) {
+				logger.warn("Could not resolve STUN server {}", server.getHostString());
+				continue;
+			}
+			final byte[] transactionId = new byte[12];
+			random.nextBytes(transactionId);
+			transactions.put(ByteBuffer.wrap(transactionId), target);
+		}
+		event.resolution = System.nanoTime() - phase;
+		if(transactions.isEmpty()) throw new UnknownHostException("Could not resolve any STUN server");
+
+		try(final DatagramChannel channel = DatagramChannel.open(); final Selector selector = Selector.open()) {
+			channel.bind((localAddress == null) ? null : new InetSocketAddress(localAddress, 0));
+			channel.configureBlocking(false);
+			channel.register(selector, SelectionKey.OP_READ);
+
+			final ByteBuffer response = ByteBuffer.allocate(MAX_MESSAGE_LENGTH);
+			long interval = retransmissionTimeout;
+			long nextTransmission = System.nanoTime();
+			int transmissions = 0;
+			while(true) {
+				final long now = System.nanoTime();
+				if(now - nextTransmission >= 0) {
+					if(transmissions == maxTransmissions) {
+						throw new SocketTimeoutException("No response from STUN servers " + servers + " after "
+								+ transmissions + " transmissions");
+					}
+					transactions.forEach((transactionId, target) ->
+							event.bytesSent += send(channel, transactionId, target));
+					transmissions++;
+					nextTransmission = now + interval;
+					interval *= 2;
+				}
+
+				selector.select(Math.max(1, TimeUnit.NANOSECONDS.toMillis(nextTransmission - now)));
+				selector.selectedKeys().clear();
+				while(channel.receive(response) != null) {
+					response.flip();
+					event.bytesReceived += response.remaining();
+					final InetAddress address = decodeBindingResponse(response, transactions);
+					response.clear();
+					if(address != null) return address;
+				}
+			}
+		}
+	}
+
+	@Override
+	public String toString() {
+		final List<String> names = new ArrayList<>(servers.size());
+		servers.forEach(server -> names.add(SCHEME + server.getHostString() + ':' + server.getPort()));
+		return String.join(",", names);
+	}
+
+	/**
+	 * Encodes a Binding Request without attributes.
+	 *
+	 * @param transactionId the 96-bit transaction identifier of the request
+	 * @return a buffer holding the request
+	 */
+	static ByteBuffer encodeBindingRequest(byte[] transactionId) {
+		final ByteBuffer request = ByteBuffer.allocate(HEADER_LENGTH);
+		request.putShort((short)BINDING_REQUEST).putShort((short)0).putInt(MAGIC_COOKIE).put(transactionId);
+		request.flip();
+		return request;
+	}
+
+	/**
+	 * Decodes the mapped address from a Binding success response. The XOR-MAPPED-ADDRESS attribute is preferred, and
+	 * the MAPPED-ADDRESS attribute is only used if a server does not send it.
+	 *
+	 * @param response the buffer holding the response, which is consumed
+	 * @param transactions the transaction identifiers of the outstanding requests, each wrapped in a buffer
+	 * @return the mapped address, or {@code null} if the message is not a valid success response to one of the
+	 *         requests
+	 */
+	static InetAddress decodeBindingResponse(ByteBuffer response, Map<ByteBuffer, ?> transactions) {
+		if(response.remaining() < HEADER_LENGTH) return null;
+		final int type = response.getShort() & 0xffff;
+		final int length = response.getShort() & 0xffff;
+		final byte[] transactionId = new byte[12];
+		final int cookie = response.getInt();
+		response.get(transactionId);
+		if(type != BINDING_SUCCESS_RESPONSE || cookie != MAGIC_COOKIE || length > response.remaining()
+				|| !transactions.containsKey(ByteBuffer.wrap(transactionId))) {
+			return null;
+		}
+
+		InetAddress mappedAddress = null;
+		response.limit(response.position() + length);
+		while(response.remaining() >= 4) {
+			final int attributeType = response.getShort() & 0xffff;
+			final int attributeLength = response.getShort() & 0xffff;
+			if(attributeLength > response.remaining()) return null;
+			final ByteBuffer value = (ByteBuffer)response.slice().limit(attributeLength);
+			response.position(Math.min(response.limit(), response.position() + ((attributeLength + 3) & ~3)));
+
+			if(attributeType == ATTRIBUTE_XOR_MAPPED_ADDRESS) {
+				return decodeAddress(value, transactionId, true);
+			} else if(attributeType == ATTRIBUTE_MAPPED_ADDRESS) {
+				mappedAddress = decodeAddress(value, transactionId, false);
+			}
+		}
+		return mappedAddress;
+	}
+
+	/**
+	 * Decodes the address of a MAPPED-ADDRESS or XOR-MAPPED-ADDRESS attribute value. The port is ignored.
+	 *
+	 * @param value the attribute value
+	 * @param transactionId the transaction identifier of the response
+	 * @param xor whether the address is XORed with the magic cookie and transaction identifier
+	 * @return the address, or {@code null} if the value is malformed
+	 */
+	private static InetAddress decodeAddress(ByteBuffer value, byte[] transactionId, boolean xor) {
+		if(value.remaining() < 4) return null;
+		value.get();
+		final int family = value.get();
+		value.getShort();
+
+		final byte[] address;
+		if(family == FAMILY_IPV4) {
+			address = new byte[4];
+		} else if(family == FAMILY_IPV6) {
+			address = new byte[16];
+		} else {
+			return null;
+		}
+		if(value.remaining() < address.length) return null;
+		value.get(address);
+
+		if(xor) {
+			final byte[] mask = ByteBuffer.allocate(16).putInt(MAGIC_COOKIE).put(transactionId).array();
+			for(int i = 0; i < address.length; i++) address[i] ^= mask[i];
+		}
+		try {
+			return InetAddress.getByAddress(address);
+		} catch(UnknownHostException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Sends a Binding Request, logging rather than failing if it cannot be sent, such as to an IPv6 server from a
+	 * socket bound to an IPv4 address.
+	 *
+	 * @param channel the channel to send the request from
+	 * @param transactionId the transaction identifier of the request, wrapped in a buffer
+	 * @param target the address of the STUN server
+	 * @return the number of bytes sent
+	 */
+	private int send(DatagramChannel channel, ByteBuffer transactionId, InetSocketAddress target) {
+		try {
+			return channel.send(encodeBindingRequest(transactionId.array()), target);
+		} catch(IOException e) {
+			logger.debug("Failed to send Binding Request to {}", target, e);
+			return 0;
+		}
+	}
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright 2015 Philip Cronje
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package net.za.slyfox.dyn53.extip;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Implements a hashed timing wheel, which schedules any number of items in constant time. Time advances in discrete
+ * ticks, and an item scheduled further ahead than the wheel has buckets waits out the extra revolutions of the wheel
+ * in its bucket. Instances are not thread-safe, and are intended to be confined to the single thread that advances
+ * them.
+ *
+ * @param <T> the type of the items scheduled
+ */
+final class TimingWheel<T> {
+	private final List<List<Entry<T>>> buckets;
+
+	private long tick;
+	private int size;
+
+	/**
+	 * Initializes an empty timing wheel.
+	 *
+	 * @param bucketCount the number of buckets, which is the number of ticks in a revolution of the wheel
+	 * @throws IllegalArgumentException if {@code bucketCount} is not positive
+	 */
+	TimingWheel(int bucketCount) {
+		if(bucketCount < 1) throw new IllegalArgumentException("At least one bucket is required");
+		buckets = new ArrayList<>(bucketCount);
+		for(int i = 0; i < bucketCount; i++) buckets.add(new ArrayList<>());
+	}
+
+	/**
+	 * Schedules an item to become due a number of ticks after the current tick.
+	 *
+	 * @param item the item to schedule
+	 * @param ticks the number of ticks after which the item is due. Values less than one are treated as one, so that
+	 *              the item becomes due on the next tick.
+	 */
+	void schedule(T item, long ticks) {
+		final long delay = Math.max(1, ticks);
+		final int bucketCount = buckets.size();
+		buckets.get((int)((tick + delay) % bucketCount)).add(new Entry<>(item, (delay - 1) / bucketCount));
+		size++;
+	}
+
+	/**
+	 * Advances the wheel by one tick, removing the items that have become due.
+	 *
+	 * @param due the list to add the items that have become due to
+	 */
+	void advance(List<? super T> due) {
+		tick++;
+		final List<Entry<T>> bucket = buckets.get((int)(tick % buckets.size()));
+
+		// Compact the bucket in place, rather than removing entries one by one from the middle of the list
+		int retained = 0;
+		for(Entry<T> entry : bucket) {
+			if(entry.rounds-- > 0) {
+				bucket.set(retained++, entry);
+			} else {
+				due.add(entry.item);
+			}
+		}
+		size -= bucket.size() - retained;
+		bucket.subList(retained, bucket.size()).clear();
+	}
+
+	/**
+	 * Returns the current tick, which is the number of times the wheel has been advanced.
+	 *
+	 * @return the current tick
+	 */
+	long getTick() {
+		return tick;
+	}
+
+	/**
+	 * Returns the number of items scheduled.
+	 *
+	 * @return the number of items that have not yet become due
+	 */
+	int size() {
+		return size;
+	}
+
+	private static final class Entry<T> {
+		final T item;
+		long rounds;
+
+		Entry(T item, long rounds) {
+			this.item = item;
+			this.rounds = rounds;
+		}
+	}
+}
@@ -0,0 +1,196 @@
+/*
+ * Copyright 2015 Philip Cronje
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package net.za.slyfox.dyn53.extip;
+
+import net.za.slyfox.dyn53.extip.DiscoveryStatus.AddressStatus;
+import net.za.slyfox.dyn53.extip.DiscoveryStatus.AddressStatus.Outcome;
+import net.za.slyfox.dyn53.logging.LogMarkers;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Provider;
+import java.io.IOException;
+import java.net.Inet4Address;
+import java.net.InetAddress;
+import java.net.NetworkInterface;
+import java.net.SocketException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * Implements the task logic to obtain the external IP address of each uplink of a site with multiple network uplinks.
+ * Each uplink's discovery request is bound to the local address of that uplink's network interface, so that the
+ * address discovered is the one the uplink is reachable on.
+ *
+ * <p>All uplink addresses that pass their update predicate during a single run are passed to the consumer together,
+ * so that they can be published as a single batch.</p>
+ */
+final class UplinkDiscoveryCommand implements DiscoveryCommand {
+	private final Provider<Consumer<Map<String, InetAddress>>> consumerProvider;
+	private final ExternalIpProvider externalIpProvider;
+	private final Logger logger = LoggerFactory.getLogger(getClass());
+	private final Map<String, AddressStatus> statuses = new ConcurrentHashMap<>();
+	private final Map<String, String> uplinkInterfaces;
+	private final Map<String, InetAddressPredicate> updatePredicates = new LinkedHashMap<>();
+
+	/**
+	 * Injects dependencies into the instance.
+	 *
+	 * @param uplinkInterfaces a map of uplink names to the names of the network interfaces the uplinks are attached
+	 *                         to. An empty interface name indicates that the operating system should select the
+	 *                         interface.
+	 * @param consumerProvider a provider used to obtain a {@link Consumer} that will process the discovered addresses,
+	 *                         keyed by uplink name
+	 * @param predicateProvider a provider used to obtain an independent update predicate for each uplink
+	 * @param externalIpProvider the service used to discover the external IP address
+	 * @throws NullPointerException if a required dependency is {@code null}
+	 */
+	@Inject
+	UplinkDiscoveryCommand(@Named("uplinkInterfaces") Map<String, String> uplinkInterfaces,
+			@Named("discovered") Provider<Consumer<Map<String, InetAddress>>> consumerProvider,
+			Provider<InetAddressPredicate> predicateProvider, ExternalIpProvider externalIpProvider) {
+		this.consumerProvider = Objects.requireNonNull(consumerProvider);
+		this.externalIpProvider = Objects.requireNonNull(externalIpProvider);
+		this.uplinkInterfaces = Objects.requireNonNull(uplinkInterfaces);
+		uplinkInterfaces.keySet().forEach(uplink -> updatePredicates.put(uplink, predicateProvider.get()));
+	}
+
+	/**
+	 * Discovers the external IP address of each uplink, and passes the addresses that should be updated on to the
+	 * {@link Consumer} obtained from the {@link Provider} this object was initialized with. An uplink whose discovery
+	 * fails is left out of the update, so that its resource record set retains its previous value.
+	 */
+	@Override
+	public void run() {
+		try {
+			final Map<String, InetAddress> addresses = new LinkedHashMap<>();
+			uplinkInterfaces.forEach((uplink, interfaceName) -> {
+				final InetAddress address = discover(uplink, interfaceName);
+				if(address == null) {
+					setStatus(uplink, null, Outcome.DISCOVERY_FAILED);
+				} else if(updatePredicates.get(uplink).test(address)) {
+					addresses.put(uplink, address);
+					setStatus(uplink, address, Outcome.UPDATED);
+				} else {
+					setStatus(uplink, address, Outcome.UNCHANGED);
+				}
+			});
+
+			if(addresses.isEmpty()) {
+				logger.debug("No uplink addresses require updating");
+				return;
+			}
+
+			try {
+				consumerProvider.get().accept(Collections.unmodifiableMap(addresses));
+			} catch(RuntimeException e) {
+				logger.error("Failed to process uplink external IPs ({})", addresses, e);
+				addresses.forEach((uplink, address) -> {
+					updatePredicates.get(uplink).reset();
+					setStatus(uplink, address, Outcome.UPDATE_FAILED);
+				});
+			}
+		} catch(Error e) {
+			logger.error("JVM encountered error while executing command, aborting application execution", e);
+			System.exit(1);
+		}
+	}
+
+	@Override
+	public boolean reset(String key) {
+		if(key == null) {
+			logger.info("Resetting update predicates of all uplinks");
+			updatePredicates.values().forEach(InetAddressPredicate::reset);
+			return true;
+		}
+
+		final InetAddressPredicate predicate = updatePredicates.get(key);
+		if(predicate == null) return false;
+		logger.info("Resetting update predicate of uplink {}", key);
+		predicate.reset();
+		return true;
+	}
+
+	@Override
+	public Map<String, AddressStatus> getAddressStatus() {
+		final Map<String, AddressStatus> result = new LinkedHashMap<>();
+		uplinkInterfaces.keySet().forEach(uplink -> {
+			final AddressStatus status = statuses.get(uplink);
+			if(status != null) result.put(uplink, status);
+		});
+		return result;
+	}
+
+	/**
+	 * Records the outcome of a discovery attempt for an uplink. A failed discovery retains the previously discovered
+	 * address.
+	 *
+	 * @param uplink the name of the uplink
+	 * @param address the discovered address, or {@code null} if discovery failed
+	 * @param outcome the outcome of the attempt
+	 */
+	private void setStatus(String uplink, InetAddress address, Outcome outcome) {
+		final AddressStatus previous = statuses.get(uplink);
+		statuses.put(uplink, new AddressStatus((address == null && previous != null) ? previous.getAddress() : address,
+				System.currentTimeMillis(), outcome));
+	}
+
+	/**
+	 * Discovers the external IP address of a single uplink.
+	 *
+	 * @param uplink the name of the uplink
+	 * @param interfaceName the name of the network interface to bind the request to, or an empty string
+	 * @return the external IP address of the uplink, or {@code null} if it could not be discovered
+	 */
+	private InetAddress discover(String uplink, String interfaceName) {
+		logger.info(LogMarkers.SAMPLED, "Requesting external IP of uplink {} from remote service", uplink);
+		try {
+			final InetAddress localAddress = interfaceName.isEmpty() ? null : getLocalAddress(interfaceName);
+			return externalIpProvider.discover(localAddress);
+		} catch(IOException e) {
+			logger.warn("Failed to retrieve external IP of uplink {} from remote service", uplink, e);
+		} catch(RuntimeException e) {
+			logger.error("Failed to retrieve external IP of uplink {} from remote service", uplink, e);
+		}
+		return null;
+	}
+
+	/**
+	 * Returns the address to bind requests to for a network interface. IPv4 addresses are preferred over IPv6
+	 * addresses, and loopback and link-local addresses are never returned.
+	 *
+	 * @param interfaceName the name of the network interface
+	 * @return a usable local address of the network interface
+	 * @throws SocketException if the network interface does not exist, is down, or has no usable address
+	 */
+	private static InetAddress getLocalAddress(String interfaceName) throws SocketException {
+		final NetworkInterface networkInterface = NetworkInterface.getByName(interfaceName);
+		if(networkInterface == null) throw new SocketException("No network interface named " + interfaceName);
+		if(!networkInterface.isUp()) throw new SocketException("Network interface " + interfaceName + " is down");
+
+		InetAddress candidate = null;
+		for(InetAddress address : Collections.list(networkInterface.getInetAddresses())) {
+			if(address.isLoopbackAddress() || address.isLinkLocalAddress()) continue;
+			if(address instanceof Inet4Address) return address;
+			if(candidate == null) candidate = address;
+		}
+		if(candidate == null) throw new SocketException("Network interface " + interfaceName + " has no address");
+		return candidate;
+	}
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright 2015 Philip Cronje
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package net.za.slyfox.dyn53.health;
+
+import net.za.slyfox.dyn53.bean.Lifecycle;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Implements a {@link Lifecycle} object that manages a scheduled task to probe the health of the local service,
+ * independently of the external IP discovery schedule. This allows unhealthy endpoints to be withdrawn within one
+ * health check interval of failing.
+ */
+final class HealthCheckLifecycle implements Lifecycle {
+	private static final long STOP_TIMEOUT = TimeUnit.MINUTES.toNanos(1);
+
+	private final HealthChecker healthChecker;
+	private final long interval;
+	private final Logger logger = LoggerFactory.getLogger(getClass());
+	private final ExecutorService probeExecutorService;
+	private final ScheduledExecutorService scheduledExecutorService;
+
+	/**
+	 * Initializes the {@code HealthCheckLifecycle} with configuration variables and dependencies.
+	 *
+	 * @param interval the delay between health checks, in seconds
+	 * @param healthChecker the checker to run on each scheduled task
+	 * @param scheduledExecutorService the scheduled executor service that will schedule health checks
+	 * @param probeExecutorService the executor service that runs individual health probes
+	 * @throws NullPointerException if a required dependency is {@code null}
+	 */
+	@Inject
+	HealthCheckLifecycle(@Named("healthCheckInterval") long interval, HealthChecker healthChecker,
+			@Named("healthCheck") ScheduledExecutorService scheduledExecutorService,
+			@Named("healthProbe") ExecutorService probeExecutorService) {
+		this.healthChecker = Objects.requireNonNull(healthChecker);
+		this.interval = interval;
+		this.probeExecutorService = Objects.requireNonNull(probeExecutorService);
+		this.scheduledExecutorService = Objects.requireNonNull(scheduledExecutorService);
+	}
+
+	/**
+	 * Schedules the health check task.
+	 */
+	@Override
+	public void start() {
+		logger.info("Scheduling health checks to execute every {} seconds", interval);
+		scheduledExecutorService.scheduleWithFixedDelay(() -> {
+			try {
+				healthChecker.check();
+			} catch(RuntimeException e) {
+				logger.error("Failed to check service health", e);
+			}
+		}, 0, interval, TimeUnit.SECONDS);
+	}
+
+	/**
+	 * Shuts down the health check scheduler and probe threads, waiting up to one minute for a health check in progress.
+	 *
+	 * @see #stop(long)
+	 */
+	@Override
+	public void stop() {
+		stop(System.nanoTime() + STOP_TIMEOUT);
+	}
+
+	/**
+	 * Shuts down the health check scheduler and probe threads. A health check in progress is allowed to complete until
+	 * the deadline, so that a publication or withdrawal it triggers is not interrupted.
+	 *
+	 * @param deadline the time by which to return, as a value of {@link System#nanoTime()}
+	 */
+	@Override
+	public void stop(long deadline) {
+		logger.info("Shutting down health check scheduler");
+		scheduledExecutorService.shutdown();
+		try {
+			if(!scheduledExecutorService.awaitTermination(deadline - System.nanoTime(), TimeUnit.NANOSECONDS)) {
+				logger.warn("Health check is still running, stopping anyway");
+			}
+		} catch(InterruptedException e) {
+			logger.debug("Interrupted while waiting for termination of health check");
+		}
+		probeExecutorService.shutdownNow();
+	}
+}
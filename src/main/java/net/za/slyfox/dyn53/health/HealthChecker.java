@@ -0,0 +1,160 @@
+/*
+ * Copyright 2015 Philip Cronje
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package net.za.slyfox.dyn53.health;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+
+/**
+ * Runs a set of {@link HealthProbe}s concurrently, and caches the combined result for a short time so that every stage
+ * of a single update cycle observes the same health state. The service is considered healthy only if every probe
+ * succeeds within the timeout.
+ *
+ * <p>Listeners are notified whenever the health state changes. Listeners are never invoked while the checker's lock is
+ * held, so they may safely call back into the checker.</p>
+ */
+final class HealthChecker {
+	private final long cacheTtl;
+	private final LongSupplier clock;
+	private final ExecutorService executorService;
+	private final List<Consumer<Boolean>> listeners = new CopyOnWriteArrayList<>();
+	private final Logger logger = LoggerFactory.getLogger(getClass());
+	private final List<HealthProbe> probes;
+	private final long timeout;
+
+	private long checkedAt;
+	private Boolean healthy;
+
+	/**
+	 * Initializes the checker with its probes and configuration.
+	 *
+	 * @param probes the probes to run on every check
+	 * @param cacheTtl the time for which a check result is reused, in nanoseconds
+	 * @param timeout the time to wait for all probes to complete, in nanoseconds
+	 * @param executorService the executor service used to run probes concurrently
+	 * @param clock a source of monotonic time in nanoseconds, such as {@link System#nanoTime()}
+	 * @throws IllegalArgumentException if {@code probes} is empty
+	 * @throws NullPointerException if a required parameter is {@code null}
+	 */
+	HealthChecker(List<HealthProbe> probes, long cacheTtl, long timeout, ExecutorService executorService,
+			LongSupplier clock) {
+		this.cacheTtl = cacheTtl;
+		this.clock = Objects.requireNonNull(clock);
+		this.executorService = Objects.requireNonNull(executorService);
+		this.probes = new ArrayList<>(Objects.requireNonNull(probes));
+		this.timeout = timeout;
+		if(this.probes.isEmpty()) throw new IllegalArgumentException("At least one health probe is required");
+	}
+
+	/**
+	 * Registers a listener to be notified with the new health state whenever it changes.
+	 *
+	 * @param listener the listener to register
+	 */
+	void addListener(Consumer<Boolean> listener) {
+		listeners.add(Objects.requireNonNull(listener));
+	}
+
+	/**
+	 * Returns the health state of the service, running the probes only if the cached result has expired.
+	 *
+	 * @return {@code true} if the service is healthy
+	 */
+	boolean isHealthy() {
+		synchronized(this) {
+			if(healthy != null && clock.getAsLong() - checkedAt < cacheTtl) return healthy;
+		}
+		return check();
+	}
+
+	/**
+	 * Runs the probes regardless of the cached result, caches the new result, and notifies listeners if the health
+	 * state changed.
+	 *
+	 * @return {@code true} if the service is healthy
+	 */
+	boolean check() {
+		final Boolean previous;
+		final boolean current;
+		synchronized(this) {
+			current = probeAll();
+			previous = healthy;
+			healthy = current;
+			checkedAt = clock.getAsLong();
+		}
+
+		if(previous != null && previous != current) {
+			logger.info("Service health changed to {}", current ? "healthy" : "unhealthy");
+			listeners.forEach(listener -> {
+				try {
+					listener.accept(current);
+				} catch(RuntimeException e) {
+					logger.error("Failed to apply health change to {}", listener, e);
+				}
+			});
+		}
+		return current;
+	}
+
+	/**
+	 * Runs every probe concurrently, and waits for them to complete.
+	 *
+	 * @return {@code true} if every probe succeeded within the timeout
+	 */
+	private boolean probeAll() {
+		final List<Callable<Void>> tasks = new ArrayList<>(probes.size());
+		probes.forEach(probe -> tasks.add(() -> {
+			probe.probe();
+			return null;
+		}));
+
+		final List<Future<Void>> results;
+		try {
+			results = executorService.invokeAll(tasks, timeout, TimeUnit.NANOSECONDS);
+		} catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+			logger.debug("Interrupted while waiting for health probes");
+			return (healthy != null) ? healthy : true;
+		}
+
+		boolean result = true;
+		for(int i = 0; i < results.size(); ++i) {
+			try {
+				results.get(i).get();
+			} catch(CancellationException e) {
+				logger.warn("Health probe {} timed out", probes.get(i));
+				result = false;
+			} catch(ExecutionException e) {
+				logger.warn("Health probe {} failed: {}", probes.get(i), e.getCause().toString());
+				result = false;
+			} catch(InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return (healthy != null) ? healthy : true;
+			}
+		}
+		return result;
+	}
+}
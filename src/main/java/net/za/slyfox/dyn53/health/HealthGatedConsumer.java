@@ -0,0 +1,124 @@
+/*
+ * Copyright 2015 Philip Cronje
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package net.za.slyfox.dyn53.health;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Objects;
+import java.util.function.BinaryOperator;
+import java.util.function.Consumer;
+
+/**
+ * Implements a {@link Consumer} that only publishes values while the local service is healthy. When the service
+ * becomes unhealthy, the last published value is withdrawn; when it recovers, the most recent value is published
+ * again. Values accepted while the service is unhealthy are held until it recovers.
+ *
+ * <p>The withdrawer may be best-effort, completing the withdrawal asynchronously without reporting a failure. A
+ * recovery always publishes the current value again, so a withdrawal that was lost only leaves the value live until
+ * the next change in health.</p>
+ *
+ * <p>This implementation is safe to concurrently use from multiple threads, as its state is only accessed while
+ * synchronized.</p>
+ *
+ * @param <T> the type of value published
+ */
+final class HealthGatedConsumer<T> implements Consumer<T> {
+	private final HealthChecker healthChecker;
+	private final Logger logger = LoggerFactory.getLogger(getClass());
+	private final BinaryOperator<T> merger;
+	private final Consumer<T> publisher;
+	private final Consumer<T> withdrawer;
+
+	private T current;
+	private Boolean healthy;
+	private T published;
+
+	/**
+	 * Initializes the consumer with its delegates.
+	 *
+	 * @param publisher the consumer that publishes a value
+	 * @param withdrawer the consumer that withdraws a previously published value
+	 * @param merger a function that merges a newly accepted value into the current value, for value types that
+	 *               describe partial updates
+	 * @param healthChecker the checker that determines whether the service is healthy
+	 * @throws NullPointerException if a parameter is {@code null}
+	 */
+	HealthGatedConsumer(Consumer<T> publisher, Consumer<T> withdrawer, BinaryOperator<T> merger,
+			HealthChecker healthChecker) {
+		this.healthChecker = Objects.requireNonNull(healthChecker);
+		this.merger = Objects.requireNonNull(merger);
+		this.publisher = Objects.requireNonNull(publisher);
+		this.withdrawer = Objects.requireNonNull(withdrawer);
+	}
+
+	/**
+	 * Publishes {@code value} if the service is healthy. Otherwise, withdraws the previously published value if it has
+	 * not already been withdrawn, and holds {@code value} until the service recovers. The value is held even if the
+	 * withdrawal fails, so that it is published on recovery.
+	 *
+	 * <p>The checker is consulted before the lock is acquired, as it may run the probes. Its result may therefore
+	 * predate a change in health that was applied in the meantime, so once a change has been notified, the notified
+	 * state is honoured instead.</p>
+	 *
+	 * @param value the value to publish
+	 */
+	@Override
+	public void accept(T value) {
+		final boolean checked = healthChecker.isHealthy();
+		synchronized(this) {
+			if((healthy != null) ? healthy : checked) {
+				publisher.accept(value);
+				current = (current != null) ? merger.apply(current, value) : value;
+				published = current;
+			} else {
+				logger.info("Service is unhealthy, holding {} until it recovers", value);
+				try {
+					withdraw();
+				} finally {
+					current = (current != null) ? merger.apply(current, value) : value;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Withdraws or restores the current value in response to a change in the health of the service.
+	 *
+	 * @param healthy the new health state of the service
+	 */
+	synchronized void onHealthChanged(boolean healthy) {
+		this.healthy = healthy;
+		if(healthy) {
+			if(current != null && !current.equals(published)) {
+				logger.info("Service recovered, restoring {}", current);
+				publisher.accept(current);
+				published = current;
+			}
+		} else {
+			withdraw();
+		}
+	}
+
+	/**
+	 * Withdraws the published value, if any. The published value is only forgotten once the withdrawal succeeds, as
+	 * the withdrawal must match the values that are live.
+	 */
+	private void withdraw() {
+		if(published != null) {
+			logger.info("Withdrawing {}", published);
+			withdrawer.accept(published);
+			published = null;
+		}
+	}
+}
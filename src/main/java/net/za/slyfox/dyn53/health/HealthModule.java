@@ -0,0 +1,151 @@
+/*
+ * Copyright 2015 Philip Cronje
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package net.za.slyfox.dyn53.health;
+
+import com.google.inject.AbstractModule;
+import com.google.inject.Provides;
+import com.google.inject.multibindings.Multibinder;
+import com.google.inject.name.Names;
+import net.za.slyfox.dyn53.bean.Lifecycle;
+import net.za.slyfox.dyn53.concurrent.NamedPoolThreadFactory;
+
+import javax.inject.Named;
+import javax.inject.Singleton;
+import java.net.InetAddress;
+import java.net.MalformedURLException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Gates the publishing of addresses on the health of the local service. This module overrides the unqualified
+ * {@code Consumer} bindings of the DNS module it is combined with, wrapping that module's {@code "publish"} and
+ * {@code "withdraw"} consumers. The consumers of uplink addresses are only wrapped when uplinks are configured, since
+ * DNS modules without uplink support do not bind them.
+ */
+public final class HealthModule extends AbstractModule {
+	private final long cacheTtl;
+	private final long interval;
+	private final List<HealthProbe> probes = new ArrayList<>();
+	private final int timeout;
+	private final boolean uplinks;
+
+	/**
+	 * Initializes the module with the health check configuration, for a single external IP address.
+	 *
+	 * @param probeTargets the services to probe, as {@code tcp://host:port} or {@code http(s)://} URIs
+	 * @param interval the delay between scheduled health checks, in seconds
+	 * @param cacheTtl the time for which a health check result is reused, in milliseconds
+	 * @param timeout the time to wait for each probe, in milliseconds
+	 * @throws IllegalArgumentException if {@code probeTargets} is empty, or contains an unsupported URI
+	 */
+	public HealthModule(List<URI> probeTargets, long interval, long cacheTtl, int timeout) {
+		this(probeTargets, interval, cacheTtl, timeout, false);
+	}
+
+	/**
+	 * Initializes the module with the health check configuration.
+	 *
+	 * @param probeTargets the services to probe, as {@code tcp://host:port} or {@code http(s)://} URIs
+	 * @param interval the delay between scheduled health checks, in seconds
+	 * @param cacheTtl the time for which a health check result is reused, in milliseconds
+	 * @param timeout the time to wait for each probe, in milliseconds
+	 * @param uplinks whether uplinks are configured, so that the consumers of uplink addresses are also gated
+	 * @throws IllegalArgumentException if {@code probeTargets} is empty, or contains an unsupported URI
+	 */
+	public HealthModule(List<URI> probeTargets, long interval, long cacheTtl, int timeout, boolean uplinks) {
+		this.cacheTtl = cacheTtl;
+		this.interval = interval;
+		this.timeout = timeout;
+		this.uplinks = uplinks;
+		for(URI target : probeTargets) {
+			final String scheme = String.valueOf(target.getScheme()).toLowerCase();
+			if(scheme.equals("tcp")) {
+				if(target.getHost() == null || target.getPort() < 0) {
+					throw new IllegalArgumentException("TCP health probe requires a host and port: " + target);
+				}
+				probes.add(new TcpHealthProbe(target.getHost(), target.getPort(), timeout));
+			} else if(scheme.equals("http") || scheme.equals("https")) {
+				try {
+					probes.add(new HttpHealthProbe(target.toURL(), timeout));
+				} catch(MalformedURLException e) {
+					throw new IllegalArgumentException("Invalid HTTP health probe URL: " + target, e);
+				}
+			} else {
+				throw new IllegalArgumentException("Unsupported health probe: " + target);
+			}
+		}
+		if(probes.isEmpty()) throw new IllegalArgumentException("At least one health probe is required");
+	}
+
+	@Override
+	protected void configure() {
+		Multibinder.newSetBinder(binder(), Lifecycle.class).addBinding().to(HealthCheckLifecycle.class);
+
+		bind(ScheduledExecutorService.class).annotatedWith(Names.named("healthCheck"))
+				.toInstance(Executors.newSingleThreadScheduledExecutor(new NamedPoolThreadFactory("healthCheck")));
+		bind(ExecutorService.class).annotatedWith(Names.named("healthProbe"))
+				.toInstance(Executors.newCachedThreadPool(new NamedPoolThreadFactory("healthProbe")));
+		bind(Long.class).annotatedWith(Names.named("healthCheckInterval")).toInstance(interval);
+		if(uplinks) install(new UplinkModule());
+	}
+
+	@Provides
+	@Singleton
+	HealthChecker healthChecker(@Named("healthProbe") ExecutorService executorService) {
+		return new HealthChecker(probes, TimeUnit.MILLISECONDS.toNanos(cacheTtl),
+				TimeUnit.MILLISECONDS.toNanos(timeout), executorService, System::nanoTime);
+	}
+
+	@Provides
+	@Singleton
+	Consumer<InetAddress> consumer(@Named("publish") Consumer<InetAddress> publisher,
+			@Named("withdraw") Consumer<InetAddress> withdrawer, HealthChecker healthChecker) {
+		final HealthGatedConsumer<InetAddress> consumer = new HealthGatedConsumer<>(publisher, withdrawer,
+				(current, update) -> update, healthChecker);
+		healthChecker.addListener(consumer::onHealthChanged);
+		return consumer;
+	}
+
+	/**
+	 * Gates the publishing of the addresses of uplinks, merging the addresses of each update into those held while
+	 * the service is unhealthy.
+	 */
+	private static final class UplinkModule extends AbstractModule {
+		@Override
+		protected void configure() {
+		}
+
+		@Provides
+		@Singleton
+		Consumer<Map<String, InetAddress>> uplinkConsumer(
+				@Named("publish") Consumer<Map<String, InetAddress>> publisher,
+				@Named("withdraw") Consumer<Map<String, InetAddress>> withdrawer, HealthChecker healthChecker) {
+			final HealthGatedConsumer<Map<String, InetAddress>> consumer = new HealthGatedConsumer<>(publisher,
+					withdrawer, (current, update) -> {
+						final Map<String, InetAddress> merged = new LinkedHashMap<>(current);
+						merged.putAll(update);
+						return merged;
+					}, healthChecker);
+			healthChecker.addListener(consumer::onHealthChanged);
+			return consumer;
+		}
+	}
+}
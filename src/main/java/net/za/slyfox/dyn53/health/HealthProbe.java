@@ -0,0 +1,27 @@
+/*
+ * Copyright 2015 Philip Cronje
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package net.za.slyfox.dyn53.health;
+
+import java.io.IOException;
+
+/**
+ * Interface for probes that check whether the local service behind the published address is able to serve clients.
+ */
+interface HealthProbe {
+	/**
+	 * Probes the service once.
+	 *
+	 * @throws IOException if the service could not be reached, or reported itself as unhealthy
+	 */
+	void probe() throws IOException;
+}
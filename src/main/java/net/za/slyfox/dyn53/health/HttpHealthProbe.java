@@ -0,0 +1,64 @@
+/*
+ * Copyright 2015 Philip Cronje
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package net.za.slyfox.dyn53.health;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.Objects;
+
+/**
+ * Implements a {@link HealthProbe} that considers a service healthy if an HTTP {@code GET} request to it returns a
+ * successful or redirection status code.
+ */
+final class HttpHealthProbe implements HealthProbe {
+	private final int timeout;
+	private final URL url;
+
+	/**
+	 * Initializes the probe with the URL to request.
+	 *
+	 * @param url the HTTP or HTTPS URL to request
+	 * @param timeout the connection and read timeout, in milliseconds
+	 * @throws NullPointerException if {@code url} is {@code null}
+	 */
+	HttpHealthProbe(URL url, int timeout) {
+		this.timeout = timeout;
+		this.url = Objects.requireNonNull(url);
+	}
+
+	/**
+	 * Requests the URL, and verifies the response status code.
+	 *
+	 * @throws IOException if the request fails, or the response status code is not in the 2xx or 3xx range
+	 */
+	@Override
+	public void probe() throws IOException {
+		final HttpURLConnection connection = (HttpURLConnection)url.openConnection();
+		try {
+			connection.setConnectTimeout(timeout);
+			connection.setReadTimeout(timeout);
+			connection.setInstanceFollowRedirects(false);
+			connection.setUseCaches(false);
+			final int status = connection.getResponseCode();
+			if(status < 200 || status >= 400) throw new IOException("Unhealthy response status " + status);
+		} finally {
+			connection.disconnect();
+		}
+	}
+
+	@Override
+	public String toString() {
+		return url.toString();
+	}
+}
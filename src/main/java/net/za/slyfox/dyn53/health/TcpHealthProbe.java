@@ -0,0 +1,58 @@
+/*
+ * Copyright 2015 Philip Cronje
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package net.za.slyfox.dyn53.health;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.Objects;
+
+/**
+ * Implements a {@link HealthProbe} that considers a service healthy if a TCP connection to it can be established.
+ */
+final class TcpHealthProbe implements HealthProbe {
+	private final String host;
+	private final int port;
+	private final int timeout;
+
+	/**
+	 * Initializes the probe with the address of the service.
+	 *
+	 * @param host the host name or address of the service
+	 * @param port the TCP port of the service
+	 * @param timeout the connection timeout, in milliseconds
+	 * @throws NullPointerException if {@code host} is {@code null}
+	 */
+	TcpHealthProbe(String host, int port, int timeout) {
+		this.host = Objects.requireNonNull(host);
+		this.port = port;
+		this.timeout = timeout;
+	}
+
+	/**
+	 * Connects to the service, and immediately closes the connection.
+	 *
+	 * @throws IOException if the connection could not be established within the timeout
+	 */
+	@Override
+	public void probe() throws IOException {
+		try(Socket socket = new Socket()) {
+			socket.connect(new InetSocketAddress(host, port), timeout);
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "tcp://" + host + ':' + port;
+	}
+}
@@ -0,0 +1,24 @@
+/*
+ * Copyright 2015 Philip Cronje
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package net.za.slyfox.dyn53.jfr;
+
+/**
+ * Records a discovery cycle, from the request for the external IP address to the return of the consumer that
+ * publishes it. The provider requests, predicate tests and record updates of the cycle are recorded by their own
+ * events on the same thread, within the duration of this event.
+ */
+public final class DiscoveryEvent extends FlightRecorderEvent {
+	public String address;
+	public int records;
+	public String outcome;
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright 2015 Philip Cronje
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package net.za.slyfox.dyn53.jfr;
+
+/**
+ * Interface for the object that emits {@link FlightRecorderEvent}s to the flight recorder.
+ */
+interface EventEmitter {
+	/**
+	 * Creates the emitter, if the JVM has a flight recorder. The implementation is loaded by name, so that none of
+	 * the classes referring to {@code jdk.jfr} are loaded on a runtime without it.
+	 *
+	 * @return the emitter, or {@code null} if the JVM has no flight recorder
+	 */
+	static EventEmitter create() {
+		try {
+			Class.forName("jdk.jfr.Event");
+			return (EventEmitter)Class.forName(EventEmitter.class.getPackage().getName() + ".JfrEventEmitter")
+					.getDeclaredConstructor().newInstance();
+		} catch(ReflectiveOperationException | LinkageError e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Begins the flight recorder event of an event.
+	 *
+	 * @param event the event being timed
+	 * @return the flight recorder event, to pass to the other methods
+	 */
+	Object begin(FlightRecorderEvent event);
+
+	/**
+	 * Checks whether a flight recorder event is enabled, and within its threshold.
+	 *
+	 * @param recording the flight recorder event returned by {@link #begin(FlightRecorderEvent)}
+	 * @return {@code true} if the event would be recorded
+	 */
+	boolean shouldCommit(Object recording);
+
+	/**
+	 * Copies the fields of an event to its flight recorder event, and commits it.
+	 *
+	 * @param recording the flight recorder event returned by {@link #begin(FlightRecorderEvent)}
+	 * @param event the event being committed
+	 */
+	void commit(Object recording, FlightRecorderEvent event);
+}
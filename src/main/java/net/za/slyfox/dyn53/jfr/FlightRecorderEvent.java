@@ -0,0 +1,54 @@
+/*
+ * Copyright 2015 Philip Cronje
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package net.za.slyfox.dyn53.jfr;
+
+/**
+ * Base class of the Dyn53 events, which are emitted to the flight recorder of the JVM if it has one, and discarded
+ * otherwise. Like a flight recorder event, an event is timed from {@link #begin()} to {@link #commit()}, and its public
+ * fields are recorded when it is committed.
+ *
+ * <p>Neither the events nor this class refer to {@code jdk.jfr}, so that the code emitting them runs on Java runtimes
+ * without a flight recorder, which include the older and embedded runtimes the lite variant targets. The flight
+ * recorder events themselves are defined by {@link JfrEventEmitter}, which is only loaded if {@code jdk.jfr} is
+ * present.</p>
+ */
+public abstract class FlightRecorderEvent {
+	private static final EventEmitter EMITTER = EventEmitter.create();
+
+	private Object recording;
+
+	/**
+	 * Starts timing the event.
+	 */
+	public final void begin() {
+		recording = (EMITTER == null) ? null : EMITTER.begin(this);
+	}
+
+	/**
+	 * Checks whether the event would be recorded if committed now, so that fields that are costly to compute can be
+	 * skipped otherwise.
+	 *
+	 * @return {@code true} if the event has begun and its flight recorder event is enabled, and within its threshold
+	 */
+	public final boolean shouldCommit() {
+		return recording != null && EMITTER.shouldCommit(recording);
+	}
+
+	/**
+	 * Ends timing the event, and records it with its fields if the flight recorder event is enabled. An event that has
+	 * not begun is not recorded.
+	 */
+	public final void commit() {
+		if(recording != null) EMITTER.commit(recording, this);
+	}
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright 2015 Philip Cronje
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package net.za.slyfox.dyn53.jfr;
+
+import com.google.inject.AbstractModule;
+import com.google.inject.multibindings.Multibinder;
+import net.za.slyfox.dyn53.bean.Lifecycle;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Objects;
+
+/**
+ * Adds a continuous flight recording of the JVM and the Dyn53 events, which cover each discovery cycle, provider
+ * request, predicate test, record update and credential fetch. The events are emitted whether or not this module is
+ * installed, and can also be recorded by starting the JVM with {@code -XX:StartFlightRecording}.
+ */
+public final class FlightRecorderModule extends AbstractModule {
+	public static final Duration DEFAULT_MAX_AGE = Duration.ofHours(6);
+	public static final long DEFAULT_MAX_SIZE = 64L * 1024 * 1024;
+
+	private final Path destination;
+	private final Duration maxAge;
+	private final long maxSize;
+	private final Path settings;
+
+	/**
+	 * Initializes the module with the recording configuration.
+	 *
+	 * @param settings the JFR settings file to use in place of the bundled settings, or {@code null}
+	 * @param maxAge the maximum age of the history kept by the recording
+	 * @param maxSize the maximum size of the history kept by the recording, in bytes
+	 * @param destination the file to write the recording to when the application stops, or {@code null}
+	 * @throws IllegalArgumentException if {@code maxAge} or {@code maxSize} is not positive
+	 * @throws IllegalStateException if the JVM has no flight recorder
+	 * @throws NullPointerException if {@code maxAge} is {@code null}
+	 */
+	public FlightRecorderModule(Path settings, Duration maxAge, long maxSize, Path destination) {
+		if(maxAge.isNegative() || maxAge.isZero()) throw new IllegalArgumentException("Maximum age must be positive");
+		if(maxSize < 1) throw new IllegalArgumentException("Maximum size must be positive");
+		try {
+			Class.forName("jdk.jfr.Recording");
+		} catch(ClassNotFoundException e) {
+			throw new IllegalStateException("Flight recording requires a Java runtime with a flight recorder", e);
+		}
+		this.destination = destination;
+		this.maxAge = Objects.requireNonNull(maxAge);
+		this.maxSize = maxSize;
+		this.settings = settings;
+	}
+
+	@Override
+	protected void configure() {
+		Multibinder.newSetBinder(binder(), Lifecycle.class).addBinding()
+				.toInstance(new FlightRecordingLifecycle(settings, maxAge, maxSize, destination));
+	}
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright 2015 Philip Cronje
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package net.za.slyfox.dyn53.jfr;
+
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+import net.za.slyfox.dyn53.bean.Lifecycle;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Runs a continuous flight recording for the lifetime of the application. The recording combines the default settings
+ * of the JVM with the settings of the Dyn53 events, and keeps a bounded amount of recent history on disk, which can be
+ * dumped at any time with {@code jcmd <pid> JFR.dump name=Dyn53}. If a destination is configured, the recording is
+ * also written to it when the application stops.
+ */
+final class FlightRecordingLifecycle implements Lifecycle {
+	static final String RECORDING_NAME = "Dyn53";
+	static final String SETTINGS_RESOURCE = "/dyn53.jfc";
+
+	private final Path destination;
+	private final Logger logger = LoggerFactory.getLogger(getClass());
+	private final Duration maxAge;
+	private final long maxSize;
+	private final Path settings;
+
+	private Recording recording;
+
+	/**
+	 * Initializes the lifecycle with the recording configuration.
+	 *
+	 * @param settings the JFR settings file to use in place of the bundled settings, or {@code null}
+	 * @param maxAge the maximum age of the history kept by the recording
+	 * @param maxSize the maximum size of the history kept by the recording, in bytes
+	 * @param destination the file to write the recording to when the application stops, or {@code null}
+	 * @throws NullPointerException if {@code maxAge} is {@code null}
+	 */
+	FlightRecordingLifecycle(Path settings, Duration maxAge, long maxSize, Path destination) {
+		this.destination = destination;
+		this.maxAge = Objects.requireNonNull(maxAge);
+		this.maxSize = maxSize;
+		this.settings = settings;
+	}
+
+	/**
+	 * Starts the recording.
+	 *
+	 * @throws UncheckedIOException if the settings cannot be read, or the destination cannot be written to
+	 * @throws IllegalStateException if the settings are not a valid JFR configuration
+	 */
+	@Override
+	public synchronized void start() {
+		final Map<String, String> recordingSettings;
+		try {
+			recordingSettings = new HashMap<>(Configuration.getConfiguration("default").getSettings());
+			recordingSettings.putAll(readSettings().getSettings());
+		} catch(IOException e) {
+			throw new UncheckedIOException("Failed to read flight recorder settings", e);
+		} catch(ParseException e) {
+			throw new IllegalStateException("Invalid flight recorder settings", e);
+		}
+
+		recording = new Recording(recordingSettings);
+		recording.setName(RECORDING_NAME);
+		recording.setToDisk(true);
+		recording.setMaxAge(maxAge);
+		recording.setMaxSize(maxSize);
+		try {
+			if(destination != null) recording.setDestination(destination);
+		} catch(IOException e) {
+			recording.close();
+			throw new UncheckedIOException("Cannot write flight recording to " + destination, e);
+		}
+		recording.start();
+		logger.info("Started flight recording {}, keeping {} s or {} bytes of history", RECORDING_NAME,
+				maxAge.getSeconds(), maxSize);
+	}
+
+	/**
+	 * Stops the recording, writing it to the destination if one is configured.
+	 */
+	@Override
+	public synchronized void stop() {
+		if(recording == null) return;
+		try {
+			recording.stop();
+			if(destination != null) logger.info("Wrote flight recording to {}", destination);
+		} catch(IllegalStateException e) {
+			logger.debug("Flight recording was already stopped", e);
+		} finally {
+			recording.close();
+			recording = null;
+		}
+	}
+
+	private Configuration readSettings() throws IOException, ParseException {
+		if(settings != null) return Configuration.create(settings);
+		try(Reader reader = new InputStreamReader(getClass().getResourceAsStream(SETTINGS_RESOURCE),
+				StandardCharsets.UTF_8)) {
+			return Configuration.create(reader);
+		}
+	}
+}
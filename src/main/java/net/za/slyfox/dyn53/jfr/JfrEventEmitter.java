@@ -0,0 +1,207 @@
+/*
+ * Copyright 2015 Philip Cronje
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package net.za.slyfox.dyn53.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * Implements an {@link EventEmitter} on {@code jdk.jfr}, defining a flight recorder event for each Dyn53 event. This
+ * class is only loaded by {@link EventEmitter#create()}, once the presence of {@code jdk.jfr} has been established.
+ */
+final class JfrEventEmitter implements EventEmitter {
+	@Override
+	public Object begin(FlightRecorderEvent event) {
+		final Event recording;
+		if(event instanceof CredentialFetchEvent) {
+			recording = new CredentialFetch();
+		} else if(event instanceof DiscoveryEvent) {
+			recording = new Discovery();
+		} else if(event instanceof PredicateTestEvent) {
+			recording = new PredicateTest();
+		} else if(event instanceof ProviderRequestEvent) {
+			recording = new ProviderRequest();
+		} else if(event instanceof RecordUpdateEvent) {
+			recording = new RecordUpdate();
+		} else {
+			throw new IllegalArgumentException("Unsupported event " + event.getClass());
+		}
+		recording.begin();
+		return recording;
+	}
+
+	@Override
+	public boolean shouldCommit(Object recording) {
+		return ((Event)recording).shouldCommit();
+	}
+
+	@Override
+	public void commit(Object recording, FlightRecorderEvent event) {
+		final Event flightRecorderEvent = (Event)recording;
+		if(!flightRecorderEvent.shouldCommit()) return;
+
+		if(event instanceof CredentialFetchEvent) {
+			final CredentialFetchEvent source = (CredentialFetchEvent)event;
+			final CredentialFetch target = (CredentialFetch)recording;
+			target.source = source.source;
+			target.outcome = source.outcome;
+		} else if(event instanceof DiscoveryEvent) {
+			final DiscoveryEvent source = (DiscoveryEvent)event;
+			final Discovery target = (Discovery)recording;
+			target.address = source.address;
+			target.records = source.records;
+			target.outcome = source.outcome;
+		} else if(event instanceof PredicateTestEvent) {
+			final PredicateTestEvent source = (PredicateTestEvent)event;
+			final PredicateTest target = (PredicateTest)recording;
+			target.address = source.address;
+			target.passed = source.passed;
+		} else if(event instanceof ProviderRequestEvent) {
+			final ProviderRequestEvent source = (ProviderRequestEvent)event;
+			final ProviderRequest target = (ProviderRequest)recording;
+			target.provider = source.provider;
+			target.address = source.address;
+			target.bytesSent = source.bytesSent;
+			target.bytesReceived = source.bytesReceived;
+			target.resolution = source.resolution;
+			target.connection = source.connection;
+			target.handshake = source.handshake;
+			target.outcome = source.outcome;
+		} else if(event instanceof RecordUpdateEvent) {
+			final RecordUpdateEvent source = (RecordUpdateEvent)event;
+			final RecordUpdate target = (RecordUpdate)recording;
+			target.record = source.record;
+			target.zone = source.zone;
+			target.changes = source.changes;
+			target.outcome = source.outcome;
+			target.changeId = source.changeId;
+		}
+		flightRecorderEvent.commit();
+	}
+
+	@Name("net.za.slyfox.dyn53.CredentialFetch")
+	@Label("Credential Fetch")
+	@Category({"Dyn53", "Credentials"})
+	@Description("An attempt to fetch AWS credentials from one source")
+	static final class CredentialFetch extends Event {
+		@Label("Source")
+		String source;
+
+		@Label("Outcome")
+		@Description("SUCCESS, or FAILED if the source did not yield credentials")
+		String outcome;
+	}
+
+	@Name("net.za.slyfox.dyn53.Discovery")
+	@Label("Discovery Cycle")
+	@Category({"Dyn53", "Discovery"})
+	@Description("A run of external IP discovery, including the update of the records")
+	static final class Discovery extends Event {
+		@Label("Address")
+		@Description("The discovered external IP address, if discovery succeeded")
+		String address;
+
+		@Label("Records")
+		@Description("The number of records checked, for discovery on per-record schedules")
+		int records;
+
+		@Label("Outcome")
+		@Description("The outcome of the cycle, as reported by the discovery status")
+		String outcome;
+	}
+
+	@Name("net.za.slyfox.dyn53.PredicateTest")
+	@Label("Predicate Test")
+	@Category({"Dyn53", "Discovery"})
+	@Description("An evaluation of whether a discovered address requires an update")
+	static final class PredicateTest extends Event {
+		@Label("Address")
+		String address;
+
+		@Label("Passed")
+		@Description("Whether the address requires an update")
+		boolean passed;
+	}
+
+	@Name("net.za.slyfox.dyn53.ProviderRequest")
+	@Label("Provider Request")
+	@Category({"Dyn53", "Discovery"})
+	@Description("A request for the external IP address to a single provider")
+	static final class ProviderRequest extends Event {
+		@Label("Provider")
+		@Description("The service the request was made to")
+		String provider;
+
+		@Label("Address")
+		@Description("The external IP address reported by the provider, if the request succeeded")
+		String address;
+
+		@Label("Bytes Sent")
+		@DataAmount
+		long bytesSent;
+
+		@Label("Bytes Received")
+		@DataAmount
+		long bytesReceived;
+
+		@Label("Resolution Time")
+		@Description("The time spent resolving the host name of the provider")
+		@Timespan
+		long resolution;
+
+		@Label("Connection Time")
+		@Description("The time spent establishing the connection to the provider")
+		@Timespan
+		long connection;
+
+		@Label("Handshake Time")
+		@Description("The time spent on the TLS handshake with the provider")
+		@Timespan
+		long handshake;
+
+		@Label("Outcome")
+		@Description("SUCCESS, or FAILED if no address was obtained")
+		String outcome;
+	}
+
+	@Name("net.za.slyfox.dyn53.RecordUpdate")
+	@Label("Record Update")
+	@Category({"Dyn53", "Update"})
+	@Description("A change request for the records of one zone")
+	static final class RecordUpdate extends Event {
+		@Label("Record")
+		@Description("The names of the records in the change request, separated by commas")
+		String record;
+
+		@Label("Zone")
+		@Description("The identifier of the hosted zone")
+		String zone;
+
+		@Label("Changes")
+		@Description("The number of changes in the request")
+		int changes;
+
+		@Label("Outcome")
+		@Description("The status of the change as reported by the service, or FAILED")
+		String outcome;
+
+		@Label("Change ID")
+		@Description("The identifier the service assigned to the change, if it was accepted")
+		String changeId;
+	}
+}
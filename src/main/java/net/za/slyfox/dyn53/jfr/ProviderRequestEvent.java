@@ -0,0 +1,32 @@
+/*
+ * Copyright 2015 Philip Cronje
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package net.za.slyfox.dyn53.jfr;
+
+/**
+ * Records a single request to an external IP provider. Providers that resolve, connect and negotiate TLS themselves
+ * record the time spent on each of those phases, so that the remainder of the duration is the time spent waiting on
+ * the service.
+ */
+public final class ProviderRequestEvent extends FlightRecorderEvent {
+	public String provider;
+	public String address;
+	public long bytesSent;
+	public long bytesReceived;
+	/** The time spent resolving the host name of the provider, in nanoseconds. */
+	public long resolution;
+	/** The time spent establishing the connection to the provider, in nanoseconds. */
+	public long connection;
+	/** The time spent on the TLS handshake with the provider, in nanoseconds. */
+	public long handshake;
+	public String outcome;
+}
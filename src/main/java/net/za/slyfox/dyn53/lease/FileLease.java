@@ -0,0 +1,104 @@
+/*
+ * Copyright 2015 Philip Cronje
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package net.za.slyfox.dyn53.lease;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Objects;
+
+/**
+ * Implements a {@link Lease} backed by an exclusive lock on a local file. The lease never expires while it is held,
+ * but is released by the operating system if the holding process terminates. This makes it suitable for redundant
+ * instances on a single host, and for local testing.
+ */
+final class FileLease implements Lease {
+	private final String holder;
+	private final Path lockFilePath;
+	private final Logger logger = LoggerFactory.getLogger(getClass());
+
+	private FileChannel channel;
+	private FileLock lock;
+
+	/**
+	 * Initializes the lease with the path of the lock file.
+	 *
+	 * @param lockFilePath the path of the file to lock, which is created if it does not exist
+	 * @param holder the identifier of this instance, which is written to the lock file while the lease is held
+	 * @throws NullPointerException if a parameter is {@code null}
+	 */
+	@Inject
+	FileLease(@Named("leaseFile") Path lockFilePath, @Named("leaseHolder") String holder) {
+		this.holder = Objects.requireNonNull(holder);
+		this.lockFilePath = Objects.requireNonNull(lockFilePath);
+	}
+
+	/**
+	 * Attempts to lock the lock file, if this instance does not already hold the lock.
+	 *
+	 * @return {@code true} if this instance holds the lock
+	 * @throws UncheckedIOException if the lock file could not be opened or written
+	 */
+	@Override
+	public synchronized boolean tryAcquire() {
+		if(lock != null && lock.isValid()) return true;
+		try {
+			if(channel == null || !channel.isOpen()) {
+				channel = FileChannel.open(lockFilePath, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+			}
+			try {
+				lock = channel.tryLock();
+			} catch(OverlappingFileLockException e) {
+				lock = null;
+			}
+			if(lock == null) return false;
+
+			channel.truncate(0);
+			channel.write(ByteBuffer.wrap((holder + '\n').getBytes(StandardCharsets.UTF_8)), 0);
+			channel.force(false);
+			logger.debug("Acquired lock on {}", lockFilePath);
+			return true;
+		} catch(IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * Releases the lock on the lock file, if held, and closes the file.
+	 *
+	 * @throws UncheckedIOException if the lock could not be released
+	 */
+	@Override
+	public synchronized void release() {
+		try {
+			if(lock != null && lock.isValid()) lock.release();
+			if(channel != null) channel.close();
+		} catch(IOException e) {
+			throw new UncheckedIOException(e);
+		} finally {
+			lock = null;
+			channel = null;
+		}
+	}
+}
@@ -0,0 +1,182 @@
+/*
+ * Copyright 2015 Philip Cronje
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package net.za.slyfox.dyn53.lease;
+
+import net.za.slyfox.dyn53.bean.Lifecycle;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import java.util.Objects;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+
+/**
+ * Implements a {@link Lifecycle} object that runs another lifecycle only while this instance holds a shared
+ * {@link Lease}. The lease is renewed three times per lease duration; if the lease is lost, or cannot be renewed
+ * before the last renewal attempt prior to its expiry, the delegate lifecycle is stopped, so that at most one instance
+ * runs the delegate at any time.
+ */
+final class LeaderElectionLifecycle implements Lifecycle {
+	private final LongSupplier clock;
+	private final Lifecycle delegate;
+	private final ScheduledExecutorService executorService;
+	private final Lease lease;
+	private final long leaseDuration;
+	private final Logger logger = LoggerFactory.getLogger(getClass());
+	private final long renewInterval;
+
+	private boolean leader;
+	private long leaseExpiry;
+
+	/**
+	 * Initializes the {@code LeaderElectionLifecycle} with configuration variables and dependencies.
+	 *
+	 * @param leaseDuration the duration for which the lease is acquired, in milliseconds
+	 * @param lease the lease shared between redundant instances
+	 * @param delegate the lifecycle to run only while this instance holds the lease
+	 * @param executorService the scheduled executor service that will schedule lease renewal
+	 * @throws NullPointerException if a required dependency is {@code null}
+	 */
+	@Inject
+	LeaderElectionLifecycle(@Named("leaseDuration") long leaseDuration, Lease lease,
+			@Named("leaderLifecycle") Lifecycle delegate,
+			@Named("leaderElection") ScheduledExecutorService executorService) {
+		this(leaseDuration, lease, delegate, executorService,
+				() -> TimeUnit.NANOSECONDS.toMillis(System.nanoTime()));
+	}
+
+	/**
+	 * Initializes the {@code LeaderElectionLifecycle} with configuration variables, dependencies, and a clock.
+	 *
+	 * @param leaseDuration the duration for which the lease is acquired, in milliseconds
+	 * @param lease the lease shared between redundant instances
+	 * @param delegate the lifecycle to run only while this instance holds the lease
+	 * @param executorService the scheduled executor service that will schedule lease renewal
+	 * @param clock a source of monotonic time in milliseconds
+	 * @throws NullPointerException if a required dependency is {@code null}
+	 */
+	LeaderElectionLifecycle(long leaseDuration, Lease lease, Lifecycle delegate,
+			ScheduledExecutorService executorService, LongSupplier clock) {
+		this.clock = Objects.requireNonNull(clock);
+		this.delegate = Objects.requireNonNull(delegate);
+		this.executorService = Objects.requireNonNull(executorService);
+		this.lease = Objects.requireNonNull(lease);
+		this.leaseDuration = leaseDuration;
+		this.renewInterval = leaseDuration / 3;
+	}
+
+	/**
+	 * Schedules lease acquisition and renewal.
+	 */
+	@Override
+	public void start() {
+		logger.info("Scheduling lease renewal every {} milliseconds", renewInterval);
+		executorService.scheduleAtFixedRate(this::renew, 0, renewInterval, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Stops lease renewal, stops the delegate lifecycle if this instance is the leader, and releases the lease.
+	 */
+	@Override
+	public void stop() {
+		stop(TimeUnit.MILLISECONDS.toNanos(renewInterval), Lifecycle::stop);
+	}
+
+	/**
+	 * Stops lease renewal, stops the delegate lifecycle with the same deadline if this instance is the leader, and
+	 * releases the lease.
+	 *
+	 * @param deadline the time by which to return, as a value of {@link System#nanoTime()}
+	 */
+	@Override
+	public void stop(long deadline) {
+		stop(Math.min(TimeUnit.MILLISECONDS.toNanos(renewInterval), deadline - System.nanoTime()),
+				lifecycle -> lifecycle.stop(deadline));
+	}
+
+	private void stop(long renewalTimeout, Consumer<Lifecycle> delegateStop) {
+		logger.info("Shutting down lease renewal");
+		executorService.shutdown();
+		try {
+			if(!executorService.awaitTermination(renewalTimeout, TimeUnit.NANOSECONDS)) {
+				logger.warn("Lease renewal is still running, stopping anyway");
+			}
+		} catch(InterruptedException e) {
+			logger.debug("Interrupted while waiting for termination of lease renewal");
+		}
+
+		synchronized(this) {
+			if(leader) {
+				stepDown(delegateStop);
+				try {
+					lease.release();
+				} catch(RuntimeException e) {
+					logger.warn("Failed to release lease, standby will take over when it expires", e);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Attempts to acquire or renew the lease, and starts or stops the delegate lifecycle on a change of leadership.
+	 */
+	synchronized void renew() {
+		final long now = clock.getAsLong();
+		boolean acquired;
+		try {
+			acquired = lease.tryAcquire();
+		} catch(RuntimeException e) {
+			logger.warn("Failed to renew lease", e);
+			acquired = false;
+			if(leader && now + renewInterval < leaseExpiry) return;
+		}
+
+		if(acquired) {
+			leaseExpiry = now + leaseDuration;
+			if(!leader) {
+				logger.info("Acquired lease, becoming leader");
+				leader = true;
+				try {
+					delegate.start();
+				} catch(RuntimeException e) {
+					logger.error("Failed to start leader lifecycle", e);
+				}
+			}
+		} else if(leader) {
+			logger.warn("Lost lease, becoming standby");
+			stepDown(Lifecycle::stop);
+		}
+	}
+
+	/**
+	 * Returns whether this instance is currently the leader.
+	 *
+	 * @return {@code true} if this instance holds the lease
+	 */
+	synchronized boolean isLeader() {
+		return leader;
+	}
+
+	private void stepDown(Consumer<Lifecycle> delegateStop) {
+		leader = false;
+		try {
+			delegateStop.accept(delegate);
+		} catch(RuntimeException e) {
+			logger.error("Failed to stop leader lifecycle", e);
+		}
+	}
+}
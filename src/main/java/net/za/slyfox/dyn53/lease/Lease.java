@@ -0,0 +1,36 @@
+/*
+ * Copyright 2015 Philip Cronje
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package net.za.slyfox.dyn53.lease;
+
+/**
+ * Interface for a lease shared between redundant application instances, of which at most one instance may hold at a
+ * time. A lease is acquired for a fixed duration, and must be renewed by acquiring it again before it expires.
+ */
+public interface Lease {
+	/**
+	 * Attempts to acquire the lease, or renew it if it is already held by this instance.
+	 *
+	 * @return {@code true} if this instance holds the lease for the full lease duration from now, or {@code false} if
+	 *         the lease is held by another instance
+	 * @throws RuntimeException if the state of the lease could not be determined
+	 */
+	boolean tryAcquire();
+
+	/**
+	 * Releases the lease if it is held by this instance, so that another instance can acquire it without waiting for
+	 * it to expire.
+	 *
+	 * @throws RuntimeException if the lease could not be released
+	 */
+	void release();
+}
@@ -0,0 +1,54 @@
+/*
+ * Copyright 2015 Philip Cronje
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package net.za.slyfox.dyn53.lease;
+
+import com.google.inject.AbstractModule;
+import com.google.inject.multibindings.Multibinder;
+import com.google.inject.name.Names;
+import net.za.slyfox.dyn53.bean.Lifecycle;
+import net.za.slyfox.dyn53.concurrent.NamedPoolThreadFactory;
+
+import java.util.Objects;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+/**
+ * Runs the {@code "leaderLifecycle"} only while this instance holds the {@link Lease}. The lease implementation is
+ * bound by a separate module, such as {@link FileLeaseModule}.
+ */
+public final class LeaseModule extends AbstractModule {
+	private final String holder;
+	private final long leaseDuration;
+
+	/**
+	 * Initializes the module.
+	 *
+	 * @param leaseDuration the duration for which the lease is acquired, in milliseconds
+	 * @param holder the identifier of this instance, unique among the redundant instances
+	 * @throws NullPointerException if {@code holder} is {@code null}
+	 */
+	public LeaseModule(long leaseDuration, String holder) {
+		this.holder = Objects.requireNonNull(holder);
+		this.leaseDuration = leaseDuration;
+	}
+
+	@Override
+	protected void configure() {
+		Multibinder.newSetBinder(binder(), Lifecycle.class).addBinding().to(LeaderElectionLifecycle.class);
+
+		bind(ScheduledExecutorService.class).annotatedWith(Names.named("leaderElection"))
+				.toInstance(Executors.newSingleThreadScheduledExecutor(new NamedPoolThreadFactory("leaderElection")));
+		bind(Long.class).annotatedWith(Names.named("leaseDuration")).toInstance(leaseDuration);
+		bind(String.class).annotatedWith(Names.named("leaseHolder")).toInstance(holder);
+	}
+}
@@ -0,0 +1,204 @@
+/*
+ * Copyright 2015 Philip Cronje
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package net.za.slyfox.dyn53.lite;
+
+import net.za.slyfox.dyn53.PidFileLifecycle;
+import net.za.slyfox.dyn53.bean.Lifecycle;
+import net.za.slyfox.dyn53.extip.DiscoveryStatus.AddressStatus.Outcome;
+import net.za.slyfox.dyn53.extip.ExternalIpDiscovery;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * Launcher of the lite variant of the application, for hosts with little memory. The lite variant updates a single
+ * resource record set with the external IP address, like the default configuration of {@link
+ * net.za.slyfox.dyn53.Dyn53}, but assembles its objects by hand instead of through Guice, and replaces the AWS SDK
+ * with {@link LiteRoute53Client}. It reads the same configuration properties, and rejects those of features it does
+ * not support.
+ *
+ * <p>Credentials are read from the {@code AWS_ACCESS_KEY_ID}, {@code AWS_SECRET_ACCESS_KEY} and
+ * {@code AWS_SESSION_TOKEN} environment variables if set, or otherwise from the configured profile of the shared
+ * credentials file. They are not refreshed.</p>
+ *
+ * <p>If the {@code net.za.slyfox.dyn53.oneShot} property is {@code true}, the launcher discovers and publishes the
+ * external IP address once and exits, with status 0 if the address was published and 1 otherwise. This suits
+ * invocation from network hooks and cron.</p>
+ */
+public final class LiteDyn53 {
+	private static final List<String> UNSUPPORTED_PROPERTIES = Arrays.asList("net.za.slyfox.dyn53.accounts",
+			"net.za.slyfox.dyn53.admin.port", "net.za.slyfox.dyn53.backend", "net.za.slyfox.dyn53.cluster.membership",
+			"net.za.slyfox.dyn53.credentials.sources", "net.za.slyfox.dyn53.debounce.settleWindow",
+			"net.za.slyfox.dyn53.discovery.providers", "net.za.slyfox.dyn53.health.probes",
+			"net.za.slyfox.dyn53.jfr.recording", "net.za.slyfox.dyn53.lease.file",
+			"net.za.slyfox.dyn53.lease.recordName", "net.za.slyfox.dyn53.logFormat",
+			"net.za.slyfox.dyn53.logSampleRate", "net.za.slyfox.dyn53.reconcile.file",
+			"net.za.slyfox.dyn53.route53.account", "net.za.slyfox.dyn53.route53.adaptiveTtl",
+			"net.za.slyfox.dyn53.route53.checkInterval", "net.za.slyfox.dyn53.route53.records",
+			"net.za.slyfox.dyn53.uplinks");
+
+	private LiteDyn53() {
+	}
+
+	/**
+	 * Assembles the application from configuration properties, and starts it.
+	 *
+	 * @param arguments array of command line arguments
+	 * @throws IOException if the configuration file or credentials cannot be read
+	 */
+	public static void main(String[] arguments) throws IOException {
+		final Properties properties = loadProperties();
+
+		final String logFile = properties.getProperty("net.za.slyfox.dyn53.logFile");
+		if(logFile != null) setDefaultProperty("org.slf4j.simpleLogger.logFile", logFile);
+		setDefaultProperty("org.slf4j.simpleLogger.showDateTime", "true");
+		setDefaultProperty("org.slf4j.simpleLogger.dateTimeFormat", "yyyy-MM-dd HH:mm:ss.SSS");
+
+		Thread.setDefaultUncaughtExceptionHandler((t, e) ->
+				LoggerFactory.getLogger(LiteDyn53.class).error("Thread {} terminated due to uncaught exception",
+						t.getName(), e));
+
+		final Logger logger = LoggerFactory.getLogger(LiteDyn53.class);
+		logger.info("Initializing Dyn53 lite application");
+		for(String property : UNSUPPORTED_PROPERTIES) {
+			if(properties.getProperty(property) != null) {
+				throw new IllegalArgumentException(property + " is not supported by the lite variant");
+			}
+		}
+
+		final String hostedZoneId = properties.getProperty("net.za.slyfox.dyn53.route53.hostedZoneId");
+		if(hostedZoneId == null) throw new IllegalArgumentException("Hosted zone ID missing");
+		final String resourceRecordSetName =
+				properties.getProperty("net.za.slyfox.dyn53.route53.resourceRecordSetName");
+		if(resourceRecordSetName == null) throw new IllegalArgumentException("Resource record set name missing");
+		final long resourceRecordSetTtl = Long.valueOf(properties.getProperty(
+				"net.za.slyfox.dyn53.route53.resourceRecordSetTtl", "300"));
+
+		final String prefix = "net.za.slyfox.dyn53.route53.client.";
+		final LiteRoute53Client client = new LiteRoute53Client(
+				URI.create(properties.getProperty(prefix + "endpoint", "https://route53.amazonaws.com")),
+				getSigner(properties.getProperty("net.za.slyfox.dyn53.credentials.profile", "dyn53")),
+				Integer.valueOf(properties.getProperty(prefix + "connectionTimeout", "10000")),
+				Integer.valueOf(properties.getProperty(prefix + "socketTimeout", "20000")), Clock.systemUTC());
+
+		final LiteRoute53Updater updater =
+				new LiteRoute53Updater(hostedZoneId, resourceRecordSetName, resourceRecordSetTtl, client);
+
+		if(Boolean.valueOf(properties.getProperty("net.za.slyfox.dyn53.oneShot", "false"))) {
+			final Outcome outcome = ExternalIpDiscovery.runOnce(updater);
+			logger.info("Dyn53 lite update finished: {}", outcome);
+			System.exit((outcome == Outcome.UPDATED) ? 0 : 1);
+		}
+
+		final List<Lifecycle> lifecycles = new ArrayList<>(2);
+		final String pidFile = properties.getProperty("net.za.slyfox.dyn53.daemon.pidFile");
+		if(pidFile != null) lifecycles.add(new PidFileLifecycle(Paths.get(pidFile)));
+		lifecycles.add(ExternalIpDiscovery.newLifecycle(updater,
+				Boolean.valueOf(properties.getProperty("net.za.slyfox.dyn53.alwaysUpdate", "false")), 300));
+
+		logger.info("Starting Dyn53 lite application");
+		lifecycles.forEach(lifecycle -> {
+			lifecycle.start();
+			Runtime.getRuntime().addShutdownHook(new Thread(lifecycle::stop, "shutdown"));
+		});
+	}
+
+	/**
+	 * Loads the configuration properties, from the file named by the {@code net.za.slyfox.dyn53.configurationFile}
+	 * system property if given, overridden by the system properties.
+	 *
+	 * @return the configuration properties
+	 * @throws IOException if the configuration file cannot be read
+	 */
+	private static Properties loadProperties() throws IOException {
+		final String configurationFilePath = System.getProperty("net.za.slyfox.dyn53.configurationFile");
+		if(configurationFilePath == null) return System.getProperties();
+
+		final Properties fileProperties = new Properties();
+		try(BufferedReader reader = Files.newBufferedReader(Paths.get(configurationFilePath))) {
+			fileProperties.load(reader);
+		}
+		final Properties properties = new Properties(fileProperties);
+		properties.putAll(System.getProperties());
+		return properties;
+	}
+
+	/**
+	 * Creates a signer for Route 53 requests from the credentials in the environment, or otherwise those of a profile
+	 * in the shared credentials file.
+	 *
+	 * @param profileName the name of the profile to read
+	 * @return the signer
+	 * @throws IOException if no credentials are found, or the shared credentials file cannot be read
+	 */
+	private static SigV4Signer getSigner(String profileName) throws IOException {
+		final String accessKeyId = System.getenv("AWS_ACCESS_KEY_ID");
+		final String secretKey = System.getenv("AWS_SECRET_ACCESS_KEY");
+		if(accessKeyId != null && secretKey != null) {
+			return new SigV4Signer(accessKeyId, secretKey, System.getenv("AWS_SESSION_TOKEN"), "us-east-1",
+					"route53");
+		}
+
+		final String credentialsFile = System.getenv("AWS_SHARED_CREDENTIALS_FILE");
+		final Path path = (credentialsFile != null) ? Paths.get(credentialsFile)
+				: Paths.get(System.getProperty("user.home"), ".aws", "credentials");
+		final Properties profile = readProfile(path, profileName);
+		if(profile.getProperty("aws_access_key_id") == null || profile.getProperty("aws_secret_access_key") == null) {
+			throw new IOException("No credentials for profile " + profileName + " in " + path);
+		}
+		return new SigV4Signer(profile.getProperty("aws_access_key_id"), profile.getProperty("aws_secret_access_key"),
+				profile.getProperty("aws_session_token"), "us-east-1", "route53");
+	}
+
+	/**
+	 * Reads the properties of a profile from a credentials file in the INI format used by the AWS tools.
+	 *
+	 * @param path the path to the credentials file
+	 * @param profileName the name of the profile to read
+	 * @return the properties of the profile, which are empty if the profile does not exist
+	 * @throws IOException if the file cannot be read
+	 */
+	static Properties readProfile(Path path, String profileName) throws IOException {
+		final Properties profile = new Properties();
+		boolean inProfile = false;
+		for(String line : Files.readAllLines(path, StandardCharsets.UTF_8)) {
+			line = line.trim();
+			if(line.isEmpty() || line.startsWith("#") || line.startsWith(";")) continue;
+			if(line.startsWith("[") && line.endsWith("]")) {
+				inProfile = line.substring(1, line.length() - 1).trim().equals(profileName);
+			} else if(inProfile) {
+				final int separator = line.indexOf('=');
+				if(separator > 0) {
+					profile.setProperty(line.substring(0, separator).trim(), line.substring(separator + 1).trim());
+				}
+			}
+		}
+		return profile;
+	}
+
+	private static void setDefaultProperty(String name, String value) {
+		if(System.getProperty(name) == null) System.setProperty(name, value);
+	}
+}
@@ -0,0 +1,199 @@
+/*
+ * Copyright 2015 Philip Cronje
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package net.za.slyfox.dyn53.lite;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Implements a minimal Amazon Route 53 client that can only submit {@code ChangeResourceRecordSets} requests, each
+ * changing a single resource record set with a single value. Requests are built and responses are read as plain text,
+ * without an XML parser, and are sent over a {@link HttpURLConnection}, so that the client loads a fraction of the
+ * classes of the AWS SDK.
+ */
+final class LiteRoute53Client {
+	private static final String API_VERSION = "2013-04-01";
+	private static final String NAMESPACE = "https://route53.amazonaws.com/doc/" + API_VERSION + '/';
+
+	private final Clock clock;
+	private final int connectionTimeout;
+	private final URI endpoint;
+	private final SigV4Signer signer;
+	private final int socketTimeout;
+
+	/**
+	 * Initializes the client.
+	 *
+	 * @param endpoint the Route 53 endpoint to send requests to
+	 * @param signer the signer to sign requests with
+	 * @param connectionTimeout the time to wait for a connection to be established, in milliseconds
+	 * @param socketTimeout the time to wait for data, in milliseconds
+	 * @param clock the clock giving the time at which requests are signed
+	 * @throws NullPointerException if a required parameter is {@code null}
+	 */
+	LiteRoute53Client(URI endpoint, SigV4Signer signer, int connectionTimeout, int socketTimeout, Clock clock) {
+		this.clock = Objects.requireNonNull(clock);
+		this.connectionTimeout = connectionTimeout;
+		this.endpoint = Objects.requireNonNull(endpoint);
+		this.signer = Objects.requireNonNull(signer);
+		this.socketTimeout = socketTimeout;
+	}
+
+	/**
+	 * Submits a change to a resource record set.
+	 *
+	 * @param hostedZoneId the identifier of the hosted zone, with or without the {@code /hostedzone/} prefix
+	 * @param action the change action, such as {@code UPSERT} or {@code DELETE}
+	 * @param name the name of the resource record set
+	 * @param type the type of the resource record set, such as {@code A} or {@code AAAA}
+	 * @param ttl the TTL of the resource record set
+	 * @param value the value of the single resource record
+	 * @param comment the comment to attach to the change batch
+	 * @return the identifier and status of the submitted change
+	 * @throws IOException if the request fails, or Route 53 rejects it
+	 */
+	ChangeInfo changeResourceRecordSet(String hostedZoneId, String action, String name, String type, long ttl,
+			String value, String comment) throws IOException {
+		final String zone = hostedZoneId.startsWith("/hostedzone/") ? hostedZoneId.substring(12) : hostedZoneId;
+		final URI uri = endpoint.resolve("/" + API_VERSION + "/hostedzone/" + zone + "/rrset/");
+
+		final StringBuilder body = new StringBuilder(512)
+				.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>")
+				.append("<ChangeResourceRecordSetsRequest xmlns=\"").append(NAMESPACE).append("\">")
+				.append("<ChangeBatch><Comment>");
+		appendEscaped(body, comment);
+		body.append("</Comment><Changes><Change><Action>").append(action).append("</Action>")
+				.append("<ResourceRecordSet><Name>");
+		appendEscaped(body, name);
+		body.append("</Name><Type>").append(type).append("</Type><TTL>").append(ttl).append("</TTL>")
+				.append("<ResourceRecords><ResourceRecord><Value>");
+		appendEscaped(body, value);
+		body.append("</Value></ResourceRecord></ResourceRecords></ResourceRecordSet></Change></Changes>")
+				.append("</ChangeBatch></ChangeResourceRecordSetsRequest>");
+		final byte[] payload = body.toString().getBytes(StandardCharsets.UTF_8);
+
+		final Map<String, String> headers = new LinkedHashMap<>();
+		headers.put("Content-Type", "text/xml");
+		signer.sign("POST", uri, headers, payload, clock.instant());
+
+		final HttpURLConnection connection = (HttpURLConnection)uri.toURL().openConnection();
+		try {
+			connection.setConnectTimeout(connectionTimeout);
+			connection.setReadTimeout(socketTimeout);
+			connection.setRequestMethod("POST");
+			connection.setDoOutput(true);
+			connection.setFixedLengthStreamingMode(payload.length);
+			headers.forEach((header, headerValue) -> {
+				if(!header.equals("Host")) connection.setRequestProperty(header, headerValue);
+			});
+			try(OutputStream output = connection.getOutputStream()) {
+				output.write(payload);
+			}
+
+			final int status = connection.getResponseCode();
+			if(status / 100 != 2) {
+				final String error = readFully(connection.getErrorStream());
+				final String code = getElement(error, "Code");
+				throw new IOException("Route 53 request failed with status " + status
+						+ ((code == null) ? "" : ", " + code) + ": " + getElement(error, "Message"));
+			}
+
+			final String response = readFully(connection.getInputStream());
+			final String id = getElement(response, "Id");
+			if(id == null) throw new IOException("Route 53 response has no change ID");
+			return new ChangeInfo(id, getElement(response, "Status"));
+		} finally {
+			connection.disconnect();
+		}
+	}
+
+	/**
+	 * Returns the text of the first element with a given name in an XML document.
+	 *
+	 * @param xml the XML document
+	 * @param name the local name of the element
+	 * @return the unescaped text of the element, or {@code null} if the element is not present
+	 */
+	static String getElement(String xml, String name) {
+		final int start = xml.indexOf('<' + name + '>');
+		if(start < 0) return null;
+		final int end = xml.indexOf("</" + name + '>', start);
+		if(end < 0) return null;
+		return xml.substring(start + name.length() + 2, end)
+				.replace("&lt;", "<").replace("&gt;", ">").replace("&quot;", "\"").replace("&apos;", "'")
+				.replace("&amp;", "&");
+	}
+
+	private static void appendEscaped(StringBuilder builder, String text) {
+		for(int i = 0; i < text.length(); i++) {
+			final char c = text.charAt(i);
+			switch(c) {
+			case '<':
+				builder.append("&lt;");
+				break;
+			case '>':
+				builder.append("&gt;");
+				break;
+			case '&':
+				builder.append("&amp;");
+				break;
+			case '"':
+				builder.append("&quot;");
+				break;
+			default:
+				builder.append(c);
+			}
+		}
+	}
+
+	private static String readFully(InputStream input) throws IOException {
+		if(input == null) return "";
+		try(InputStream stream = input) {
+			final ByteArrayOutputStream output = new ByteArrayOutputStream(512);
+			final byte[] buffer = new byte[512];
+			int read;
+			while((read = stream.read(buffer)) >= 0) output.write(buffer, 0, read);
+			return new String(output.toByteArray(), StandardCharsets.UTF_8);
+		}
+	}
+
+	/**
+	 * The identifier and status of a submitted change.
+	 */
+	static final class ChangeInfo {
+		private final String id;
+		private final String status;
+
+		ChangeInfo(String id, String status) {
+			this.id = id;
+			this.status = status;
+		}
+
+		String getId() {
+			return id;
+		}
+
+		String getStatus() {
+			return status;
+		}
+	}
+}
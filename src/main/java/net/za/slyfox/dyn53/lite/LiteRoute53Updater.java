@@ -0,0 +1,88 @@
+/*
+ * Copyright 2015 Philip Cronje
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package net.za.slyfox.dyn53.lite;
+
+import net.za.slyfox.dyn53.logging.LogField;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.Inet4Address;
+import java.net.InetAddress;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Implements a {@link Consumer} that updates an Amazon Route 53 resource record set with the value of an
+ * {@link InetAddress}, through a {@link LiteRoute53Client}.
+ */
+final class LiteRoute53Updater implements Consumer<InetAddress> {
+	private final LiteRoute53Client client;
+	private final String hostedZoneId;
+	private final Logger logger = LoggerFactory.getLogger(getClass());
+	private final String resourceRecordSetName;
+	private final long resourceRecordSetTtl;
+
+	/**
+	 * Initializes the updater.
+	 *
+	 * @param hostedZoneId the identifier of the hosted zone to update, as given by Route 53
+	 * @param resourceRecordSetName the name of the resource record set in the hosted zone to update
+	 * @param resourceRecordSetTtl the TTL to set on the resource record set
+	 * @param client the client to make requests with
+	 * @throws NullPointerException if a required parameter is {@code null}
+	 */
+	LiteRoute53Updater(String hostedZoneId, String resourceRecordSetName, long resourceRecordSetTtl,
+			LiteRoute53Client client) {
+		this.client = Objects.requireNonNull(client);
+		this.hostedZoneId = Objects.requireNonNull(hostedZoneId);
+		this.resourceRecordSetName = Objects.requireNonNull(resourceRecordSetName);
+		this.resourceRecordSetTtl = resourceRecordSetTtl;
+	}
+
+	/**
+	 * Updates the configured resource record set with the value of an IP address.
+	 *
+	 * @param inetAddress the address to update the resource record set with
+	 * @throws UncheckedIOException if the change request fails
+	 */
+	@Override
+	public void accept(InetAddress inetAddress) {
+		final String address = inetAddress.getHostAddress();
+		logger.info("Updating resource record set {} in hosted zone {} to {}", resourceRecordSetName, hostedZoneId,
+				address);
+
+		final long start = System.nanoTime();
+		final LiteRoute53Client.ChangeInfo changeInfo;
+		try {
+			changeInfo = client.changeResourceRecordSet(hostedZoneId, "UPSERT", resourceRecordSetName,
+					(inetAddress instanceof Inet4Address) ? "A" : "AAAA", resourceRecordSetTtl, address,
+					"Dyn53 update");
+		} catch(IOException e) {
+			logger.warn("Change request for {} in hosted zone {} {} after {} ms",
+					LogField.of("record", resourceRecordSetName), LogField.of("zone", hostedZoneId),
+					LogField.of("outcome", "FAILED"), LogField.of("latency", elapsedMillis(start)));
+			throw new UncheckedIOException(e);
+		}
+		logger.info("Result of change request {} for {} in hosted zone {}: {} after {} ms",
+				LogField.of("changeId", changeInfo.getId()), LogField.of("record", resourceRecordSetName),
+				LogField.of("zone", hostedZoneId), LogField.of("outcome", changeInfo.getStatus()),
+				LogField.of("latency", elapsedMillis(start)));
+	}
+
+	private static long elapsedMillis(long start) {
+		return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+	}
+}
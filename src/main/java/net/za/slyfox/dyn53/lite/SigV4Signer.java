@@ -0,0 +1,149 @@
+/*
+ * Copyright 2015 Philip Cronje
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package net.za.slyfox.dyn53.lite;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+
+/**
+ * Signs HTTP requests with AWS Signature Version 4, as a minimal replacement for the signer of the AWS SDK.
+ *
+ * <p>Request paths and query strings are signed as given, so they must already be in canonical, URI-encoded form.
+ * This holds for the requests made by {@link LiteRoute53Client}.</p>
+ */
+final class SigV4Signer {
+	private static final String ALGORITHM = "AWS4-HMAC-SHA256";
+	private static final DateTimeFormatter DATE = DateTimeFormatter.ofPattern("yyyyMMdd").withZone(ZoneOffset.UTC);
+	private static final DateTimeFormatter DATE_TIME =
+			DateTimeFormatter.ofPattern("yyyyMMdd'T'HHmmss'Z'").withZone(ZoneOffset.UTC);
+	private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+	private final String accessKeyId;
+	private final String region;
+	private final String secretKey;
+	private final String service;
+	private final String sessionToken;
+
+	/**
+	 * Initializes the signer with credentials and the scope of the requests to sign.
+	 *
+	 * @param accessKeyId the AWS access key ID
+	 * @param secretKey the AWS secret access key
+	 * @param sessionToken the session token of temporary credentials, or {@code null}
+	 * @param region the region to sign requests for
+	 * @param service the name of the service to sign requests for
+	 * @throws NullPointerException if a required parameter is {@code null}
+	 */
+	SigV4Signer(String accessKeyId, String secretKey, String sessionToken, String region, String service) {
+		this.accessKeyId = Objects.requireNonNull(accessKeyId);
+		this.region = Objects.requireNonNull(region);
+		this.secretKey = Objects.requireNonNull(secretKey);
+		this.service = Objects.requireNonNull(service);
+		this.sessionToken = sessionToken;
+	}
+
+	/**
+	 * Signs a request, adding the {@code Host}, {@code X-Amz-Date}, {@code X-Amz-Security-Token} (for temporary
+	 * credentials) and {@code Authorization} headers to {@code headers}. All headers present in {@code headers} are
+	 * signed.
+	 *
+	 * @param method the request method
+	 * @param uri the request URI
+	 * @param headers the headers to send with the request, to which the signing headers are added
+	 * @param payload the request body
+	 * @param time the time at which the request is made
+	 */
+	void sign(String method, URI uri, Map<String, String> headers, byte[] payload, Instant time) {
+		headers.put("Host", (uri.getPort() < 0) ? uri.getHost() : uri.getHost() + ':' + uri.getPort());
+		headers.put("X-Amz-Date", DATE_TIME.format(time));
+		if(sessionToken != null) headers.put("X-Amz-Security-Token", sessionToken);
+
+		final Map<String, String> canonicalHeaders = new TreeMap<>();
+		headers.forEach((name, value) -> canonicalHeaders.put(name.toLowerCase(), value.trim().replaceAll(" +", " ")));
+		final String signedHeaders = String.join(";", canonicalHeaders.keySet());
+
+		final StringBuilder canonicalRequest = new StringBuilder(512)
+				.append(method).append('\n')
+				.append((uri.getRawPath() == null || uri.getRawPath().isEmpty()) ? "/" : uri.getRawPath()).append('\n')
+				.append(getCanonicalQuery(uri.getRawQuery())).append('\n');
+		canonicalHeaders.forEach((name, value) -> canonicalRequest.append(name).append(':').append(value).append('\n'));
+		canonicalRequest.append('\n').append(signedHeaders).append('\n').append(hex(sha256(payload)));
+
+		final String scope = DATE.format(time) + '/' + region + '/' + service + "/aws4_request";
+		final String stringToSign = ALGORITHM + '\n' + DATE_TIME.format(time) + '\n' + scope + '\n'
+				+ hex(sha256(canonicalRequest.toString().getBytes(StandardCharsets.UTF_8)));
+
+		byte[] key = hmac(("AWS4" + secretKey).getBytes(StandardCharsets.UTF_8), DATE.format(time));
+		key = hmac(key, region);
+		key = hmac(key, service);
+		key = hmac(key, "aws4_request");
+		final String signature = hex(hmac(key, stringToSign));
+
+		headers.put("Authorization", ALGORITHM + " Credential=" + accessKeyId + '/' + scope
+				+ ", SignedHeaders=" + signedHeaders + ", Signature=" + signature);
+	}
+
+	/**
+	 * Sorts the parameters of a query string by name and value, as required for signing.
+	 *
+	 * @param rawQuery the URI-encoded query string, or {@code null}
+	 * @return the canonical query string
+	 */
+	private static String getCanonicalQuery(String rawQuery) {
+		if(rawQuery == null || rawQuery.isEmpty()) return "";
+		final String[] parameters = rawQuery.split("&");
+		for(int i = 0; i < parameters.length; i++) {
+			if(parameters[i].indexOf('=') < 0) parameters[i] += '=';
+		}
+		Arrays.sort(parameters);
+		return String.join("&", parameters);
+	}
+
+	private static byte[] hmac(byte[] key, String data) {
+		try {
+			final Mac mac = Mac.getInstance("HmacSHA256");
+			mac.init(new SecretKeySpec(key, "HmacSHA256"));
+			return mac.doFinal(data.getBytes(StandardCharsets.UTF_8));
+		} catch(GeneralSecurityException e) {
+			throw new IllegalStateException("HmacSHA256 is not supported", e);
+		}
+	}
+
+	private static byte[] sha256(byte[] data) {
+		try {
+			return MessageDigest.getInstance("SHA-256").digest(data);
+		} catch(GeneralSecurityException e) {
+			throw new IllegalStateException("SHA-256 is not supported", e);
+		}
+	}
+
+	private static String hex(byte[] bytes) {
+		final char[] chars = new char[bytes.length * 2];
+		for(int i = 0; i < bytes.length; i++) {
+			chars[i * 2] = HEX[(bytes[i] >> 4) & 0xf];
+			chars[i * 2 + 1] = HEX[bytes[i] & 0xf];
+		}
+		return new String(chars);
+	}
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright 2015 Philip Cronje
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package net.za.slyfox.dyn53.logging;
+
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.classic.spi.IThrowableProxy;
+import ch.qos.logback.classic.spi.ThrowableProxyUtil;
+import ch.qos.logback.core.CoreConstants;
+import ch.qos.logback.core.LayoutBase;
+
+import java.time.Instant;
+import java.util.Map;
+
+/**
+ * Implements a layout that renders each logging event as a single line of JSON. Besides the standard timestamp,
+ * level, thread, logger and message properties, each {@link LogField} argument of the event and each MDC entry is
+ * written as a property of its own, so that events can be queried by field without parsing messages.
+ */
+public final class JsonLayout extends LayoutBase<ILoggingEvent> {
+	@Override
+	public String doLayout(ILoggingEvent event) {
+		final StringBuilder builder = new StringBuilder(256);
+		builder.append('{');
+		appendProperty(builder, "timestamp", Instant.ofEpochMilli(event.getTimeStamp()).toString());
+		builder.append(',');
+		appendProperty(builder, "level", event.getLevel().toString());
+		builder.append(',');
+		appendProperty(builder, "thread", event.getThreadName());
+		builder.append(',');
+		appendProperty(builder, "logger", event.getLoggerName());
+		builder.append(',');
+		appendProperty(builder, "message", event.getFormattedMessage());
+
+		final Object[] arguments = event.getArgumentArray();
+		if(arguments != null) {
+			for(Object argument : arguments) {
+				if(argument instanceof LogField) {
+					final LogField field = (LogField)argument;
+					builder.append(',');
+					appendProperty(builder, field.getName(), field.getValue());
+				}
+			}
+		}
+
+		final Map<String, String> mdc = event.getMDCPropertyMap();
+		if(mdc != null) {
+			mdc.forEach((key, value) -> {
+				builder.append(',');
+				appendProperty(builder, key, value);
+			});
+		}
+
+		final IThrowableProxy throwableProxy = event.getThrowableProxy();
+		if(throwableProxy != null) {
+			builder.append(',');
+			appendProperty(builder, "exception", ThrowableProxyUtil.asString(throwableProxy));
+		}
+		return builder.append('}').append(CoreConstants.LINE_SEPARATOR).toString();
+	}
+
+	/**
+	 * Appends a JSON property to a builder. Numbers and booleans are written as JSON literals, and other values as
+	 * strings.
+	 *
+	 * @param builder the builder to append to
+	 * @param name the name of the property
+	 * @param value the value of the property
+	 */
+	private static void appendProperty(StringBuilder builder, String name, Object value) {
+		appendString(builder, name);
+		builder.append(':');
+		if(value == null) {
+			builder.append("null");
+		} else if(value instanceof Number || value instanceof Boolean) {
+			builder.append(value);
+		} else {
+			appendString(builder, value.toString());
+		}
+	}
+
+	/**
+	 * Appends a quoted and escaped JSON string to a builder.
+	 *
+	 * @param builder the builder to append to
+	 * @param value the string to append
+	 */
+	static void appendString(StringBuilder builder, String value) {
+		builder.append('"');
+		for(int i = 0; i < value.length(); i++) {
+			final char c = value.charAt(i);
+			switch(c) {
+			case '"':
+				builder.append("\\\"");
+				break;
+			case '\\':
+				builder.append("\\\\");
+				break;
+			case '\n':
+				builder.append("\\n");
+				break;
+			case '\r':
+				builder.append("\\r");
+				break;
+			case '\t':
+				builder.append("\\t");
+				break;
+			default:
+				if(c < 0x20) {
+					builder.append(String.format("\\u%04x", (int)c));
+				} else {
+					builder.append(c);
+				}
+			}
+		}
+		builder.append('"');
+	}
+}
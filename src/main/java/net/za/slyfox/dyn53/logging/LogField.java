@@ -0,0 +1,55 @@
+/*
+ * Copyright 2015 Philip Cronje
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package net.za.slyfox.dyn53.logging;
+
+import java.util.Objects;
+
+/**
+ * A named value passed as an argument to a log statement. In plain text output, a field is rendered as its value alone,
+ * so messages read the same as with unwrapped arguments; {@link JsonLayout} additionally writes each field as a
+ * property of the JSON event.
+ */
+public final class LogField {
+	private final String name;
+	private final Object value;
+
+	private LogField(String name, Object value) {
+		this.name = Objects.requireNonNull(name);
+		this.value = value;
+	}
+
+	/**
+	 * Creates a field.
+	 *
+	 * @param name the name of the field
+	 * @param value the value of the field, which may be {@code null}
+	 * @return the field
+	 * @throws NullPointerException if {@code name} is {@code null}
+	 */
+	public static LogField of(String name, Object value) {
+		return new LogField(name, value);
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public Object getValue() {
+		return value;
+	}
+
+	@Override
+	public String toString() {
+		return String.valueOf(value);
+	}
+}
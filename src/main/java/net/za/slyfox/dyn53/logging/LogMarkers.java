@@ -0,0 +1,30 @@
+/*
+ * Copyright 2015 Philip Cronje
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package net.za.slyfox.dyn53.logging;
+
+import org.slf4j.Marker;
+import org.slf4j.MarkerFactory;
+
+/**
+ * Defines the markers used to classify log statements.
+ */
+public final class LogMarkers {
+	/**
+	 * Marks a repetitive log statement, such as one made on every poll regardless of outcome, that may be sampled by
+	 * {@link SamplingFilter}.
+	 */
+	public static final Marker SAMPLED = MarkerFactory.getMarker("SAMPLED");
+
+	private LogMarkers() {
+	}
+}
@@ -0,0 +1,57 @@
+/*
+ * Copyright 2015 Philip Cronje
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package net.za.slyfox.dyn53.logging;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.turbo.TurboFilter;
+import ch.qos.logback.core.spi.FilterReply;
+import org.slf4j.Marker;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Implements a {@link TurboFilter} that passes only one in every {@code sampleRate} log statements marked with
+ * {@link LogMarkers#SAMPLED}, counted separately for each message format. Since turbo filters run before a logging
+ * event is created, denied statements cost no more than a counter increment.
+ */
+public final class SamplingFilter extends TurboFilter {
+	private final ConcurrentMap<String, AtomicLong> counters = new ConcurrentHashMap<>();
+	private int sampleRate = 1;
+
+	@Override
+	public FilterReply decide(Marker marker, Logger logger, Level level, String format, Object[] params,
+			Throwable t) {
+		if(sampleRate <= 1 || marker == null || format == null || !marker.contains(LogMarkers.SAMPLED)) {
+			return FilterReply.NEUTRAL;
+		}
+		final long count = counters.computeIfAbsent(format, f -> new AtomicLong()).getAndIncrement();
+		return (count % sampleRate == 0) ? FilterReply.NEUTRAL : FilterReply.DENY;
+	}
+
+	public int getSampleRate() {
+		return sampleRate;
+	}
+
+	/**
+	 * Sets the sampling rate.
+	 *
+	 * @param sampleRate the number of marked statements of each format for every one that is passed, where a value of
+	 *                   one or less passes every statement
+	 */
+	public void setSampleRate(int sampleRate) {
+		this.sampleRate = sampleRate;
+	}
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright 2015 Philip Cronje
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package net.za.slyfox.dyn53.route53;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Chooses the TTL of address records from how often their addresses change, within configured bounds. The TTL of a
+ * record is kept to a tenth of the time its address has been stable, so that it is low after recent changes and rises
+ * during long stable stretches. Once a record has changed more than once, the TTL is also kept to a tenth of the time
+ * remaining until the next change is expected, from a moving average of the intervals between changes, so that it is
+ * lowered ahead of expected changes.
+ *
+ * <p>TTLs are rounded down to the minimum TTL multiplied by a power of two, so that the TTL of a stable record only
+ * changes a few times before it reaches the maximum, rather than on every update.</p>
+ */
+public final class AdaptiveTtl {
+	private static final double SMOOTHING = 0.3;
+	private static final long STABILITY_RATIO = 10;
+
+	private final long maxTtl;
+	private final long minTtl;
+
+	/**
+	 * Initializes the TTL policy.
+	 *
+	 * @param minTtl the lowest TTL to publish, in seconds
+	 * @param maxTtl the highest TTL to publish, in seconds
+	 * @throws IllegalArgumentException if {@code minTtl} is not positive, or greater than {@code maxTtl}
+	 */
+	public AdaptiveTtl(long minTtl, long maxTtl) {
+		if(minTtl < 1) throw new IllegalArgumentException("Minimum TTL must be positive");
+		if(maxTtl < minTtl) throw new IllegalArgumentException("Maximum TTL is less than minimum TTL");
+		this.maxTtl = maxTtl;
+		this.minTtl = minTtl;
+	}
+
+	public long getMaxTtl() {
+		return maxTtl;
+	}
+
+	public long getMinTtl() {
+		return minTtl;
+	}
+
+	/**
+	 * Returns the TTL to publish a record with.
+	 *
+	 * @param history the history of address changes of the record
+	 * @param now the current monotonic time, in nanoseconds
+	 * @return the TTL, in seconds
+	 */
+	long getTtl(History history, long now) {
+		final long stable = TimeUnit.NANOSECONDS.toSeconds(now - history.lastChange);
+		long target = stable / STABILITY_RATIO;
+		if(history.meanInterval > 0) {
+			final long remaining = TimeUnit.NANOSECONDS.toSeconds(history.meanInterval) - stable;
+			if(remaining > 0) target = Math.min(target, remaining / STABILITY_RATIO);
+		}
+		if(target >= maxTtl) return maxTtl;
+
+		long ttl = minTtl;
+		while(ttl * 2 <= target) ttl *= 2;
+		return ttl;
+	}
+
+	/**
+	 * Tracks the address changes of a single record. Instances are not thread-safe, and are intended to be confined to
+	 * the thread that updates the record.
+	 */
+	static final class History {
+		private long lastChange;
+		private long meanInterval;
+
+		/**
+		 * Initializes the history of a record when its address is first published. Since it is not known how long the
+		 * address has been stable, the first publication counts as a change.
+		 *
+		 * @param now the current monotonic time, in nanoseconds
+		 */
+		History(long now) {
+			this.lastChange = now;
+		}
+
+		/**
+		 * Records a change of the address of the record.
+		 *
+		 * @param now the current monotonic time, in nanoseconds
+		 */
+		void recordChange(long now) {
+			final long interval = now - lastChange;
+			meanInterval = (meanInterval == 0) ? interval
+					: Math.round(SMOOTHING * interval + (1 - SMOOTHING) * meanInterval);
+			lastChange = now;
+		}
+	}
+}
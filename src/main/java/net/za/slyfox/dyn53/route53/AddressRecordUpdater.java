@@ -0,0 +1,31 @@
+/*
+ * Copyright 2015 Philip Cronje
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package net.za.slyfox.dyn53.route53;
+
+import java.net.InetAddress;
+import java.util.function.Consumer;
+
+/**
+ * Interface for a {@link Consumer} that publishes an address to one or more address resource record sets, and can
+ * withdraw it again.
+ */
+interface AddressRecordUpdater extends Consumer<InetAddress> {
+	/**
+	 * Deletes the resource record sets updated by this object, so that their names no longer resolve to the address
+	 * they were last updated with.
+	 *
+	 * @param inetAddress the address the resource record sets currently hold, which Route 53 requires to match the
+	 *                    existing values exactly
+	 */
+	void withdraw(InetAddress inetAddress);
+}
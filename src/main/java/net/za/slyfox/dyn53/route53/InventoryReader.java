@@ -0,0 +1,151 @@
+/*
+ * Copyright 2015 Philip Cronje
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package net.za.slyfox.dyn53.route53;
+
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.Consumer;
+
+/**
+ * Streams the records of an inventory file describing the desired state of a hosted zone, without holding more than
+ * one record in memory. Files with a {@code .csv} extension hold one resource record per line, as
+ * {@code name,type,ttl,value} with fields quoted as in RFC 4180; the rows of a resource record set with more than one
+ * value are combined by the caller. Other files hold JSON objects with {@code name}, {@code type}, {@code ttl} and
+ * {@code values} (or a single {@code value}) properties, either as the elements of a top-level array or one after
+ * another.
+ */
+final class InventoryReader {
+	private static final ObjectMapper MAPPER = new ObjectMapper();
+
+	private InventoryReader() {
+	}
+
+	/**
+	 * Reads every record of an inventory file.
+	 *
+	 * @param path the path of the inventory file
+	 * @param consumer the consumer to pass each record to, in file order
+	 * @throws IOException if the file cannot be read, or contains an invalid record
+	 */
+	static void read(Path path, Consumer<InventoryRecord> consumer) throws IOException {
+		if(path.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(".csv")) {
+			readCsv(path, consumer);
+		} else {
+			readJson(path, consumer);
+		}
+	}
+
+	private static void readCsv(Path path, Consumer<InventoryRecord> consumer) throws IOException {
+		try(final BufferedReader reader = Files.newBufferedReader(path)) {
+			String line;
+			int lineNumber = 0;
+			while((line = reader.readLine()) != null) {
+				lineNumber++;
+				if(line.trim().isEmpty() || line.startsWith("#")) continue;
+
+				final InventoryRecord record;
+				try {
+					final List<String> fields = splitCsv(line);
+					if(fields.size() != 4) throw new IllegalArgumentException("Expected 4 fields");
+					if(lineNumber == 1 && fields.get(0).equalsIgnoreCase("name")) continue;
+					record = new InventoryRecord(fields.get(0), fields.get(1), Long.valueOf(fields.get(2)),
+							Collections.singletonList(fields.get(3)));
+				} catch(IllegalArgumentException e) {
+					throw new IOException("Invalid record on line " + lineNumber + " of " + path + ": "
+							+ e.getMessage(), e);
+				}
+				consumer.accept(record);
+			}
+		}
+	}
+
+	private static void readJson(Path path, Consumer<InventoryRecord> consumer) throws IOException {
+		try(final JsonParser parser = MAPPER.getFactory().createParser(path.toFile())) {
+			JsonToken token = parser.nextToken();
+			final boolean array = token == JsonToken.START_ARRAY;
+			if(array) token = parser.nextToken();
+
+			while(token != null && !(array && token == JsonToken.END_ARRAY)) {
+				if(token != JsonToken.START_OBJECT) {
+					throw new JsonParseException("Expected record object", parser.getCurrentLocation());
+				}
+				final JsonNode node = MAPPER.readTree(parser);
+				final InventoryRecord record;
+				try {
+					final List<String> values = new ArrayList<>();
+					node.path("values").forEach(value -> values.add(value.asText()));
+					if(node.hasNonNull("value")) values.add(node.get("value").asText());
+					record = new InventoryRecord(getText(node, "name"), getText(node, "type"),
+							node.hasNonNull("ttl") ? node.get("ttl").asLong() : null, values);
+				} catch(IllegalArgumentException e) {
+					throw new JsonParseException(e.getMessage(), parser.getCurrentLocation(), e);
+				}
+				consumer.accept(record);
+				token = parser.nextToken();
+			}
+		}
+	}
+
+	private static String getText(JsonNode node, String fieldName) {
+		return node.hasNonNull(fieldName) ? node.get(fieldName).asText() : null;
+	}
+
+	/**
+	 * Splits a line of comma-separated values into its fields. A field may be enclosed in double quotes, in which
+	 * case it may contain commas, and a double quote is written as two double quotes.
+	 *
+	 * @param line the line to split
+	 * @return the unquoted fields of the line
+	 * @throws IllegalArgumentException if a quoted field is not terminated
+	 */
+	static List<String> splitCsv(String line) {
+		final List<String> fields = new ArrayList<>();
+		final StringBuilder field = new StringBuilder();
+		boolean quoted = false;
+		for(int i = 0; i < line.length(); i++) {
+			final char c = line.charAt(i);
+			if(quoted) {
+				if(c != '"') {
+					field.append(c);
+				} else if(i + 1 < line.length() && line.charAt(i + 1) == '"') {
+					field.append('"');
+					i++;
+				} else {
+					quoted = false;
+				}
+			} else if(c == '"') {
+				quoted = true;
+			} else if(c == ',') {
+				fields.add(field.toString().trim());
+				field.setLength(0);
+			} else {
+				field.append(c);
+			}
+		}
+		if(quoted) throw new IllegalArgumentException("Unterminated quoted field");
+		fields.add(field.toString().trim());
+		return fields;
+	}
+}
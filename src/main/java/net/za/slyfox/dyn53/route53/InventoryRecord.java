@@ -0,0 +1,216 @@
+/*
+ * Copyright 2015 Philip Cronje
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package net.za.slyfox.dyn53.route53;
+
+import com.amazonaws.services.route53.model.ResourceRecord;
+import com.amazonaws.services.route53.model.ResourceRecordSet;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.TreeSet;
+
+/**
+ * Represents a simple resource record set, either as desired in an inventory file or as it currently exists in a
+ * hosted zone. Names are normalized to lower case with a trailing dot, and values are held in sorted order without
+ * duplicates, so that two records describing the same resource record set are equal.
+ */
+final class InventoryRecord {
+	private final String name;
+	private final Long ttl;
+	private final String type;
+	private final List<String> values;
+
+	/**
+	 * Initializes the record.
+	 *
+	 * @param name the name of the resource record set, which is normalized
+	 * @param type the resource record type, such as {@code A}
+	 * @param ttl the TTL of the resource record set, in seconds
+	 * @param values the values of the resource records
+	 * @throws IllegalArgumentException if a parameter is {@code null} or empty, or {@code ttl} is negative
+	 */
+	InventoryRecord(String name, String type, Long ttl, Collection<String> values) {
+		if(name == null || name.isEmpty()) throw new IllegalArgumentException("Record name missing");
+		if(type == null || type.isEmpty()) throw new IllegalArgumentException("Record type missing for " + name);
+		if(ttl == null || ttl < 0) throw new IllegalArgumentException("Invalid TTL for " + name);
+		if(values == null || values.isEmpty()) throw new IllegalArgumentException("Record values missing for " + name);
+
+		this.name = normalizeName(name);
+		this.ttl = ttl;
+		this.type = type.toUpperCase(Locale.ROOT);
+		this.values = Collections.unmodifiableList(new ArrayList<>(new TreeSet<>(values)));
+	}
+
+	/**
+	 * Creates a record from a resource record set returned by Route 53.
+	 *
+	 * @param resourceRecordSet the resource record set
+	 * @return the record
+	 */
+	static InventoryRecord of(ResourceRecordSet resourceRecordSet) {
+		final List<String> values = new ArrayList<>(resourceRecordSet.getResourceRecords().size());
+		resourceRecordSet.getResourceRecords().forEach(resourceRecord -> values.add(resourceRecord.getValue()));
+		return new InventoryRecord(resourceRecordSet.getName(), resourceRecordSet.getType(),
+				resourceRecordSet.getTTL(), values);
+	}
+
+	/**
+	 * Decodes a record written by {@link #encode()}.
+	 *
+	 * @param line the encoded record
+	 * @return the record
+	 */
+	static InventoryRecord decode(String line) {
+		final List<String> fields = new ArrayList<>();
+		final StringBuilder field = new StringBuilder();
+		for(int i = 0; i < line.length(); i++) {
+			final char c = line.charAt(i);
+			if(c == '\t') {
+				fields.add(field.toString());
+				field.setLength(0);
+			} else if(c == '\\' && i + 1 < line.length()) {
+				final char escaped = line.charAt(++i);
+				field.append((escaped == 't') ? '\t' : (escaped == 'n') ? '\n' : (escaped == 'r') ? '\r' : escaped);
+			} else {
+				field.append(c);
+			}
+		}
+		fields.add(field.toString());
+		return new InventoryRecord(fields.get(0), fields.get(1), Long.valueOf(fields.get(2)),
+				fields.subList(3, fields.size()));
+	}
+
+	/**
+	 * Normalizes the name of a resource record set to lower case with a trailing dot. The escape sequence Route 53
+	 * returns for the asterisk of a wildcard name is replaced by the asterisk itself.
+	 *
+	 * @param name the name of the resource record set
+	 * @return the normalized name
+	 */
+	static String normalizeName(String name) {
+		final String normalized = name.toLowerCase(Locale.ROOT).replace("\\052", "*");
+		return normalized.endsWith(".") ? normalized : normalized + '.';
+	}
+
+	/**
+	 * Encodes the record as a single line of tab-separated fields, for spilling to a partition file.
+	 *
+	 * @return the encoded record
+	 */
+	String encode() {
+		final StringBuilder builder = new StringBuilder();
+		escape(builder, name).append('\t');
+		escape(builder, type).append('\t').append(ttl);
+		values.forEach(value -> escape(builder.append('\t'), value));
+		return builder.toString();
+	}
+
+	/**
+	 * Combines this record with another row of the same resource record set.
+	 *
+	 * @param other the other row
+	 * @return a record holding the values of both rows
+	 * @throws IllegalArgumentException if the rows have different TTLs
+	 */
+	InventoryRecord merge(InventoryRecord other) {
+		if(!ttl.equals(other.ttl)) throw new IllegalArgumentException("Conflicting TTLs for " + name + ' ' + type);
+		final List<String> merged = new ArrayList<>(values);
+		merged.addAll(other.values);
+		return new InventoryRecord(name, type, ttl, merged);
+	}
+
+	/**
+	 * Returns the key identifying the resource record set, made up of its name and type.
+	 *
+	 * @return the key of the record
+	 */
+	List<String> getKey() {
+		return Arrays.asList(name, type);
+	}
+
+	String getName() {
+		return name;
+	}
+
+	Long getTtl() {
+		return ttl;
+	}
+
+	String getType() {
+		return type;
+	}
+
+	/**
+	 * Returns the number of characters in the values of the record, which Route 53 limits per change batch.
+	 *
+	 * @return the total length of the values
+	 */
+	int getValueLength() {
+		return values.stream().mapToInt(String::length).sum();
+	}
+
+	List<String> getValues() {
+		return values;
+	}
+
+	/**
+	 * Creates the Route 53 resource record set described by this record.
+	 *
+	 * @return a new resource record set
+	 */
+	ResourceRecordSet toResourceRecordSet() {
+		final List<ResourceRecord> resourceRecords = new ArrayList<>(values.size());
+		values.forEach(value -> resourceRecords.add(new ResourceRecord(value)));
+		return new ResourceRecordSet(name, type).withTTL(ttl).withResourceRecords(resourceRecords);
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if(this == o) return true;
+		if(!(o instanceof InventoryRecord)) return false;
+		final InventoryRecord that = (InventoryRecord)o;
+		return name.equals(that.name) && type.equals(that.type) && ttl.equals(that.ttl) && values.equals(that.values);
+	}
+
+	@Override
+	public int hashCode() {
+		return Objects.hash(name, type, ttl, values);
+	}
+
+	/**
+	 * Returns the record in the form {@code name type ttl value...}, as written to reconciliation reports.
+	 *
+	 * @return a string representation of the record
+	 */
+	@Override
+	public String toString() {
+		return name + ' ' + type + ' ' + ttl + ' ' + String.join(" ", values);
+	}
+
+	private static StringBuilder escape(StringBuilder builder, String value) {
+		for(int i = 0; i < value.length(); i++) {
+			final char c = value.charAt(i);
+			if(c == '\\') builder.append("\\\\");
+			else if(c == '\t') builder.append("\\t");
+			else if(c == '\n') builder.append("\\n");
+			else if(c == '\r') builder.append("\\r");
+			else builder.append(c);
+		}
+		return builder;
+	}
+}
@@ -0,0 +1,575 @@
+/*
+ * Copyright 2015 Philip Cronje
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package net.za.slyfox.dyn53.route53;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.services.route53.AmazonRoute53;
+import com.amazonaws.services.route53.model.Change;
+import com.amazonaws.services.route53.model.ChangeAction;
+import com.amazonaws.services.route53.model.ChangeBatch;
+import com.amazonaws.services.route53.model.ChangeResourceRecordSetsRequest;
+import com.amazonaws.services.route53.model.ListResourceRecordSetsRequest;
+import com.amazonaws.services.route53.model.ListResourceRecordSetsResult;
+import com.amazonaws.services.route53.model.PriorRequestNotCompleteException;
+import com.amazonaws.services.route53.model.ResourceRecordSet;
+import net.za.slyfox.dyn53.concurrent.NamedPoolThreadFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Reconciles the simple resource record sets of a hosted zone with an inventory file describing their desired state,
+ * for inventories far larger than the handful of records updated with the external IP address.
+ *
+ * <p>The inventory file and the current contents of the hosted zone, read page by page, are both streamed into
+ * partition files on disk by a hash of each record's name. The partitions are then compared one at a time, and a
+ * partition that the hash left holding more than the configured number of desired records is split again, so that no
+ * more than that number is held in memory regardless of the size of the zone. The changes required are submitted as
+ * change batches within the size limits of Route 53, several at a time, subject to the rate limit of the account.</p>
+ *
+ * <p>Since change batches are submitted concurrently, every change to a name is made in the same batch, with deletions
+ * ahead of creations and updates, so that, for example, replacing a CNAME with an A record of the same name is
+ * applied in order. Only the changes to a single name too large for one batch are split, into batches submitted one
+ * after another.</p>
+ *
+ * <p>Only resource record sets of the configured types are reconciled. Weighted, failover and other resource record
+ * sets with a set identifier, and alias resource record sets, are never changed.</p>
+ */
+public final class Reconciler {
+	public static final int DEFAULT_MAX_RECORDS_IN_MEMORY = 100000;
+
+	/** The maximum number of resource records in a change batch, in which those of an upsert count twice. */
+	static final int MAX_BATCH_RECORDS = 1000;
+	/** The maximum number of characters in the values of a change batch, in which those of an upsert count twice. */
+	static final int MAX_BATCH_VALUE_LENGTH = 32000;
+	private static final int MAX_ATTEMPTS = 5;
+	/** The maximum number of times a partition is split again, which only a flawed hash would reach. */
+	private static final int MAX_PARTITION_LEVELS = 4;
+
+	private final Logger logger = LoggerFactory.getLogger(getClass());
+	private final int maxBatchRecords;
+	private final int maxRecordsInMemory;
+	private final int parallelism;
+	private final AmazonRoute53 route53;
+	private final TokenBucket tokenBucket;
+	private final Set<String> types;
+
+	/**
+	 * Initializes the reconciler.
+	 *
+	 * @param route53 the Route 53 client to read and change the hosted zone with
+	 * @param types the resource record types to reconcile
+	 * @param parallelism the maximum number of change batches to submit at a time
+	 * @param requestRate the maximum rate of requests to Route 53, per second
+	 * @param maxRecordsInMemory the maximum number of desired records to hold in memory at a time
+	 * @throws IllegalArgumentException if {@code parallelism} or {@code maxRecordsInMemory} is less than one, or
+	 *                                  {@code requestRate} is not positive
+	 * @throws NullPointerException if a parameter is {@code null}
+	 */
+	public Reconciler(AmazonRoute53 route53, Set<String> types, int parallelism, double requestRate,
+			int maxRecordsInMemory) {
+		this(route53, types, parallelism, requestRate, maxRecordsInMemory, MAX_BATCH_RECORDS);
+	}
+
+	Reconciler(AmazonRoute53 route53, Set<String> types, int parallelism, double requestRate, int maxRecordsInMemory,
+			int maxBatchRecords) {
+		if(parallelism < 1) throw new IllegalArgumentException("Parallelism must be at least one");
+		if(maxRecordsInMemory < 1) throw new IllegalArgumentException("Records in memory must be at least one");
+		this.maxBatchRecords = maxBatchRecords;
+		this.maxRecordsInMemory = maxRecordsInMemory;
+		this.parallelism = parallelism;
+		this.route53 = Objects.requireNonNull(route53);
+		this.tokenBucket = new TokenBucket(Math.max(1, requestRate), requestRate, System::nanoTime);
+		this.types = new HashSet<>();
+		types.forEach(type -> this.types.add(type.toUpperCase(Locale.ROOT)));
+	}
+
+	/**
+	 * Reconciles a hosted zone with an inventory file. Resource record sets in the inventory that are missing from the
+	 * hosted zone or differ from it are upserted, and if {@code prune} is set, resource record sets of the reconciled
+	 * types that are missing from the inventory are deleted. Each change is written to the report as a line of the
+	 * form {@code CREATE name type ttl value...}, with {@code UPDATE} lines followed by the values being replaced.
+	 *
+	 * @param hostedZoneId the identifier of the hosted zone to reconcile
+	 * @param inventory the path of the inventory file, read by {@link InventoryReader}
+	 * @param prune whether to delete resource record sets that are missing from the inventory
+	 * @param dryRun whether to only report the changes, without submitting them
+	 * @param report the consumer to write the report lines to
+	 * @return a summary of the changes made
+	 * @throws IOException if the inventory file or a partition file cannot be read or written, or the inventory
+	 *                     contains an invalid record
+	 */
+	public Result reconcile(String hostedZoneId, Path inventory, boolean prune, boolean dryRun,
+			Consumer<String> report) throws IOException {
+		final Path directory = Files.createTempDirectory("dyn53-reconcile");
+		try {
+			final AtomicInteger count = new AtomicInteger();
+			InventoryReader.read(inventory, record -> {
+				if(!types.contains(record.getType())) {
+					throw new IllegalArgumentException("Record " + record + " is not of a reconciled type");
+				}
+				count.incrementAndGet();
+			});
+			final int partitions = Math.max(1, (count.get() + maxRecordsInMemory - 1) / maxRecordsInMemory);
+			logger.info("Reconciling hosted zone {} with {} records from {} in {} partitions", hostedZoneId,
+					count.get(), inventory, partitions);
+
+			try(final Partitions desired = new Partitions(directory, "desired", partitions, 0);
+					final Partitions current = new Partitions(directory, "current", partitions, 0)) {
+				InventoryReader.read(inventory, desired::write);
+				listResourceRecordSets(hostedZoneId, current::write);
+			} catch(UncheckedIOException e) {
+				throw e.getCause();
+			}
+
+			final Run run = new Run(hostedZoneId, prune, dryRun, report);
+			try {
+				for(int partition = 0; partition < partitions; partition++) {
+					compare(run, directory, "-" + partition, 1);
+				}
+				run.flush();
+			} finally {
+				run.await();
+			}
+			final Result result = run.getResult();
+			logger.info("Reconciled hosted zone {}: {}", hostedZoneId, result);
+			return result;
+		} finally {
+			try(final Stream<Path> files = Files.list(directory)) {
+				files.forEach(file -> file.toFile().delete());
+			}
+			Files.delete(directory);
+		}
+	}
+
+	/**
+	 * Compares a partition, first splitting it into smaller partitions if it holds more than the maximum number of
+	 * desired records to hold in memory.
+	 *
+	 * @param run the reconciliation to add the changes required to
+	 * @param directory the directory holding the partition files
+	 * @param partition the suffix of the names of the partition's files
+	 * @param level the number of times the records of the partition have been partitioned
+	 * @throws IOException if a partition file cannot be read or written
+	 */
+	private void compare(Run run, Path directory, String partition, int level) throws IOException {
+		final Path desiredPath = directory.resolve("desired" + partition);
+		final Path currentPath = directory.resolve("current" + partition);
+		final long count;
+		try(final Stream<String> lines = Files.lines(desiredPath)) {
+			count = lines.count();
+		}
+		if(count <= maxRecordsInMemory || level > MAX_PARTITION_LEVELS) {
+			run.compare(desiredPath, currentPath);
+			return;
+		}
+
+		final int partitions = (int)((count + maxRecordsInMemory - 1) / maxRecordsInMemory) + 1;
+		logger.debug("Splitting partition{} of {} records into {} partitions", partition, count, partitions);
+		try(final Partitions desired = new Partitions(directory, "desired" + partition, partitions, level);
+				final Partitions current = new Partitions(directory, "current" + partition, partitions, level)) {
+			desired.writeAll(desiredPath);
+			current.writeAll(currentPath);
+		} catch(UncheckedIOException e) {
+			throw e.getCause();
+		}
+		Files.delete(desiredPath);
+		Files.delete(currentPath);
+		for(int subpartition = 0; subpartition < partitions; subpartition++) {
+			compare(run, directory, partition + '-' + subpartition, level + 1);
+		}
+	}
+
+	/**
+	 * Reads the resource record sets of the reconciled types in a hosted zone, a page at a time.
+	 *
+	 * @param hostedZoneId the identifier of the hosted zone
+	 * @param consumer the consumer to pass each resource record set to
+	 */
+	private void listResourceRecordSets(String hostedZoneId, Consumer<InventoryRecord> consumer) {
+		final ListResourceRecordSetsRequest request = new ListResourceRecordSetsRequest(hostedZoneId);
+		int pages = 0;
+		while(true) {
+			acquireToken();
+			final ListResourceRecordSetsResult result = route53.listResourceRecordSets(request);
+			pages++;
+			for(ResourceRecordSet resourceRecordSet : result.getResourceRecordSets()) {
+				if(resourceRecordSet.getSetIdentifier() != null || resourceRecordSet.getAliasTarget() != null
+						|| !types.contains(resourceRecordSet.getType())) {
+					continue;
+				}
+				consumer.accept(InventoryRecord.of(resourceRecordSet));
+			}
+			if(!Boolean.TRUE.equals(result.isTruncated())) break;
+
+			request.setStartRecordName(result.getNextRecordName());
+			request.setStartRecordType(result.getNextRecordType());
+			request.setStartRecordIdentifier(result.getNextRecordIdentifier());
+		}
+		logger.debug("Read hosted zone {} in {} pages", hostedZoneId, pages);
+	}
+
+	/**
+	 * Blocks until the account's rate limit allows another request.
+	 */
+	private void acquireToken() {
+		while(true) {
+			final long wait;
+			synchronized(tokenBucket) {
+				wait = tokenBucket.tryAcquire();
+			}
+			if(wait == 0) return;
+			try {
+				TimeUnit.NANOSECONDS.sleep(wait);
+			} catch(InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException("Interrupted while waiting for rate limit", e);
+			}
+		}
+	}
+
+	/**
+	 * Submits a change batch, retrying while Route 53 is still applying an earlier change to the hosted zone.
+	 *
+	 * @param hostedZoneId the identifier of the hosted zone
+	 * @param changes the changes of the batch
+	 * @return {@code true} if the batch was accepted
+	 */
+	private boolean submit(String hostedZoneId, List<Change> changes) {
+		final ChangeResourceRecordSetsRequest request = new ChangeResourceRecordSetsRequest()
+				.withHostedZoneId(hostedZoneId)
+				.withChangeBatch(new ChangeBatch().withChanges(changes).withComment("Dyn53 reconciliation"));
+		for(int attempt = 1; ; attempt++) {
+			acquireToken();
+			try {
+				final String changeId = route53.changeResourceRecordSets(request).getChangeInfo().getId();
+				logger.info("Submitted {} changes to hosted zone {} as change {}", changes.size(), hostedZoneId,
+						changeId);
+				return true;
+			} catch(PriorRequestNotCompleteException e) {
+				if(attempt == MAX_ATTEMPTS) {
+					logger.error("Change batch of {} changes to hosted zone {} not accepted after {} attempts",
+							changes.size(), hostedZoneId, attempt, e);
+					return false;
+				}
+				try {
+					TimeUnit.SECONDS.sleep(attempt);
+				} catch(InterruptedException interrupted) {
+					Thread.currentThread().interrupt();
+					return false;
+				}
+			} catch(AmazonClientException e) {
+				logger.error("Failed to submit change batch of {} changes to hosted zone {}", changes.size(),
+						hostedZoneId, e);
+				return false;
+			}
+		}
+	}
+
+	/**
+	 * Summarizes the changes made by a reconciliation.
+	 */
+	public static final class Result {
+		private final int batches;
+		private final int created;
+		private final int deleted;
+		private final int failedBatches;
+		private final int unchanged;
+		private final int updated;
+
+		Result(int created, int updated, int deleted, int unchanged, int batches, int failedBatches) {
+			this.batches = batches;
+			this.created = created;
+			this.deleted = deleted;
+			this.failedBatches = failedBatches;
+			this.unchanged = unchanged;
+			this.updated = updated;
+		}
+
+		public int getBatches() {
+			return batches;
+		}
+
+		public int getCreated() {
+			return created;
+		}
+
+		public int getDeleted() {
+			return deleted;
+		}
+
+		public int getFailedBatches() {
+			return failedBatches;
+		}
+
+		public int getUnchanged() {
+			return unchanged;
+		}
+
+		public int getUpdated() {
+			return updated;
+		}
+
+		@Override
+		public String toString() {
+			return created + " created, " + updated + " updated, " + deleted + " deleted, " + unchanged
+					+ " unchanged, in " + batches + " change batches of which " + failedBatches + " failed";
+		}
+	}
+
+	/**
+	 * Writes records to a set of partition files, choosing the file by a hash of each record's name. The hash is salted
+	 * with the level of partitioning, so that the records of a partition are spread out when it is split again.
+	 */
+	private static final class Partitions implements Closeable {
+		private final int level;
+		private final BufferedWriter[] writers;
+
+		Partitions(Path directory, String prefix, int count, int level) throws IOException {
+			this.level = level;
+			writers = new BufferedWriter[count];
+			for(int partition = 0; partition < count; partition++) {
+				writers[partition] = Files.newBufferedWriter(directory.resolve(prefix + '-' + partition));
+			}
+		}
+
+		void writeAll(Path path) throws IOException {
+			try(final BufferedReader reader = Files.newBufferedReader(path)) {
+				String line;
+				while((line = reader.readLine()) != null) write(InventoryRecord.decode(line));
+			}
+		}
+
+		void write(InventoryRecord record) {
+			final int hash = (record.getName() + '#' + level).hashCode();
+			final BufferedWriter writer = writers[Math.floorMod(hash, writers.length)];
+			try {
+				writer.write(record.encode());
+				writer.newLine();
+			} catch(IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+
+		@Override
+		public void close() throws IOException {
+			for(BufferedWriter writer : writers) writer.close();
+		}
+	}
+
+	/**
+	 * Holds the state of a single reconciliation: the change batch being filled, the batches in flight and the
+	 * counts of changes.
+	 */
+	private final class Run {
+		private final boolean dryRun;
+		private final ExecutorService executor;
+		private final AtomicInteger failedBatches = new AtomicInteger();
+		private final String hostedZoneId;
+		private final Semaphore inFlight = new Semaphore(parallelism * 2);
+		private final boolean prune;
+		private final Consumer<String> report;
+
+		private int batches;
+		private List<Change> changes = new ArrayList<>();
+		private int batchRecords;
+		private int batchValueLength;
+		private int created;
+		private int deleted;
+		private int unchanged;
+		private int updated;
+
+		Run(String hostedZoneId, boolean prune, boolean dryRun, Consumer<String> report) {
+			this.dryRun = dryRun;
+			this.executor = dryRun ? null : Executors.newFixedThreadPool(parallelism,
+					new NamedPoolThreadFactory("reconcile"));
+			this.hostedZoneId = hostedZoneId;
+			this.prune = prune;
+			this.report = report;
+		}
+
+		/**
+		 * Compares the desired and current records of one partition, and adds the changes required to batches.
+		 */
+		void compare(Path desiredPath, Path currentPath) throws IOException {
+			final Map<List<String>, InventoryRecord> desired = new HashMap<>();
+			try(final BufferedReader reader = Files.newBufferedReader(desiredPath)) {
+				String line;
+				while((line = reader.readLine()) != null) {
+					final InventoryRecord record = InventoryRecord.decode(line);
+					desired.merge(record.getKey(), record, InventoryRecord::merge);
+				}
+			}
+
+			final Map<String, List<Change>> changesByName = new LinkedHashMap<>();
+			try(final BufferedReader reader = Files.newBufferedReader(currentPath)) {
+				String line;
+				while((line = reader.readLine()) != null) {
+					final InventoryRecord current = InventoryRecord.decode(line);
+					final InventoryRecord wanted = desired.remove(current.getKey());
+					if(current.equals(wanted)) {
+						unchanged++;
+					} else if(wanted != null) {
+						report.accept("UPDATE " + wanted + " was " + current.getTtl() + ' '
+								+ String.join(" ", current.getValues()));
+						updated++;
+						addChange(changesByName, ChangeAction.UPSERT, wanted);
+					} else if(prune) {
+						report.accept("DELETE " + current);
+						deleted++;
+						addChange(changesByName, ChangeAction.DELETE, current);
+					}
+				}
+			}
+
+			for(InventoryRecord wanted : desired.values()) {
+				report.accept("CREATE " + wanted);
+				created++;
+				addChange(changesByName, ChangeAction.UPSERT, wanted);
+			}
+			changesByName.values().forEach(this::add);
+		}
+
+		/**
+		 * Adds a change to the changes to its name, keeping deletions ahead of the other changes.
+		 */
+		private void addChange(Map<String, List<Change>> changesByName, ChangeAction action, InventoryRecord record) {
+			final List<Change> nameChanges = changesByName.computeIfAbsent(record.getName(), name -> new ArrayList<>());
+			final Change change = new Change(action, record.toResourceRecordSet());
+			if(action == ChangeAction.DELETE) nameChanges.add(0, change);
+			else nameChanges.add(change);
+		}
+
+		/**
+		 * Adds the changes to a single name to the current batch, first submitting the batch if the changes would take
+		 * it over the limits of Route 53. Changes too large for a single batch are split into batches that are each
+		 * submitted before the next is filled, so that they are applied in order.
+		 */
+		private void add(List<Change> nameChanges) {
+			int records = 0;
+			int valueLength = 0;
+			for(Change change : nameChanges) {
+				records += getRecords(change);
+				valueLength += getValueLength(change);
+			}
+			if(batchRecords + records > maxBatchRecords || batchValueLength + valueLength > MAX_BATCH_VALUE_LENGTH) {
+				flush();
+			}
+
+			for(Change change : nameChanges) {
+				records = getRecords(change);
+				valueLength = getValueLength(change);
+				if(batchRecords + records > maxBatchRecords
+						|| batchValueLength + valueLength > MAX_BATCH_VALUE_LENGTH) {
+					flush(true);
+				}
+				changes.add(change);
+				batchRecords += records;
+				batchValueLength += valueLength;
+			}
+		}
+
+		/**
+		 * Submits the current batch, if it holds any changes. While the maximum number of batches are waiting to be
+		 * submitted or in flight, blocks until one completes.
+		 */
+		void flush() {
+			flush(false);
+		}
+
+		/**
+		 * Submits the current batch, if it holds any changes, either in the background or before returning.
+		 */
+		private void flush(boolean synchronous) {
+			if(changes.isEmpty()) return;
+			final List<Change> batch = changes;
+			changes = new ArrayList<>();
+			batchRecords = 0;
+			batchValueLength = 0;
+			batches++;
+			if(dryRun) return;
+
+			if(synchronous) {
+				if(!submit(hostedZoneId, batch)) failedBatches.incrementAndGet();
+				return;
+			}
+			inFlight.acquireUninterruptibly();
+			executor.execute(() -> {
+				try {
+					if(!submit(hostedZoneId, batch)) failedBatches.incrementAndGet();
+				} finally {
+					inFlight.release();
+				}
+			});
+		}
+
+		/**
+		 * Waits for every submitted batch to complete.
+		 */
+		void await() {
+			if(executor == null) return;
+			executor.shutdown();
+			try {
+				while(!executor.awaitTermination(1, TimeUnit.MINUTES)) {
+					logger.info("Waiting for change batches to hosted zone {} to complete", hostedZoneId);
+				}
+			} catch(InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+
+		Result getResult() {
+			return new Result(created, updated, deleted, unchanged, batches, failedBatches.get());
+		}
+
+		/**
+		 * Counts the resource records of a change against the limit of a change batch.
+		 */
+		private int getRecords(Change change) {
+			final int weight = ChangeAction.UPSERT.toString().equals(change.getAction()) ? 2 : 1;
+			return change.getResourceRecordSet().getResourceRecords().size() * weight;
+		}
+
+		/**
+		 * Counts the characters of the values of a change against the limit of a change batch.
+		 */
+		private int getValueLength(Change change) {
+			final int weight = ChangeAction.UPSERT.toString().equals(change.getAction()) ? 2 : 1;
+			return change.getResourceRecordSet().getResourceRecords().stream()
+					.mapToInt(resourceRecord -> resourceRecord.getValue().length()).sum() * weight;
+		}
+	}
+}
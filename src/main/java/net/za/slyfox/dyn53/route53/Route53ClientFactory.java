@@ -0,0 +1,98 @@
+/*
+ * Copyright 2015 Philip Cronje
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package net.za.slyfox.dyn53.route53;
+
+import com.amazonaws.ClientConfiguration;
+import com.amazonaws.auth.AWSCredentialsProvider;
+import com.amazonaws.services.route53.AmazonRoute53;
+import com.amazonaws.services.route53.AmazonRoute53Client;
+import net.za.slyfox.dyn53.bean.Lifecycle;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Provider;
+import javax.inject.Singleton;
+import java.util.Objects;
+
+/**
+ * Creates and manages the single Amazon Route 53 client shared by every component of the application, so that its
+ * connection pool and TLS sessions are reused across updates. The client is shut down, releasing its connections,
+ * when the lifecycle is stopped.
+ */
+@Singleton
+final class Route53ClientFactory implements Lifecycle, Provider<AmazonRoute53> {
+	private final ClientConfiguration clientConfiguration;
+	private final AWSCredentialsProvider credentialsProvider;
+	private final String endpoint;
+	private final Logger logger = LoggerFactory.getLogger(getClass());
+
+	private AmazonRoute53Client client;
+	private boolean shutdown;
+
+	/**
+	 * Initializes the factory with the client configuration.
+	 *
+	 * @param clientConfiguration the configuration of the client's connection pool, timeouts and retry policy
+	 * @param endpoint the Route 53 endpoint to send requests to
+	 * @param credentialsProvider the provider of the credentials used to sign requests
+	 * @throws NullPointerException if a parameter is {@code null}
+	 */
+	@Inject
+	Route53ClientFactory(ClientConfiguration clientConfiguration, @Named("route53Endpoint") String endpoint,
+			AWSCredentialsProvider credentialsProvider) {
+		this.clientConfiguration = Objects.requireNonNull(clientConfiguration);
+		this.credentialsProvider = Objects.requireNonNull(credentialsProvider);
+		this.endpoint = Objects.requireNonNull(endpoint);
+	}
+
+	/**
+	 * Returns the shared client, creating it on first use.
+	 *
+	 * @return the shared Route 53 client
+	 * @throws IllegalStateException if the factory has been stopped
+	 */
+	@Override
+	public synchronized AmazonRoute53 get() {
+		if(shutdown) throw new IllegalStateException("Route 53 client has been shut down");
+		if(client == null) {
+			logger.debug("Creating Route 53 client for {} with up to {} connections", endpoint,
+					clientConfiguration.getMaxConnections());
+			client = new AmazonRoute53Client(credentialsProvider, clientConfiguration);
+			client.setEndpoint(endpoint);
+		}
+		return client;
+	}
+
+	/**
+	 * Creates the shared client, so that the first update does not pay for its construction.
+	 */
+	@Override
+	public void start() {
+		get();
+	}
+
+	/**
+	 * Shuts down the shared client, releasing its pooled connections.
+	 */
+	@Override
+	public synchronized void stop() {
+		shutdown = true;
+		if(client != null) {
+			logger.info("Shutting down Route 53 client");
+			client.shutdown();
+			client = null;
+		}
+	}
+}
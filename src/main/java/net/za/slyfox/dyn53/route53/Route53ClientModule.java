@@ -0,0 +1,71 @@
+/*
+ * Copyright 2015 Philip Cronje
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package net.za.slyfox.dyn53.route53;
+
+import com.amazonaws.ClientConfiguration;
+import com.amazonaws.services.route53.AmazonRoute53;
+import com.google.inject.AbstractModule;
+import com.google.inject.multibindings.Multibinder;
+import com.google.inject.name.Names;
+import net.za.slyfox.dyn53.bean.Lifecycle;
+
+import java.util.Objects;
+
+/**
+ * Binds the shared Amazon Route 53 client used by {@link Route53Module}. The client signs requests with the
+ * {@link com.amazonaws.auth.AWSCredentialsProvider} bound by another module. The clients of additional accounts sign
+ * requests with the credentials provided by the
+ * {@link net.za.slyfox.dyn53.credentials.AccountCredentialsProviders} bound by another module.
+ */
+public final class Route53ClientModule extends AbstractModule {
+	public static final double DEFAULT_ACCOUNT_REQUEST_RATE = 5;
+	public static final String DEFAULT_ENDPOINT = "https://route53.amazonaws.com";
+
+	private final double accountRequestRate;
+	private final ClientConfiguration clientConfiguration;
+	private final String endpoint;
+
+	public Route53ClientModule() {
+		this(new ClientConfiguration(), DEFAULT_ENDPOINT);
+	}
+
+	public Route53ClientModule(ClientConfiguration clientConfiguration, String endpoint) {
+		this(clientConfiguration, endpoint, DEFAULT_ACCOUNT_REQUEST_RATE);
+	}
+
+	/**
+	 * Initializes the module.
+	 *
+	 * @param clientConfiguration the configuration of the client's connection pool, timeouts and retry policy
+	 * @param endpoint the Route 53 endpoint to send requests to, such as a partition-specific or FIPS endpoint
+	 * @param accountRequestRate the maximum sustained rate of change requests per account, per second
+	 * @throws NullPointerException if a parameter is {@code null}
+	 */
+	public Route53ClientModule(ClientConfiguration clientConfiguration, String endpoint, double accountRequestRate) {
+		this.accountRequestRate = accountRequestRate;
+		this.clientConfiguration = Objects.requireNonNull(clientConfiguration);
+		this.endpoint = Objects.requireNonNull(endpoint);
+	}
+
+	@Override
+	protected void configure() {
+		final Multibinder<Lifecycle> lifecycles = Multibinder.newSetBinder(binder(), Lifecycle.class);
+		lifecycles.addBinding().to(Route53ClientFactory.class);
+		lifecycles.addBinding().to(Route53Clients.class);
+
+		bind(AmazonRoute53.class).toProvider(Route53ClientFactory.class);
+		bind(ClientConfiguration.class).toInstance(clientConfiguration);
+		bind(String.class).annotatedWith(Names.named("route53Endpoint")).toInstance(endpoint);
+		bind(Double.class).annotatedWith(Names.named("accountRequestRate")).toInstance(accountRequestRate);
+	}
+}
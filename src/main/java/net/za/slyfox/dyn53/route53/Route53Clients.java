@@ -0,0 +1,144 @@
+/*
+ * Copyright 2015 Philip Cronje
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package net.za.slyfox.dyn53.route53;
+
+import com.amazonaws.ClientConfiguration;
+import com.amazonaws.services.route53.AmazonRoute53;
+import com.amazonaws.services.route53.AmazonRoute53Client;
+import net.za.slyfox.dyn53.bean.Lifecycle;
+import net.za.slyfox.dyn53.credentials.AccountCredentialsProviders;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Provider;
+import javax.inject.Singleton;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+
+/**
+ * Manages a Route 53 client and a rate limiter for each AWS account that records are updated in. The client of the
+ * default account is the shared client; the client of any other account is created on first use, signs requests with
+ * that account's credentials, and keeps its own connection pool.
+ *
+ * <p>Route 53 limits the rate of requests per account rather than per hosted zone, so the rate limiter of an account
+ * is shared by all of the hosted zones in that account.</p>
+ */
+@Singleton
+final class Route53Clients implements Lifecycle {
+	private final Function<String, AmazonRoute53> clientFactory;
+	private final Map<String, AmazonRoute53> clients = new HashMap<>();
+	private final LongSupplier clock;
+	private final Provider<AmazonRoute53> defaultClient;
+	private final Logger logger = LoggerFactory.getLogger(getClass());
+	private final double requestRate;
+	private final Map<String, TokenBucket> tokenBuckets = new HashMap<>();
+
+	private boolean stopped;
+
+	/**
+	 * Initializes the clients with configuration values, and injects dependencies.
+	 *
+	 * @param defaultClient the provider of the shared client of the default account
+	 * @param clientConfiguration the configuration of the connection pool, timeouts and retry policy of each client
+	 * @param endpoint the Route 53 endpoint to send requests to
+	 * @param credentialsProviders the providers of the credentials of each account
+	 * @param requestRate the maximum sustained rate of change requests per account, per second
+	 * @throws IllegalArgumentException if {@code requestRate} is not positive
+	 */
+	@Inject
+	Route53Clients(Provider<AmazonRoute53> defaultClient, ClientConfiguration clientConfiguration,
+			@Named("route53Endpoint") String endpoint, AccountCredentialsProviders credentialsProviders,
+			@Named("accountRequestRate") double requestRate) {
+		this(defaultClient, account -> {
+			final AmazonRoute53Client client = new AmazonRoute53Client(credentialsProviders.get(account),
+					clientConfiguration);
+			client.setEndpoint(endpoint);
+			return client;
+		}, requestRate, System::nanoTime);
+	}
+
+	/**
+	 * Initializes the clients.
+	 *
+	 * @param defaultClient the provider of the shared client of the default account
+	 * @param clientFactory creates the client of a named account
+	 * @param requestRate the maximum sustained rate of change requests per account, per second
+	 * @param clock a source of monotonic time, in nanoseconds
+	 * @throws IllegalArgumentException if {@code requestRate} is not positive
+	 * @throws NullPointerException if a parameter is {@code null}
+	 */
+	Route53Clients(Provider<AmazonRoute53> defaultClient, Function<String, AmazonRoute53> clientFactory,
+			double requestRate, LongSupplier clock) {
+		if(!(requestRate > 0)) throw new IllegalArgumentException("Account request rate must be positive");
+		this.clientFactory = Objects.requireNonNull(clientFactory);
+		this.clock = Objects.requireNonNull(clock);
+		this.defaultClient = Objects.requireNonNull(defaultClient);
+		this.requestRate = requestRate;
+	}
+
+	/**
+	 * Returns the client of an account, creating it on first use.
+	 *
+	 * @param account the name of the account, or {@code null} for the default account
+	 * @return the Route 53 client of the account
+	 * @throws IllegalArgumentException if the account is not configured
+	 * @throws IllegalStateException if the clients have been stopped
+	 */
+	synchronized AmazonRoute53 get(String account) {
+		if(stopped) throw new IllegalStateException("Route 53 clients have been shut down");
+		if(account == null) return defaultClient.get();
+
+		AmazonRoute53 client = clients.get(account);
+		if(client == null) {
+			logger.debug("Creating Route 53 client for account {}", account);
+			client = clientFactory.apply(account);
+			clients.put(account, client);
+		}
+		return client;
+	}
+
+	/**
+	 * Takes a token from the rate limiter of an account if one is available.
+	 *
+	 * @param account the name of the account, or {@code null} for the default account
+	 * @return zero if a token was taken, otherwise the time until a token will be available, in nanoseconds
+	 */
+	synchronized long tryAcquire(String account) {
+		return tokenBuckets.computeIfAbsent(account,
+				key -> new TokenBucket(Math.max(1, Math.ceil(requestRate)), requestRate, clock)).tryAcquire();
+	}
+
+	@Override
+	public void start() {
+		logger.debug("Limiting change requests to {} per second per account", requestRate);
+	}
+
+	/**
+	 * Shuts down the client of every named account that has been used. The shared client of the default account is
+	 * shut down by its own lifecycle.
+	 */
+	@Override
+	public synchronized void stop() {
+		stopped = true;
+		clients.forEach((account, client) -> {
+			logger.info("Shutting down Route 53 client of account {}", account);
+			client.shutdown();
+		});
+		clients.clear();
+	}
+}
@@ -0,0 +1,185 @@
+/*
+ * Copyright 2015 Philip Cronje
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package net.za.slyfox.dyn53.route53;
+
+import com.amazonaws.services.route53.AmazonRoute53;
+import com.amazonaws.services.route53.model.*;
+import net.za.slyfox.dyn53.lease.Lease;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.LongSupplier;
+
+/**
+ * Implements a {@link Lease} stored as a TXT resource record set in a Route 53 hosted zone. The record holds the
+ * identifier of the lease holder and the wall clock time at which the lease expires.
+ *
+ * <p>The lease is taken over by submitting a change batch that deletes the exact record value that was read and
+ * creates the new value. Route 53 rejects the whole batch if the record was changed in the meantime, which makes the
+ * takeover a compare-and-swap: of two instances racing for the lease, only one succeeds. Redundant instances must keep
+ * their clocks synchronized to well within the lease duration.</p>
+ */
+final class Route53Lease implements Lease {
+	private static final long RECORD_TTL = 60;
+
+	private final LongSupplier clock;
+	private final String holder;
+	private final String hostedZoneId;
+	private final long leaseDuration;
+	private final Logger logger = LoggerFactory.getLogger(getClass());
+	private final String recordName;
+	private final AmazonRoute53 route53;
+
+	/**
+	 * Initializes the lease with configuration values, and injects dependencies.
+	 *
+	 * @param hostedZoneId the identifier of the hosted zone to store the lease in
+	 * @param recordName the name of the TXT resource record set holding the lease
+	 * @param holder the identifier of this instance
+	 * @param leaseDuration the duration for which the lease is acquired, in milliseconds
+	 * @param route53 the Amazon Route 53 client interface to use when making requests against the service
+	 * @throws NullPointerException if a required parameter is {@code null}
+	 */
+	@Inject
+	Route53Lease(@Named("hostedZoneId") String hostedZoneId, @Named("leaseRecordName") String recordName,
+			@Named("leaseHolder") String holder, @Named("leaseDuration") long leaseDuration, AmazonRoute53 route53) {
+		this(hostedZoneId, recordName, holder, leaseDuration, route53, System::currentTimeMillis);
+	}
+
+	/**
+	 * Initializes the lease with configuration values, dependencies, and a clock.
+	 *
+	 * @param hostedZoneId the identifier of the hosted zone to store the lease in
+	 * @param recordName the name of the TXT resource record set holding the lease
+	 * @param holder the identifier of this instance
+	 * @param leaseDuration the duration for which the lease is acquired, in milliseconds
+	 * @param route53 the Amazon Route 53 client interface to use when making requests against the service
+	 * @param clock a source of wall clock time in milliseconds since the epoch
+	 * @throws IllegalArgumentException if {@code holder} contains whitespace or quotes
+	 * @throws NullPointerException if a required parameter is {@code null}
+	 */
+	Route53Lease(String hostedZoneId, String recordName, String holder, long leaseDuration, AmazonRoute53 route53,
+			LongSupplier clock) {
+		this.clock = Objects.requireNonNull(clock);
+		this.holder = Objects.requireNonNull(holder);
+		this.hostedZoneId = Objects.requireNonNull(hostedZoneId);
+		this.leaseDuration = leaseDuration;
+		this.recordName = Objects.requireNonNull(recordName).endsWith(".") ? recordName : recordName + '.';
+		this.route53 = Objects.requireNonNull(route53);
+		if(!holder.matches("[^\\s\"\\\\]+")) throw new IllegalArgumentException("Invalid lease holder: " + holder);
+	}
+
+	/**
+	 * Creates the lease record if it does not exist, or replaces it if it is held by this instance or has expired.
+	 *
+	 * @return {@code true} if this instance now holds the lease
+	 */
+	@Override
+	public synchronized boolean tryAcquire() {
+		final long now = clock.getAsLong();
+		final ResourceRecordSet current = read();
+		final List<Change> changes = new ArrayList<>(2);
+		if(current != null) {
+			final String[] value = parse(current);
+			final long expiry = Long.parseLong(value[1]);
+			if(!holder.equals(value[0]) && expiry > now) {
+				logger.debug("Lease is held by {} for another {} milliseconds", value[0], expiry - now);
+				return false;
+			}
+			changes.add(new Change(ChangeAction.DELETE, current));
+		}
+		changes.add(new Change(ChangeAction.CREATE, leaseRecord(now + leaseDuration)));
+
+		try {
+			route53.changeResourceRecordSets(new ChangeResourceRecordSetsRequest().withHostedZoneId(hostedZoneId)
+					.withChangeBatch(new ChangeBatch().withChanges(changes).withComment("Dyn53 lease")));
+			return true;
+		} catch(InvalidChangeBatchException e) {
+			logger.debug("Lease was changed by another instance: {}", e.getMessage());
+			return false;
+		}
+	}
+
+	/**
+	 * Deletes the lease record if it is held by this instance.
+	 */
+	@Override
+	public synchronized void release() {
+		final ResourceRecordSet current = read();
+		if(current == null || !holder.equals(parse(current)[0])) return;
+		try {
+			route53.changeResourceRecordSets(new ChangeResourceRecordSetsRequest().withHostedZoneId(hostedZoneId)
+					.withChangeBatch(new ChangeBatch().withChanges(new Change(ChangeAction.DELETE, current))
+							.withComment("Dyn53 lease release")));
+			logger.info("Released lease {}", recordName);
+		} catch(InvalidChangeBatchException e) {
+			logger.debug("Lease was changed by another instance: {}", e.getMessage());
+		}
+	}
+
+	/**
+	 * Reads the lease record from Route 53.
+	 *
+	 * @return the lease resource record set, or {@code null} if it does not exist
+	 */
+	private ResourceRecordSet read() {
+		final ListResourceRecordSetsResult result = route53.listResourceRecordSets(
+				new ListResourceRecordSetsRequest(hostedZoneId)
+						.withStartRecordName(recordName)
+						.withStartRecordType(RRType.TXT)
+						.withMaxItems("1"));
+		for(ResourceRecordSet resourceRecordSet : result.getResourceRecordSets()) {
+			if(resourceRecordSet.getName().equalsIgnoreCase(recordName)
+					&& RRType.TXT.toString().equals(resourceRecordSet.getType())) {
+				return resourceRecordSet;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Builds the lease resource record set.
+	 *
+	 * @param expiry the time at which the lease expires, in milliseconds since the epoch
+	 * @return the resource record set
+	 */
+	private ResourceRecordSet leaseRecord(long expiry) {
+		return new ResourceRecordSet(recordName, RRType.TXT)
+				.withTTL(RECORD_TTL)
+				.withResourceRecords(new ResourceRecord("\"holder=" + holder + " expires=" + expiry + '"'));
+	}
+
+	/**
+	 * Parses the holder and expiry from a lease resource record set. A record that cannot be parsed is treated as an
+	 * expired lease without a holder, so that it can be taken over.
+	 *
+	 * @param resourceRecordSet the lease resource record set
+	 * @return a two-element array of the holder and the expiry time
+	 */
+	private static String[] parse(ResourceRecordSet resourceRecordSet) {
+		final List<ResourceRecord> records = resourceRecordSet.getResourceRecords();
+		if(records.size() == 1) {
+			final String value = records.get(0).getValue().replace("\"", "");
+			final String[] fields = value.split(" ");
+			if(fields.length == 2 && fields[0].startsWith("holder=") && fields[1].matches("expires=\\d+")) {
+				return new String[] { fields[0].substring(7), fields[1].substring(8) };
+			}
+		}
+		return new String[] { "", "0" };
+	}
+}
@@ -0,0 +1,36 @@
+/*
+ * Copyright 2015 Philip Cronje
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package net.za.slyfox.dyn53.route53;
+
+import com.google.inject.AbstractModule;
+import com.google.inject.name.Names;
+import net.za.slyfox.dyn53.lease.Lease;
+
+import java.util.Objects;
+
+/**
+ * Binds a {@link Lease} stored as a TXT resource record set in the hosted zone configured for {@link Route53Module}.
+ */
+public final class Route53LeaseModule extends AbstractModule {
+	private final String recordName;
+
+	public Route53LeaseModule(String recordName) {
+		this.recordName = Objects.requireNonNull(recordName);
+	}
+
+	@Override
+	protected void configure() {
+		bind(Lease.class).to(Route53Lease.class).asEagerSingleton();
+		bind(String.class).annotatedWith(Names.named("leaseRecordName")).toInstance(recordName);
+	}
+}
@@ -0,0 +1,226 @@
+/*
+ * Copyright 2015 Philip Cronje
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package net.za.slyfox.dyn53.route53;
+
+import com.amazonaws.services.route53.model.*;
+import net.za.slyfox.dyn53.cluster.Membership;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+
+/**
+ * Implements a {@link Membership} stored as a TXT resource record set in a Route 53 hosted zone, with one value per
+ * member holding its identifier and the wall clock time at which its membership expires.
+ *
+ * <p>Like {@link Route53Lease}, the record is changed by a change batch that deletes the exact record that was read
+ * and creates the new one, so that Route 53 rejects the change if another member changed the record in the meantime.
+ * A rejected change is retried with a fresh read. Members must keep their clocks synchronized to well within the
+ * member TTL.</p>
+ *
+ * <p>Changes to the record are made with the client of the default account, and take their tokens from that
+ * account's rate limiter in {@link Route53Clients}, so that heartbeats do not push the record updates sharing the
+ * account over its rate limit.</p>
+ */
+final class Route53Membership implements Membership {
+	private static final int MAX_ATTEMPTS = 3;
+	private static final long RECORD_TTL = 60;
+
+	private final LongSupplier clock;
+	private final Route53Clients clients;
+	private final String hostedZoneId;
+	private final Logger logger = LoggerFactory.getLogger(getClass());
+	private final String memberId;
+	private final long memberTtl;
+	private final String recordName;
+
+	/**
+	 * Initializes the membership with configuration values, and injects dependencies.
+	 *
+	 * @param hostedZoneId the identifier of the hosted zone to store the membership in
+	 * @param recordName the name of the TXT resource record set holding the membership
+	 * @param memberId the identifier of this instance
+	 * @param memberTtl the time for which a heartbeat renews the membership, in milliseconds
+	 * @param clients the Route 53 clients and rate limiters of the configured accounts
+	 * @throws IllegalArgumentException if {@code memberId} contains whitespace or quotes
+	 * @throws NullPointerException if a required parameter is {@code null}
+	 */
+	@Inject
+	Route53Membership(@Named("hostedZoneId") String hostedZoneId, @Named("membershipRecordName") String recordName,
+			@Named("memberId") String memberId, @Named("memberTtl") long memberTtl, Route53Clients clients) {
+		this(hostedZoneId, recordName, memberId, memberTtl, clients, System::currentTimeMillis);
+	}
+
+	/**
+	 * Initializes the membership with configuration values, dependencies, and a clock.
+	 *
+	 * @param hostedZoneId the identifier of the hosted zone to store the membership in
+	 * @param recordName the name of the TXT resource record set holding the membership
+	 * @param memberId the identifier of this instance
+	 * @param memberTtl the time for which a heartbeat renews the membership, in milliseconds
+	 * @param clients the Route 53 clients and rate limiters of the configured accounts
+	 * @param clock a source of wall clock time in milliseconds since the epoch
+	 * @throws IllegalArgumentException if {@code memberId} contains whitespace or quotes
+	 * @throws NullPointerException if a required parameter is {@code null}
+	 */
+	Route53Membership(String hostedZoneId, String recordName, String memberId, long memberTtl, Route53Clients clients,
+			LongSupplier clock) {
+		this.clients = Objects.requireNonNull(clients);
+		this.clock = Objects.requireNonNull(clock);
+		this.hostedZoneId = Objects.requireNonNull(hostedZoneId);
+		this.memberId = Objects.requireNonNull(memberId);
+		this.memberTtl = memberTtl;
+		this.recordName = Objects.requireNonNull(recordName).endsWith(".") ? recordName : recordName + '.';
+		if(!memberId.matches("[^\\s\"\\\\]+")) {
+			throw new IllegalArgumentException("Invalid member identifier: " + memberId);
+		}
+	}
+
+	/**
+	 * Renews the membership of this instance in the membership record, dropping expired members.
+	 *
+	 * @return the identifiers of the live members
+	 * @throws IllegalStateException if the record was changed by other members on every attempt
+	 */
+	@Override
+	public synchronized Set<String> heartbeat() {
+		final Map<String, Long> members = update(current -> {
+			final long now = clock.getAsLong();
+			current.values().removeIf(expiry -> expiry <= now);
+			current.put(memberId, now + memberTtl);
+		});
+		return Collections.unmodifiableSet(members.keySet());
+	}
+
+	/**
+	 * Removes this instance from the membership record, deleting the record if no members remain.
+	 *
+	 * @throws IllegalStateException if the record was changed by other members on every attempt
+	 */
+	@Override
+	public synchronized void leave() {
+		update(current -> current.remove(memberId));
+	}
+
+	/**
+	 * Reads the membership record, applies a change to the members it lists, and replaces it with a compare-and-swap,
+	 * retrying if another member changed it in the meantime.
+	 *
+	 * @param change the change to apply to the map of member identifiers to expiry times
+	 * @return the members after the change
+	 * @throws IllegalStateException if the record was changed by other members on every attempt
+	 */
+	private Map<String, Long> update(Consumer<Map<String, Long>> change) {
+		for(int attempt = 1; attempt <= MAX_ATTEMPTS; attempt++) {
+			final ResourceRecordSet current = read();
+			final Map<String, Long> members = parse(current);
+			change.accept(members);
+
+			final List<Change> changes = new ArrayList<>(2);
+			if(current != null) changes.add(new Change(ChangeAction.DELETE, current));
+			if(!members.isEmpty()) changes.add(new Change(ChangeAction.CREATE, membershipRecord(members)));
+			if(changes.isEmpty()) return members;
+
+			acquireToken();
+			try {
+				clients.get(null).changeResourceRecordSets(new ChangeResourceRecordSetsRequest()
+						.withHostedZoneId(hostedZoneId)
+						.withChangeBatch(new ChangeBatch().withChanges(changes).withComment("Dyn53 membership")));
+				return members;
+			} catch(InvalidChangeBatchException e) {
+				logger.debug("Membership was changed by another member on attempt {}: {}", attempt, e.getMessage());
+			}
+		}
+		throw new IllegalStateException("Membership record " + recordName + " was changed by other members on "
+				+ MAX_ATTEMPTS + " attempts");
+	}
+
+	/**
+	 * Blocks until the rate limit of the default account allows another change request.
+	 *
+	 * @throws IllegalStateException if interrupted while waiting
+	 */
+	private void acquireToken() {
+		long wait;
+		while((wait = clients.tryAcquire(null)) > 0) {
+			try {
+				TimeUnit.NANOSECONDS.sleep(wait);
+			} catch(InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException("Interrupted while waiting for rate limit", e);
+			}
+		}
+	}
+
+	/**
+	 * Reads the membership record from Route 53.
+	 *
+	 * @return the membership resource record set, or {@code null} if it does not exist
+	 */
+	private ResourceRecordSet read() {
+		final ListResourceRecordSetsResult result = clients.get(null).listResourceRecordSets(
+				new ListResourceRecordSetsRequest(hostedZoneId)
+						.withStartRecordName(recordName)
+						.withStartRecordType(RRType.TXT)
+						.withMaxItems("1"));
+		for(ResourceRecordSet resourceRecordSet : result.getResourceRecordSets()) {
+			if(resourceRecordSet.getName().equalsIgnoreCase(recordName)
+					&& RRType.TXT.toString().equals(resourceRecordSet.getType())) {
+				return resourceRecordSet;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Builds the membership resource record set.
+	 *
+	 * @param members a map of member identifiers to the times at which their memberships expire
+	 * @return the resource record set
+	 */
+	private ResourceRecordSet membershipRecord(Map<String, Long> members) {
+		final List<ResourceRecord> values = new ArrayList<>(members.size());
+		members.forEach((member, expiry) ->
+				values.add(new ResourceRecord("\"member=" + member + " expires=" + expiry + '"')));
+		return new ResourceRecordSet(recordName, RRType.TXT).withTTL(RECORD_TTL).withResourceRecords(values);
+	}
+
+	/**
+	 * Parses the members from a membership resource record set. Values that cannot be parsed are dropped.
+	 *
+	 * @param resourceRecordSet the membership resource record set, or {@code null}
+	 * @return a map of member identifiers to the times at which their memberships expire
+	 */
+	private static Map<String, Long> parse(ResourceRecordSet resourceRecordSet) {
+		final Map<String, Long> members = new TreeMap<>();
+		if(resourceRecordSet == null) return members;
+		for(ResourceRecord record : resourceRecordSet.getResourceRecords()) {
+			final String[] fields = record.getValue().replace("\"", "").split(" ");
+			if(fields.length == 2 && fields[0].startsWith("member=") && fields[1].matches("expires=\\d+")) {
+				members.put(fields[0].substring(7), Long.valueOf(fields[1].substring(8)));
+			}
+		}
+		return members;
+	}
+}
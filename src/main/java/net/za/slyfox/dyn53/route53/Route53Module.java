@@ -12,40 +12,144 @@
  */
 package net.za.slyfox.dyn53.route53;
 
-import com.amazonaws.auth.profile.ProfileCredentialsProvider;
-import com.amazonaws.services.route53.AmazonRoute53;
-import com.amazonaws.services.route53.AmazonRoute53Client;
 import com.google.inject.AbstractModule;
 import com.google.inject.Provides;
 import com.google.inject.TypeLiteral;
+import com.google.inject.multibindings.Multibinder;
 import com.google.inject.name.Names;
+import net.za.slyfox.dyn53.bean.Lifecycle;
+import net.za.slyfox.dyn53.cluster.RecordOwnership;
 
+import javax.inject.Named;
 import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Optional;
+import java.util.function.BiConsumer;
 import java.util.function.Consumer;
 
 public final class Route53Module extends AbstractModule {
-	private final String hostedZoneId;
-	private final String resourceRecordSetName;
-	private final Long resourceRecordSetTtl;
+	private final AdaptiveTtl adaptiveTtl;
+	private final List<Route53Record> records;
+	private final Map<String, RoutingPolicy> routingPolicies;
+	private final int shardCount;
+	private final double zoneRequestRate;
 
 	public Route53Module(String hostedZoneId, String resourceRecordSetName, Long resourceRecordSetTtl) {
-		this.hostedZoneId = Objects.requireNonNull(hostedZoneId);
-		this.resourceRecordSetName = Objects.requireNonNull(resourceRecordSetName);
-		this.resourceRecordSetTtl = Objects.requireNonNull(resourceRecordSetTtl);
+		this(hostedZoneId, resourceRecordSetName, resourceRecordSetTtl, Collections.emptyMap());
+	}
+
+	public Route53Module(String hostedZoneId, String resourceRecordSetName, Long resourceRecordSetTtl,
+			Map<String, RoutingPolicy> routingPolicies) {
+		this(Collections.singletonList(new Route53Record(hostedZoneId, resourceRecordSetName, resourceRecordSetTtl)),
+				routingPolicies, 1, 1.0);
+	}
+
+	/**
+	 * Initializes the module with the resource record sets to update. If more than one record is given, or a record
+	 * belongs to an account other than that of the default credentials, updates are distributed over worker threads
+	 * by hosted zone, and batched per hosted zone. The first record is the one used
+	 * for weighted and failover routing, and identifies the hosted zone used for other purposes such as leases.
+	 *
+	 * <p>Every record is owned by this instance, unless a {@code ClusterModule} overrides the {@link RecordOwnership}
+	 * binding to partition the records across a cluster.</p>
+	 *
+	 * <p>If the records have check intervals, their intervals are bound as the {@code "checkIntervals"} map of record
+	 * keys, and the {@code "scheduledPublish"} {@code BiConsumer} updates the records with the given keys, for
+	 * discovery on per-record schedules.</p>
+	 *
+	 * @param records the resource record sets to update
+	 * @param routingPolicies a map of uplink names to the routing policy of the resource record set for that uplink
+	 * @param shardCount the number of worker threads to distribute hosted zones over
+	 * @param zoneRequestRate the maximum sustained rate of change requests per hosted zone, per second
+	 * @throws IllegalArgumentException if {@code records} is empty, or only some of the records have check intervals
+	 * @throws NullPointerException if a parameter is {@code null}
+	 */
+	public Route53Module(List<Route53Record> records, Map<String, RoutingPolicy> routingPolicies, int shardCount,
+			double zoneRequestRate) {
+		this(records, routingPolicies, shardCount, zoneRequestRate, null);
+	}
+
+	/**
+	 * Initializes the module with the resource record sets to update, and the policy that chooses their TTLs. With a
+	 * TTL policy, updates are always distributed over worker threads by hosted zone, since the TTLs of a hosted zone
+	 * are adjusted in its change batches.
+	 *
+	 * @param records the resource record sets to update
+	 * @param routingPolicies a map of uplink names to the routing policy of the resource record set for that uplink
+	 * @param shardCount the number of worker threads to distribute hosted zones over
+	 * @param zoneRequestRate the maximum sustained rate of change requests per hosted zone, per second
+	 * @param adaptiveTtl the policy choosing the TTLs of the records, or {@code null} to use their configured TTLs
+	 * @throws IllegalArgumentException if {@code records} is empty, or only some of the records have check intervals
+	 * @throws NullPointerException if a parameter other than {@code adaptiveTtl} is {@code null}
+	 * @see #Route53Module(List, Map, int, double)
+	 */
+	public Route53Module(List<Route53Record> records, Map<String, RoutingPolicy> routingPolicies, int shardCount,
+			double zoneRequestRate, AdaptiveTtl adaptiveTtl) {
+		this.adaptiveTtl = adaptiveTtl;
+		this.records = new ArrayList<>(records);
+		this.routingPolicies = new LinkedHashMap<>(Objects.requireNonNull(routingPolicies));
+		this.shardCount = shardCount;
+		this.zoneRequestRate = zoneRequestRate;
+		if(this.records.isEmpty()) throw new IllegalArgumentException("At least one record is required");
+		final long scheduledCount = this.records.stream().filter(record -> record.getCheckInterval() != null).count();
+		if(scheduledCount != 0 && scheduledCount != this.records.size()) {
+			throw new IllegalArgumentException("Either every record or none must have a check interval");
+		}
 	}
 
 	@Override
 	protected void configure() {
-		bind(new TypeLiteral<Consumer<InetAddress>>(){}).to(Route53Updater.class);
+		final boolean scheduled = records.get(0).getCheckInterval() != null;
+		if(records.size() == 1 && records.get(0).getAccount() == null && !scheduled && adaptiveTtl == null) {
+			bind(AddressRecordUpdater.class).to(Route53Updater.class);
+		} else {
+			Multibinder.newSetBinder(binder(), Lifecycle.class).addBinding().to(ShardedRoute53Updater.class);
+			bind(AddressRecordUpdater.class).to(ShardedRoute53Updater.class);
+			bind(new TypeLiteral<List<Route53Record>>(){}).annotatedWith(Names.named("route53Records"))
+					.toInstance(Collections.unmodifiableList(records));
+			bind(Integer.class).annotatedWith(Names.named("route53Shards")).toInstance(shardCount);
+			bind(Double.class).annotatedWith(Names.named("zoneRequestRate")).toInstance(zoneRequestRate);
+			bind(RecordOwnership.class).toInstance(key -> true);
+			bind(new TypeLiteral<Optional<AdaptiveTtl>>(){}).toInstance(Optional.ofNullable(adaptiveTtl));
+		}
+		if(scheduled) {
+			final Map<String, Long> checkIntervals = new LinkedHashMap<>();
+			records.forEach(record -> checkIntervals.put(record.toString(), record.getCheckInterval()));
+			bind(new TypeLiteral<Map<String, Long>>(){}).annotatedWith(Names.named("checkIntervals"))
+					.toInstance(Collections.unmodifiableMap(checkIntervals));
+			bind(new TypeLiteral<BiConsumer<InetAddress, Collection<String>>>(){})
+					.annotatedWith(Names.named("scheduledPublish")).to(ShardedRoute53Updater.class);
+		}
+
+		bind(new TypeLiteral<Consumer<InetAddress>>(){}).to(AddressRecordUpdater.class);
+		bind(new TypeLiteral<Consumer<InetAddress>>(){}).annotatedWith(Names.named("publish"))
+				.to(AddressRecordUpdater.class);
+		bind(new TypeLiteral<Consumer<Map<String, InetAddress>>>(){}).to(RoutingPolicyUpdater.class);
+		bind(new TypeLiteral<Consumer<Map<String, InetAddress>>>(){}).annotatedWith(Names.named("publish"))
+				.to(RoutingPolicyUpdater.class);
+		bind(new TypeLiteral<Map<String, RoutingPolicy>>(){}).toInstance(routingPolicies);
 
-		bind(String.class).annotatedWith(Names.named("hostedZoneId")).toInstance(hostedZoneId);
-		bind(String.class).annotatedWith(Names.named("resourceRecordSetName")).toInstance(resourceRecordSetName);
-		bind(Long.class).annotatedWith(Names.named("resourceRecordSetTtl")).toInstance(resourceRecordSetTtl);
+		final Route53Record primary = records.get(0);
+		bind(String.class).annotatedWith(Names.named("hostedZoneId")).toInstance(primary.getHostedZoneId());
+		bind(String.class).annotatedWith(Names.named("resourceRecordSetName")).toInstance(primary.getName());
+		bind(Long.class).annotatedWith(Names.named("resourceRecordSetTtl")).toInstance(primary.getTtl());
+	}
+
+	@Provides
+	@Named("withdraw")
+	protected Consumer<InetAddress> withdrawal(AddressRecordUpdater updater) {
+		return updater::withdraw;
 	}
 
 	@Provides
-	protected AmazonRoute53 amazonRoute53() {
-		return new AmazonRoute53Client(new ProfileCredentialsProvider("dyn53"));
+	@Named("withdraw")
+	protected Consumer<Map<String, InetAddress>> uplinkWithdrawal(RoutingPolicyUpdater updater) {
+		return updater::withdraw;
 	}
 }
@@ -0,0 +1,145 @@
+/*
+ * Copyright 2015 Philip Cronje
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package net.za.slyfox.dyn53.route53;
+
+import com.amazonaws.services.route53.model.ResourceRecord;
+import com.amazonaws.services.route53.model.ResourceRecordSet;
+
+import java.net.InetAddress;
+import java.util.Objects;
+
+/**
+ * Identifies an address resource record set managed by Dyn53, the TTL it is published with, the AWS account whose
+ * credentials are used to update it, and optionally the interval at which its address is checked.
+ */
+public final class Route53Record {
+	private final String account;
+	private final Long checkInterval;
+	private final String hostedZoneId;
+	private final String name;
+	private final Long ttl;
+
+	/**
+	 * Initializes the record.
+	 *
+	 * @param hostedZoneId the identifier of the hosted zone containing the resource record set, as given by Route 53
+	 * @param name the name of the resource record set
+	 * @param ttl the TTL to publish the resource record set with, in seconds
+	 * @throws NullPointerException if a parameter is {@code null}
+	 */
+	public Route53Record(String hostedZoneId, String name, Long ttl) {
+		this(hostedZoneId, name, ttl, null);
+	}
+
+	/**
+	 * Initializes the record.
+	 *
+	 * @param hostedZoneId the identifier of the hosted zone containing the resource record set, as given by Route 53
+	 * @param name the name of the resource record set
+	 * @param ttl the TTL to publish the resource record set with, in seconds
+	 * @param account the name of the account the hosted zone belongs to, or {@code null} for the account of the
+	 *                default credentials
+	 * @throws NullPointerException if {@code hostedZoneId}, {@code name} or {@code ttl} is {@code null}
+	 */
+	public Route53Record(String hostedZoneId, String name, Long ttl, String account) {
+		this(hostedZoneId, name, ttl, account, null);
+	}
+
+	/**
+	 * Initializes the record.
+	 *
+	 * @param hostedZoneId the identifier of the hosted zone containing the resource record set, as given by Route 53
+	 * @param name the name of the resource record set
+	 * @param ttl the TTL to publish the resource record set with, in seconds
+	 * @param account the name of the account the hosted zone belongs to, or {@code null} for the account of the
+	 *                default credentials
+	 * @param checkInterval the interval at which to check the address of the record in seconds, or {@code null} to
+	 *                      check it on the shared discovery schedule
+	 * @throws IllegalArgumentException if {@code checkInterval} is not positive
+	 * @throws NullPointerException if {@code hostedZoneId}, {@code name} or {@code ttl} is {@code null}
+	 */
+	public Route53Record(String hostedZoneId, String name, Long ttl, String account, Long checkInterval) {
+		if(checkInterval != null && checkInterval < 1) {
+			throw new IllegalArgumentException("Check interval must be positive");
+		}
+		this.account = account;
+		this.checkInterval = checkInterval;
+		this.hostedZoneId = Objects.requireNonNull(hostedZoneId);
+		this.name = Objects.requireNonNull(name);
+		this.ttl = Objects.requireNonNull(ttl);
+	}
+
+	public String getAccount() {
+		return account;
+	}
+
+	public Long getCheckInterval() {
+		return checkInterval;
+	}
+
+	public String getHostedZoneId() {
+		return hostedZoneId;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public Long getTtl() {
+		return ttl;
+	}
+
+	/**
+	 * Creates the resource record set of this record with an address value.
+	 *
+	 * @param address the value of the resource record set
+	 * @return the resource record set
+	 * @throws IllegalArgumentException if {@code address} cannot be mapped to a resource record type
+	 */
+	ResourceRecordSet toResourceRecordSet(InetAddress address) {
+		return toResourceRecordSet(address, ttl);
+	}
+
+	/**
+	 * Creates the resource record set of this record with an address value and a TTL other than the configured TTL.
+	 *
+	 * @param address the value of the resource record set
+	 * @param ttl the TTL of the resource record set, in seconds
+	 * @return the resource record set
+	 * @throws IllegalArgumentException if {@code address} cannot be mapped to a resource record type
+	 */
+	ResourceRecordSet toResourceRecordSet(InetAddress address, long ttl) {
+		return new ResourceRecordSet(name, Route53Updater.getResourceRecordType(address))
+				.withResourceRecords(new ResourceRecord(address.getHostAddress()))
+				.withTTL(ttl);
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if(this == o) return true;
+		if(!(o instanceof Route53Record)) return false;
+		final Route53Record other = (Route53Record)o;
+		return hostedZoneId.equals(other.hostedZoneId) && name.equals(other.name) && ttl.equals(other.ttl)
+				&& Objects.equals(account, other.account) && Objects.equals(checkInterval, other.checkInterval);
+	}
+
+	@Override
+	public int hashCode() {
+		return Objects.hash(account, hostedZoneId, name, ttl, checkInterval);
+	}
+
+	@Override
+	public String toString() {
+		return name + " in " + hostedZoneId + ((account == null) ? "" : " of account " + account);
+	}
+}
@@ -12,8 +12,11 @@
  */
 package net.za.slyfox.dyn53.route53;
 
+import com.amazonaws.AmazonClientException;
 import com.amazonaws.services.route53.AmazonRoute53;
 import com.amazonaws.services.route53.model.*;
+import net.za.slyfox.dyn53.jfr.RecordUpdateEvent;
+import net.za.slyfox.dyn53.logging.LogField;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -23,13 +26,14 @@ import java.net.Inet4Address;
 import java.net.Inet6Address;
 import java.net.InetAddress;
 import java.util.Objects;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
 
 /**
  * Implements a {@link Consumer} that updates an Amazon Route 53 resource record set with the value of an
- * {@link InetAddress}.
+ * {@link InetAddress}. Each change request is recorded as a {@link RecordUpdateEvent}.
  */
-final class Route53Updater implements Consumer<InetAddress> {
+final class Route53Updater implements AddressRecordUpdater {
 	private final Logger logger = LoggerFactory.getLogger(getClass());
 	private final String hostedZoneId;
 	private final String resourceRecordSetName;
@@ -61,16 +65,32 @@ final class Route53Updater implements Consumer<InetAddress> {
 	 */
 	@Override
 	public void accept(InetAddress inetAddress) {
-		final String address = inetAddress.getHostAddress();
 		logger.info("Updating resource record set {} in hosted zone {} to {}", resourceRecordSetName, hostedZoneId,
-				address);
+				inetAddress.getHostAddress());
+		changeResourceRecordSet(ChangeAction.UPSERT, inetAddress, "Dyn53 update");
+	}
+
+	@Override
+	public void withdraw(InetAddress inetAddress) {
+		logger.info("Withdrawing resource record set {} in hosted zone {} from {}", resourceRecordSetName,
+				hostedZoneId, inetAddress.getHostAddress());
+		changeResourceRecordSet(ChangeAction.DELETE, inetAddress, "Dyn53 withdrawal");
+	}
 
+	/**
+	 * Submits a single change to the configured resource record set.
+	 *
+	 * @param action the change action to request
+	 * @param inetAddress the address value of the resource record set
+	 * @param comment the comment to attach to the change batch
+	 */
+	private void changeResourceRecordSet(ChangeAction action, InetAddress inetAddress, String comment) {
 		final ResourceRecordSet resourceRecordSet = new ResourceRecordSet(resourceRecordSetName,
 				getResourceRecordType(inetAddress))
-				.withResourceRecords(new ResourceRecord(address))
+				.withResourceRecords(new ResourceRecord(inetAddress.getHostAddress()))
 				.withTTL(resourceRecordSetTtl);
-		final Change change = new Change(ChangeAction.UPSERT, resourceRecordSet);
-		final ChangeBatch changeBatch = new ChangeBatch().withChanges(change).withComment("Dyn53 update");
+		final Change change = new Change(action, resourceRecordSet);
+		final ChangeBatch changeBatch = new ChangeBatch().withChanges(change).withComment(comment);
 
 		final ChangeResourceRecordSetsRequest request = new ChangeResourceRecordSetsRequest()
 				.withHostedZoneId(hostedZoneId)
@@ -80,13 +100,45 @@ final class Route53Updater implements Consumer<InetAddress> {
 			logger.debug("Requesting change: {}", change);
 		}
 
-		final ChangeResourceRecordSetsResult result = route53.changeResourceRecordSets(request);
+		final RecordUpdateEvent event = new RecordUpdateEvent();
+		event.record = resourceRecordSetName;
+		event.zone = hostedZoneId;
+		event.changes = 1;
+		final long start = System.nanoTime();
+		event.begin();
+		final ChangeResourceRecordSetsResult result;
+		try {
+			result = route53.changeResourceRecordSets(request);
+		} catch(AmazonClientException e) {
+			event.outcome = "FAILED";
+			event.commit();
+			logger.warn("Change request for {} in hosted zone {} {} after {} ms",
+					LogField.of("record", resourceRecordSetName), LogField.of("zone", hostedZoneId),
+					LogField.of("outcome", "FAILED"), LogField.of("latency", elapsedMillis(start)));
+			throw e;
+		}
+		event.outcome = result.getChangeInfo().getStatus();
+		event.changeId = result.getChangeInfo().getId();
+		event.commit();
 		if(logger.isInfoEnabled()) {
-			logger.info("Result of change request {}: {}", result.getChangeInfo().getId(),
-					result.getChangeInfo().getStatus());
+			logger.info("Result of change request {} for {} in hosted zone {}: {} after {} ms",
+					LogField.of("changeId", result.getChangeInfo().getId()),
+					LogField.of("record", resourceRecordSetName), LogField.of("zone", hostedZoneId),
+					LogField.of("outcome", result.getChangeInfo().getStatus()),
+					LogField.of("latency", elapsedMillis(start)));
 		}
 	}
 
+	/**
+	 * Returns the time elapsed since a starting time, for reporting request latency.
+	 *
+	 * @param start the starting time, as given by {@link System#nanoTime()}
+	 * @return the elapsed time, in milliseconds
+	 */
+	static long elapsedMillis(long start) {
+		return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+	}
+
 	/**
 	 * Maps the given {@link InetAddress} to a {@link RRType} enumeration value.
 	 *
@@ -94,7 +146,7 @@ final class Route53Updater implements Consumer<InetAddress> {
 	 * @return the {@code RRType} enumeration value corresponding to the type of address given
 	 * @throws IllegalArgumentException if {@code address} cannot be mapped to a value in the {@code RRType} enumeration
 	 */
-	private static RRType getResourceRecordType(InetAddress address) {
+	static RRType getResourceRecordType(InetAddress address) {
 		if(address instanceof Inet4Address) {
 			return RRType.A;
 		} else if(address instanceof Inet6Address) {
@@ -0,0 +1,94 @@
+/*
+ * Copyright 2015 Philip Cronje
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package net.za.slyfox.dyn53.route53;
+
+import com.amazonaws.services.route53.model.ResourceRecordSet;
+import com.amazonaws.services.route53.model.ResourceRecordSetFailover;
+
+import java.util.Objects;
+
+/**
+ * Describes the Route 53 routing policy of one resource record set in a group of weighted or failover resource record
+ * sets sharing the same name and type.
+ */
+public final class RoutingPolicy {
+	private final String failover;
+	private final String healthCheckId;
+	private final String setIdentifier;
+	private final Long weight;
+
+	private RoutingPolicy(String setIdentifier, Long weight, String failover, String healthCheckId) {
+		this.failover = failover;
+		this.healthCheckId = healthCheckId;
+		this.setIdentifier = Objects.requireNonNull(setIdentifier);
+		this.weight = weight;
+		if(this.setIdentifier.isEmpty()) throw new IllegalArgumentException("Set identifier may not be empty");
+	}
+
+	/**
+	 * Creates a weighted routing policy.
+	 *
+	 * @param setIdentifier the identifier distinguishing the resource record set from others with the same name
+	 * @param weight the relative weight of the resource record set, between 0 and 255
+	 * @param healthCheckId the identifier of the Route 53 health check associated with the resource record set, or
+	 *                      {@code null} if there is none
+	 * @return the routing policy
+	 * @throws IllegalArgumentException if {@code setIdentifier} is empty, or {@code weight} is out of range
+	 * @throws NullPointerException if {@code setIdentifier} or {@code weight} is {@code null}
+	 */
+	public static RoutingPolicy weighted(String setIdentifier, Long weight, String healthCheckId) {
+		if(Objects.requireNonNull(weight) < 0 || weight > 255) {
+			throw new IllegalArgumentException("Weight must be between 0 and 255");
+		}
+		return new RoutingPolicy(setIdentifier, weight, null, healthCheckId);
+	}
+
+	/**
+	 * Creates a failover routing policy.
+	 *
+	 * @param setIdentifier the identifier distinguishing the resource record set from others with the same name
+	 * @param failover the failover role of the resource record set, either {@code PRIMARY} or {@code SECONDARY}
+	 * @param healthCheckId the identifier of the Route 53 health check associated with the resource record set, or
+	 *                      {@code null} if there is none
+	 * @return the routing policy
+	 * @throws IllegalArgumentException if {@code setIdentifier} is empty, or {@code failover} is not a valid role
+	 * @throws NullPointerException if {@code setIdentifier} or {@code failover} is {@code null}
+	 */
+	public static RoutingPolicy failover(String setIdentifier, String failover, String healthCheckId) {
+		return new RoutingPolicy(setIdentifier, null,
+				ResourceRecordSetFailover.fromValue(Objects.requireNonNull(failover)).toString(), healthCheckId);
+	}
+
+	/**
+	 * Applies this routing policy to a resource record set.
+	 *
+	 * @param resourceRecordSet the resource record set to modify
+	 * @return {@code resourceRecordSet}, for chaining
+	 */
+	ResourceRecordSet applyTo(ResourceRecordSet resourceRecordSet) {
+		return resourceRecordSet.withSetIdentifier(setIdentifier)
+				.withWeight(weight)
+				.withFailover(failover)
+				.withHealthCheckId(healthCheckId);
+	}
+
+	String getSetIdentifier() {
+		return setIdentifier;
+	}
+
+	@Override
+	public String toString() {
+		return "RoutingPolicy{setIdentifier=" + setIdentifier + ", weight=" + weight + ", failover=" + failover
+				+ ", healthCheckId=" + healthCheckId + '}';
+	}
+}
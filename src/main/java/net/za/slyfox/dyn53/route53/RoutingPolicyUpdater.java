@@ -0,0 +1,142 @@
+/*
+ * Copyright 2015 Philip Cronje
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package net.za.slyfox.dyn53.route53;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.services.route53.AmazonRoute53;
+import com.amazonaws.services.route53.model.*;
+import net.za.slyfox.dyn53.logging.LogField;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Consumer;
+
+/**
+ * Implements a {@link Consumer} that updates a group of weighted or failover Amazon Route 53 resource record sets, one
+ * per uplink, with the external IP addresses discovered for those uplinks. All resource record sets are updated in a
+ * single change batch, so that Route 53 applies the changes atomically.
+ */
+final class RoutingPolicyUpdater implements Consumer<Map<String, InetAddress>> {
+	private final Logger logger = LoggerFactory.getLogger(getClass());
+	private final String hostedZoneId;
+	private final String resourceRecordSetName;
+	private final Long resourceRecordSetTtl;
+	private final AmazonRoute53 route53;
+	private final Map<String, RoutingPolicy> routingPolicies;
+
+	/**
+	 * Initializes this {@code RoutingPolicyUpdater} with configuration values, and injects dependencies.
+	 *
+	 * @param hostedZoneId the identifier of the hosted zone to update, as given by Route 53
+	 * @param resourceRecordSetName the name shared by the resource record sets in the hosted zone to update
+	 * @param resourceRecordSetTtl the TTL to set on each resource record set
+	 * @param routingPolicies a map of uplink names to the routing policy of the resource record set for that uplink
+	 * @param route53 the Amazon Route 53 client interface to use when making requests against the service
+	 * @throws NullPointerException if a required parameter is {@code null}
+	 */
+	@Inject
+	RoutingPolicyUpdater(@Named("hostedZoneId") String hostedZoneId,
+			@Named("resourceRecordSetName") String resourceRecordSetName,
+			@Named("resourceRecordSetTtl") Long resourceRecordSetTtl, Map<String, RoutingPolicy> routingPolicies,
+			AmazonRoute53 route53) {
+		this.hostedZoneId = Objects.requireNonNull(hostedZoneId);
+		this.resourceRecordSetName = Objects.requireNonNull(resourceRecordSetName);
+		this.resourceRecordSetTtl = Objects.requireNonNull(resourceRecordSetTtl);
+		this.route53 = Objects.requireNonNull(route53);
+		this.routingPolicies = Objects.requireNonNull(routingPolicies);
+	}
+
+	/**
+	 * Updates the resource record set of each uplink in {@code addresses} with that uplink's address.
+	 *
+	 * @param addresses a map of uplink names to the addresses to update their resource record sets with
+	 * @throws IllegalArgumentException if {@code addresses} contains an uplink without a routing policy, or an address
+	 *                                  that cannot be mapped to a resource record type
+	 */
+	@Override
+	public void accept(Map<String, InetAddress> addresses) {
+		changeResourceRecordSets(ChangeAction.UPSERT, addresses, "Dyn53 update");
+	}
+
+	/**
+	 * Deletes the resource record set of each uplink in {@code addresses}. Deletion is used rather than setting the
+	 * weight to zero, since Route 53 distributes traffic evenly across a weighted group in which every weight is zero.
+	 *
+	 * @param addresses a map of uplink names to the addresses their resource record sets currently hold, which Route
+	 *                  53 requires to match the existing values exactly
+	 * @throws IllegalArgumentException if {@code addresses} contains an uplink without a routing policy, or an address
+	 *                                  that cannot be mapped to a resource record type
+	 */
+	public void withdraw(Map<String, InetAddress> addresses) {
+		changeResourceRecordSets(ChangeAction.DELETE, addresses, "Dyn53 withdrawal");
+	}
+
+	/**
+	 * Submits a change to the resource record set of each uplink in {@code addresses}, in a single change batch.
+	 *
+	 * @param action the change action to request for each resource record set
+	 * @param addresses a map of uplink names to the address values of their resource record sets
+	 * @param comment the comment to attach to the change batch
+	 */
+	private void changeResourceRecordSets(ChangeAction action, Map<String, InetAddress> addresses, String comment) {
+		final List<Change> changes = new ArrayList<>(addresses.size());
+		addresses.forEach((uplink, inetAddress) -> {
+			final RoutingPolicy routingPolicy = routingPolicies.get(uplink);
+			if(routingPolicy == null) throw new IllegalArgumentException("No routing policy for uplink " + uplink);
+
+			final String address = inetAddress.getHostAddress();
+			logger.info("Requesting {} of resource record set {} ({}) in hosted zone {} with {}", action,
+					resourceRecordSetName, routingPolicy.getSetIdentifier(), hostedZoneId, address);
+
+			final ResourceRecordSet resourceRecordSet = routingPolicy.applyTo(new ResourceRecordSet(
+					resourceRecordSetName, Route53Updater.getResourceRecordType(inetAddress))
+					.withResourceRecords(new ResourceRecord(address))
+					.withTTL(resourceRecordSetTtl));
+			changes.add(new Change(action, resourceRecordSet));
+		});
+
+		final ChangeBatch changeBatch = new ChangeBatch().withChanges(changes).withComment(comment);
+		final ChangeResourceRecordSetsRequest request = new ChangeResourceRecordSetsRequest()
+				.withHostedZoneId(hostedZoneId)
+				.withChangeBatch(changeBatch);
+
+		if(logger.isDebugEnabled()) {
+			logger.debug("Requesting changes: {}", changes);
+		}
+
+		final long start = System.nanoTime();
+		final ChangeResourceRecordSetsResult result;
+		try {
+			result = route53.changeResourceRecordSets(request);
+		} catch(AmazonClientException e) {
+			logger.warn("Change request for {} in hosted zone {} {} after {} ms",
+					LogField.of("record", resourceRecordSetName), LogField.of("zone", hostedZoneId),
+					LogField.of("outcome", "FAILED"), LogField.of("latency", Route53Updater.elapsedMillis(start)));
+			throw e;
+		}
+		if(logger.isInfoEnabled()) {
+			logger.info("Result of change request {} for {} in hosted zone {}: {} after {} ms",
+					LogField.of("changeId", result.getChangeInfo().getId()),
+					LogField.of("record", resourceRecordSetName), LogField.of("zone", hostedZoneId),
+					LogField.of("outcome", result.getChangeInfo().getStatus()),
+					LogField.of("latency", Route53Updater.elapsedMillis(start)));
+		}
+	}
+}
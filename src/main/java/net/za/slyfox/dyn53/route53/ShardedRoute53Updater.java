@@ -0,0 +1,605 @@
+/*
+ * Copyright 2015 Philip Cronje
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package net.za.slyfox.dyn53.route53;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.services.route53.model.*;
+import net.za.slyfox.dyn53.bean.Lifecycle;
+import net.za.slyfox.dyn53.cluster.RecordOwnership;
+import net.za.slyfox.dyn53.concurrent.NamedPoolThreadFactory;
+import net.za.slyfox.dyn53.jfr.RecordUpdateEvent;
+import net.za.slyfox.dyn53.logging.LogField;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.BiConsumer;
+import java.util.function.LongSupplier;
+
+/**
+ * Implements an {@link AddressRecordUpdater} that updates resource record sets in many hosted zones in parallel. Each
+ * hosted zone is assigned to a fixed worker thread by the hash of its account and identifier, and all of its state is
+ * confined to that thread, so that changes to a zone are applied in order without any locking.
+ *
+ * <p>Hosted zones in different AWS accounts are kept apart even if their identifiers are equal, and each is updated
+ * with the client of its account, so that one discovered address is published to every account in parallel.</p>
+ *
+ * <p>Each zone buffers the changes requested for its records, and submits them in as few change batches as the size
+ * limits of Route 53 allow, each once both its own token bucket and the rate limiter of its account allow another
+ * request. Changes requested while a batch is waiting replace earlier changes to the same record. Failed batches are
+ * retried with exponential backoff, except for batches that Route 53 rejects as invalid, which are discarded.</p>
+ *
+ * <p>The updater can also update a subset of its records, identified by their {@linkplain Route53Record#toString()
+ * keys}, for records that are checked on their own schedules. The records of a subset that share a hosted zone are
+ * still updated in a single change batch.</p>
+ *
+ * <p>When records are partitioned across instances, only the records owned by this instance are updated. Records
+ * that this instance takes over from another are updated with the most recently published address.</p>
+ *
+ * <p>With an {@link AdaptiveTtl} policy, each record is published with a TTL chosen from the history of its address
+ * changes rather than its configured TTL. Records whose chosen TTL has changed since they were last published are
+ * added to the next change batch of their hosted zone, and each hosted zone is reviewed once per minimum TTL, so that
+ * the TTLs of stable records are raised even when no address changes.</p>
+ *
+ * <p>Updates are applied asynchronously, so {@link #accept(InetAddress)} and {@link #withdraw(InetAddress)} return as
+ * soon as the changes have been queued. Withdrawals are therefore best-effort: a deletion that Route 53 rejects is
+ * discarded without being reported to the caller. Changes still queued when the updater is stopped are submitted
+ * immediately, so that a shutdown does not lose them. Each change batch is recorded as a {@link RecordUpdateEvent}.</p>
+ */
+@Singleton
+final class ShardedRoute53Updater
+		implements AddressRecordUpdater, BiConsumer<InetAddress, Collection<String>>, Lifecycle {
+	private static final long DRAIN_TIMEOUT = TimeUnit.MINUTES.toNanos(1);
+	private static final long MAX_RETRY_DELAY = TimeUnit.MINUTES.toNanos(5);
+	private static final long MIN_RETRY_DELAY = TimeUnit.SECONDS.toNanos(1);
+
+	private final Logger logger = LoggerFactory.getLogger(getClass());
+	private final AdaptiveTtl adaptiveTtl;
+	private final LongSupplier clock;
+	private final Route53Clients clients;
+	private final RecordOwnership ownership;
+	private final List<Route53Record> records;
+	private final Map<String, Route53Record> recordsByKey = new HashMap<>();
+	private final Map<Route53Record, Zone> recordZones = new HashMap<>();
+	private final ScheduledThreadPoolExecutor[] shards;
+	private final Collection<Zone> zones;
+
+	private volatile InetAddress lastAddress;
+	private volatile Set<Route53Record> ownedRecords;
+
+	/**
+	 * Initializes the updater with configuration values, and injects dependencies.
+	 *
+	 * @param records the resource record sets to update
+	 * @param shardCount the number of worker threads to distribute hosted zones over
+	 * @param zoneRequestRate the maximum sustained rate of change requests per hosted zone, per second
+	 * @param clients the Route 53 clients and rate limiters of the accounts the hosted zones belong to
+	 * @param ownership decides which of the records this instance updates
+	 * @param adaptiveTtl the policy choosing the TTLs of the records, if their configured TTLs are not used
+	 * @throws IllegalArgumentException if {@code records} is empty, or {@code shardCount} is not positive
+	 * @throws NullPointerException if a parameter is {@code null}
+	 */
+	@Inject
+	ShardedRoute53Updater(@Named("route53Records") List<Route53Record> records, @Named("route53Shards") int shardCount,
+			@Named("zoneRequestRate") double zoneRequestRate, Route53Clients clients, RecordOwnership ownership,
+			Optional<AdaptiveTtl> adaptiveTtl) {
+		this(records, shardCount, zoneRequestRate, clients, ownership, adaptiveTtl.orElse(null), System::nanoTime);
+	}
+
+	/**
+	 * Initializes an updater that updates every record, assigning each hosted zone of {@code records} to a shard.
+	 *
+	 * @param records the resource record sets to update
+	 * @param shardCount the number of worker threads to distribute hosted zones over
+	 * @param zoneRequestRate the maximum sustained rate of change requests per hosted zone, per second
+	 * @param clients the Route 53 clients and rate limiters of the accounts the hosted zones belong to
+	 * @param clock a source of monotonic time, in nanoseconds
+	 * @throws IllegalArgumentException if {@code records} is empty, or {@code shardCount} is not positive
+	 * @throws NullPointerException if a parameter is {@code null}
+	 */
+	ShardedRoute53Updater(List<Route53Record> records, int shardCount, double zoneRequestRate, Route53Clients clients,
+			LongSupplier clock) {
+		this(records, shardCount, zoneRequestRate, clients, key -> true, null, clock);
+	}
+
+	/**
+	 * Initializes the updater, assigning each hosted zone of {@code records} to a shard.
+	 *
+	 * @param records the resource record sets to update
+	 * @param shardCount the number of worker threads to distribute hosted zones over
+	 * @param zoneRequestRate the maximum sustained rate of change requests per hosted zone, per second
+	 * @param clients the Route 53 clients and rate limiters of the accounts the hosted zones belong to
+	 * @param ownership decides which of the records this instance updates
+	 * @param adaptiveTtl the policy choosing the TTLs of the records, or {@code null} to use their configured TTLs
+	 * @param clock a source of monotonic time, in nanoseconds
+	 * @throws IllegalArgumentException if {@code records} is empty, or {@code shardCount} is not positive
+	 * @throws NullPointerException if a parameter other than {@code adaptiveTtl} is {@code null}
+	 */
+	ShardedRoute53Updater(List<Route53Record> records, int shardCount, double zoneRequestRate, Route53Clients clients,
+			RecordOwnership ownership, AdaptiveTtl adaptiveTtl, LongSupplier clock) {
+		if(records.isEmpty()) throw new IllegalArgumentException("At least one record is required");
+		if(shardCount < 1) throw new IllegalArgumentException("At least one shard is required");
+		this.adaptiveTtl = adaptiveTtl;
+		this.clock = Objects.requireNonNull(clock);
+		this.clients = Objects.requireNonNull(clients);
+		this.ownership = Objects.requireNonNull(ownership);
+		this.records = new ArrayList<>(records);
+
+		final Map<List<String>, List<Route53Record>> recordsByZone = new LinkedHashMap<>();
+		records.forEach(record -> recordsByZone.computeIfAbsent(
+				Arrays.asList(record.getAccount(), record.getHostedZoneId()), zone -> new ArrayList<>()).add(record));
+
+		final NamedPoolThreadFactory threadFactory = new NamedPoolThreadFactory("route53Shard");
+		shards = new ScheduledThreadPoolExecutor[Math.min(shardCount, recordsByZone.size())];
+		for(int i = 0; i < shards.length; i++) {
+			shards[i] = new ScheduledThreadPoolExecutor(1, threadFactory);
+			shards[i].setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+		}
+
+		final List<Zone> zones = new ArrayList<>(recordsByZone.size());
+		recordsByZone.forEach((key, zoneRecords) -> {
+			final Zone zone = new Zone(key.get(0), key.get(1), shards[Math.floorMod(key.hashCode(), shards.length)],
+					new TokenBucket(Math.max(1, Math.ceil(zoneRequestRate)), zoneRequestRate, clock));
+			zoneRecords.forEach(record -> {
+				recordsByKey.put(record.toString(), record);
+				recordZones.put(record, zone);
+			});
+			zones.add(zone);
+		});
+		this.zones = zones;
+
+		ownedRecords = getOwnedRecords();
+		ownership.addListener(this::rebalance);
+	}
+
+	/**
+	 * Queues an update of every configured resource record set owned by this instance to an IP address.
+	 *
+	 * @param inetAddress the address to update the resource record sets with
+	 * @throws IllegalArgumentException if {@code inetAddress} cannot be mapped to a resource record type
+	 */
+	@Override
+	public synchronized void accept(InetAddress inetAddress) {
+		submit(ChangeAction.UPSERT, inetAddress, ownedRecords);
+		lastAddress = inetAddress;
+	}
+
+	/**
+	 * Queues an update of some of the configured resource record sets to an IP address. Records that are not owned by
+	 * this instance are skipped.
+	 *
+	 * @param inetAddress the address to update the resource record sets with
+	 * @param keys the keys of the records to update. Keys of records that are not configured are ignored.
+	 * @throws IllegalArgumentException if {@code inetAddress} cannot be mapped to a resource record type
+	 */
+	@Override
+	public synchronized void accept(InetAddress inetAddress, Collection<String> keys) {
+		final Set<Route53Record> owned = ownedRecords;
+		final List<Route53Record> selected = new ArrayList<>(keys.size());
+		keys.forEach(key -> {
+			final Route53Record record = recordsByKey.get(key);
+			if(record != null && owned.contains(record)) selected.add(record);
+		});
+		submit(ChangeAction.UPSERT, inetAddress, selected);
+		lastAddress = inetAddress;
+	}
+
+	/**
+	 * Queues the deletion of every configured resource record set owned by this instance. The deletion is
+	 * best-effort: it is retried with backoff if it fails, but discarded if Route 53 rejects it, such as when a record
+	 * no longer holds {@code inetAddress}.
+	 *
+	 * @param inetAddress the address the resource record sets currently hold
+	 * @throws IllegalArgumentException if {@code inetAddress} cannot be mapped to a resource record type
+	 */
+	@Override
+	public synchronized void withdraw(InetAddress inetAddress) {
+		lastAddress = null;
+		submit(ChangeAction.DELETE, inetAddress, ownedRecords);
+	}
+
+	/**
+	 * Queues a change to resource record sets, grouped by hosted zone, on the shards of their hosted zones.
+	 *
+	 * @param action the change action to request
+	 * @param inetAddress the address value of the resource record sets
+	 * @param selected the records to change
+	 * @throws IllegalArgumentException if {@code inetAddress} cannot be mapped to a resource record type
+	 */
+	private void submit(ChangeAction action, InetAddress inetAddress, Collection<Route53Record> selected) {
+		Route53Updater.getResourceRecordType(inetAddress); // Fail on the calling thread rather than on each shard
+		final Map<Zone, List<Route53Record>> recordsByZone = new LinkedHashMap<>();
+		selected.forEach(record ->
+				recordsByZone.computeIfAbsent(recordZones.get(record), zone -> new ArrayList<>()).add(record));
+		logger.info("Queueing {} of {} records in {} hosted zones with {}", action, selected.size(),
+				recordsByZone.size(), inetAddress.getHostAddress());
+		recordsByZone.forEach((zone, zoneRecords) ->
+				zone.shard.execute(() -> zone.enqueue(action, inetAddress, zoneRecords)));
+	}
+
+	/**
+	 * Updates the set of records owned by this instance after a change of ownership, and publishes the most recently
+	 * published address to the records this instance has taken over. Records that were given up are left to their
+	 * new owner. Updates and withdrawals hold the same lock, so that an address is either published to the records
+	 * owned before the change, and then to those taken over here, or published to the records owned after it.
+	 */
+	private synchronized void rebalance() {
+		final Set<Route53Record> previous = ownedRecords;
+		final Set<Route53Record> owned = getOwnedRecords();
+		final List<Route53Record> gained = new ArrayList<>();
+		owned.forEach(record -> {
+			if(!previous.contains(record)) gained.add(record);
+		});
+		ownedRecords = owned;
+		logger.info("Now responsible for {} of {} records, having taken over {} and given up {}", owned.size(),
+				records.size(), gained.size(), previous.size() + gained.size() - owned.size());
+
+		final InetAddress address = lastAddress;
+		if(address != null && !gained.isEmpty()) submit(ChangeAction.UPSERT, address, gained);
+	}
+
+	private Set<Route53Record> getOwnedRecords() {
+		final Set<Route53Record> owned = new LinkedHashSet<>();
+		records.forEach(record -> {
+			if(ownership.owns(record.toString())) owned.add(record);
+		});
+		return Collections.unmodifiableSet(owned);
+	}
+
+	@Override
+	public void start() {
+		logger.info("Distributed {} hosted zones over {} update shards", zones.size(), shards.length);
+	}
+
+	/**
+	 * Drains the shards and shuts down their threads, waiting up to one minute for the batches to complete.
+	 *
+	 * @see #stop(long)
+	 */
+	@Override
+	public void stop() {
+		stop(System.nanoTime() + DRAIN_TIMEOUT);
+	}
+
+	/**
+	 * Drains the shards and shuts down their threads. Batches waiting for a token or a retry are submitted
+	 * immediately, in parallel across shards, without regard for the rate limits and without further retries. This
+	 * method waits for the batches to complete until the deadline.
+	 *
+	 * @param deadline the time by which to return, as a value of {@link System#nanoTime()}
+	 */
+	@Override
+	public void stop(long deadline) {
+		logger.info("Draining update shards");
+		final List<Future<?>> drains = new ArrayList<>(zones.size());
+		zones.forEach(zone -> {
+			if(!zone.shard.isShutdown()) drains.add(zone.shard.submit(zone::drain));
+		});
+
+		// Shutting down the shards cancels every queued task, so wait for the drains to run first
+		try {
+			for(Future<?> drain : drains) drain.get(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+			logger.info("Update shards drained");
+		} catch(TimeoutException e) {
+			logger.warn("Update shards are still draining at the shutdown deadline, stopping anyway");
+		} catch(ExecutionException e) {
+			logger.error("Failed to drain update shard", e.getCause());
+		} catch(InterruptedException e) {
+			logger.debug("Interrupted while draining update shards");
+		}
+		for(ScheduledThreadPoolExecutor shard : shards) shard.shutdown();
+	}
+
+	/**
+	 * Holds the state of a single hosted zone. All fields other than the final configuration fields are only accessed
+	 * by the zone's shard thread.
+	 */
+	private final class Zone {
+		final String account;
+		final String hostedZoneId;
+		final Map<Route53Record, AdaptiveTtl.History> histories = new HashMap<>();
+		final Map<Route53Record, InetAddress> addresses = new HashMap<>();
+		final Map<Route53Record, Change> pending = new LinkedHashMap<>();
+		final Map<Route53Record, ResourceRecordSet> published = new HashMap<>();
+		final ScheduledThreadPoolExecutor shard;
+		final TokenBucket tokenBucket;
+
+		boolean draining;
+		long retryDelay;
+		ScheduledFuture<?> scheduledFlush;
+		ScheduledFuture<?> scheduledReview;
+
+		Zone(String account, String hostedZoneId, ScheduledThreadPoolExecutor shard, TokenBucket tokenBucket) {
+			this.account = account;
+			this.hostedZoneId = hostedZoneId;
+			this.shard = shard;
+			this.tokenBucket = tokenBucket;
+		}
+
+		void enqueue(ChangeAction action, InetAddress inetAddress, Collection<Route53Record> records) {
+			records.forEach(record -> {
+				final ResourceRecordSet resourceRecordSet = toResourceRecordSet(action, record, inetAddress);
+				if(resourceRecordSet == null) {
+					logger.debug("Not deleting {}, which does not exist", record);
+					pending.remove(record);
+				} else {
+					pending.put(record, new Change(action, resourceRecordSet));
+				}
+			});
+			if(scheduledFlush == null) flush();
+		}
+
+		/**
+		 * Creates the resource record set to request a change to. With an adaptive TTL, upserts record a change of
+		 * address in the history of the record and carry the TTL chosen from it, and deletions carry the TTL the
+		 * record was last published with, since Route 53 requires deletions to match the existing TTL exactly. The TTL
+		 * of a record this instance has not published, such as one published before a restart, is read from Route 53.
+		 *
+		 * @return the resource record set, or {@code null} if the change is a deletion of a record that does not exist
+		 */
+		private ResourceRecordSet toResourceRecordSet(ChangeAction action, Route53Record record,
+				InetAddress inetAddress) {
+			if(adaptiveTtl == null) return record.toResourceRecordSet(inetAddress);
+
+			if(action == ChangeAction.DELETE) {
+				addresses.remove(record);
+				final ResourceRecordSet resourceRecordSet = published.get(record);
+				final Long ttl = (resourceRecordSet == null) ? readTtl(record, inetAddress)
+						: resourceRecordSet.getTTL();
+				return (ttl == null) ? null : record.toResourceRecordSet(inetAddress, ttl);
+			}
+
+			final long now = clock.getAsLong();
+			final AdaptiveTtl.History history = histories.get(record);
+			if(history == null) {
+				histories.put(record, new AdaptiveTtl.History(now));
+			} else if(!inetAddress.equals(addresses.get(record))) {
+				history.recordChange(now);
+			}
+			addresses.put(record, inetAddress);
+			return record.toResourceRecordSet(inetAddress, adaptiveTtl.getTtl(histories.get(record), now));
+		}
+
+		/**
+		 * Reads the TTL of a record from Route 53. If it cannot be read, the configured TTL of the record is assumed.
+		 *
+		 * @return the TTL of the record, or {@code null} if it does not exist
+		 */
+		private Long readTtl(Route53Record record, InetAddress inetAddress) {
+			final String type = Route53Updater.getResourceRecordType(inetAddress).toString();
+			final String name = record.getName().endsWith(".") ? record.getName() : record.getName() + '.';
+			try {
+				final ListResourceRecordSetsResult result = clients.get(account).listResourceRecordSets(
+						new ListResourceRecordSetsRequest(hostedZoneId)
+								.withStartRecordName(name)
+								.withStartRecordType(type)
+								.withMaxItems("1"));
+				for(ResourceRecordSet resourceRecordSet : result.getResourceRecordSets()) {
+					if(resourceRecordSet.getName().equalsIgnoreCase(name)
+							&& type.equals(resourceRecordSet.getType())) {
+						return resourceRecordSet.getTTL();
+					}
+				}
+				return null;
+			} catch(AmazonClientException e) {
+				logger.warn("Failed to read the TTL of {}, deleting it with its configured TTL", record, e);
+				return record.getTtl();
+			}
+		}
+
+		/**
+		 * Adds an upsert to the pending changes for each published record whose chosen TTL differs from the TTL it was
+		 * published with, so that TTL changes ride along with the next change batch. Records that have been taken over
+		 * by another instance are left to their new owner.
+		 */
+		private void addTtlChanges() {
+			final long now = clock.getAsLong();
+			final Set<Route53Record> owned = ownedRecords;
+			published.forEach((record, resourceRecordSet) -> {
+				if(pending.containsKey(record) || !owned.contains(record)) return;
+				final long ttl = adaptiveTtl.getTtl(histories.get(record), now);
+				if(ttl == resourceRecordSet.getTTL()) return;
+				logger.debug("Changing TTL of {} from {} to {}", record, resourceRecordSet.getTTL(), ttl);
+				pending.put(record, new Change(ChangeAction.UPSERT, new ResourceRecordSet(resourceRecordSet.getName(),
+						resourceRecordSet.getType()).withResourceRecords(resourceRecordSet.getResourceRecords())
+						.withTTL(ttl)));
+			});
+		}
+
+		/**
+		 * Submits the TTL changes of the zone, if there are any and no batch is already waiting.
+		 */
+		void review() {
+			if(scheduledFlush != null || draining) return;
+			addTtlChanges();
+			if(!pending.isEmpty()) flush();
+		}
+
+		/**
+		 * Submits the pending changes as soon as the rate limits allow.
+		 */
+		void flush() {
+			scheduledFlush = null;
+			if(pending.isEmpty()) return;
+
+			long wait = tokenBucket.tryAcquire();
+			if(wait == 0) {
+				wait = clients.tryAcquire(account);
+				if(wait > 0) tokenBucket.release();
+			}
+			if(wait > 0) {
+				logger.debug("Delaying changes to hosted zone {} by {} ns for rate limit", hostedZoneId, wait);
+				scheduledFlush = shard.schedule(this::flush, wait, TimeUnit.NANOSECONDS);
+				return;
+			}
+			send();
+		}
+
+		/**
+		 * Submits the pending changes immediately, for the last time, as part of a shutdown.
+		 */
+		void drain() {
+			draining = true;
+			if(scheduledReview != null) {
+				scheduledReview.cancel(false);
+				scheduledReview = null;
+			}
+			if(scheduledFlush != null) {
+				scheduledFlush.cancel(false);
+				scheduledFlush = null;
+			}
+			if(pending.isEmpty()) return;
+			logger.info("Submitting {} queued changes to hosted zone {} before shutdown", pending.size(), hostedZoneId);
+			while(!pending.isEmpty()) send();
+		}
+
+		/**
+		 * Submits the next change batch of pending changes. Unless draining, a failed batch is retried later, and the
+		 * remaining changes are submitted once the rate limits allow.
+		 */
+		private void send() {
+			if(adaptiveTtl != null && !draining) addTtlChanges();
+			final Map<Route53Record, Change> sent = getNextBatch();
+			final List<Change> changes = new ArrayList<>(sent.values());
+			final ChangeResourceRecordSetsRequest request = new ChangeResourceRecordSetsRequest()
+					.withHostedZoneId(hostedZoneId)
+					.withChangeBatch(new ChangeBatch().withChanges(changes).withComment("Dyn53 update"));
+			if(logger.isDebugEnabled()) {
+				logger.debug("Requesting changes to hosted zone {}: {}", hostedZoneId, changes);
+			}
+
+			final String recordNames = getRecordNames(sent.keySet());
+			final LogField record = LogField.of("record", recordNames);
+			final RecordUpdateEvent event = new RecordUpdateEvent();
+			event.record = recordNames;
+			event.zone = hostedZoneId;
+			event.changes = changes.size();
+			event.outcome = "FAILED";
+			final long start = System.nanoTime();
+			event.begin();
+			try {
+				final ChangeResourceRecordSetsResult result
+						= clients.get(account).changeResourceRecordSets(request);
+				event.outcome = result.getChangeInfo().getStatus();
+				event.changeId = result.getChangeInfo().getId();
+				event.commit();
+				sent.keySet().forEach(pending::remove);
+				retryDelay = 0;
+				if(adaptiveTtl != null) updatePublished(sent);
+				if(logger.isInfoEnabled()) {
+					logger.info("Result of change request {} for {} in hosted zone {}: {} after {} ms",
+							LogField.of("changeId", result.getChangeInfo().getId()), record,
+							LogField.of("zone", hostedZoneId),
+							LogField.of("outcome", result.getChangeInfo().getStatus()),
+							LogField.of("latency", Route53Updater.elapsedMillis(start)));
+				}
+			} catch(InvalidChangeBatchException e) {
+				event.outcome = "REJECTED";
+				event.commit();
+				logger.error("Route 53 rejected changes to hosted zone {}, discarding them", hostedZoneId, e);
+				sent.keySet().forEach(pending::remove);
+			} catch(AmazonClientException e) {
+				event.commit();
+				if(draining) {
+					logger.error("Change request for {} in hosted zone {} {} after {} ms during shutdown, discarding",
+							record, LogField.of("zone", hostedZoneId), LogField.of("outcome", "FAILED"),
+							LogField.of("latency", Route53Updater.elapsedMillis(start)), e);
+					sent.keySet().forEach(pending::remove);
+					return;
+				}
+				retryDelay = (retryDelay == 0) ? MIN_RETRY_DELAY : Math.min(MAX_RETRY_DELAY, retryDelay * 2);
+				logger.warn("Change request for {} in hosted zone {} {} after {} ms, retrying in {} ms", record,
+						LogField.of("zone", hostedZoneId), LogField.of("outcome", "FAILED"),
+						LogField.of("latency", Route53Updater.elapsedMillis(start)),
+						TimeUnit.NANOSECONDS.toMillis(retryDelay), e);
+				scheduledFlush = shard.schedule(this::flush, retryDelay, TimeUnit.NANOSECONDS);
+				return;
+			} catch(RuntimeException e) {
+				event.commit();
+				logger.error("Failed to change hosted zone {}, discarding changes", hostedZoneId, e);
+				sent.keySet().forEach(pending::remove);
+			}
+			if(!draining) flush();
+		}
+
+		/**
+		 * Returns the pending changes that fit in the next change batch, in the order they were queued. A batch may
+		 * hold at most {@link Reconciler#MAX_BATCH_RECORDS} resource records and
+		 * {@link Reconciler#MAX_BATCH_VALUE_LENGTH} characters of values, in which those of an upsert count twice. A
+		 * single change that exceeds the limits on its own is returned alone, for Route 53 to reject.
+		 */
+		private Map<Route53Record, Change> getNextBatch() {
+			final Map<Route53Record, Change> batch = new LinkedHashMap<>();
+			int resourceRecords = 0;
+			int valueLength = 0;
+			for(Map.Entry<Route53Record, Change> entry : pending.entrySet()) {
+				final Change change = entry.getValue();
+				final int weight = ChangeAction.UPSERT.toString().equals(change.getAction()) ? 2 : 1;
+				final List<ResourceRecord> values = change.getResourceRecordSet().getResourceRecords();
+				resourceRecords += weight * values.size();
+				for(ResourceRecord value : values) valueLength += weight * value.getValue().length();
+				if(!batch.isEmpty() && (resourceRecords > Reconciler.MAX_BATCH_RECORDS
+						|| valueLength > Reconciler.MAX_BATCH_VALUE_LENGTH)) {
+					break;
+				}
+				batch.put(entry.getKey(), change);
+			}
+			return batch;
+		}
+
+		/**
+		 * Records the resource record sets of a successful change batch as published, and starts reviewing the TTLs
+		 * of the zone once it has published records.
+		 */
+		private void updatePublished(Map<Route53Record, Change> sent) {
+			sent.forEach((record, change) -> {
+				if(ChangeAction.DELETE.toString().equals(change.getAction())) {
+					published.remove(record);
+				} else {
+					published.put(record, change.getResourceRecordSet());
+				}
+			});
+			if(scheduledReview == null && !draining && !published.isEmpty()) {
+				final long interval = TimeUnit.SECONDS.toNanos(adaptiveTtl.getMinTtl());
+				scheduledReview = shard.scheduleWithFixedDelay(this::review, interval, interval, TimeUnit.NANOSECONDS);
+			}
+		}
+
+		private String getRecordNames(Collection<Route53Record> records) {
+			final StringBuilder names = new StringBuilder();
+			records.forEach(record -> names.append((names.length() == 0) ? "" : ",").append(record.getName()));
+			return names.toString();
+		}
+	}
+}
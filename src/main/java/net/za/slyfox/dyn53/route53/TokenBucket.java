@@ -0,0 +1,70 @@
+/*
+ * Copyright 2015 Philip Cronje
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package net.za.slyfox.dyn53.route53;
+
+import java.util.function.LongSupplier;
+
+/**
+ * Implements a token bucket rate limiter. Instances are not thread-safe, and are intended to be confined to the single
+ * thread that makes the rate-limited requests.
+ */
+final class TokenBucket {
+	private final double capacity;
+	private final LongSupplier clock;
+	private final double tokensPerNanosecond;
+
+	private long lastRefill;
+	private double tokens;
+
+	/**
+	 * Initializes a full token bucket.
+	 *
+	 * @param capacity the maximum number of tokens the bucket holds, which is the largest burst of requests allowed
+	 * @param rate the rate at which tokens are added to the bucket, per second
+	 * @param clock a source of monotonic time, in nanoseconds
+	 * @throws IllegalArgumentException if {@code capacity} is less than one, or {@code rate} is not positive
+	 */
+	TokenBucket(double capacity, double rate, LongSupplier clock) {
+		if(capacity < 1) throw new IllegalArgumentException("Capacity must be at least one");
+		if(!(rate > 0)) throw new IllegalArgumentException("Rate must be positive");
+		this.capacity = capacity;
+		this.clock = clock;
+		this.tokensPerNanosecond = rate / 1e9;
+		this.lastRefill = clock.getAsLong();
+		this.tokens = capacity;
+	}
+
+	/**
+	 * Takes a token from the bucket if one is available.
+	 *
+	 * @return zero if a token was taken, otherwise the time until a token will be available, in nanoseconds
+	 */
+	long tryAcquire() {
+		final long now = clock.getAsLong();
+		tokens = Math.min(capacity, tokens + (now - lastRefill) * tokensPerNanosecond);
+		lastRefill = now;
+		if(tokens >= 1) {
+			tokens -= 1;
+			return 0;
+		}
+		return Math.max(1, (long)Math.ceil((1 - tokens) / tokensPerNanosecond));
+	}
+
+	/**
+	 * Returns a token taken by {@link #tryAcquire()} that was not used, because the request it was taken for was held
+	 * back by another limit.
+	 */
+	void release() {
+		tokens = Math.min(capacity, tokens + 1);
+	}
+}
@@ -18,6 +18,8 @@ import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
 
 import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
@@ -46,6 +48,14 @@ public class PidLifecycleTest {
 		assertThat(Files.isRegularFile(pidFilePath), is(true));
 	}
 
+	@Test
+	public void pidFileContainsPidOfProcess() throws IOException {
+		lifecycle.start();
+		final String name = ManagementFactory.getRuntimeMXBean().getName();
+		assertThat(new String(Files.readAllBytes(pidFilePath), StandardCharsets.UTF_8),
+				is(name.substring(0, name.indexOf('@'))));
+	}
+
 	@Test
 	public void stopDeletesPidFile() throws IOException {
 		Files.createDirectories(pidFilePath.getParent());
@@ -0,0 +1,162 @@
+/*
+ * Copyright 2015 Philip Cronje
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package net.za.slyfox.dyn53.admin;
+
+import net.za.slyfox.dyn53.extip.DiscoveryControl;
+import net.za.slyfox.dyn53.extip.DiscoveryStatus;
+import net.za.slyfox.dyn53.extip.DiscoveryStatus.AddressStatus;
+import net.za.slyfox.dyn53.logging.LogField;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnit;
+import org.mockito.junit.MockitoRule;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.concurrent.Executors;
+
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class AdminServerTest {
+	@Rule public MockitoRule mockObjects = MockitoJUnit.rule();
+
+	@Mock private DiscoveryControl discoveryControl;
+
+	private AdminServer server;
+
+	@Before
+	public void startServer() {
+		server = new AdminServer(0, discoveryControl, new RecentEventsAppender(2), Executors::newCachedThreadPool);
+		server.start();
+	}
+
+	@After
+	public void stopServer() {
+		server.stop();
+	}
+
+	@Test
+	public void refreshTriggersDiscovery() throws Exception {
+		when(discoveryControl.trigger()).thenReturn(true);
+		assertThat(request("POST", "/refresh").getResponseCode(), is(202));
+		verify(discoveryControl).trigger();
+	}
+
+	@Test
+	public void refreshWhileNotRunningIsUnavailable() throws Exception {
+		when(discoveryControl.trigger()).thenReturn(false);
+		assertThat(request("POST", "/refresh").getResponseCode(), is(503));
+	}
+
+	@Test
+	public void resetOfUnknownUplinkIsNotFound() throws Exception {
+		when(discoveryControl.reset("isp1")).thenReturn(true);
+		assertThat(request("POST", "/reset?key=isp1").getResponseCode(), is(200));
+		assertThat(request("POST", "/reset?key=isp2").getResponseCode(), is(404));
+	}
+
+	@Test
+	public void wrongMethodIsNotAllowed() throws Exception {
+		assertThat(request("GET", "/refresh").getResponseCode(), is(405));
+	}
+
+	@Test
+	public void requestsFromOtherOriginsAreForbidden() throws Exception {
+		assertThat(rawRequest("POST /refresh", "Host: 127.0.0.1", "Origin: http://attacker.example"),
+				containsString(" 403 "));
+		assertThat(rawRequest("POST /refresh", "Host: attacker.example"), containsString(" 403 "));
+		assertThat(rawRequest("POST /refresh", "Host: localhost", "Origin: http://localhost:8053"),
+				containsString(" 503 "));
+		verify(discoveryControl, times(1)).trigger();
+	}
+
+	@Test
+	public void statusIsReportedAsJson() throws Exception {
+		when(discoveryControl.getStatus()).thenReturn(new DiscoveryStatus(true, 0, -1, 1500,
+				Collections.singletonMap("isp1", new AddressStatus(InetAddress.getByName("192.0.2.1"), 0,
+						AddressStatus.Outcome.UPDATED))));
+
+		final HttpURLConnection connection = request("GET", "/status");
+		assertThat(connection.getResponseCode(), is(200));
+		final String body = read(connection.getInputStream());
+		assertThat(body, containsString("\"running\":true"));
+		assertThat(body, containsString("\"nextRunDelay\":1500"));
+		assertThat(body, containsString("\"isp1\":{\"address\":\"192.0.2.1\""));
+		assertThat(body, containsString("\"outcome\":\"UPDATED\""));
+	}
+
+	@Test
+	public void recentChangeEventsAreReturned() throws Exception {
+		final org.slf4j.Logger logger = LoggerFactory.getLogger(RecentEventsAppender.LOGGER_NAME + ".Test");
+		logger.info("Not a change event");
+		logger.info("Change {}", LogField.of("outcome", "FIRST"));
+		logger.info("Change {}", LogField.of("outcome", "SECOND"));
+		logger.info("Change {}", LogField.of("outcome", "THIRD"));
+
+		final HttpURLConnection connection = request("GET", "/events");
+		assertThat(connection.getResponseCode(), is(200));
+		final String body = read(connection.getInputStream());
+		assertThat(body, not(containsString("Not a change event")));
+		assertThat(body, not(containsString("FIRST")));
+		assertThat(body, containsString("\"outcome\":\"SECOND\""));
+		assertThat(body, containsString("\"outcome\":\"THIRD\""));
+	}
+
+	private HttpURLConnection request(String method, String path) throws IOException {
+		final HttpURLConnection connection = (HttpURLConnection)new URL("http://127.0.0.1:"
+				+ server.getAddress().getPort() + path).openConnection();
+		connection.setRequestMethod(method);
+		return connection;
+	}
+
+	/**
+	 * Sends a request over a plain socket, because {@link HttpURLConnection} does not allow the {@code Host} and
+	 * {@code Origin} headers to be set.
+	 */
+	private String rawRequest(String requestLine, String... headers) throws IOException {
+		try(Socket socket = new Socket(InetAddress.getLoopbackAddress(), server.getAddress().getPort())) {
+			final StringBuilder request = new StringBuilder(requestLine).append(" HTTP/1.1\r\n");
+			for(String header : headers) request.append(header).append("\r\n");
+			request.append("Content-Length: 0\r\nConnection: close\r\n\r\n");
+			socket.getOutputStream().write(request.toString().getBytes(StandardCharsets.US_ASCII));
+			return read(socket.getInputStream()).split("\r\n", 2)[0];
+		}
+	}
+
+	private static String read(InputStream input) throws IOException {
+		try(InputStream stream = input) {
+			final ByteArrayOutputStream output = new ByteArrayOutputStream();
+			final byte[] buffer = new byte[1024];
+			int read;
+			while((read = stream.read(buffer)) >= 0) output.write(buffer, 0, read);
+			return new String(output.toByteArray(), StandardCharsets.UTF_8);
+		}
+	}
+}
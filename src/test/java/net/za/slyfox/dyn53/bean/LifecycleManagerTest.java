@@ -0,0 +1,212 @@
+/*
+ * Copyright 2015 Philip Cronje
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package net.za.slyfox.dyn53.bean;
+
+import com.google.inject.AbstractModule;
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import com.google.inject.Key;
+import com.google.inject.TypeLiteral;
+import com.google.inject.multibindings.Multibinder;
+import org.junit.Test;
+
+import javax.inject.Inject;
+import javax.inject.Provider;
+import javax.inject.Singleton;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+public class LifecycleManagerTest {
+	private final List<String> events = Collections.synchronizedList(new ArrayList<>());
+
+	@Test
+	public void lifecyclesStartInDependencyOrderAndStopInReverse() {
+		final Lifecycle client = new RecordingLifecycle("client");
+		final Lifecycle updater = new RecordingLifecycle("updater");
+		final Lifecycle discovery = new RecordingLifecycle("discovery");
+		final Map<Lifecycle, Set<Lifecycle>> dependencies = new LinkedHashMap<>();
+		dependencies.put(discovery, new HashSet<>(Arrays.asList(updater, client)));
+		dependencies.put(client, Collections.emptySet());
+		dependencies.put(updater, Collections.singleton(client));
+		final LifecycleManager manager = new LifecycleManager(dependencies, 5000);
+
+		manager.start();
+		manager.stop();
+
+		assertThat(events, is(Arrays.asList("start client", "start updater", "start discovery", "stop discovery",
+				"stop updater", "stop client")));
+	}
+
+	@Test
+	public void independentLifecyclesStopInParallel() {
+		final CountDownLatch stopping = new CountDownLatch(2);
+		final Map<Lifecycle, Set<Lifecycle>> dependencies = new LinkedHashMap<>();
+		dependencies.put(new AwaitingLifecycle("a", stopping), Collections.emptySet());
+		dependencies.put(new AwaitingLifecycle("b", stopping), Collections.emptySet());
+		final LifecycleManager manager = new LifecycleManager(dependencies, 5000);
+
+		manager.start();
+		manager.stop();
+
+		assertThat(new HashSet<>(events), is(new HashSet<>(Arrays.asList("stop a", "stop b"))));
+	}
+
+	@Test
+	public void shutdownDeadlineAbandonsRemainingLifecycles() {
+		final Lifecycle client = new RecordingLifecycle("client");
+		final Lifecycle stuck = new AwaitingLifecycle("stuck", new CountDownLatch(2));
+		final Map<Lifecycle, Set<Lifecycle>> dependencies = new LinkedHashMap<>();
+		dependencies.put(stuck, Collections.singleton(client));
+		dependencies.put(client, Collections.emptySet());
+		final LifecycleManager manager = new LifecycleManager(dependencies, 100);
+
+		manager.start();
+		final long start = System.nanoTime();
+		manager.stop();
+
+		assertThat(TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - start) < 5, is(true));
+		assertThat(events.contains("stop client"), is(false));
+	}
+
+	@Test
+	public void lifecyclesAreStoppedWithShutdownDeadline() {
+		final AtomicLong deadline = new AtomicLong();
+		final Lifecycle updater = new RecordingLifecycle("updater") {
+			@Override
+			public void stop(long stopDeadline) {
+				deadline.set(stopDeadline);
+				super.stop(stopDeadline);
+			}
+		};
+		final LifecycleManager manager = new LifecycleManager(
+				Collections.singletonMap(updater, Collections.<Lifecycle>emptySet()), 5000);
+
+		manager.start();
+		final long before = System.nanoTime();
+		manager.stop();
+		final long after = System.nanoTime();
+
+		final long timeout = TimeUnit.MILLISECONDS.toNanos(5000);
+		assertThat(deadline.get() - before >= timeout, is(true));
+		assertThat(deadline.get() - after <= timeout, is(true));
+		assertThat(events.contains("stop updater"), is(true));
+	}
+
+	@Test
+	public void dependenciesAreDerivedFromInjector() {
+		final Injector injector = Guice.createInjector(new AbstractModule() {
+			@Override
+			protected void configure() {
+				final Multibinder<Lifecycle> lifecycles = Multibinder.newSetBinder(binder(), Lifecycle.class);
+				lifecycles.addBinding().to(Client.class);
+				lifecycles.addBinding().to(Updater.class);
+				bind(Runnable.class).to(Updater.class);
+			}
+		});
+		final Set<Lifecycle> lifecycles = injector.getInstance(Key.get(new TypeLiteral<Set<Lifecycle>>(){}));
+		final Client client = injector.getInstance(Client.class);
+		final Updater updater = injector.getInstance(Updater.class);
+
+		final Map<Lifecycle, Set<Lifecycle>> dependencies = LifecycleManager.getDependencies(injector, lifecycles);
+
+		assertThat(dependencies.get(updater), is(Collections.<Lifecycle>singleton(client)));
+		assertThat(dependencies.get(client).isEmpty(), is(true));
+	}
+
+	@Singleton
+	static final class Client implements Lifecycle {
+		@Override
+		public void start() {
+		}
+
+		@Override
+		public void stop() {
+		}
+	}
+
+	@Singleton
+	static final class Updater implements Lifecycle, Runnable {
+		private final Provider<Client> client;
+
+		@Inject
+		Updater(Provider<Client> client) {
+			this.client = client;
+		}
+
+		@Override
+		public void run() {
+			client.get();
+		}
+
+		@Override
+		public void start() {
+		}
+
+		@Override
+		public void stop() {
+		}
+	}
+
+	private class RecordingLifecycle implements Lifecycle {
+		private final String name;
+
+		RecordingLifecycle(String name) {
+			this.name = name;
+		}
+
+		@Override
+		public void start() {
+			events.add("start " + name);
+		}
+
+		@Override
+		public void stop() {
+			events.add("stop " + name);
+		}
+	}
+
+	private final class AwaitingLifecycle extends RecordingLifecycle {
+		private final CountDownLatch stopping;
+
+		AwaitingLifecycle(String name, CountDownLatch stopping) {
+			super(name);
+			this.stopping = stopping;
+		}
+
+		@Override
+		public void start() {
+		}
+
+		@Override
+		public void stop() {
+			stopping.countDown();
+			try {
+				if(stopping.await(1, TimeUnit.SECONDS)) super.stop();
+			} catch(InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+}
@@ -0,0 +1,143 @@
+/*
+ * Copyright 2015 Philip Cronje
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package net.za.slyfox.dyn53.cluster;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+public class ClusterLifecycleTest {
+	private static final long MEMBER_TTL = 3000;
+
+	@Rule public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	private final AtomicLong clock = new AtomicLong();
+	private ScheduledExecutorService executorService;
+
+	@Before
+	public void createExecutorService() {
+		executorService = Executors.newSingleThreadScheduledExecutor();
+	}
+
+	@After
+	public void shutdownExecutorService() {
+		executorService.shutdownNow();
+	}
+
+	@Test
+	public void joiningMemberTakesOverOnlyItsShareOfKeys() {
+		final HashRing two = new HashRing(Arrays.asList("a", "b"), ClusterModule.DEFAULT_VIRTUAL_NODES);
+		final HashRing three = new HashRing(Arrays.asList("a", "b", "c"), ClusterModule.DEFAULT_VIRTUAL_NODES);
+
+		int moved = 0;
+		int ownedByC = 0;
+		for(int i = 0; i < 3000; i++) {
+			final String key = "record" + i + ".example.com.";
+			final String owner = three.getOwner(key);
+			if(owner.equals("c")) ownedByC++;
+			if(!owner.equals(two.getOwner(key))) {
+				assertThat(owner, is("c"));
+				moved++;
+			}
+		}
+		assertThat(moved, is(ownedByC));
+		assertTrue("Share of new member: " + ownedByC, ownedByC > 700 && ownedByC < 1300);
+	}
+
+	@Test
+	public void membershipChangeRebuildsRingAndNotifiesListeners() {
+		final AtomicReference<Set<String>> members = new AtomicReference<>(Collections.singleton("a"));
+		final ClusterLifecycle cluster = new ClusterLifecycle("a", MEMBER_TTL, 16, settableMembership(members),
+				executorService, clock::get);
+		final AtomicInteger notifications = new AtomicInteger();
+		cluster.addListener(notifications::incrementAndGet);
+
+		cluster.heartbeat();
+		assertThat(notifications.get(), is(1));
+		assertThat(cluster.owns("record.example.com."), is(true));
+
+		members.set(new HashSet<>(Arrays.asList("a", "b")));
+		cluster.heartbeat();
+		cluster.heartbeat();
+		assertThat(notifications.get(), is(2));
+		assertThat(cluster.getMembers(), is(members.get()));
+		assertThat(cluster.owns("record.example.com."),
+				is(new HashRing(members.get(), 16).getOwner("record.example.com.").equals("a")));
+	}
+
+	@Test
+	public void recordsAreGivenUpWhenMembershipCannotBeRenewed() {
+		final AtomicReference<Set<String>> members = new AtomicReference<>(Collections.singleton("a"));
+		final ClusterLifecycle cluster = new ClusterLifecycle("a", MEMBER_TTL, 16, settableMembership(members),
+				executorService, clock::get);
+		cluster.heartbeat();
+
+		members.set(null);
+		clock.addAndGet(MEMBER_TTL - 1);
+		cluster.heartbeat();
+		assertThat(cluster.owns("record.example.com."), is(true));
+
+		clock.addAndGet(1);
+		cluster.heartbeat();
+		assertThat(cluster.owns("record.example.com."), is(false));
+		assertThat(cluster.getMembers().isEmpty(), is(true));
+	}
+
+	@Test
+	public void fileMembershipExpiresMembersThatStopRenewing() throws Exception {
+		final Path file = temporaryFolder.getRoot().toPath().resolve("members");
+		final FileMembership a = new FileMembership(file, "a", MEMBER_TTL, clock::get);
+		final FileMembership b = new FileMembership(file, "b", MEMBER_TTL, clock::get);
+
+		a.heartbeat();
+		assertThat(b.heartbeat(), is(new LinkedHashSet<>(Arrays.asList("a", "b"))));
+
+		clock.addAndGet(MEMBER_TTL);
+		assertThat(b.heartbeat(), is(Collections.singleton("b")));
+		b.leave();
+		assertThat(a.heartbeat(), is(Collections.singleton("a")));
+	}
+
+	private static Membership settableMembership(AtomicReference<Set<String>> members) {
+		return new Membership() {
+			@Override
+			public Set<String> heartbeat() {
+				final Set<String> current = members.get();
+				if(current == null) throw new IllegalStateException("Membership unavailable");
+				return current;
+			}
+
+			@Override
+			public void leave() {
+			}
+		};
+	}
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright 2015 Philip Cronje
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package net.za.slyfox.dyn53.credentials;
+
+import com.amazonaws.auth.AWSSessionCredentials;
+import com.amazonaws.auth.BasicAWSCredentials;
+import com.amazonaws.internal.StaticCredentialsProvider;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+public class AssumeRoleCredentialSourceTest {
+	private static final String ROLE_ARN = "arn:aws:iam::123456789012:role/dyn53";
+
+	private HttpServer server;
+	private AssumeRoleCredentialSource source;
+
+	@Before
+	public void startServer() throws IOException {
+		server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+		server.createContext("/", exchange -> {
+			final String authorization = exchange.getRequestHeaders().getFirst("Authorization");
+			final String query = exchange.getRequestURI().getQuery();
+			if(authorization == null || !authorization.contains("Credential=AKIDEXAMPLE/")
+					|| !authorization.contains("/us-east-1/sts/aws4_request")) {
+				respond(exchange, 403, "");
+			} else if(!query.contains("Action=AssumeRole") || !query.contains("RoleArn=" + ROLE_ARN)
+					|| !query.contains("ExternalId=external")) {
+				respond(exchange, 400, "");
+			} else {
+				respond(exchange, 200, "<AssumeRoleResponse xmlns=\"https://sts.amazonaws.com/doc/2011-06-15/\">"
+						+ "<AssumeRoleResult><Credentials><AccessKeyId>ASIAEXAMPLE</AccessKeyId>"
+						+ "<SecretAccessKey>secret</SecretAccessKey><SessionToken>token</SessionToken>"
+						+ "<Expiration>2030-01-01T00:00:00Z</Expiration></Credentials></AssumeRoleResult>"
+						+ "</AssumeRoleResponse>");
+			}
+		});
+		server.start();
+		source = new AssumeRoleCredentialSource(ROLE_ARN, "external", "dyn53",
+				new StaticCredentialsProvider(new BasicAWSCredentials("AKIDEXAMPLE", "secret")),
+				URI.create("http://127.0.0.1:" + server.getAddress().getPort() + '/'), 1000);
+	}
+
+	@After
+	public void stopServer() {
+		server.stop(0);
+	}
+
+	@Test
+	public void signedRequestReturnsRoleCredentials() throws Exception {
+		final ExpiringCredentials credentials = source.fetch();
+		final AWSSessionCredentials sessionCredentials = (AWSSessionCredentials)credentials.getCredentials();
+		assertThat(sessionCredentials.getAWSAccessKeyId(), is("ASIAEXAMPLE"));
+		assertThat(sessionCredentials.getSessionToken(), is("token"));
+		assertThat(credentials.getExpiration(), is(Instant.parse("2030-01-01T00:00:00Z").toEpochMilli()));
+	}
+
+	@Test
+	public void rejectedRequestThrowsException() throws Exception {
+		source = new AssumeRoleCredentialSource(ROLE_ARN, null, "dyn53",
+				new StaticCredentialsProvider(new BasicAWSCredentials("AKIDEXAMPLE", "secret")),
+				URI.create("http://127.0.0.1:" + server.getAddress().getPort() + '/'), 1000);
+		try {
+			source.fetch();
+		} catch(IOException e) {
+			assertThat(e.getMessage(), containsString("HTTP 400"));
+			return;
+		}
+		throw new AssertionError("Expected IOException");
+	}
+
+	private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+		final byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+		exchange.sendResponseHeaders(status, (bytes.length == 0) ? -1 : bytes.length);
+		try(OutputStream output = exchange.getResponseBody()) {
+			output.write(bytes);
+		}
+	}
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright 2015 Philip Cronje
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package net.za.slyfox.dyn53.credentials;
+
+import com.amazonaws.auth.AWSSessionCredentials;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+public class InstanceMetadataCredentialSourceTest {
+	private static final String TOKEN = "session-token";
+
+	private InstanceMetadataCredentialSource source;
+	private HttpServer server;
+
+	@Before
+	public void startServer() throws IOException {
+		server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+		server.createContext("/latest/api/token", exchange -> {
+			if(!exchange.getRequestMethod().equals("PUT")
+					|| exchange.getRequestHeaders().getFirst("X-aws-ec2-metadata-token-ttl-seconds") == null) {
+				respond(exchange, 400, "");
+			} else {
+				respond(exchange, 200, TOKEN);
+			}
+		});
+		server.createContext("/latest/meta-data/iam/security-credentials/", exchange -> {
+			if(!TOKEN.equals(exchange.getRequestHeaders().getFirst("X-aws-ec2-metadata-token"))) {
+				respond(exchange, 401, "");
+			} else if(exchange.getRequestURI().getPath().endsWith("/dyn53-role")) {
+				respond(exchange, 200, "{\"Code\":\"Success\",\"Type\":\"AWS-HMAC\",\"AccessKeyId\":\"ASIAEXAMPLE\","
+						+ "\"SecretAccessKey\":\"secret\",\"Token\":\"token\","
+						+ "\"Expiration\":\"2030-01-01T00:00:00Z\"}");
+			} else {
+				respond(exchange, 200, "dyn53-role\n");
+			}
+		});
+		server.start();
+		source = new InstanceMetadataCredentialSource(URI.create("http://127.0.0.1:"
+				+ server.getAddress().getPort()), 1000);
+	}
+
+	@After
+	public void stopServer() {
+		server.stop(0);
+	}
+
+	@Test
+	public void credentialsOfAttachedRoleAreFetched() throws Exception {
+		final ExpiringCredentials credentials = source.fetch();
+		final AWSSessionCredentials sessionCredentials = (AWSSessionCredentials)credentials.getCredentials();
+		assertThat(sessionCredentials.getAWSAccessKeyId(), is("ASIAEXAMPLE"));
+		assertThat(sessionCredentials.getAWSSecretKey(), is("secret"));
+		assertThat(sessionCredentials.getSessionToken(), is("token"));
+		assertThat(credentials.getExpiration(), is(Instant.parse("2030-01-01T00:00:00Z").toEpochMilli()));
+	}
+
+	@Test(expected = IOException.class)
+	public void missingRoleThrowsException() throws Exception {
+		server.removeContext("/latest/meta-data/iam/security-credentials/");
+		server.createContext("/latest/meta-data/iam/security-credentials/", exchange -> respond(exchange, 404, ""));
+		source.fetch();
+	}
+
+	private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+		final byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+		exchange.sendResponseHeaders(status, (bytes.length == 0) ? -1 : bytes.length);
+		try(OutputStream output = exchange.getResponseBody()) {
+			output.write(bytes);
+		}
+	}
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright 2015 Philip Cronje
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package net.za.slyfox.dyn53.credentials;
+
+import com.amazonaws.auth.AWSCredentials;
+import com.amazonaws.auth.BasicAWSCredentials;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnit;
+import org.mockito.junit.MockitoRule;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class RefreshingCredentialsProviderTest {
+	private static final long NOW = 1000000L;
+	private static final long REFRESH_INTERVAL = 3600000L;
+	private static final long REFRESH_MARGIN = 300000L;
+	private static final long RETRY_DELAY = 30000L;
+
+	@Rule public MockitoRule mockObjects = MockitoJUnit.rule();
+
+	private final AWSCredentials credentials = new BasicAWSCredentials("access", "secret");
+
+	@Mock private ScheduledExecutorService executorService;
+	@Mock private CredentialSource primary;
+	@Mock private CredentialSource secondary;
+
+	private RefreshingCredentialsProvider provider;
+
+	@Before
+	public void createProvider() {
+		provider = new RefreshingCredentialsProvider(Arrays.asList(primary, secondary), REFRESH_MARGIN,
+				REFRESH_INTERVAL, RETRY_DELAY, executorService, () -> NOW);
+	}
+
+	@Test
+	public void cachedCredentialsAreServedWithoutFetching() throws Exception {
+		when(primary.fetch()).thenReturn(new ExpiringCredentials(credentials, ExpiringCredentials.NEVER));
+		provider.start();
+
+		assertThat(provider.getCredentials(), sameInstance(credentials));
+		assertThat(provider.getCredentials(), sameInstance(credentials));
+		verify(primary, times(1)).fetch();
+	}
+
+	@Test
+	public void temporaryCredentialsAreRefreshedBeforeExpiry() throws Exception {
+		when(primary.fetch()).thenReturn(new ExpiringCredentials(credentials, NOW + 900000L));
+		provider.start();
+
+		verify(executorService).schedule(any(Runnable.class), eq(900000L - REFRESH_MARGIN),
+				eq(TimeUnit.MILLISECONDS));
+	}
+
+	@Test
+	public void credentialsNearExpiryDoNotRefreshContinuously() throws Exception {
+		when(primary.fetch()).thenReturn(new ExpiringCredentials(credentials, NOW + 1000L));
+		provider.start();
+
+		assertThat(provider.getRefreshDelay(), is(RETRY_DELAY));
+	}
+
+	@Test
+	public void failingSourceFallsBackToNextSource() throws Exception {
+		when(primary.fetch()).thenThrow(new IOException());
+		when(secondary.fetch()).thenReturn(new ExpiringCredentials(credentials, ExpiringCredentials.NEVER));
+		provider.start();
+
+		assertThat(provider.getCredentials(), sameInstance(credentials));
+		verify(executorService).schedule(any(Runnable.class), eq(REFRESH_INTERVAL), eq(TimeUnit.MILLISECONDS));
+	}
+
+	@Test
+	public void failedStartIsRetried() throws Exception {
+		when(primary.fetch()).thenThrow(new IOException());
+		when(secondary.fetch()).thenThrow(new IOException());
+		provider.start();
+
+		verify(executorService).schedule(any(Runnable.class), eq(RETRY_DELAY), eq(TimeUnit.MILLISECONDS));
+	}
+}
@@ -0,0 +1,180 @@
+/*
+ * Copyright 2015 Philip Cronje
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package net.za.slyfox.dyn53.dns;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Function;
+
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+public class Rfc2136BackendTest {
+	private static final String ZONE = "example.com.";
+
+	private final TsigKey key = new TsigKey("dyn53-key", "hmac-sha256",
+			"0123456789abcdef".getBytes(StandardCharsets.US_ASCII));
+	private final List<byte[]> requests = new CopyOnWriteArrayList<>();
+
+	private Rfc2136Backend backend;
+	private volatile Function<byte[], byte[]> responder;
+	private DatagramSocket server;
+	private Thread serverThread;
+
+	@Before
+	public void startServer() throws Exception {
+		server = new DatagramSocket(0, InetAddress.getLoopbackAddress());
+		serverThread = new Thread(() -> {
+			final byte[] buffer = new byte[65535];
+			try {
+				while(true) {
+					final DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
+					server.receive(packet);
+					final byte[] request = Arrays.copyOf(packet.getData(), packet.getLength());
+					requests.add(request);
+					final byte[] response = responder.apply(request);
+					if(response != null) {
+						server.send(new DatagramPacket(response, response.length, packet.getSocketAddress()));
+					}
+				}
+			} catch(IOException ignored) {
+			}
+		});
+		serverThread.start();
+		backend = new Rfc2136Backend(InetSocketAddress.createUnresolved(
+				server.getLocalAddress().getHostAddress(), server.getLocalPort()), key, 200, 3);
+	}
+
+	@After
+	public void stopServer() throws Exception {
+		server.close();
+		serverThread.join();
+	}
+
+	@Test
+	public void upsertReplacesRecordSetsInOneSignedUpdate() throws Exception {
+		responder = request -> respond(request, 0, key);
+		backend.upsert(ZONE, Collections.singletonList(new DnsRecord("a.example.com", "A", 60,
+				Arrays.asList("192.0.2.1", "192.0.2.2"))));
+
+		final byte[] request = requests.get(0);
+		key.verify(request, null, System.currentTimeMillis() / 1000);
+		final ByteBuffer buffer = ByteBuffer.wrap(request);
+		assertThat((buffer.getShort(2) >> 11) & 0x0f, is(5));
+		assertThat(buffer.getShort(4), is((short)1));
+		assertThat(buffer.getShort(8), is((short)3));
+		buffer.position(DnsWire.HEADER_LENGTH);
+		assertThat(DnsWire.readName(buffer), is(ZONE));
+		assertThat(buffer.getShort(), is((short)DnsWire.TYPE_SOA));
+		buffer.getShort();
+
+		final List<String> updates = new ArrayList<>();
+		for(int i = 0; i < 3; i++) {
+			final String name = DnsWire.readName(buffer);
+			final int type = buffer.getShort();
+			final int dnsClass = buffer.getShort() & 0xffff;
+			final int ttl = buffer.getInt();
+			final int length = buffer.getShort();
+			updates.add(name + ' ' + dnsClass + ' ' + ttl + ' '
+					+ ((length == 0) ? "-" : DnsWire.decodeData(buffer, type, length)));
+		}
+		assertThat(updates, is(Arrays.asList("a.example.com. 255 0 -", "a.example.com. 1 60 192.0.2.1",
+				"a.example.com. 1 60 192.0.2.2")));
+	}
+
+	@Test
+	public void deleteRemovesRecordSets() throws Exception {
+		responder = request -> respond(request, 0, key);
+		backend.delete(ZONE, Collections.singletonList(new DnsRecord("a.example.com.", "AAAA", 60,
+				Collections.singletonList("2001:db8::1"))));
+
+		final ByteBuffer buffer = ByteBuffer.wrap(requests.get(0));
+		assertThat(buffer.getShort(8), is((short)1));
+		buffer.position(DnsWire.HEADER_LENGTH);
+		DnsWire.readName(buffer);
+		buffer.position(buffer.position() + 4);
+		assertThat(DnsWire.readName(buffer), is("a.example.com."));
+		assertThat(buffer.getShort(), is((short)28));
+		assertThat(buffer.getShort(), is((short)DnsWire.CLASS_ANY));
+	}
+
+	@Test
+	public void rejectedUpdateThrowsException() throws Exception {
+		responder = request -> respond(request, 5, key);
+		try {
+			backend.upsert(ZONE, Collections.singletonList(new DnsRecord("a.example.com.", "A", 60,
+					Collections.singletonList("192.0.2.1"))));
+			fail("Expected exception");
+		} catch(IOException e) {
+			assertThat(e.getMessage(), containsString("REFUSED"));
+		}
+	}
+
+	@Test(expected = IOException.class)
+	public void responseSignedWithAnotherSecretIsRejected() throws Exception {
+		final TsigKey forged = new TsigKey("dyn53-key", "hmac-sha256",
+				"fedcba9876543210".getBytes(StandardCharsets.US_ASCII));
+		responder = request -> respond(request, 0, forged);
+		backend.delete(ZONE, Collections.singletonList(new DnsRecord("a.example.com.", "A", 60,
+				Collections.singletonList("192.0.2.1"))));
+	}
+
+	@Test
+	public void lostResponseIsRetransmitted() throws Exception {
+		responder = request -> (requests.size() == 1) ? null : respond(request, 0, key);
+		backend.upsert(ZONE, Collections.singletonList(new DnsRecord("a.example.com.", "A", 60,
+				Collections.singletonList("192.0.2.1"))));
+		assertThat(requests.size(), is(2));
+	}
+
+	@Test
+	public void txtValuesRoundTrip() {
+		final String value = "\"v=spf1 -all\" \"quote \\\" and \\\\\"";
+		final byte[] data = DnsWire.encodeData("TXT", value);
+		assertThat(DnsWire.decodeData(ByteBuffer.wrap(data), 16, data.length), is(value));
+	}
+
+	/**
+	 * Builds an empty response to a request with the given response code, signed over the MAC of the request.
+	 */
+	private static byte[] respond(byte[] request, int rcode, TsigKey signingKey) {
+		try {
+			final ByteBuffer response = ByteBuffer.allocate(DnsWire.HEADER_LENGTH);
+			response.putShort(0, ByteBuffer.wrap(request).getShort(0));
+			response.putShort(2, (short)(0x8000 | (ByteBuffer.wrap(request).getShort(2) & 0x7800) | rcode));
+
+			final long now = System.currentTimeMillis() / 1000;
+			final byte[] requestMac = new TsigKey("dyn53-key", "hmac-sha256",
+					"0123456789abcdef".getBytes(StandardCharsets.US_ASCII)).verify(request, null, now);
+			return signingKey.append(response.array(), signingKey.sign(response.array(), requestMac, now), now);
+		} catch(IOException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright 2015 Philip Cronje
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package net.za.slyfox.dyn53.extip;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnit;
+import org.mockito.junit.MockitoRule;
+
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.verify;
+
+public class DebouncingConsumerTest {
+	private static final long SETTLE_WINDOW = TimeUnit.SECONDS.toNanos(60);
+	private static final long MAX_DELAY = TimeUnit.SECONDS.toNanos(600);
+	private static final long FLAP_WINDOW = TimeUnit.SECONDS.toNanos(3600);
+
+	@Rule public MockitoRule mockObjects = MockitoJUnit.rule();
+
+	private final AtomicLong clock = new AtomicLong();
+	private final List<Map<String, InetAddress>> published = new ArrayList<>();
+
+	@Mock private ScheduledExecutorService executorService;
+
+	private InetAddress addressA;
+	private InetAddress addressB;
+	private DebouncingConsumer consumer;
+
+	@Before
+	public void createConsumer() throws Exception {
+		addressA = InetAddress.getByName("192.0.2.1");
+		addressB = InetAddress.getByName("192.0.2.2");
+		consumer = new DebouncingConsumer(published::add, SETTLE_WINDOW, MAX_DELAY, 3, FLAP_WINDOW,
+				executorService, clock::get);
+	}
+
+	@Test
+	public void changeIsPublishedAfterSettleWindow() {
+		accept(addressA);
+		assertThat(published.isEmpty(), is(true));
+
+		advance(SETTLE_WINDOW);
+		assertThat(published, is(Collections.singletonList(single(addressA))));
+	}
+
+	@Test
+	public void revertedChangeIsDiscarded() {
+		accept(addressA);
+		advance(SETTLE_WINDOW);
+		published.clear();
+
+		accept(addressB);
+		clock.addAndGet(SETTLE_WINDOW / 2);
+		accept(addressA);
+		advance(SETTLE_WINDOW);
+		assertThat(published.isEmpty(), is(true));
+	}
+
+	@Test
+	public void continuousChangesArePublishedWithinMaxDelay() {
+		for(int i = 0; i < 20; i++) {
+			accept((i % 2 == 0) ? addressA : addressB);
+			clock.addAndGet(SETTLE_WINDOW / 2);
+		}
+		runScheduled();
+		assertThat(published.size(), is(1));
+	}
+
+	@Test
+	public void flappingAddressIsHeldForMaxDelay() {
+		accept(addressA);
+		advance(SETTLE_WINDOW);
+		accept(addressB);
+		advance(SETTLE_WINDOW);
+		published.clear();
+
+		accept(addressA);
+		advance(SETTLE_WINDOW);
+		assertThat(published.isEmpty(), is(true));
+
+		advance(MAX_DELAY - SETTLE_WINDOW);
+		assertThat(published, is(Collections.singletonList(single(addressA))));
+	}
+
+	private void accept(InetAddress address) {
+		consumer.accept(single(address));
+	}
+
+	private void advance(long nanoseconds) {
+		clock.addAndGet(nanoseconds);
+		runScheduled();
+	}
+
+	private void runScheduled() {
+		final ArgumentCaptor<Runnable> task = ArgumentCaptor.forClass(Runnable.class);
+		verify(executorService, atLeastOnce()).schedule(task.capture(), anyLong(), any(TimeUnit.class));
+		task.getValue().run();
+	}
+
+	private static Map<String, InetAddress> single(InetAddress address) {
+		return Collections.singletonMap(DiscoveryControl.SINGLE_ADDRESS, address);
+	}
+}
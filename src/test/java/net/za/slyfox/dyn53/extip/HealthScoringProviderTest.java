@@ -0,0 +1,160 @@
+/*
+ * Copyright 2015 Philip Cronje
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package net.za.slyfox.dyn53.extip;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+public class HealthScoringProviderTest {
+	private static final long COOLDOWN = TimeUnit.SECONDS.toNanos(1);
+
+	private final AtomicLong clock = new AtomicLong();
+	private InetAddress address;
+
+	@Before
+	public void createAddress() throws Exception {
+		address = InetAddress.getByName("192.0.2.1");
+	}
+
+	@Test
+	public void healthiestProviderIsPreferred() throws Exception {
+		final AtomicInteger slowRequests = new AtomicInteger();
+		final AtomicInteger fastRequests = new AtomicInteger();
+		final Map<String, ExternalIpProvider> providers = new LinkedHashMap<>();
+		providers.put("slow", respondAfter(100, slowRequests));
+		providers.put("fast", respondAfter(10, fastRequests));
+		final HealthScoringProvider provider = new HealthScoringProvider(providers, 0, 3, COOLDOWN, COOLDOWN,
+				clock::get);
+
+		for(int i = 0; i < 4; i++) assertThat(provider.discover(null), is(address));
+
+		assertThat(slowRequests.get(), is(1));
+		assertThat(fastRequests.get(), is(3));
+	}
+
+	@Test
+	public void openCircuitBreakerSkipsProviderUntilCooldownElapses() throws Exception {
+		final AtomicInteger failingRequests = new AtomicInteger();
+		final AtomicInteger goodRequests = new AtomicInteger();
+		final Map<String, ExternalIpProvider> providers = new LinkedHashMap<>();
+		providers.put("failing", localAddress -> {
+			failingRequests.incrementAndGet();
+			throw new IOException("Timed out");
+		});
+		providers.put("good", respondAfter(10, goodRequests));
+		final HealthScoringProvider provider = new HealthScoringProvider(providers, 0, 2, COOLDOWN, 4 * COOLDOWN,
+				clock::get);
+
+		for(int i = 0; i < 4; i++) assertThat(provider.discover(null), is(address));
+		assertThat(failingRequests.get(), is(2));
+		assertThat(provider.getHealth(null).get("failing").isOpen(), is(true));
+
+		clock.addAndGet(COOLDOWN);
+		provider.discover(null);
+		provider.discover(null);
+		assertThat(failingRequests.get(), is(3));
+		assertThat(goodRequests.get(), is(6));
+	}
+
+	@Test
+	public void failedTrialRequestDoublesCooldown() throws Exception {
+		final AtomicInteger requests = new AtomicInteger();
+		final Map<String, ExternalIpProvider> providers = new LinkedHashMap<>();
+		providers.put("failing", localAddress -> {
+			requests.incrementAndGet();
+			throw new IOException("Connection refused");
+		});
+		final HealthScoringProvider provider = new HealthScoringProvider(providers, 0, 1, COOLDOWN, 4 * COOLDOWN,
+				clock::get);
+
+		discoverExpectingFailure(provider);
+		discoverExpectingFailure(provider);
+		assertThat(requests.get(), is(1));
+
+		clock.addAndGet(COOLDOWN);
+		discoverExpectingFailure(provider);
+		assertThat(requests.get(), is(2));
+
+		clock.addAndGet(COOLDOWN);
+		discoverExpectingFailure(provider);
+		assertThat(requests.get(), is(2));
+
+		clock.addAndGet(COOLDOWN);
+		discoverExpectingFailure(provider);
+		assertThat(requests.get(), is(3));
+	}
+
+	@Test
+	public void recentAddressIsServedFromCache() throws Exception {
+		final AtomicInteger requests = new AtomicInteger();
+		final HealthScoringProvider provider = new HealthScoringProvider(
+				Collections.singletonMap("ipify", respondAfter(10, requests)), TimeUnit.SECONDS.toNanos(5),
+				3, COOLDOWN, COOLDOWN, clock::get);
+
+		provider.discover(null);
+		provider.discover(null);
+		assertThat(requests.get(), is(1));
+
+		clock.addAndGet(TimeUnit.SECONDS.toNanos(5));
+		provider.discover(null);
+		assertThat(requests.get(), is(2));
+	}
+
+	@Test
+	public void healthIsTrackedPerLocalAddress() throws Exception {
+		final InetAddress downUplink = InetAddress.getByName("198.51.100.1");
+		final Map<String, ExternalIpProvider> providers = new LinkedHashMap<>();
+		providers.put("ipify", localAddress -> {
+			if(downUplink.equals(localAddress)) throw new IOException("Network unreachable");
+			return address;
+		});
+		final HealthScoringProvider provider = new HealthScoringProvider(providers, 0, 1, COOLDOWN, COOLDOWN,
+				clock::get);
+
+		discoverExpectingFailure(provider, downUplink);
+		assertThat(provider.discover(null), is(address));
+	}
+
+	private ExternalIpProvider respondAfter(long millis, AtomicInteger requests) {
+		return localAddress -> {
+			requests.incrementAndGet();
+			clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(millis));
+			return address;
+		};
+	}
+
+	private static void discoverExpectingFailure(HealthScoringProvider provider) {
+		discoverExpectingFailure(provider, null);
+	}
+
+	private static void discoverExpectingFailure(HealthScoringProvider provider, InetAddress localAddress) {
+		try {
+			provider.discover(localAddress);
+			fail("Expected IOException");
+		} catch(IOException expected) {
+		}
+	}
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright 2015 Philip Cronje
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package net.za.slyfox.dyn53.extip;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+public class ScheduledDiscoveryCommandTest {
+	private final AtomicLong clock = new AtomicLong();
+	private final AtomicInteger discoveries = new AtomicInteger();
+	private final List<Set<String>> updates = new ArrayList<>();
+
+	private InetAddress address;
+	private ScheduledDiscoveryCommand command;
+
+	@Before
+	public void createCommand() throws Exception {
+		address = InetAddress.getByName("192.0.2.1");
+		final Map<String, Long> checkIntervals = new LinkedHashMap<>();
+		checkIntervals.put("fast1", 10L);
+		checkIntervals.put("fast2", 10L);
+		checkIntervals.put("slow", 30L);
+		command = new ScheduledDiscoveryCommand(checkIntervals, 10,
+				() -> (inetAddress, keys) -> updates.add(new HashSet<>(keys)), UnconditionalUpdatePredicate::new,
+				localAddress -> {
+					discoveries.incrementAndGet();
+					return address;
+				}, clock::get);
+	}
+
+	@Test
+	public void firstRunChecksEveryRecordWithOneDiscovery() {
+		command.run();
+
+		assertThat(discoveries.get(), is(1));
+		assertThat(updates, is(Collections.singletonList(setOf("fast1", "fast2", "slow"))));
+		assertThat(command.getAddressStatus().size(), is(3));
+	}
+
+	@Test
+	public void recordsDueOnTheSameTickShareOneDiscoveryAndUpdate() {
+		command.run();
+		for(int tick = 1; tick <= 3; tick++) {
+			clock.set(TimeUnit.SECONDS.toNanos(10 * tick));
+			command.run();
+		}
+
+		assertThat(discoveries.get(), is(4));
+		assertThat(updates.get(1), is(setOf("fast1", "fast2")));
+		assertThat(updates.get(2), is(setOf("fast1", "fast2")));
+		assertThat(updates.get(3), is(setOf("fast1", "fast2", "slow")));
+	}
+
+	@Test
+	public void runBetweenTicksDoesNotDiscover() {
+		command.run();
+		clock.set(TimeUnit.SECONDS.toNanos(5));
+		command.run();
+
+		assertThat(discoveries.get(), is(1));
+	}
+
+	@Test
+	public void lateRunCatchesUpOnMissedTicks() {
+		command.run();
+		clock.set(TimeUnit.SECONDS.toNanos(35));
+		command.run();
+
+		assertThat(discoveries.get(), is(2));
+		assertThat(updates.get(1), is(setOf("fast1", "fast2", "slow")));
+	}
+
+	@Test
+	public void unchangedRecordsAreNotUpdated() {
+		final Map<String, Long> checkIntervals = Collections.singletonMap("record", 10L);
+		command = new ScheduledDiscoveryCommand(checkIntervals, 10,
+				() -> (inetAddress, keys) -> updates.add(new HashSet<>(keys)), StatefulUpdatePredicate::new,
+				localAddress -> address, clock::get);
+		command.run();
+		clock.set(TimeUnit.SECONDS.toNanos(10));
+		command.run();
+
+		assertThat(updates.size(), is(1));
+		assertThat(command.reset("record"), is(true));
+		command.runNow();
+		assertThat(updates.size(), is(2));
+	}
+
+	private static Set<String> setOf(String... keys) {
+		return new HashSet<>(Arrays.asList(keys));
+	}
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright 2015 Philip Cronje
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package net.za.slyfox.dyn53.extip;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+public class StunProviderTest {
+	private static final int MAGIC_COOKIE = 0x2112A442;
+
+	private final AtomicInteger requests = new AtomicInteger();
+
+	private volatile InetAddress mappedAddress;
+	private volatile int dropped;
+	private DatagramSocket responder;
+	private Thread responderThread;
+
+	@Before
+	public void startResponder() throws Exception {
+		responder = new DatagramSocket(0, InetAddress.getLoopbackAddress());
+		responderThread = new Thread(() -> {
+			final byte[] buffer = new byte[548];
+			try {
+				while(true) {
+					final DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
+					responder.receive(packet);
+					if(requests.incrementAndGet() <= dropped || mappedAddress == null) continue;
+
+					final byte[] response = respond(ByteBuffer.wrap(packet.getData(), 0, packet.getLength()));
+					responder.send(new DatagramPacket(response, response.length, packet.getSocketAddress()));
+				}
+			} catch(Exception ignored) {
+			}
+		});
+		responderThread.start();
+	}
+
+	@After
+	public void stopResponder() throws Exception {
+		responder.close();
+		responderThread.join();
+	}
+
+	@Test
+	public void ipv4XorMappedAddressIsDecoded() throws Exception {
+		mappedAddress = InetAddress.getByName("192.0.2.33");
+		assertThat(createProvider(100, 3).discover(null), is(mappedAddress));
+		assertThat(requests.get(), is(1));
+	}
+
+	@Test
+	public void ipv6XorMappedAddressIsDecoded() throws Exception {
+		mappedAddress = InetAddress.getByName("2001:db8::1:2");
+		assertThat(createProvider(100, 3).discover(InetAddress.getLoopbackAddress()), is(mappedAddress));
+	}
+
+	@Test
+	public void lostRequestIsRetransmitted() throws Exception {
+		mappedAddress = InetAddress.getByName("198.51.100.7");
+		dropped = 2;
+		assertThat(createProvider(20, 3).discover(null), is(mappedAddress));
+		assertThat(requests.get(), is(3));
+	}
+
+	@Test
+	public void unresponsiveServerTimesOut() throws Exception {
+		try {
+			createProvider(10, 3).discover(null);
+			fail("Expected timeout");
+		} catch(SocketTimeoutException expected) {
+		}
+		assertThat(requests.get(), is(3));
+	}
+
+	@Test
+	public void responseToUnknownTransactionIsIgnored() throws Exception {
+		mappedAddress = InetAddress.getByName("192.0.2.33");
+		final byte[] transactionId = new byte[12];
+		final ByteBuffer response = ByteBuffer.wrap(respond(StunProvider.encodeBindingRequest(transactionId)));
+		transactionId[0] = 1;
+		assertThat(StunProvider.decodeBindingResponse(response,
+				Collections.singletonMap(ByteBuffer.wrap(transactionId), null)), is(nullValue()));
+	}
+
+	@Test
+	public void serverAddressesAreParsed() {
+		assertThat(StunProvider.parseServer("stun:stun.example.com"),
+				is(InetSocketAddress.createUnresolved("stun.example.com", 3478)));
+		assertThat(StunProvider.parseServer("stun:stun.example.com:19302"),
+				is(InetSocketAddress.createUnresolved("stun.example.com", 19302)));
+		assertThat(StunProvider.parseServer("stun:[2001:db8::1]:3479"),
+				is(InetSocketAddress.createUnresolved("2001:db8::1", 3479)));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void unbracketedIpv6ServerThrowsException() {
+		StunProvider.parseServer("stun:2001:db8::1");
+	}
+
+	private StunProvider createProvider(long retransmissionTimeout, int maxTransmissions) throws SocketException {
+		return new StunProvider(Collections.singletonList(InetSocketAddress.createUnresolved(
+				responder.getLocalAddress().getHostAddress(), responder.getLocalPort())), retransmissionTimeout,
+				maxTransmissions);
+	}
+
+	/**
+	 * Builds a Binding success response to a request, with an unknown attribute needing padding ahead of the
+	 * XOR-MAPPED-ADDRESS attribute.
+	 */
+	private byte[] respond(ByteBuffer request) {
+		final byte[] transactionId = Arrays.copyOfRange(request.array(), request.arrayOffset() + 8,
+				request.arrayOffset() + 20);
+		final byte[] address = mappedAddress.getAddress();
+		final byte[] mask = ByteBuffer.allocate(16).putInt(MAGIC_COOKIE).put(transactionId).array();
+		for(int i = 0; i < address.length; i++) address[i] ^= mask[i];
+
+		final ByteBuffer response = ByteBuffer.allocate(20 + 12 + 8 + address.length);
+		response.putShort((short)0x0101).putShort((short)(12 + 8 + address.length)).putInt(MAGIC_COOKIE)
+				.put(transactionId);
+		response.putShort((short)0x8022).putShort((short)5).put("dyn53".getBytes()).put(new byte[3]);
+		response.putShort((short)0x0020).putShort((short)(4 + address.length)).put((byte)0)
+				.put((byte)((address.length == 4) ? 1 : 2)).putShort((short)(3478 ^ (MAGIC_COOKIE >>> 16)))
+				.put(address);
+		return response.array();
+	}
+}
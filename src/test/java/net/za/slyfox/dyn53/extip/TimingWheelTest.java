@@ -0,0 +1,68 @@
+/*
+ * Copyright 2015 Philip Cronje
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package net.za.slyfox.dyn53.extip;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+public class TimingWheelTest {
+	@Test
+	public void itemsBecomeDueAfterTheirDelay() {
+		final TimingWheel<String> wheel = new TimingWheel<>(8);
+		wheel.schedule("a", 2);
+		wheel.schedule("b", 3);
+		wheel.schedule("c", 2);
+
+		assertThat(advance(wheel, 1), is(Collections.<String>emptyList()));
+		assertThat(advance(wheel, 1), is(Arrays.asList("a", "c")));
+		assertThat(advance(wheel, 1), is(Collections.singletonList("b")));
+		assertThat(wheel.size(), is(0));
+	}
+
+	@Test
+	public void itemsBeyondOneRevolutionWaitForTheirRound() {
+		final TimingWheel<String> wheel = new TimingWheel<>(4);
+		wheel.schedule("a", 4);
+		wheel.schedule("b", 9);
+
+		assertThat(advance(wheel, 4), is(Collections.singletonList("a")));
+		assertThat(advance(wheel, 4), is(Collections.<String>emptyList()));
+		assertThat(advance(wheel, 1), is(Collections.singletonList("b")));
+	}
+
+	@Test
+	public void itemsScheduledAfterAdvancingAreRelativeToCurrentTick() {
+		final TimingWheel<String> wheel = new TimingWheel<>(4);
+		advance(wheel, 3);
+		wheel.schedule("a", 0);
+		wheel.schedule("b", 6);
+
+		assertThat(advance(wheel, 1), is(Collections.singletonList("a")));
+		assertThat(advance(wheel, 4), is(Collections.<String>emptyList()));
+		assertThat(advance(wheel, 1), is(Collections.singletonList("b")));
+		assertThat(wheel.getTick(), is(9L));
+	}
+
+	private static List<String> advance(TimingWheel<String> wheel, int ticks) {
+		final List<String> due = new ArrayList<>();
+		for(int i = 0; i < ticks; i++) wheel.advance(due);
+		return due;
+	}
+}
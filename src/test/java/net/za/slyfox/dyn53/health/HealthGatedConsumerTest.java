@@ -0,0 +1,148 @@
+/*
+ * Copyright 2015 Philip Cronje
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package net.za.slyfox.dyn53.health;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+public class HealthGatedConsumerTest {
+	private static final long CACHE_TTL = TimeUnit.SECONDS.toNanos(2);
+
+	private final AtomicLong clock = new AtomicLong();
+	private final AtomicBoolean healthy = new AtomicBoolean(true);
+	private final List<String> published = new ArrayList<>();
+	private final List<String> withdrawn = new ArrayList<>();
+
+	private HealthGatedConsumer<String> consumer;
+	private ExecutorService executorService;
+	private HealthChecker healthChecker;
+
+	@Before
+	public void createConsumer() {
+		executorService = Executors.newCachedThreadPool();
+		final HealthProbe probe = () -> {
+			if(!healthy.get()) throw new IOException("Service down");
+		};
+		healthChecker = new HealthChecker(Collections.singletonList(probe), CACHE_TTL, TimeUnit.SECONDS.toNanos(5),
+				executorService, clock::get);
+		consumer = new HealthGatedConsumer<>(published::add, withdrawn::add, (current, update) -> update,
+				healthChecker);
+		healthChecker.addListener(consumer::onHealthChanged);
+	}
+
+	@After
+	public void shutdownExecutor() {
+		executorService.shutdownNow();
+	}
+
+	@Test
+	public void healthyServicePublishesValue() {
+		consumer.accept("A");
+		assertThat(published, is(Collections.singletonList("A")));
+		assertThat(withdrawn.isEmpty(), is(true));
+	}
+
+	@Test
+	public void unhealthyServiceWithdrawsPublishedValue() {
+		consumer.accept("A");
+		healthy.set(false);
+		healthChecker.check();
+		assertThat(withdrawn, is(Collections.singletonList("A")));
+	}
+
+	@Test
+	public void recoveredServiceRestoresLatestValue() {
+		consumer.accept("A");
+		healthy.set(false);
+		healthChecker.check();
+		consumer.accept("B");
+		healthy.set(true);
+		healthChecker.check();
+		assertThat(published, is(Arrays.asList("A", "B")));
+		assertThat(withdrawn, is(Collections.singletonList("A")));
+	}
+
+	@Test
+	public void valueHeldDuringFailedWithdrawalIsRestored() {
+		final HealthGatedConsumer<String> failingConsumer = new HealthGatedConsumer<>(published::add, value -> {
+			throw new IllegalStateException("Withdrawal failed");
+		}, (current, update) -> update, healthChecker);
+		failingConsumer.accept("A");
+		healthy.set(false);
+		clock.addAndGet(CACHE_TTL);
+		try {
+			failingConsumer.accept("B");
+		} catch(IllegalStateException expected) {
+		}
+		failingConsumer.onHealthChanged(true);
+		assertThat(published, is(Arrays.asList("A", "B")));
+	}
+
+	@Test
+	public void healthChangeAppliedAfterCheckPreventsPublication() {
+		final AtomicBoolean interleave = new AtomicBoolean();
+		final AtomicReference<HealthGatedConsumer<String>> racingConsumer = new AtomicReference<>();
+		final HealthChecker racingChecker = new HealthChecker(Collections.singletonList(() -> { }), CACHE_TTL,
+				TimeUnit.SECONDS.toNanos(5), executorService, () -> {
+					// Runs the listener of the health thread between the check and the lock of accept
+					if(interleave.getAndSet(false)) racingConsumer.get().onHealthChanged(false);
+					return clock.get();
+				});
+		racingConsumer.set(new HealthGatedConsumer<>(published::add, withdrawn::add, (current, update) -> update,
+				racingChecker));
+
+		racingConsumer.get().accept("A");
+		interleave.set(true);
+		racingConsumer.get().accept("B");
+		assertThat(published, is(Collections.singletonList("A")));
+		assertThat(withdrawn, is(Collections.singletonList("A")));
+
+		racingConsumer.get().onHealthChanged(true);
+		assertThat(published, is(Arrays.asList("A", "B")));
+	}
+
+	@Test
+	public void cachedResultIsReusedWithinTtl() {
+		consumer.accept("A");
+		healthy.set(false);
+		clock.addAndGet(CACHE_TTL - 1);
+		consumer.accept("B");
+		assertThat(published, is(Arrays.asList("A", "B")));
+	}
+
+	@Test
+	public void expiredResultIsRefreshed() {
+		consumer.accept("A");
+		healthy.set(false);
+		clock.addAndGet(CACHE_TTL);
+		consumer.accept("B");
+		assertThat(published, is(Collections.singletonList("A")));
+		assertThat(withdrawn, is(Collections.singletonList("A")));
+	}
+}
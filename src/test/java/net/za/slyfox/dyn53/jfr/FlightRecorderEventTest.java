@@ -0,0 +1,51 @@
+/*
+ * Copyright 2015 Philip Cronje
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package net.za.slyfox.dyn53.jfr;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+public class FlightRecorderEventTest {
+	@Test
+	public void eventsDoNotReferToFlightRecorder() throws Exception {
+		for(Class<?> type : Arrays.asList(FlightRecorderEvent.class, EventEmitter.class, CredentialFetchEvent.class,
+				DiscoveryEvent.class, PredicateTestEvent.class, ProviderRequestEvent.class, RecordUpdateEvent.class)) {
+			assertThat(type.getName(), readClass(type).contains("jdk/jfr"), is(false));
+		}
+	}
+
+	@Test
+	public void eventThatHasNotBegunIsNotCommitted() {
+		final RecordUpdateEvent event = new RecordUpdateEvent();
+		assertThat(event.shouldCommit(), is(false));
+		event.commit();
+	}
+
+	private static String readClass(Class<?> type) throws IOException {
+		try(InputStream input = type.getResourceAsStream(type.getSimpleName() + ".class")) {
+			final ByteArrayOutputStream output = new ByteArrayOutputStream();
+			final byte[] buffer = new byte[4096];
+			int read;
+			while((read = input.read(buffer)) >= 0) output.write(buffer, 0, read);
+			return new String(output.toByteArray(), StandardCharsets.ISO_8859_1);
+		}
+	}
+}
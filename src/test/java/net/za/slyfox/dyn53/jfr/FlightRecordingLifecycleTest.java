@@ -0,0 +1,62 @@
+/*
+ * Copyright 2015 Philip Cronje
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package net.za.slyfox.dyn53.jfr;
+
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+public class FlightRecordingLifecycleTest {
+	@Rule public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	@Test
+	public void eventsAreWrittenToDestinationOnStop() throws Exception {
+		final Path destination = temporaryFolder.getRoot().toPath().resolve("dyn53.jfr");
+		final FlightRecordingLifecycle lifecycle = new FlightRecordingLifecycle(null, Duration.ofMinutes(1),
+				FlightRecorderModule.DEFAULT_MAX_SIZE, destination);
+		lifecycle.start();
+
+		final RecordUpdateEvent event = new RecordUpdateEvent();
+		event.begin();
+		event.record = "test.example.com.";
+		event.zone = "HOSTEDZONE";
+		event.changes = 1;
+		event.outcome = "PENDING";
+		event.changeId = "CHANGE";
+		event.commit();
+
+		final PredicateTestEvent predicateTest = new PredicateTestEvent();
+		predicateTest.begin();
+		predicateTest.passed = true;
+		predicateTest.commit();
+		lifecycle.stop();
+
+		final List<RecordedEvent> events = RecordingFile.readAllEvents(destination).stream()
+				.filter(recorded -> recorded.getEventType().getName().startsWith("net.za.slyfox.dyn53."))
+				.collect(Collectors.toList());
+		assertThat(events.size(), is(1));
+		assertThat(events.get(0).getEventType().getName(), is("net.za.slyfox.dyn53.RecordUpdate"));
+		assertThat(events.get(0).getString("zone"), is("HOSTEDZONE"));
+		assertThat(events.get(0).getString("changeId"), is("CHANGE"));
+	}
+}
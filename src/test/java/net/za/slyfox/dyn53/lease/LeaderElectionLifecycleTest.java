@@ -0,0 +1,108 @@
+/*
+ * Copyright 2015 Philip Cronje
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package net.za.slyfox.dyn53.lease;
+
+import net.za.slyfox.dyn53.bean.Lifecycle;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnit;
+import org.mockito.junit.MockitoRule;
+
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class LeaderElectionLifecycleTest {
+	private static final long LEASE_DURATION = 30000;
+
+	@Rule public MockitoRule mockObjects = MockitoJUnit.rule();
+
+	private final AtomicLong clock = new AtomicLong();
+
+	@Mock private Lifecycle delegate;
+	@Mock private ScheduledExecutorService executorService;
+	@Mock private Lease lease;
+
+	private LeaderElectionLifecycle lifecycle;
+
+	@Before
+	public void createLifecycle() {
+		lifecycle = new LeaderElectionLifecycle(LEASE_DURATION, lease, delegate, executorService, clock::get);
+	}
+
+	@Test
+	public void acquiringLeaseStartsDelegate() {
+		when(lease.tryAcquire()).thenReturn(true);
+		lifecycle.renew();
+		lifecycle.renew();
+		assertThat(lifecycle.isLeader(), is(true));
+		verify(delegate, times(1)).start();
+	}
+
+	@Test
+	public void standbyDoesNotStartDelegate() {
+		when(lease.tryAcquire()).thenReturn(false);
+		lifecycle.renew();
+		assertThat(lifecycle.isLeader(), is(false));
+		verify(delegate, never()).start();
+	}
+
+	@Test
+	public void losingLeaseStopsDelegate() {
+		when(lease.tryAcquire()).thenReturn(true, false);
+		lifecycle.renew();
+		lifecycle.renew();
+		assertThat(lifecycle.isLeader(), is(false));
+		verify(delegate).stop();
+	}
+
+	@Test
+	public void renewalFailureKeepsLeadershipUntilNearExpiry() {
+		when(lease.tryAcquire()).thenReturn(true).thenThrow(new IllegalStateException("Service unavailable"));
+		lifecycle.renew();
+		clock.set(LEASE_DURATION / 3);
+		lifecycle.renew();
+		assertThat(lifecycle.isLeader(), is(true));
+		clock.set(2 * LEASE_DURATION / 3);
+		lifecycle.renew();
+		assertThat(lifecycle.isLeader(), is(false));
+		verify(delegate).stop();
+	}
+
+	@Test
+	public void stopReleasesHeldLease() {
+		when(lease.tryAcquire()).thenReturn(true);
+		lifecycle.renew();
+		lifecycle.stop();
+		verify(delegate).stop();
+		verify(lease).release();
+	}
+
+	@Test
+	public void stopPassesDeadlineToDelegate() {
+		when(lease.tryAcquire()).thenReturn(true);
+		lifecycle.renew();
+		final long deadline = System.nanoTime();
+		lifecycle.stop(deadline);
+		verify(delegate).stop(deadline);
+		verify(lease).release();
+	}
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright 2015 Philip Cronje
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package net.za.slyfox.dyn53.lite;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.startsWith;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+public class LiteRoute53ClientTest {
+	private LiteRoute53Client client;
+	private volatile String requestAuthorization;
+	private volatile String requestBody;
+	private volatile String requestPath;
+	private volatile int responseStatus = 200;
+	private HttpServer server;
+
+	@Before
+	public void startServer() throws IOException {
+		server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+		server.createContext("/", exchange -> {
+			requestAuthorization = exchange.getRequestHeaders().getFirst("Authorization");
+			requestBody = read(exchange.getRequestBody());
+			requestPath = exchange.getRequestURI().getPath();
+			if(responseStatus == 200) {
+				respond(exchange, 200, "<?xml version=\"1.0\"?><ChangeResourceRecordSetsResponse><ChangeInfo>"
+						+ "<Id>/change/C1</Id><Status>PENDING</Status></ChangeInfo>"
+						+ "</ChangeResourceRecordSetsResponse>");
+			} else {
+				respond(exchange, responseStatus, "<ErrorResponse><Error><Type>Sender</Type>"
+						+ "<Code>NoSuchHostedZone</Code><Message>No hosted zone found</Message></Error>"
+						+ "</ErrorResponse>");
+			}
+		});
+		server.start();
+		client = new LiteRoute53Client(URI.create("http://127.0.0.1:" + server.getAddress().getPort()),
+				new SigV4Signer("AKIDEXAMPLE", "secret", null, "us-east-1", "route53"), 1000, 1000,
+				Clock.fixed(Instant.parse("2015-08-30T12:36:00Z"), ZoneOffset.UTC));
+	}
+
+	@After
+	public void stopServer() {
+		server.stop(0);
+	}
+
+	@Test
+	public void changeIsSubmittedAsSignedXml() throws Exception {
+		final LiteRoute53Client.ChangeInfo changeInfo = client.changeResourceRecordSet("/hostedzone/Z1", "UPSERT",
+				"test.example.com.", "A", 60, "192.0.2.1", "Dyn53 <update>");
+
+		assertThat(changeInfo.getId(), is("/change/C1"));
+		assertThat(changeInfo.getStatus(), is("PENDING"));
+		assertThat(requestPath, is("/2013-04-01/hostedzone/Z1/rrset/"));
+		assertThat(requestAuthorization, startsWith("AWS4-HMAC-SHA256 Credential=AKIDEXAMPLE/20150830/us-east-1/"
+				+ "route53/aws4_request, SignedHeaders=content-type;host;x-amz-date, Signature="));
+		assertThat(requestBody, containsString("<Comment>Dyn53 &lt;update&gt;</Comment>"));
+		assertThat(requestBody, containsString("<Action>UPSERT</Action><ResourceRecordSet>"
+				+ "<Name>test.example.com.</Name><Type>A</Type><TTL>60</TTL>"));
+		assertThat(requestBody, containsString("<Value>192.0.2.1</Value>"));
+	}
+
+	@Test
+	public void errorResponseThrowsException() throws Exception {
+		responseStatus = 404;
+		try {
+			client.changeResourceRecordSet("Z1", "UPSERT", "test.example.com.", "A", 60, "192.0.2.1", "Dyn53 update");
+			fail("Expected IOException");
+		} catch(IOException e) {
+			assertThat(e.getMessage(), containsString("404, NoSuchHostedZone: No hosted zone found"));
+		}
+	}
+
+	private static String read(InputStream input) throws IOException {
+		final ByteArrayOutputStream output = new ByteArrayOutputStream();
+		final byte[] buffer = new byte[1024];
+		int read;
+		while((read = input.read(buffer)) >= 0) output.write(buffer, 0, read);
+		return new String(output.toByteArray(), StandardCharsets.UTF_8);
+	}
+
+	private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+		final byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+		exchange.sendResponseHeaders(status, bytes.length);
+		try(OutputStream output = exchange.getResponseBody()) {
+			output.write(bytes);
+		}
+	}
+}
@@ -0,0 +1,53 @@
+/*
+ * Copyright 2015 Philip Cronje
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package net.za.slyfox.dyn53.lite;
+
+import org.junit.Test;
+
+import java.net.URI;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+public class SigV4SignerTest {
+	private static final String ACCESS_KEY_ID = "AKIDEXAMPLE";
+	private static final String SECRET_KEY = "wJalrXUtnFEMI/K7MDENG+bPxRfiCYEXAMPLEKEY";
+	private static final Instant TIME = Instant.parse("2015-08-30T12:36:00Z");
+
+	@Test
+	public void requestIsSignedAsInReferenceTestSuite() {
+		final Map<String, String> headers = new LinkedHashMap<>();
+		new SigV4Signer(ACCESS_KEY_ID, SECRET_KEY, null, "us-east-1", "service")
+				.sign("GET", URI.create("https://example.amazonaws.com/"), headers, new byte[0], TIME);
+
+		assertThat(headers.get("X-Amz-Date"), is("20150830T123600Z"));
+		assertThat(headers.get("Authorization"), is("AWS4-HMAC-SHA256 "
+				+ "Credential=AKIDEXAMPLE/20150830/us-east-1/service/aws4_request, SignedHeaders=host;x-amz-date, "
+				+ "Signature=5fa00fa31553b73ebf1942676e86291e8372ff2a2260956d9b8aae1d763fbf31"));
+	}
+
+	@Test
+	public void sessionTokenIsSigned() {
+		final Map<String, String> headers = new LinkedHashMap<>();
+		new SigV4Signer(ACCESS_KEY_ID, SECRET_KEY, "token", "us-east-1", "route53")
+				.sign("POST", URI.create("https://route53.amazonaws.com/2013-04-01/hostedzone/Z/rrset/"), headers,
+						new byte[0], TIME);
+
+		assertThat(headers.get("X-Amz-Security-Token"), is("token"));
+		assertThat(headers.get("Authorization").contains("SignedHeaders=host;x-amz-date;x-amz-security-token,"),
+				is(true));
+	}
+}
@@ -0,0 +1,43 @@
+/*
+ * Copyright 2015 Philip Cronje
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package net.za.slyfox.dyn53.logging;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.spi.LoggingEvent;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+public class JsonLayoutTest {
+	private final LoggerContext context = new LoggerContext();
+
+	@Test
+	public void fieldsAreWrittenAsProperties() throws Exception {
+		final LoggingEvent event = new LoggingEvent(getClass().getName(), context.getLogger("test"), Level.INFO,
+				"Result for {} in \"{}\": {} after {} ms", null, new Object[] { LogField.of("record", "a.example."),
+						LogField.of("zone", "ZONE1"), LogField.of("outcome", "PENDING"), LogField.of("latency", 42L) });
+
+		final JsonNode json = new ObjectMapper().readTree(new JsonLayout().doLayout(event));
+		assertThat(json.path("message").asText(), is("Result for a.example. in \"ZONE1\": PENDING after 42 ms"));
+		assertThat(json.path("level").asText(), is("INFO"));
+		assertThat(json.path("record").asText(), is("a.example."));
+		assertThat(json.path("zone").asText(), is("ZONE1"));
+		assertThat(json.path("outcome").asText(), is("PENDING"));
+		assertThat(json.path("latency").isNumber(), is(true));
+		assertThat(json.path("latency").asLong(), is(42L));
+	}
+}
@@ -0,0 +1,41 @@
+/*
+ * Copyright 2015 Philip Cronje
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package net.za.slyfox.dyn53.logging;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.core.spi.FilterReply;
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+public class SamplingFilterTest {
+	private final LoggerContext context = new LoggerContext();
+
+	@Test
+	public void sampledStatementsArePassedAtSampleRate() {
+		final SamplingFilter filter = new SamplingFilter();
+		filter.setSampleRate(3);
+		int passed = 0;
+		for(int i = 0; i < 9; i++) {
+			if(filter.decide(LogMarkers.SAMPLED, context.getLogger("test"), Level.INFO, "still current", null, null)
+					== FilterReply.NEUTRAL) {
+				passed++;
+			}
+		}
+		assertThat(passed, is(3));
+		assertThat(filter.decide(null, context.getLogger("test"), Level.INFO, "changed", null, null),
+				is(FilterReply.NEUTRAL));
+	}
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright 2015 Philip Cronje
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package net.za.slyfox.dyn53.route53;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+public class AdaptiveTtlTest {
+	private final AdaptiveTtl adaptiveTtl = new AdaptiveTtl(60, 3600);
+
+	@Test
+	public void ttlRisesInStepsDuringStability() {
+		final AdaptiveTtl.History history = new AdaptiveTtl.History(0);
+
+		assertThat(adaptiveTtl.getTtl(history, 0), is(60L));
+		assertThat(adaptiveTtl.getTtl(history, minutes(19)), is(60L));
+		assertThat(adaptiveTtl.getTtl(history, minutes(20)), is(120L));
+		assertThat(adaptiveTtl.getTtl(history, minutes(45)), is(240L));
+		assertThat(adaptiveTtl.getTtl(history, minutes(600)), is(3600L));
+	}
+
+	@Test
+	public void ttlDropsAfterChange() {
+		final AdaptiveTtl.History history = new AdaptiveTtl.History(0);
+		assertThat(adaptiveTtl.getTtl(history, minutes(600)), is(3600L));
+
+		history.recordChange(minutes(600));
+
+		assertThat(adaptiveTtl.getTtl(history, minutes(600)), is(60L));
+	}
+
+	@Test
+	public void ttlIsLoweredAheadOfExpectedChange() {
+		final AdaptiveTtl.History history = new AdaptiveTtl.History(0);
+		history.recordChange(minutes(120));
+
+		assertThat(adaptiveTtl.getTtl(history, minutes(180)), is(240L));
+		assertThat(adaptiveTtl.getTtl(history, minutes(220)), is(120L));
+		assertThat(adaptiveTtl.getTtl(history, minutes(235)), is(60L));
+		assertThat(adaptiveTtl.getTtl(history, minutes(300)), is(960L));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void maximumBelowMinimumThrowsException() {
+		new AdaptiveTtl(300, 60);
+	}
+
+	private static long minutes(long minutes) {
+		return TimeUnit.MINUTES.toNanos(minutes);
+	}
+}
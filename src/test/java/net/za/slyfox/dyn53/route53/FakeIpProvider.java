@@ -0,0 +1,213 @@
+/*
+ * Copyright 2015 Philip Cronje
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package net.za.slyfox.dyn53.route53;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Simulates an external IP provider for load tests. The provider reports the address that a {@link Timeline} holds at
+ * the virtual time of each request, after a latency, and fails a fraction of its requests.
+ */
+final class FakeIpProvider {
+	private final double failureRate;
+	private final long latency;
+	private final String name;
+	private final Random random;
+	private final double timeScale;
+	private final Timeline timeline;
+
+	final AtomicLong failures = new AtomicLong();
+	final AtomicLong requests = new AtomicLong();
+
+	/**
+	 * Initializes the provider.
+	 *
+	 * @param name the name of the provider, used in reports
+	 * @param failureRate the fraction of requests that fail, between zero and one
+	 * @param latency the time taken to answer each request, in virtual nanoseconds
+	 * @param timeScale the number of virtual seconds that pass per second of wall-clock time
+	 * @param timeline the addresses to report over time
+	 * @param random the source of failures
+	 * @throws IllegalArgumentException if {@code failureRate} is not between zero and one
+	 * @throws NullPointerException if a parameter is {@code null}
+	 */
+	FakeIpProvider(String name, double failureRate, long latency, double timeScale, Timeline timeline,
+			Random random) {
+		if(!(failureRate >= 0 && failureRate <= 1)) {
+			throw new IllegalArgumentException("Failure rate must be between zero and one");
+		}
+		this.failureRate = failureRate;
+		this.latency = latency;
+		this.name = Objects.requireNonNull(name);
+		this.random = Objects.requireNonNull(random);
+		this.timeScale = timeScale;
+		this.timeline = Objects.requireNonNull(timeline);
+	}
+
+	/**
+	 * Parses a provider from a specification of the form {@code name:failureRate:latencyMillis}, in which the failure
+	 * rate and latency may be omitted.
+	 *
+	 * @param specification the specification of the provider
+	 * @param timeScale the number of virtual seconds that pass per second of wall-clock time
+	 * @param timeline the addresses to report over time
+	 * @param random the source of failures
+	 * @return the provider
+	 * @throws IllegalArgumentException if the specification is malformed
+	 */
+	static FakeIpProvider parse(String specification, double timeScale, Timeline timeline, Random random) {
+		final String[] fields = specification.trim().split(":");
+		if(fields.length > 3 || fields[0].isEmpty()) {
+			throw new IllegalArgumentException("Malformed provider specification " + specification);
+		}
+		final double failureRate = (fields.length > 1) ? Double.parseDouble(fields[1]) : 0;
+		final long latency = TimeUnit.MILLISECONDS.toNanos((fields.length > 2) ? Long.parseLong(fields[2]) : 0);
+		return new FakeIpProvider(fields[0], failureRate, latency, timeScale, timeline, random);
+	}
+
+	/**
+	 * Discovers the external IP address at a point in virtual time.
+	 *
+	 * @param time the virtual time of the request, in nanoseconds
+	 * @return the external IP address at {@code time}
+	 * @throws IOException if the request fails
+	 */
+	InetAddress discover(long time) throws IOException {
+		requests.incrementAndGet();
+		try {
+			TimeUnit.NANOSECONDS.sleep((long)(latency / timeScale));
+		} catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while waiting for " + name);
+		}
+
+		final boolean failed;
+		synchronized(random) {
+			failed = random.nextDouble() < failureRate;
+		}
+		if(failed) {
+			failures.incrementAndGet();
+			throw new IOException("Simulated failure of " + name);
+		}
+		return timeline.getAddress(time);
+	}
+
+	String getName() {
+		return name;
+	}
+
+	@Override
+	public String toString() {
+		return name;
+	}
+
+	/**
+	 * Holds the external IP address of a simulated site over a span of virtual time. The address changes at
+	 * exponentially distributed intervals, to a different address from the {@code TEST-NET} ranges each time.
+	 */
+	static final class Timeline {
+		private final InetAddress[] addresses;
+		private final long[] changeTimes;
+
+		/**
+		 * Generates a timeline.
+		 *
+		 * @param duration the span of virtual time to generate changes over, in nanoseconds
+		 * @param meanInterval the mean interval between changes of address, in virtual nanoseconds
+		 * @param random the source of the change times
+		 * @throws IllegalArgumentException if {@code meanInterval} is not positive
+		 */
+		Timeline(long duration, long meanInterval, Random random) {
+			if(meanInterval <= 0) throw new IllegalArgumentException("Mean change interval must be positive");
+			final List<Long> times = new ArrayList<>();
+			times.add(0L);
+			for(long time = nextInterval(meanInterval, random); time < duration;
+					time += nextInterval(meanInterval, random)) {
+				times.add(time);
+			}
+
+			changeTimes = new long[times.size()];
+			addresses = new InetAddress[times.size()];
+			for(int i = 0; i < changeTimes.length; i++) {
+				changeTimes[i] = times.get(i);
+				addresses[i] = getTestAddress(i);
+			}
+		}
+
+		/**
+		 * Returns the address at a point in virtual time.
+		 *
+		 * @param time the virtual time, in nanoseconds
+		 * @return the address at {@code time}
+		 */
+		InetAddress getAddress(long time) {
+			return addresses[getIndex(time)];
+		}
+
+		/**
+		 * Returns the index of the address at a point in virtual time.
+		 *
+		 * @param time the virtual time, in nanoseconds
+		 * @return the index of the address at {@code time}
+		 */
+		int getIndex(long time) {
+			final int index = Arrays.binarySearch(changeTimes, time);
+			return (index >= 0) ? index : Math.max(0, -index - 2);
+		}
+
+		/**
+		 * Returns the number of addresses in the timeline, including the initial address.
+		 */
+		int size() {
+			return changeTimes.length;
+		}
+
+		/**
+		 * Returns the virtual time at which the address changes to the address at {@code index}.
+		 */
+		long getChangeTime(int index) {
+			return changeTimes[index];
+		}
+
+		/**
+		 * Returns the address at {@code index}.
+		 */
+		InetAddress getAddressAt(int index) {
+			return addresses[index];
+		}
+
+		private static long nextInterval(long meanInterval, Random random) {
+			return Math.max(1, (long)(-Math.log(1 - random.nextDouble()) * meanInterval));
+		}
+
+		private static InetAddress getTestAddress(int index) {
+			final int host = index / 3 % 254 + 1;
+			final byte[][] networks = {{(byte)192, 0, 2}, {(byte)198, 51, 100}, {(byte)203, 0, 113}};
+			final byte[] network = networks[index % 3];
+			try {
+				return InetAddress.getByAddress(new byte[] {network[0], network[1], network[2], (byte)host});
+			} catch(UnknownHostException e) {
+				throw new AssertionError(e);
+			}
+		}
+	}
+}
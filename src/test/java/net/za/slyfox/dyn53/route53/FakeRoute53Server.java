@@ -0,0 +1,394 @@
+/*
+ * Copyright 2015 Philip Cronje
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package net.za.slyfox.dyn53.route53;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import net.za.slyfox.dyn53.concurrent.NamedPoolThreadFactory;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+import org.xml.sax.SAXException;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Stands in for the Route 53 API over HTTP, so that the updaters can be load tested with a real AWS SDK client. The
+ * server enforces the limits of Route 53 that the updaters must respect: the request rate of each account, identified
+ * by the access key that signed the request, a single change request in progress per hosted zone, at most 1000
+ * resource records and 32000 characters of values per change batch, with the values of an {@code UPSERT} counted
+ * twice, and the semantics of {@code CREATE}, {@code DELETE} and {@code UPSERT}. Each change request is delayed by a
+ * latency, and accepted changes progress from {@code PENDING} to {@code INSYNC} after a propagation delay.
+ *
+ * <p>Latencies and delays are given in virtual time, which runs {@code timeScale} times faster than wall-clock time,
+ * and the request rate of each account is scaled to match.</p>
+ */
+final class FakeRoute53Server implements AutoCloseable {
+	static final int MAX_RESOURCE_RECORDS = 1000;
+	static final int MAX_VALUE_CHARACTERS = 32000;
+
+	private static final Pattern ACCESS_KEY = Pattern.compile("Credential=([^/]+)/");
+	private static final Pattern CHANGE_PATH = Pattern.compile("/2013-04-01/change/(?:change/)?([^/]+)");
+	private static final Pattern RRSET_PATH = Pattern.compile("/2013-04-01/hostedzone/([^/]+)/rrset/?");
+	private static final String NAMESPACE = "https://route53.amazonaws.com/doc/2013-04-01/";
+	private static final DateTimeFormatter TIMESTAMP = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'")
+			.withZone(ZoneOffset.UTC);
+
+	/**
+	 * Receives the values of resource record sets as changes to them are accepted.
+	 */
+	interface ChangeListener {
+		/**
+		 * Called when a change to a resource record set has been accepted.
+		 *
+		 * @param hostedZoneId the identifier of the hosted zone
+		 * @param name the name of the resource record set
+		 * @param value the first value of the resource record set, or {@code null} if it was deleted
+		 * @param time the virtual time the change was accepted at, in nanoseconds
+		 */
+		void accepted(String hostedZoneId, String name, String value, long time);
+	}
+
+	private final double accountRequestRate;
+	private final Set<String> busyZones = new HashSet<>();
+	private final Map<String, Long> changes = new HashMap<>();
+	private final ExecutorService executorService;
+	private final long latency;
+	private final ChangeListener listener;
+	private final long propagationDelay;
+	private final HttpServer server;
+	private final double timeScale;
+	private final Map<String, TokenBucket> tokenBuckets = new HashMap<>();
+	private final LongSupplier virtualClock;
+	private final Map<String, Map<String, List<String>>> zones = new HashMap<>();
+
+	final AtomicLong acceptedRequests = new AtomicLong();
+	final AtomicLong appliedChanges = new AtomicLong();
+	final AtomicLong changeRequests = new AtomicLong();
+	final AtomicLong getChangeRequests = new AtomicLong();
+	final AtomicLong priorRequestsNotComplete = new AtomicLong();
+	final AtomicLong rejectedRequests = new AtomicLong();
+	final AtomicLong throttledRequests = new AtomicLong();
+
+	/**
+	 * Starts the server on an ephemeral port of the loopback interface.
+	 *
+	 * @param accountRequestRate the maximum sustained rate of change requests per account, per virtual second
+	 * @param latency the time taken to process each change request, in virtual nanoseconds
+	 * @param propagationDelay the time after which accepted changes are reported as {@code INSYNC}, in virtual
+	 *                         nanoseconds
+	 * @param timeScale the number of virtual seconds that pass per second of wall-clock time
+	 * @param virtualClock a source of virtual time, in nanoseconds
+	 * @param listener receives the values of resource record sets as changes to them are accepted
+	 * @throws IOException if the server cannot be started
+	 */
+	FakeRoute53Server(double accountRequestRate, long latency, long propagationDelay, double timeScale,
+			LongSupplier virtualClock, ChangeListener listener) throws IOException {
+		this.accountRequestRate = accountRequestRate;
+		this.latency = latency;
+		this.listener = Objects.requireNonNull(listener);
+		this.propagationDelay = propagationDelay;
+		this.timeScale = timeScale;
+		this.virtualClock = Objects.requireNonNull(virtualClock);
+
+		// Without TCP_NODELAY, delayed acknowledgements stall each response by tens of milliseconds of wall-clock time.
+		// The server reads this property once, so it only takes effect if no server has been created before.
+		System.setProperty("sun.net.httpserver.nodelay", "true");
+		executorService = Executors.newCachedThreadPool(new NamedPoolThreadFactory("fakeRoute53"));
+		server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+		server.createContext("/", this::handle);
+		server.setExecutor(executorService);
+		server.start();
+	}
+
+	/**
+	 * Returns the endpoint that Route 53 clients should send requests to.
+	 *
+	 * @return the endpoint URL of the server
+	 */
+	String getEndpoint() {
+		return "http://127.0.0.1:" + server.getAddress().getPort();
+	}
+
+	/**
+	 * Resets the counts of requests and changes, such as after requests sent to warm up clients.
+	 */
+	void resetCounters() {
+		Arrays.asList(acceptedRequests, appliedChanges, changeRequests, getChangeRequests, priorRequestsNotComplete,
+				rejectedRequests, throttledRequests).forEach(counter -> counter.set(0));
+	}
+
+	@Override
+	public void close() {
+		server.stop(0);
+		executorService.shutdownNow();
+	}
+
+	private void handle(HttpExchange exchange) throws IOException {
+		try {
+			final String path = exchange.getRequestURI().getPath();
+			final Matcher rrset = RRSET_PATH.matcher(path);
+			final Matcher change = CHANGE_PATH.matcher(path);
+			if(exchange.getRequestMethod().equals("POST") && rrset.matches()) {
+				changeResourceRecordSets(exchange, rrset.group(1));
+			} else if(exchange.getRequestMethod().equals("GET") && change.matches()) {
+				getChange(exchange, change.group(1));
+			} else {
+				respondError(exchange, 404, "NoSuchEntity", "Unsupported request " + path);
+			}
+		} catch(RuntimeException e) {
+			respondError(exchange, 500, "InternalFailure", String.valueOf(e));
+		} finally {
+			exchange.close();
+		}
+	}
+
+	private void changeResourceRecordSets(HttpExchange exchange, String hostedZoneId) throws IOException {
+		changeRequests.incrementAndGet();
+		if(!tryAcquire(getAccessKey(exchange))) {
+			throttledRequests.incrementAndGet();
+			respondError(exchange, 400, "Throttling", "Rate exceeded");
+			return;
+		}
+
+		final List<Change> batch;
+		try {
+			batch = parseChanges(exchange.getRequestBody());
+		} catch(ParserConfigurationException | SAXException e) {
+			respondError(exchange, 400, "MalformedInput", String.valueOf(e));
+			return;
+		}
+		final String limitViolation = checkLimits(batch);
+		if(limitViolation != null) {
+			rejectedRequests.incrementAndGet();
+			respondError(exchange, 400, "InvalidChangeBatch", limitViolation);
+			return;
+		}
+
+		synchronized(busyZones) {
+			if(!busyZones.add(hostedZoneId)) {
+				priorRequestsNotComplete.incrementAndGet();
+				respondError(exchange, 400, "PriorRequestNotComplete",
+						"The request was rejected because Route 53 was still processing a prior request");
+				return;
+			}
+		}
+		try {
+			sleep(latency);
+			final String changeId;
+			final long now;
+			synchronized(this) {
+				final String violation = apply(hostedZoneId, batch);
+				if(violation != null) {
+					rejectedRequests.incrementAndGet();
+					respondError(exchange, 400, "InvalidChangeBatch", violation);
+					return;
+				}
+				now = virtualClock.getAsLong();
+				changeId = "C" + (changes.size() + 1);
+				changes.put(changeId, now);
+			}
+
+			acceptedRequests.incrementAndGet();
+			appliedChanges.addAndGet(batch.size());
+			batch.forEach(change -> listener.accepted(hostedZoneId, change.name,
+					change.action.equals("DELETE") ? null : change.values.get(0), now));
+			respond(exchange, 200, "<ChangeResourceRecordSetsResponse xmlns=\"" + NAMESPACE + "\">"
+					+ getChangeInfo(changeId, "PENDING") + "</ChangeResourceRecordSetsResponse>");
+		} finally {
+			synchronized(busyZones) {
+				busyZones.remove(hostedZoneId);
+			}
+		}
+	}
+
+	private void getChange(HttpExchange exchange, String changeId) throws IOException {
+		getChangeRequests.incrementAndGet();
+		final Long submitted;
+		synchronized(this) {
+			submitted = changes.get(changeId);
+		}
+		if(submitted == null) {
+			respondError(exchange, 404, "NoSuchChange", "Could not find change with ID " + changeId);
+			return;
+		}
+		final String status = (virtualClock.getAsLong() - submitted >= propagationDelay) ? "INSYNC" : "PENDING";
+		respond(exchange, 200, "<GetChangeResponse xmlns=\"" + NAMESPACE + "\">" + getChangeInfo(changeId, status)
+				+ "</GetChangeResponse>");
+	}
+
+	/**
+	 * Applies a change batch to a hosted zone atomically, so that either every change is applied or none is.
+	 *
+	 * @return {@code null} if the batch was applied, otherwise the reason it was rejected
+	 */
+	private String apply(String hostedZoneId, List<Change> batch) {
+		final Map<String, List<String>> zone = zones.computeIfAbsent(hostedZoneId, id -> new HashMap<>());
+		final Map<String, List<String>> updated = new HashMap<>();
+		for(Change change : batch) {
+			final String key = change.name + ' ' + change.type;
+			if(updated.containsKey(key)) return "Duplicate change to resource record set " + key;
+			final List<String> current = zone.get(key);
+			final List<String> value = new ArrayList<>(change.values);
+			value.add(0, String.valueOf(change.ttl));
+			switch(change.action) {
+			case "CREATE":
+				if(current != null) return "Tried to create resource record set " + key + " but it already exists";
+				updated.put(key, value);
+				break;
+			case "DELETE":
+				if(current == null) return "Tried to delete resource record set " + key + " but it was not found";
+				if(!current.equals(value)) {
+					return "Tried to delete resource record set " + key + " but the values provided do not match the "
+							+ "current values";
+				}
+				updated.put(key, null);
+				break;
+			case "UPSERT":
+				updated.put(key, value);
+				break;
+			default:
+				return "Unsupported action " + change.action;
+			}
+		}
+		updated.forEach((key, value) -> {
+			if(value == null) {
+				zone.remove(key);
+			} else {
+				zone.put(key, value);
+			}
+		});
+		return null;
+	}
+
+	private static String checkLimits(List<Change> batch) {
+		int resourceRecords = 0;
+		int characters = 0;
+		for(Change change : batch) {
+			final int weight = "UPSERT".equals(change.action) ? 2 : 1;
+			resourceRecords += weight * change.values.size();
+			for(String value : change.values) characters += weight * value.length();
+		}
+		if(batch.isEmpty()) return "The change batch contains no changes";
+		if(resourceRecords > MAX_RESOURCE_RECORDS) {
+			return "Number of records limit of " + MAX_RESOURCE_RECORDS + " exceeded";
+		}
+		if(characters > MAX_VALUE_CHARACTERS) {
+			return "Number of characters limit of " + MAX_VALUE_CHARACTERS + " exceeded";
+		}
+		return null;
+	}
+
+	private synchronized boolean tryAcquire(String accessKey) {
+		final double rate = accountRequestRate * timeScale;
+		return tokenBuckets.computeIfAbsent(accessKey,
+				key -> new TokenBucket(Math.max(1, Math.ceil(rate)), rate, System::nanoTime)).tryAcquire() == 0;
+	}
+
+	private void sleep(long virtualNanos) {
+		try {
+			TimeUnit.NANOSECONDS.sleep((long)(virtualNanos / timeScale));
+		} catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private static String getAccessKey(HttpExchange exchange) {
+		final String authorization = exchange.getRequestHeaders().getFirst("Authorization");
+		if(authorization == null) return "";
+		final Matcher matcher = ACCESS_KEY.matcher(authorization);
+		return matcher.find() ? matcher.group(1) : "";
+	}
+
+	private static List<Change> parseChanges(InputStream input)
+			throws IOException, ParserConfigurationException, SAXException {
+		final Document document = DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(input);
+		final NodeList elements = document.getElementsByTagName("Change");
+		final List<Change> batch = new ArrayList<>(elements.getLength());
+		for(int i = 0; i < elements.getLength(); i++) {
+			final Element element = (Element)elements.item(i);
+			final Change change = new Change();
+			change.action = getText(element, "Action");
+			change.name = getText(element, "Name");
+			change.type = getText(element, "Type");
+			change.ttl = Long.parseLong(getText(element, "TTL"));
+			final NodeList values = element.getElementsByTagName("Value");
+			for(int j = 0; j < values.getLength(); j++) change.values.add(values.item(j).getTextContent());
+			batch.add(change);
+		}
+		return batch;
+	}
+
+	private static String getText(Element element, String tagName) {
+		final NodeList nodes = element.getElementsByTagName(tagName);
+		return (nodes.getLength() == 0) ? "" : nodes.item(0).getTextContent();
+	}
+
+	private static String getChangeInfo(String changeId, String status) {
+		return "<ChangeInfo><Id>/change/" + changeId + "</Id><Status>" + status + "</Status><SubmittedAt>"
+				+ TIMESTAMP.format(Instant.now()) + "</SubmittedAt></ChangeInfo>";
+	}
+
+	private static void respondError(HttpExchange exchange, int status, String code, String message)
+			throws IOException {
+		respond(exchange, status, "<ErrorResponse xmlns=\"" + NAMESPACE + "\"><Error><Type>Sender</Type><Code>"
+				+ code + "</Code><Message>" + escape(message) + "</Message></Error><RequestId>fake</RequestId>"
+				+ "</ErrorResponse>");
+	}
+
+	private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+		final byte[] bytes = ("<?xml version=\"1.0\" encoding=\"UTF-8\"?>" + body).getBytes(StandardCharsets.UTF_8);
+		exchange.getResponseHeaders().set("Content-Type", "text/xml");
+		exchange.sendResponseHeaders(status, bytes.length);
+		try(OutputStream output = exchange.getResponseBody()) {
+			output.write(bytes);
+		}
+	}
+
+	private static String escape(String text) {
+		return text.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;");
+	}
+
+	private static final class Change {
+		String action;
+		String name;
+		long ttl;
+		String type;
+		final List<String> values = new ArrayList<>();
+	}
+}
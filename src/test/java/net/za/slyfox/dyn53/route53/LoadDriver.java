@@ -0,0 +1,489 @@
+/*
+ * Copyright 2015 Philip Cronje
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package net.za.slyfox.dyn53.route53;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import com.amazonaws.ClientConfiguration;
+import com.amazonaws.auth.BasicAWSCredentials;
+import com.amazonaws.services.route53.AmazonRoute53;
+import com.amazonaws.services.route53.AmazonRoute53Client;
+import net.za.slyfox.dyn53.concurrent.NamedPoolThreadFactory;
+import net.za.slyfox.dyn53.route53.FakeIpProvider.Timeline;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.LongSupplier;
+
+/**
+ * Drives the sharded updater through a simulated load, to establish how it scales before it meets the limits of a
+ * production account. Thousands of records, spread over hosted zones and accounts, are checked at their own intervals
+ * against fake IP providers while the external address churns, for hours of virtual time. The updater publishes its
+ * changes through real AWS SDK clients to a {@link FakeRoute53Server}, and the driver reports the throughput
+ * achieved, the API calls made, and the latency with which records converge on each new address.
+ *
+ * <p>Virtual time runs {@code load.timeScale} times faster than wall-clock time. The request rates of the updater and
+ * of the fake server are scaled by the same factor, so that their rate limits agree as they would in real time. Retry
+ * back-off, both of the updater and of the SDK, is not scaled, so throttling and failures cost more virtual time than
+ * they would in production, and the results are pessimistic when either occurs. The driver is configured with
+ * {@code load.*} system properties, which are described in the README.</p>
+ */
+final class LoadDriver {
+	private static final InetAddress WARM_UP_ADDRESS = getWarmUpAddress();
+
+	private final int accountCount;
+	private final double accountRequestRate;
+	private final long[] checkIntervals;
+	private final long churnInterval;
+	private final long duration;
+	private final long latency;
+	private final Level logLevel;
+	private final long propagationDelay;
+	private final String[] providers;
+	private final int recordCount;
+	private final long seed;
+	private final int shardCount;
+	private final double timeScale;
+	private final int zoneCount;
+	private final double zoneRequestRate;
+
+	/**
+	 * Initializes the driver with configuration values.
+	 *
+	 * @param properties the {@code load.*} properties to configure the driver with
+	 * @throws IllegalArgumentException if a property is malformed or out of range
+	 */
+	LoadDriver(Properties properties) {
+		accountCount = Integer.parseInt(properties.getProperty("load.accounts", "4"));
+		accountRequestRate = Double.parseDouble(properties.getProperty("load.accountRequestRate",
+				String.valueOf(Route53ClientModule.DEFAULT_ACCOUNT_REQUEST_RATE)));
+		churnInterval = toNanos(properties.getProperty("load.churnInterval", "1800"));
+		checkIntervals = Arrays.stream(properties.getProperty("load.checkIntervals", "60,300").split(","))
+				.mapToLong(interval -> Long.parseLong(interval.trim())).toArray();
+		duration = toNanos(properties.getProperty("load.hours", "6")) * 3600;
+		latency = TimeUnit.MILLISECONDS.toNanos(Long.parseLong(properties.getProperty("load.latency", "200")));
+		logLevel = Level.toLevel(properties.getProperty("load.logLevel", "WARN"));
+		propagationDelay = toNanos(properties.getProperty("load.propagationDelay", "60"));
+		providers = properties.getProperty("load.providers", "ipify:0.01:150,stun:0.05:50").split(",");
+		recordCount = Integer.parseInt(properties.getProperty("load.records", "2000"));
+		seed = Long.parseLong(properties.getProperty("load.seed", "1"));
+		shardCount = Integer.parseInt(properties.getProperty("load.shards", "8"));
+		timeScale = Double.parseDouble(properties.getProperty("load.timeScale", "120"));
+		zoneCount = Integer.parseInt(properties.getProperty("load.zones", "100"));
+		zoneRequestRate = Double.parseDouble(properties.getProperty("load.zoneRequestRate", "1"));
+
+		if(recordCount < 1 || zoneCount < 1 || accountCount < 1) {
+			throw new IllegalArgumentException("At least one record, hosted zone and account are required");
+		}
+		if(!(timeScale > 0)) throw new IllegalArgumentException("Time scale must be positive");
+		if(Arrays.stream(checkIntervals).anyMatch(interval -> interval < 1)) {
+			throw new IllegalArgumentException("Check intervals must be positive");
+		}
+	}
+
+	public static void main(String[] args) throws IOException, InterruptedException {
+		System.out.println(new LoadDriver(System.getProperties()).run());
+	}
+
+	/**
+	 * Runs the simulation to completion. Address changes occur during the configured duration, after which the
+	 * simulation continues for the longest check interval and the propagation delay, so that the final changes can
+	 * converge.
+	 *
+	 * @return the results of the simulation
+	 * @throws IOException if the fake Route 53 server cannot be started
+	 * @throws InterruptedException if interrupted while waiting for the simulation to complete
+	 */
+	Report run() throws IOException, InterruptedException {
+		// Logging every batch takes long enough to distort virtual time, so log only what the run asks for
+		final Logger logger = (Logger)LoggerFactory.getLogger("net.za.slyfox.dyn53");
+		final Level previousLevel = logger.getLevel();
+		logger.setLevel(logLevel);
+		try {
+			return simulate();
+		} finally {
+			logger.setLevel(previousLevel);
+		}
+	}
+
+	private Report simulate() throws IOException, InterruptedException {
+		final Random random = new Random(seed);
+		final Timeline timeline = new Timeline(duration, churnInterval, random);
+		final List<FakeIpProvider> ipProviders = new ArrayList<>(providers.length);
+		for(String provider : providers) ipProviders.add(FakeIpProvider.parse(provider, timeScale, timeline, random));
+		final List<Route53Record> records = createRecords();
+		final ConvergenceTracker tracker = new ConvergenceTracker(records, timeline);
+
+		final AtomicLong origin = new AtomicLong(System.nanoTime());
+		final LongSupplier virtualClock = () -> (long)((System.nanoTime() - origin.get()) * timeScale);
+		try(FakeRoute53Server server = new FakeRoute53Server(accountRequestRate, latency, propagationDelay, timeScale,
+				virtualClock, tracker::accepted)) {
+			final ClientConfiguration clientConfiguration = new ClientConfiguration();
+			final AmazonRoute53 defaultClient = createClient("default", server.getEndpoint(), clientConfiguration);
+			final Route53Clients clients = new Route53Clients(() -> defaultClient,
+					account -> createClient(account, server.getEndpoint(), clientConfiguration),
+					accountRequestRate * timeScale, System::nanoTime);
+			final ShardedRoute53Updater updater = new ShardedRoute53Updater(records, shardCount,
+					zoneRequestRate * timeScale, clients, System::nanoTime);
+			final Discovery discovery = new Discovery(records, ipProviders, updater, virtualClock);
+
+			final long tick = TimeUnit.SECONDS.toNanos(
+					Arrays.stream(checkIntervals).reduce(LoadDriver::gcd).getAsLong());
+			final long end = duration + TimeUnit.SECONDS.toNanos(Arrays.stream(checkIntervals).max().getAsLong())
+					+ propagationDelay;
+			final CountDownLatch finished = new CountDownLatch(1);
+			final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(
+					new NamedPoolThreadFactory("loadDriver"));
+			clients.start();
+			updater.start();
+			final AtomicReference<RuntimeException> failure = new AtomicReference<>();
+			try {
+				warmUp(updater, records, server, tracker);
+				origin.set(System.nanoTime());
+				final AtomicLong ticks = new AtomicLong();
+				scheduler.scheduleAtFixedRate(() -> {
+					final long time = ticks.getAndIncrement() * tick;
+					try {
+						if(time <= end) discovery.check(time);
+					} catch(RuntimeException e) {
+						failure.set(e);
+					}
+					if(time > end || failure.get() != null) finished.countDown();
+				}, 0, (long)(tick / timeScale), TimeUnit.NANOSECONDS);
+				finished.await();
+			} finally {
+				scheduler.shutdownNow();
+				scheduler.awaitTermination(1, TimeUnit.MINUTES);
+				updater.stop();
+				clients.stop();
+				defaultClient.shutdown();
+			}
+			if(failure.get() != null) throw new IllegalStateException("Simulation failed", failure.get());
+
+			return new Report(this, timeline, ipProviders, discovery, server, tracker,
+					virtualClock.getAsLong(), System.nanoTime() - origin.get());
+		}
+	}
+
+	/**
+	 * Creates the records to update, assigning them to hosted zones and accounts in turn, and cycling through the
+	 * check intervals.
+	 */
+	private List<Route53Record> createRecords() {
+		final List<Route53Record> records = new ArrayList<>(recordCount);
+		for(int i = 0; i < recordCount; i++) {
+			final int zone = i % zoneCount;
+			final int account = zone % accountCount;
+			records.add(new Route53Record("ZLOAD" + zone, "host" + i + ".zone" + zone + ".example.com.", 60L,
+					(account == 0) ? null : "account" + account, checkIntervals[i % checkIntervals.length]));
+		}
+		return records;
+	}
+
+	/**
+	 * Publishes every record once before the simulation starts, so that the time the SDK and the shards take to
+	 * initialize, which virtual time would magnify, is not charged to the first address. The records are published
+	 * with an address that the timeline never holds, and the counters of the server are reset afterwards.
+	 *
+	 * @throws IllegalStateException if the records are not published within a minute
+	 */
+	private static void warmUp(ShardedRoute53Updater updater, List<Route53Record> records, FakeRoute53Server server,
+			ConvergenceTracker tracker) throws InterruptedException {
+		updater.accept(WARM_UP_ADDRESS);
+		final long deadline = System.nanoTime() + TimeUnit.MINUTES.toNanos(1);
+		while(server.appliedChanges.get() < records.size()) {
+			if(System.nanoTime() > deadline) throw new IllegalStateException("Timed out warming up");
+			TimeUnit.MILLISECONDS.sleep(10);
+		}
+		server.resetCounters();
+		tracker.reset();
+	}
+
+	private static AmazonRoute53 createClient(String account, String endpoint,
+			ClientConfiguration clientConfiguration) {
+		final AmazonRoute53Client client = new AmazonRoute53Client(
+				new BasicAWSCredentials("AKID" + account.toUpperCase(), "secret"), clientConfiguration);
+		client.setEndpoint(endpoint);
+		return client;
+	}
+
+	private static InetAddress getWarmUpAddress() {
+		try {
+			return InetAddress.getByName("192.0.2.255");
+		} catch(UnknownHostException e) {
+			throw new AssertionError(e);
+		}
+	}
+
+	private static long gcd(long a, long b) {
+		return (b == 0) ? a : gcd(b, a % b);
+	}
+
+	private static long toNanos(String seconds) {
+		return (long)(Double.parseDouble(seconds) * TimeUnit.SECONDS.toNanos(1));
+	}
+
+	/**
+	 * Checks the external address of the records that are due at each tick, in the manner of the scheduled discovery
+	 * command: records due together share a single discovery, the providers are tried in order until one succeeds,
+	 * and only records whose address differs from the one last discovered for them are passed to the updater. The
+	 * records of each check interval are spread evenly over that interval.
+	 */
+	private static final class Discovery {
+		private final Map<List<Long>, List<String>> groups = new LinkedHashMap<>();
+		private final Map<String, InetAddress> lastAddresses = new HashMap<>();
+		private final List<FakeIpProvider> providers;
+		private final ShardedRoute53Updater updater;
+		private final LongSupplier virtualClock;
+
+		final AtomicLong discoveries = new AtomicLong();
+		final AtomicLong failures = new AtomicLong();
+
+		Discovery(List<Route53Record> records, List<FakeIpProvider> providers, ShardedRoute53Updater updater,
+				LongSupplier virtualClock) {
+			this.providers = providers;
+			this.updater = updater;
+			this.virtualClock = virtualClock;
+
+			final long tick = records.stream().mapToLong(Route53Record::getCheckInterval).reduce(LoadDriver::gcd)
+					.getAsLong();
+			for(int i = 0; i < records.size(); i++) {
+				final Route53Record record = records.get(i);
+				final long interval = record.getCheckInterval();
+				final long phase = i * tick % interval;
+				groups.computeIfAbsent(Arrays.asList(TimeUnit.SECONDS.toNanos(interval),
+						TimeUnit.SECONDS.toNanos(phase)), group -> new ArrayList<>()).add(record.toString());
+			}
+		}
+
+		void check(long tickTime) {
+			groups.forEach((group, keys) -> {
+				if((tickTime - group.get(1)) % group.get(0) == 0 && tickTime >= group.get(1)) check(keys);
+			});
+		}
+
+		private void check(List<String> keys) {
+			discoveries.incrementAndGet();
+			InetAddress address = null;
+			for(FakeIpProvider provider : providers) {
+				try {
+					address = provider.discover(virtualClock.getAsLong());
+					break;
+				} catch(IOException e) {
+					// Fail over to the next provider
+				}
+			}
+			if(address == null) {
+				failures.incrementAndGet();
+				return;
+			}
+
+			final List<String> changed = new ArrayList<>();
+			for(String key : keys) {
+				if(!address.equals(lastAddresses.put(key, address))) changed.add(key);
+			}
+			if(!changed.isEmpty()) updater.accept(address, changed);
+		}
+	}
+
+	/**
+	 * Measures how long each record takes to converge on each address of the timeline, from the virtual time the
+	 * address changed until Route 53 accepts the record with that address. A record that has not converged on an
+	 * address before it changes again has that change superseded.
+	 */
+	private static final class ConvergenceTracker {
+		private final int[] converged;
+		private final List<Long> initialLatencies = new ArrayList<>();
+		private final List<Long> latencies = new ArrayList<>();
+		private final Map<String, Integer> records = new HashMap<>();
+		private final Timeline timeline;
+
+		private long staleWrites;
+		private long superseded;
+
+		ConvergenceTracker(List<Route53Record> records, Timeline timeline) {
+			this.timeline = timeline;
+			converged = new int[records.size()];
+			Arrays.fill(converged, -1);
+			for(int i = 0; i < records.size(); i++) {
+				final Route53Record record = records.get(i);
+				this.records.put(record.getHostedZoneId() + ' ' + record.getName(), i);
+			}
+		}
+
+		synchronized void accepted(String hostedZoneId, String name, String value, long time) {
+			final Integer record = records.get(hostedZoneId + ' ' + name);
+			if(record == null || value == null) return;
+
+			final int index = timeline.getIndex(time);
+			if(!value.equals(timeline.getAddressAt(index).getHostAddress())) {
+				staleWrites++;
+			} else if(converged[record] < index) {
+				final long latency = time - timeline.getChangeTime(index);
+				if(index == 0) {
+					initialLatencies.add(latency);
+				} else {
+					latencies.add(latency);
+					superseded += index - Math.max(converged[record], 0) - 1;
+				}
+				converged[record] = index;
+			}
+		}
+
+		synchronized void reset() {
+			staleWrites = 0;
+		}
+
+		synchronized long getUnconverged() {
+			return Arrays.stream(converged).filter(index -> index < timeline.size() - 1).count();
+		}
+	}
+
+	/**
+	 * Holds the results of a simulation.
+	 */
+	static final class Report {
+		final long acceptedRequests;
+		final long addressChanges;
+		final long appliedChanges;
+		final long changeRequests;
+		final long discoveries;
+		final long discoveryFailures;
+		final long getChangeRequests;
+		final long initialConvergence;
+		final long[] latencies;
+		final long priorRequestsNotComplete;
+		final String providers;
+		final int records;
+		final long rejectedRequests;
+		final long staleWrites;
+		final long superseded;
+		final long throttledRequests;
+		final long unconverged;
+		final long virtualDuration;
+		final long wallDuration;
+		final int zones;
+
+		private Report(LoadDriver driver, Timeline timeline, List<FakeIpProvider> ipProviders, Discovery discovery,
+				FakeRoute53Server server, ConvergenceTracker tracker, long virtualDuration, long wallDuration) {
+			this.virtualDuration = virtualDuration;
+			this.wallDuration = wallDuration;
+			records = driver.recordCount;
+			zones = driver.zoneCount;
+			addressChanges = timeline.size() - 1;
+
+			discoveries = discovery.discoveries.get();
+			discoveryFailures = discovery.failures.get();
+			final StringBuilder providers = new StringBuilder();
+			ipProviders.forEach(provider -> providers.append(String.format("%n  %-32s%d requests, %d failed",
+					provider.getName(), provider.requests.get(), provider.failures.get())));
+			this.providers = providers.toString();
+
+			acceptedRequests = server.acceptedRequests.get();
+			appliedChanges = server.appliedChanges.get();
+			changeRequests = server.changeRequests.get();
+			getChangeRequests = server.getChangeRequests.get();
+			priorRequestsNotComplete = server.priorRequestsNotComplete.get();
+			rejectedRequests = server.rejectedRequests.get();
+			throttledRequests = server.throttledRequests.get();
+
+			synchronized(tracker) {
+				initialConvergence = tracker.initialLatencies.stream().mapToLong(Long::longValue).max().orElse(-1);
+				latencies = tracker.latencies.stream().mapToLong(Long::longValue).sorted().toArray();
+				staleWrites = tracker.staleWrites;
+				superseded = tracker.superseded;
+				unconverged = tracker.getUnconverged();
+			}
+		}
+
+		/**
+		 * Returns a percentile of the convergence latency of records after an address change, by the nearest-rank
+		 * method.
+		 *
+		 * @param percentile the percentile to return, between zero and one hundred
+		 * @return the convergence latency at {@code percentile}, in virtual nanoseconds, or {@code -1} if no record
+		 *         converged after an address change
+		 */
+		long getConvergence(double percentile) {
+			if(latencies.length == 0) return -1;
+			final int rank = (int)Math.ceil(percentile / 100 * latencies.length);
+			return latencies[Math.max(0, rank - 1)];
+		}
+
+		@Override
+		public String toString() {
+			final double virtualSeconds = virtualDuration / 1e9;
+			return String.format("Load test of %d records in %d hosted zones%n"
+					+ "  %-32s%.1f h virtual in %.1f s wall-clock%n"
+					+ "  %-32s%d%n"
+					+ "Discovery%n"
+					+ "  %-32s%d (%d failed on every provider)%s%n"
+					+ "Route 53 API calls%n"
+					+ "  %-32s%d%n"
+					+ "  %-32s%d%n"
+					+ "  %-32s%d%n"
+					+ "  %-32s%d%n"
+					+ "  %-32s%d%n"
+					+ "  %-32s%d%n"
+					+ "Throughput%n"
+					+ "  %-32s%d%n"
+					+ "  %-32s%.3f per second, %.0f per hour%n"
+					+ "  %-32s%.3f per second%n"
+					+ "Convergence after an address change (virtual time)%n"
+					+ "  %-32s%s%n"
+					+ "  %-32s%s / %s / %s / %s%n"
+					+ "  %-32s%d%n"
+					+ "  %-32s%d%n"
+					+ "  %-32s%d%n",
+					records, zones,
+					"duration", virtualSeconds / 3600, wallDuration / 1e9,
+					"address changes", addressChanges,
+					"discoveries", discoveries, discoveryFailures, providers,
+					"change requests", changeRequests,
+					"  accepted", acceptedRequests,
+					"  throttled", throttledRequests,
+					"  rejected", rejectedRequests,
+					"  prior request not complete", priorRequestsNotComplete,
+					"get change requests", getChangeRequests,
+					"changes applied", appliedChanges,
+					"change rate", appliedChanges / virtualSeconds, appliedChanges / virtualSeconds * 3600,
+					"accepted request rate", acceptedRequests / virtualSeconds,
+					"initial publication", formatSeconds(initialConvergence),
+					"p50 / p90 / p99 / max", formatSeconds(getConvergence(50)), formatSeconds(getConvergence(90)),
+					formatSeconds(getConvergence(99)), formatSeconds(getConvergence(100)),
+					"stale writes", staleWrites,
+					"superseded changes", superseded,
+					"unconverged records", unconverged);
+		}
+
+		private static String formatSeconds(long nanos) {
+			return (nanos < 0) ? "n/a" : String.format("%.1f s", nanos / 1e9);
+		}
+	}
+}
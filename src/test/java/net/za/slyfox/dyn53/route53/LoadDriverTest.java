@@ -0,0 +1,143 @@
+/*
+ * Copyright 2015 Philip Cronje
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package net.za.slyfox.dyn53.route53;
+
+import com.amazonaws.auth.BasicAWSCredentials;
+import com.amazonaws.services.route53.AmazonRoute53Client;
+import com.amazonaws.services.route53.model.*;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class LoadDriverTest {
+	@Test
+	@Category(LoadTests.class)
+	public void shortSoakConvergesOnEveryAddress() throws Exception {
+		final Properties properties = new Properties();
+		properties.setProperty("load.records", "200");
+		properties.setProperty("load.zones", "10");
+		properties.setProperty("load.accounts", "2");
+		properties.setProperty("load.hours", "0.5");
+		properties.setProperty("load.timeScale", "600");
+		properties.setProperty("load.churnInterval", "300");
+		properties.setProperty("load.checkIntervals", "30,60");
+		properties.setProperty("load.latency", "100");
+		properties.setProperty("load.providers", "primary:0.1:100,secondary:0:100");
+
+		final LoadDriver.Report report = new LoadDriver(properties).run();
+
+		assertTrue("Address changes: " + report.addressChanges, report.addressChanges > 0);
+		assertTrue("Changes applied: " + report.appliedChanges,
+				report.appliedChanges >= 200 * (report.addressChanges + 1) - report.superseded);
+		assertThat(report.rejectedRequests, is(0L));
+		assertThat(report.priorRequestsNotComplete, is(0L));
+		assertThat(report.unconverged, is(0L));
+		assertTrue("Median convergence: " + report.getConvergence(50),
+				report.getConvergence(50) <= TimeUnit.SECONDS.toNanos(120));
+	}
+
+	@Test
+	public void largeZoneIsUpdatedWithinChangeBatchLimits() throws Exception {
+		final int recordCount = 600;
+		final List<Route53Record> records = new ArrayList<>(recordCount);
+		for(int i = 0; i < recordCount; i++) {
+			records.add(new Route53Record("ZLARGE", "host" + i + ".example.com.", 60L));
+		}
+
+		try(FakeRoute53Server server = new FakeRoute53Server(100, 0, 0, 1, System::nanoTime,
+				(zone, name, value, time) -> { })) {
+			final AmazonRoute53Client client = new AmazonRoute53Client(new BasicAWSCredentials("AKID", "secret"));
+			client.setEndpoint(server.getEndpoint());
+			final Route53Clients clients = new Route53Clients(() -> client, account -> client, 100, System::nanoTime);
+			final ShardedRoute53Updater updater = new ShardedRoute53Updater(records, 1, 100, clients,
+					System::nanoTime);
+			clients.start();
+			updater.start();
+			try {
+				updater.accept(InetAddress.getByName("192.0.2.1"));
+				awaitAppliedChanges(server, recordCount);
+				updater.accept(InetAddress.getByName("192.0.2.2"));
+				awaitAppliedChanges(server, 2 * recordCount);
+			} finally {
+				updater.stop();
+				clients.stop();
+				client.shutdown();
+			}
+			assertThat(server.rejectedRequests.get(), is(0L));
+			assertTrue("Accepted requests: " + server.acceptedRequests.get(), server.acceptedRequests.get() >= 3);
+		}
+	}
+
+	@Test
+	public void fakeRoute53EnforcesChangeBatchSemanticsAndLimits() throws Exception {
+		try(FakeRoute53Server server = new FakeRoute53Server(5, 0, TimeUnit.SECONDS.toNanos(60), 1,
+				System::nanoTime, (zone, name, value, time) -> { })) {
+			final AmazonRoute53Client client = new AmazonRoute53Client(new BasicAWSCredentials("AKID", "secret"));
+			client.setEndpoint(server.getEndpoint());
+			try {
+				final ChangeResourceRecordSetsResult result = client.changeResourceRecordSets(
+						getRequest(ChangeAction.CREATE, "192.0.2.1", 1));
+				assertThat(result.getChangeInfo().getStatus(), is("PENDING"));
+				assertThat(client.getChange(new GetChangeRequest(result.getChangeInfo().getId()))
+						.getChangeInfo().getStatus(), is("PENDING"));
+
+				assertRejected(client, getRequest(ChangeAction.CREATE, "192.0.2.2", 1));
+				assertRejected(client, getRequest(ChangeAction.DELETE, "192.0.2.2", 1));
+				assertRejected(client, getRequest(ChangeAction.CREATE, "192.0.2.2",
+						FakeRoute53Server.MAX_RESOURCE_RECORDS + 1));
+				assertRejected(client, getRequest(ChangeAction.UPSERT, "192.0.2.2",
+						FakeRoute53Server.MAX_RESOURCE_RECORDS / 2 + 1));
+				assertThat(server.acceptedRequests.get(), is(1L));
+				assertThat(server.rejectedRequests.get(), is(4L));
+			} finally {
+				client.shutdown();
+			}
+		}
+	}
+
+	private static void awaitAppliedChanges(FakeRoute53Server server, long changes) throws InterruptedException {
+		final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+		while(server.appliedChanges.get() < changes) {
+			if(System.nanoTime() > deadline) fail("Applied changes: " + server.appliedChanges.get());
+			TimeUnit.MILLISECONDS.sleep(10);
+		}
+	}
+
+	private static void assertRejected(AmazonRoute53Client client, ChangeResourceRecordSetsRequest request) {
+		try {
+			client.changeResourceRecordSets(request);
+			fail("Expected the change batch to be rejected");
+		} catch(InvalidChangeBatchException e) {
+			// Expected
+		}
+	}
+
+	private static ChangeResourceRecordSetsRequest getRequest(ChangeAction action, String address, int records) {
+		final List<Change> changes = new ArrayList<>(records);
+		for(int i = 0; i < records; i++) {
+			changes.add(new Change(action, new ResourceRecordSet("host" + i + ".example.com.", RRType.A)
+					.withTTL(60L).withResourceRecords(new ResourceRecord(address))));
+		}
+		return new ChangeResourceRecordSetsRequest("ZTEST", new ChangeBatch(changes));
+	}
+}
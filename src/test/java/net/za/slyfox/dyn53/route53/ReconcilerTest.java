@@ -0,0 +1,235 @@
+/*
+ * Copyright 2015 Philip Cronje
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package net.za.slyfox.dyn53.route53;
+
+import com.amazonaws.services.route53.AmazonRoute53;
+import com.amazonaws.services.route53.model.*;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnit;
+import org.mockito.junit.MockitoRule;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+import static org.hamcrest.CoreMatchers.hasItems;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class ReconcilerTest {
+	private static final String HOSTED_ZONE_ID = "HOSTEDZONE";
+
+	@Rule public MockitoRule mockObjects = MockitoJUnit.rule();
+	@Rule public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	private final List<String> report = new ArrayList<>();
+
+	@Mock private AmazonRoute53 route53;
+
+	@Before
+	public void mockRoute53() {
+		final ChangeResourceRecordSetsResult result = mock(ChangeResourceRecordSetsResult.class);
+		when(result.getChangeInfo()).thenReturn(mock(ChangeInfo.class));
+		when(route53.changeResourceRecordSets(any())).thenReturn(result);
+
+		// The zone is returned in two pages, the second starting at c.example.com.
+		when(route53.listResourceRecordSets(any())).thenAnswer(invocation -> {
+			final ListResourceRecordSetsRequest request = (ListResourceRecordSetsRequest)invocation.getArguments()[0];
+			if(request.getStartRecordName() == null) {
+				return new ListResourceRecordSetsResult()
+						.withResourceRecordSets(
+								new ResourceRecordSet("example.com.", "NS").withTTL(172800L)
+										.withResourceRecords(new ResourceRecord("ns-1.awsdns-00.com.")),
+								record("a.example.com.", "A", 300L, "192.0.2.1"),
+								record("b.example.com.", "A", 300L, "192.0.2.2"))
+						.withIsTruncated(true)
+						.withNextRecordName("c.example.com.")
+						.withNextRecordType("A");
+			}
+			assertThat(request.getStartRecordName(), is("c.example.com."));
+			return new ListResourceRecordSetsResult()
+					.withResourceRecordSets(
+							record("c.example.com.", "A", 300L, "192.0.2.3"),
+							record("c.example.com.", "A", 60L, "198.51.100.3").withSetIdentifier("isp2")
+									.withWeight(1L),
+							record("\\052.example.com.", "TXT", 300L, "\"wildcard\""))
+					.withIsTruncated(false);
+		});
+	}
+
+	@Test
+	public void onlyDifferencesAreSubmitted() throws Exception {
+		final Path inventory = write("inventory.csv",
+				"name,type,ttl,value",
+				"a.example.com.,A,300,192.0.2.1",
+				"B.example.com,A,300,192.0.2.20",
+				"d.example.com.,A,300,192.0.2.4",
+				"d.example.com.,A,300,192.0.2.5",
+				"*.example.com.,TXT,300,\"\"\"wildcard\"\"\"");
+
+		final Reconciler.Result result = reconcile(inventory, false, false);
+
+		assertThat(result.getUnchanged(), is(2));
+		assertThat(result.getUpdated(), is(1));
+		assertThat(result.getCreated(), is(1));
+		assertThat(result.getDeleted(), is(0));
+		assertThat(result.getBatches(), is(1));
+		assertThat(report, hasItems("UPDATE b.example.com. A 300 192.0.2.20 was 300 192.0.2.2",
+				"CREATE d.example.com. A 300 192.0.2.4 192.0.2.5"));
+
+		final Map<String, Change> changes = getChanges();
+		assertThat(changes.size(), is(2));
+		assertThat(changes.get("b.example.com.").getAction(), is("UPSERT"));
+		assertThat(changes.get("d.example.com.").getResourceRecordSet().getResourceRecords().size(), is(2));
+	}
+
+	@Test
+	public void missingRecordsAreDeletedWhenPruning() throws Exception {
+		final Path inventory = write("inventory.json", "[",
+				"{\"name\": \"a.example.com.\", \"type\": \"A\", \"ttl\": 300, \"values\": [\"192.0.2.1\"]},",
+				"{\"name\": \"b.example.com.\", \"type\": \"A\", \"ttl\": 300, \"value\": \"192.0.2.2\"}",
+				"]");
+
+		final Reconciler.Result result = reconcile(inventory, true, false);
+
+		assertThat(result.getUnchanged(), is(2));
+		assertThat(result.getDeleted(), is(2));
+		final Map<String, Change> changes = getChanges();
+		assertThat(changes.get("c.example.com.").getAction(), is("DELETE"));
+		assertThat(changes.get("c.example.com.").getResourceRecordSet().getSetIdentifier() == null, is(true));
+		assertThat(changes.get("*.example.com.").getAction(), is("DELETE"));
+		assertThat(changes.containsKey("example.com."), is(false));
+	}
+
+	@Test
+	public void dryRunOnlyReports() throws Exception {
+		final Path inventory = write("inventory.jsonl",
+				"{\"name\": \"e.example.com.\", \"type\": \"AAAA\", \"ttl\": 60, \"value\": \"2001:db8::1\"}");
+
+		final Reconciler.Result result = reconcile(inventory, true, true);
+
+		assertThat(result.getCreated(), is(1));
+		assertThat(result.getDeleted(), is(4));
+		assertThat(result.getBatches(), is(1));
+		assertThat(report.size(), is(5));
+		verify(route53, never()).changeResourceRecordSets(any());
+	}
+
+	@Test
+	public void changesAreSplitIntoBatchesWithinLimits() throws Exception {
+		final List<String> lines = new ArrayList<>();
+		for(int i = 0; i < 25; i++) lines.add("host" + i + ".example.com.,A,300,192.0.2." + i);
+		final Path inventory = write("inventory.csv", lines.toArray(new String[lines.size()]));
+
+		final Reconciler.Result result = new Reconciler(route53, Collections.singleton("A"), 3, 1000, 10, 10)
+				.reconcile(HOSTED_ZONE_ID, inventory, false, false, report::add);
+
+		// Each upsert counts twice against the limit of 10 resource records per batch
+		assertThat(result.getCreated(), is(25));
+		assertThat(result.getBatches(), is(5));
+		assertThat(result.getFailedBatches(), is(0));
+		final ArgumentCaptor<ChangeResourceRecordSetsRequest> requests
+				= ArgumentCaptor.forClass(ChangeResourceRecordSetsRequest.class);
+		verify(route53, atLeastOnce()).changeResourceRecordSets(requests.capture());
+		final List<ChangeResourceRecordSetsRequest> values = requests.getAllValues();
+		assertThat(values.size(), is(5));
+		values.forEach(request -> assertThat(request.getChangeBatch().getChanges().size(), is(5)));
+	}
+
+	@Test
+	public void changesToANameAreBatchedTogetherWithDeletionsFirst() throws Exception {
+		doReturn(new ListResourceRecordSetsResult()
+				.withResourceRecordSets(record("a.example.com.", "CNAME", 300L, "b.example.com."),
+						record("b.example.com.", "A", 300L, "192.0.2.2"),
+						record("c.example.com.", "A", 300L, "192.0.2.3"))
+				.withIsTruncated(false)).when(route53).listResourceRecordSets(any());
+		final Path inventory = write("inventory.csv",
+				"a.example.com.,A,300,192.0.2.1",
+				"d.example.com.,A,300,192.0.2.4",
+				"e.example.com.,A,300,192.0.2.5");
+
+		// A limit of 3 resource records fits a deletion and an upsert, and one record in memory splits partitions
+		final Reconciler.Result result = new Reconciler(route53, new HashSet<>(Arrays.asList("A", "CNAME")), 3, 1000,
+				1, 3).reconcile(HOSTED_ZONE_ID, inventory, true, false, report::add);
+
+		assertThat(result.getCreated(), is(3));
+		assertThat(result.getDeleted(), is(3));
+		final ArgumentCaptor<ChangeResourceRecordSetsRequest> requests
+				= ArgumentCaptor.forClass(ChangeResourceRecordSetsRequest.class);
+		verify(route53, atLeastOnce()).changeResourceRecordSets(requests.capture());
+		final List<Change> batch = requests.getAllValues().stream()
+				.map(request -> request.getChangeBatch().getChanges())
+				.filter(changes -> changes.stream()
+						.anyMatch(change -> change.getResourceRecordSet().getName().equals("a.example.com.")))
+				.findFirst().get();
+		assertThat(batch.size(), is(2));
+		assertThat(batch.get(0).getAction(), is("DELETE"));
+		assertThat(batch.get(0).getResourceRecordSet().getType(), is("CNAME"));
+		assertThat(batch.get(1).getAction(), is("UPSERT"));
+		assertThat(batch.get(1).getResourceRecordSet().getType(), is("A"));
+	}
+
+	@Test(expected = IOException.class)
+	public void invalidInventoryRecordThrowsException() throws Exception {
+		reconcile(write("inventory.csv", "a.example.com.,A,never,192.0.2.1"), false, true);
+	}
+
+	@Test
+	public void quotedCsvFieldsAreUnquoted() {
+		assertThat(InventoryReader.splitCsv("a,\"b,c\",\"\"\"d\"\"\""), is(Arrays.asList("a", "b,c", "\"d\"")));
+	}
+
+	private Map<String, Change> getChanges() {
+		final ArgumentCaptor<ChangeResourceRecordSetsRequest> request
+				= ArgumentCaptor.forClass(ChangeResourceRecordSetsRequest.class);
+		verify(route53, atLeastOnce()).changeResourceRecordSets(request.capture());
+		final Map<String, Change> changes = new HashMap<>();
+		request.getAllValues().forEach(value -> value.getChangeBatch().getChanges()
+				.forEach(change -> changes.put(change.getResourceRecordSet().getName(), change)));
+		return changes;
+	}
+
+	private Reconciler.Result reconcile(Path inventory, boolean prune, boolean dryRun) throws IOException {
+		return new Reconciler(route53, new HashSet<>(Arrays.asList("A", "AAAA", "TXT")), 2, 1000, 2)
+				.reconcile(HOSTED_ZONE_ID, inventory, prune, dryRun, report::add);
+	}
+
+	private Path write(String fileName, String... lines) throws IOException {
+		return Files.write(temporaryFolder.getRoot().toPath().resolve(fileName), Arrays.asList(lines),
+				StandardCharsets.UTF_8);
+	}
+
+	private static ResourceRecordSet record(String name, String type, Long ttl, String value) {
+		return new ResourceRecordSet(name, type).withTTL(ttl).withResourceRecords(new ResourceRecord(value));
+	}
+}
@@ -0,0 +1,54 @@
+/*
+ * Copyright 2015 Philip Cronje
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package net.za.slyfox.dyn53.route53;
+
+import com.amazonaws.ClientConfiguration;
+import com.amazonaws.auth.AWSCredentialsProvider;
+import com.amazonaws.auth.BasicAWSCredentials;
+import com.amazonaws.internal.StaticCredentialsProvider;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+public class Route53ClientFactoryTest {
+	private Route53ClientFactory factory;
+
+	@Before
+	public void createFactory() {
+		final AWSCredentialsProvider credentialsProvider
+				= new StaticCredentialsProvider(new BasicAWSCredentials("access", "secret"));
+		factory = new Route53ClientFactory(new ClientConfiguration(), Route53ClientModule.DEFAULT_ENDPOINT,
+				credentialsProvider);
+	}
+
+	@Test
+	public void clientIsShared() {
+		factory.start();
+		assertThat(factory.get(), sameInstance(factory.get()));
+		factory.stop();
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void clientIsUnavailableAfterStop() {
+		factory.start();
+		factory.stop();
+		factory.get();
+	}
+
+	@Test
+	public void stopWithoutStartIsHarmless() {
+		factory.stop();
+	}
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright 2015 Philip Cronje
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package net.za.slyfox.dyn53.route53;
+
+import com.amazonaws.services.route53.AmazonRoute53;
+import com.amazonaws.services.route53.model.*;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnit;
+import org.mockito.junit.MockitoRule;
+
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class Route53LeaseTest {
+	private static final String HOSTED_ZONE_ID = "HOSTEDZONE";
+	private static final long LEASE_DURATION = 30000;
+	private static final long NOW = 1000000;
+	private static final String RECORD_NAME = "_dyn53-lease.example.com.";
+
+	@Rule public MockitoRule mockObjects = MockitoJUnit.rule();
+
+	private Route53Lease lease;
+
+	@Mock private AmazonRoute53 route53;
+
+	@Before
+	public void createLease() {
+		lease = new Route53Lease(HOSTED_ZONE_ID, RECORD_NAME, "node-a", LEASE_DURATION, route53, () -> NOW);
+	}
+
+	@Test
+	public void absentLeaseIsCreated() {
+		givenLeaseRecord(null);
+		assertThat(lease.tryAcquire(), is(true));
+
+		final List<Change> changes = submittedChanges();
+		assertThat(changes.size(), is(1));
+		assertThat(changes.get(0).getAction(), is("CREATE"));
+		assertThat(changes.get(0).getResourceRecordSet().getResourceRecords().get(0).getValue(),
+				is("\"holder=node-a expires=" + (NOW + LEASE_DURATION) + '"'));
+	}
+
+	@Test
+	public void unexpiredLeaseOfOtherHolderIsNotTaken() {
+		givenLeaseRecord("\"holder=node-b expires=" + (NOW + 1) + '"');
+		assertThat(lease.tryAcquire(), is(false));
+		verify(route53, never()).changeResourceRecordSets(any());
+	}
+
+	@Test
+	public void expiredLeaseIsReplacedConditionally() {
+		final String expired = "\"holder=node-b expires=" + NOW + '"';
+		givenLeaseRecord(expired);
+		assertThat(lease.tryAcquire(), is(true));
+
+		final List<Change> changes = submittedChanges();
+		assertThat(changes.size(), is(2));
+		assertThat(changes.get(0).getAction(), is("DELETE"));
+		assertThat(changes.get(0).getResourceRecordSet().getResourceRecords().get(0).getValue(), is(expired));
+		assertThat(changes.get(1).getAction(), is("CREATE"));
+	}
+
+	@Test
+	public void ownLeaseIsRenewed() {
+		givenLeaseRecord("\"holder=node-a expires=" + (NOW + 1) + '"');
+		assertThat(lease.tryAcquire(), is(true));
+	}
+
+	@Test
+	public void lostRaceDoesNotAcquireLease() {
+		givenLeaseRecord("\"holder=node-b expires=" + NOW + '"');
+		when(route53.changeResourceRecordSets(any())).thenThrow(new InvalidChangeBatchException("Tried to delete"));
+		assertThat(lease.tryAcquire(), is(false));
+	}
+
+	private void givenLeaseRecord(String value) {
+		final ListResourceRecordSetsResult result = new ListResourceRecordSetsResult();
+		if(value != null) {
+			result.withResourceRecordSets(new ResourceRecordSet(RECORD_NAME, RRType.TXT).withTTL(60L)
+					.withResourceRecords(new ResourceRecord(value)));
+		} else {
+			result.withResourceRecordSets(new ResourceRecordSet("z.example.com.", RRType.A));
+		}
+		when(route53.listResourceRecordSets(any())).thenReturn(result);
+	}
+
+	private List<Change> submittedChanges() {
+		final ArgumentCaptor<ChangeResourceRecordSetsRequest> request
+				= ArgumentCaptor.forClass(ChangeResourceRecordSetsRequest.class);
+		verify(route53).changeResourceRecordSets(request.capture());
+		return request.getValue().getChangeBatch().getChanges();
+	}
+}
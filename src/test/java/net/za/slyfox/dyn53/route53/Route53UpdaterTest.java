@@ -63,6 +63,20 @@ public class Route53UpdaterTest {
 		verify(route53).changeResourceRecordSets(argThat(updatesRecord(RRType.A, RESOURCE_RECORD_SET_NAME)));
 	}
 
+	@Test
+	public void withdrawDeletesRecord() throws UnknownHostException {
+		ChangeResourceRecordSetsResult requestResult = mock(ChangeResourceRecordSetsResult.class);
+		ChangeInfo changeInfo = mock(ChangeInfo.class);
+		InetAddress address = InetAddress.getByName("::1");
+
+		when(requestResult.getChangeInfo()).thenReturn(changeInfo);
+		when(route53.changeResourceRecordSets(any())).thenReturn(requestResult);
+
+		updater.withdraw(address);
+
+		verify(route53).changeResourceRecordSets(argThat(deletesRecord(RRType.AAAA, RESOURCE_RECORD_SET_NAME)));
+	}
+
 	@Test(expected = IllegalArgumentException.class)
 	public void unknownInetAddressTypeThrowsException() {
 		InetAddress address = mock(InetAddress.class);
@@ -70,14 +84,20 @@ public class Route53UpdaterTest {
 	}
 
 	private static Matcher<ChangeResourceRecordSetsRequest> updatesRecord(RRType type, String resourceRecordSetName) {
-		return new UpdatesRecordMatcher(type, resourceRecordSetName);
+		return new ChangesRecordMatcher(ChangeAction.UPSERT, type, resourceRecordSetName);
+	}
+
+	private static Matcher<ChangeResourceRecordSetsRequest> deletesRecord(RRType type, String resourceRecordSetName) {
+		return new ChangesRecordMatcher(ChangeAction.DELETE, type, resourceRecordSetName);
 	}
 
-	private static class UpdatesRecordMatcher extends TypeSafeMatcher<ChangeResourceRecordSetsRequest> {
+	private static class ChangesRecordMatcher extends TypeSafeMatcher<ChangeResourceRecordSetsRequest> {
+		private final ChangeAction action;
 		private final String resourceRecordSetName;
 		private final RRType type;
 
-		UpdatesRecordMatcher(RRType type, String resourceRecordSetName) {
+		ChangesRecordMatcher(ChangeAction action, RRType type, String resourceRecordSetName) {
+			this.action = action;
 			this.resourceRecordSetName = resourceRecordSetName;
 			this.type = type;
 		}
@@ -85,6 +105,7 @@ public class Route53UpdaterTest {
 		@Override
 		protected boolean matchesSafely(ChangeResourceRecordSetsRequest item) {
 			return item.getChangeBatch().getChanges().stream()
+					.filter(change -> change.getAction().equals(action.toString()))
 					.map(Change::getResourceRecordSet)
 					.anyMatch(rrs -> rrs.getName().equals(resourceRecordSetName)
 							&& rrs.getType().equals(type.toString()));
@@ -92,8 +113,8 @@ public class Route53UpdaterTest {
 
 		@Override
 		public void describeTo(Description description) {
-			description.appendText("change resource record sets request for ").appendValue(resourceRecordSetName)
-					.appendText(" with record type ").appendValue(type);
+			description.appendValue(action).appendText(" change resource record sets request for ")
+					.appendValue(resourceRecordSetName).appendText(" with record type ").appendValue(type);
 		}
 	}
 }
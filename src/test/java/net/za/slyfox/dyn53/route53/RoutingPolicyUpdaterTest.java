@@ -0,0 +1,102 @@
+/*
+ * Copyright 2015 Philip Cronje
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package net.za.slyfox.dyn53.route53;
+
+import com.amazonaws.services.route53.AmazonRoute53;
+import com.amazonaws.services.route53.model.*;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnit;
+import org.mockito.junit.MockitoRule;
+
+import java.net.InetAddress;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class RoutingPolicyUpdaterTest {
+	private static final String HOSTED_ZONE_ID = "HOSTEDZONE";
+	private static final String RESOURCE_RECORD_SET_NAME = "test.example.com.";
+	private static final Long RESOURCE_RECORD_SET_TTL = 60L;
+
+	@Rule public MockitoRule mockObjects = MockitoJUnit.rule();
+
+	private RoutingPolicyUpdater updater;
+
+	@Mock private AmazonRoute53 route53;
+
+	@Before
+	public void createUpdater() {
+		final Map<String, RoutingPolicy> routingPolicies = new LinkedHashMap<>();
+		routingPolicies.put("isp1", RoutingPolicy.weighted("isp1", 200L, "HEALTHCHECK1"));
+		routingPolicies.put("isp2", RoutingPolicy.failover("backup", "SECONDARY", null));
+		updater = new RoutingPolicyUpdater(HOSTED_ZONE_ID, RESOURCE_RECORD_SET_NAME, RESOURCE_RECORD_SET_TTL,
+				routingPolicies, route53);
+
+		final ChangeResourceRecordSetsResult result = mock(ChangeResourceRecordSetsResult.class);
+		when(result.getChangeInfo()).thenReturn(mock(ChangeInfo.class));
+		when(route53.changeResourceRecordSets(any())).thenReturn(result);
+	}
+
+	@Test
+	public void allUplinksAreUpdatedInOneBatch() throws Exception {
+		final Map<String, InetAddress> addresses = new LinkedHashMap<>();
+		addresses.put("isp1", InetAddress.getByName("192.0.2.1"));
+		addresses.put("isp2", InetAddress.getByName("198.51.100.1"));
+
+		updater.accept(addresses);
+
+		final ArgumentCaptor<ChangeResourceRecordSetsRequest> request
+				= ArgumentCaptor.forClass(ChangeResourceRecordSetsRequest.class);
+		verify(route53, times(1)).changeResourceRecordSets(request.capture());
+		final List<Change> changes = request.getValue().getChangeBatch().getChanges();
+		assertThat(changes.size(), is(2));
+
+		final ResourceRecordSet weighted = changes.get(0).getResourceRecordSet();
+		assertThat(weighted.getName(), is(RESOURCE_RECORD_SET_NAME));
+		assertThat(weighted.getSetIdentifier(), is("isp1"));
+		assertThat(weighted.getWeight(), is(200L));
+		assertThat(weighted.getHealthCheckId(), is("HEALTHCHECK1"));
+		assertThat(weighted.getResourceRecords().get(0).getValue(), is("192.0.2.1"));
+
+		final ResourceRecordSet failover = changes.get(1).getResourceRecordSet();
+		assertThat(failover.getSetIdentifier(), is("backup"));
+		assertThat(failover.getFailover(), is("SECONDARY"));
+		assertThat(failover.getWeight(), is(nullValue()));
+		assertThat(failover.getResourceRecords().get(0).getValue(), is("198.51.100.1"));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void unknownUplinkThrowsException() throws Exception {
+		final Map<String, InetAddress> addresses = new LinkedHashMap<>();
+		addresses.put("isp3", InetAddress.getByName("192.0.2.1"));
+		updater.accept(addresses);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void invalidFailoverRoleThrowsException() {
+		RoutingPolicy.failover("isp1", "TERTIARY", null);
+	}
+}
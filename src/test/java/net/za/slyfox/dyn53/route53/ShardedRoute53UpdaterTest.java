@@ -0,0 +1,295 @@
+/*
+ * Copyright 2015 Philip Cronje
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package net.za.slyfox.dyn53.route53;
+
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.services.route53.AmazonRoute53;
+import com.amazonaws.services.route53.model.*;
+import net.za.slyfox.dyn53.cluster.RecordOwnership;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnit;
+import org.mockito.junit.MockitoRule;
+
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class ShardedRoute53UpdaterTest {
+	@Rule public MockitoRule mockObjects = MockitoJUnit.rule();
+
+	@Mock private AmazonRoute53 otherRoute53;
+	@Mock private AmazonRoute53 route53;
+
+	private Route53Clients clients;
+	private ShardedRoute53Updater updater;
+
+	@Before
+	public void createUpdater() {
+		clients = new Route53Clients(() -> route53, account -> otherRoute53, 100.0, System::nanoTime);
+		updater = new ShardedRoute53Updater(Arrays.asList(
+				new Route53Record("ZONE1", "a.example.com.", 60L),
+				new Route53Record("ZONE2", "b.example.org.", 60L),
+				new Route53Record("ZONE1", "c.example.com.", 300L)), 2, 100.0, clients, System::nanoTime);
+	}
+
+	@After
+	public void stopUpdater() {
+		updater.stop();
+		clients.stop();
+	}
+
+	@Test
+	public void recordsAreBatchedPerHostedZone() throws Exception {
+		final ChangeResourceRecordSetsResult result = createResult();
+		when(route53.changeResourceRecordSets(any())).thenReturn(result);
+
+		updater.accept(InetAddress.getByName("192.0.2.1"));
+
+		final ArgumentCaptor<ChangeResourceRecordSetsRequest> captor
+				= ArgumentCaptor.forClass(ChangeResourceRecordSetsRequest.class);
+		verify(route53, timeout(5000).times(2)).changeResourceRecordSets(captor.capture());
+		final Map<String, ChangeResourceRecordSetsRequest> requests = captor.getAllValues().stream()
+				.collect(Collectors.toMap(ChangeResourceRecordSetsRequest::getHostedZoneId, Function.identity()));
+
+		final List<Change> zone1 = requests.get("ZONE1").getChangeBatch().getChanges();
+		assertThat(zone1.size(), is(2));
+		assertThat(zone1.get(0).getResourceRecordSet().getName(), is("a.example.com."));
+		assertThat(zone1.get(1).getResourceRecordSet().getName(), is("c.example.com."));
+		assertThat(zone1.get(1).getResourceRecordSet().getTTL(), is(300L));
+		assertThat(requests.get("ZONE2").getChangeBatch().getChanges().size(), is(1));
+	}
+
+	@Test
+	public void largeZonesAreSplitIntoBatchesWithinRoute53Limits() throws Exception {
+		final ChangeResourceRecordSetsResult result = createResult();
+		when(route53.changeResourceRecordSets(any())).thenReturn(result);
+		final List<Route53Record> records = new ArrayList<>();
+		for(int i = 0; i < 1200; i++) records.add(new Route53Record("ZONE1", "host" + i + ".example.com.", 60L));
+		updater.stop();
+		updater = new ShardedRoute53Updater(records, 1, 100.0, clients, System::nanoTime);
+
+		updater.accept(InetAddress.getByName("192.0.2.1"));
+
+		final ArgumentCaptor<ChangeResourceRecordSetsRequest> captor
+				= ArgumentCaptor.forClass(ChangeResourceRecordSetsRequest.class);
+		verify(route53, timeout(5000).times(3)).changeResourceRecordSets(captor.capture());
+		assertThat(captor.getAllValues().stream().map(request -> request.getChangeBatch().getChanges().size())
+				.collect(Collectors.toList()), is(Arrays.asList(500, 500, 200)));
+	}
+
+	@Test
+	public void failedBatchIsRetried() throws Exception {
+		final ChangeResourceRecordSetsResult result = createResult();
+		when(route53.changeResourceRecordSets(any()))
+				.thenThrow(new AmazonServiceException("Throttled"))
+				.thenReturn(result);
+
+		updater.accept(InetAddress.getByName("192.0.2.1"));
+
+		verify(route53, timeout(5000).times(3)).changeResourceRecordSets(any());
+	}
+
+	@Test
+	public void recordsAreUpdatedWithClientOfTheirAccount() throws Exception {
+		final ChangeResourceRecordSetsResult result = createResult();
+		when(route53.changeResourceRecordSets(any())).thenReturn(result);
+		when(otherRoute53.changeResourceRecordSets(any())).thenReturn(result);
+		updater.stop();
+		updater = new ShardedRoute53Updater(Arrays.asList(
+				new Route53Record("ZONE1", "a.example.com.", 60L),
+				new Route53Record("ZONE1", "d.example.net.", 60L, "other")), 2, 100.0, clients, System::nanoTime);
+
+		updater.accept(InetAddress.getByName("192.0.2.1"));
+
+		final ArgumentCaptor<ChangeResourceRecordSetsRequest> captor
+				= ArgumentCaptor.forClass(ChangeResourceRecordSetsRequest.class);
+		verify(otherRoute53, timeout(5000)).changeResourceRecordSets(captor.capture());
+		final List<Change> changes = captor.getValue().getChangeBatch().getChanges();
+		assertThat(changes.size(), is(1));
+		assertThat(changes.get(0).getResourceRecordSet().getName(), is("d.example.net."));
+		verify(route53, timeout(5000)).changeResourceRecordSets(any());
+	}
+
+	@Test
+	public void onlyOwnedRecordsAreUpdatedAndTakenOverRecordsArePublished() throws Exception {
+		final ChangeResourceRecordSetsResult result = createResult();
+		when(route53.changeResourceRecordSets(any())).thenReturn(result);
+		final Set<String> owned = new HashSet<>(Collections.singleton("a.example.com. in ZONE1"));
+		final List<Runnable> listeners = new ArrayList<>();
+		updater.stop();
+		updater = new ShardedRoute53Updater(Arrays.asList(new Route53Record("ZONE1", "a.example.com.", 60L),
+				new Route53Record("ZONE1", "c.example.com.", 60L)), 1, 100.0, clients, new RecordOwnership() {
+					@Override
+					public boolean owns(String key) {
+						return owned.contains(key);
+					}
+
+					@Override
+					public void addListener(Runnable listener) {
+						listeners.add(listener);
+					}
+				}, null, System::nanoTime);
+
+		updater.accept(InetAddress.getByName("192.0.2.1"));
+		final ArgumentCaptor<ChangeResourceRecordSetsRequest> captor
+				= ArgumentCaptor.forClass(ChangeResourceRecordSetsRequest.class);
+		verify(route53, timeout(5000)).changeResourceRecordSets(captor.capture());
+		assertThat(captor.getValue().getChangeBatch().getChanges().size(), is(1));
+
+		owned.add("c.example.com. in ZONE1");
+		listeners.forEach(Runnable::run);
+		verify(route53, timeout(5000).times(2)).changeResourceRecordSets(captor.capture());
+		final List<Change> changes = captor.getValue().getChangeBatch().getChanges();
+		assertThat(changes.size(), is(1));
+		assertThat(changes.get(0).getResourceRecordSet().getName(), is("c.example.com."));
+	}
+
+	@Test
+	public void queuedChangesAreSubmittedOnStop() throws Exception {
+		final ChangeResourceRecordSetsResult result = createResult();
+		when(route53.changeResourceRecordSets(any())).thenReturn(result);
+		updater.stop();
+		updater = new ShardedRoute53Updater(Arrays.asList(new Route53Record("ZONE1", "a.example.com.", 60L),
+				new Route53Record("ZONE1", "c.example.com.", 60L)), 1, 0.001, clients, System::nanoTime);
+
+		updater.accept(InetAddress.getByName("192.0.2.1"));
+		verify(route53, timeout(5000)).changeResourceRecordSets(any());
+		updater.accept(InetAddress.getByName("192.0.2.2"));
+		updater.stop();
+
+		final ArgumentCaptor<ChangeResourceRecordSetsRequest> captor
+				= ArgumentCaptor.forClass(ChangeResourceRecordSetsRequest.class);
+		verify(route53, times(2)).changeResourceRecordSets(captor.capture());
+		assertThat(captor.getValue().getChangeBatch().getChanges().get(0).getResourceRecordSet().getResourceRecords()
+				.get(0).getValue(), is("192.0.2.2"));
+	}
+
+	@Test
+	public void drainIsBoundedByShutdownDeadline() throws Exception {
+		final ChangeResourceRecordSetsResult result = createResult();
+		final CountDownLatch release = new CountDownLatch(1);
+		when(route53.changeResourceRecordSets(any())).thenAnswer(invocation -> {
+			release.await();
+			return result;
+		});
+
+		try {
+			updater.accept(InetAddress.getByName("192.0.2.1"));
+			verify(route53, timeout(5000).atLeastOnce()).changeResourceRecordSets(any());
+			final long start = System.nanoTime();
+			updater.stop(start + TimeUnit.MILLISECONDS.toNanos(200));
+			assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(5));
+		} finally {
+			release.countDown();
+		}
+	}
+
+	@Test
+	public void ttlChangesRideAlongAndDeletionsMatchPublishedTtl() throws Exception {
+		final ChangeResourceRecordSetsResult result = createResult();
+		when(route53.changeResourceRecordSets(any())).thenReturn(result);
+		final AtomicLong clock = new AtomicLong();
+		updater.stop();
+		updater = new ShardedRoute53Updater(Arrays.asList(new Route53Record("ZONE1", "a.example.com.", 300L),
+				new Route53Record("ZONE1", "c.example.com.", 300L)), 1, 100.0, clients, key -> true,
+				new AdaptiveTtl(60, 3600), clock::get);
+		final InetAddress address = InetAddress.getByName("192.0.2.1");
+
+		updater.accept(address);
+		final ArgumentCaptor<ChangeResourceRecordSetsRequest> captor
+				= ArgumentCaptor.forClass(ChangeResourceRecordSetsRequest.class);
+		verify(route53, timeout(5000)).changeResourceRecordSets(captor.capture());
+		assertThat(getTtls(captor.getValue()), is(Arrays.asList(60L, 60L)));
+
+		clock.set(TimeUnit.MINUTES.toNanos(20));
+		updater.accept(address, Collections.singleton("a.example.com. in ZONE1"));
+		verify(route53, timeout(5000).times(2)).changeResourceRecordSets(captor.capture());
+		assertThat(getTtls(captor.getValue()), is(Arrays.asList(120L, 120L)));
+
+		clock.set(TimeUnit.MINUTES.toNanos(21));
+		updater.withdraw(address);
+		verify(route53, timeout(5000).times(3)).changeResourceRecordSets(captor.capture());
+		assertThat(getTtls(captor.getValue()), is(Arrays.asList(120L, 120L)));
+	}
+
+	@Test
+	public void deletionsOfUnpublishedRecordsMatchLiveTtl() throws Exception {
+		final ChangeResourceRecordSetsResult result = createResult();
+		when(route53.changeResourceRecordSets(any())).thenReturn(result);
+		when(route53.listResourceRecordSets(any())).thenAnswer(invocation -> {
+			final ListResourceRecordSetsRequest request = (ListResourceRecordSetsRequest)invocation.getArguments()[0];
+			final ListResourceRecordSetsResult listing = new ListResourceRecordSetsResult();
+			if(request.getStartRecordName().equals("a.example.com.")) {
+				listing.withResourceRecordSets(new ResourceRecordSet("a.example.com.", "A").withTTL(1800L)
+						.withResourceRecords(new ResourceRecord("192.0.2.1")));
+			}
+			return listing;
+		});
+		updater.stop();
+		updater = new ShardedRoute53Updater(Arrays.asList(new Route53Record("ZONE1", "a.example.com.", 300L),
+				new Route53Record("ZONE1", "c.example.com.", 300L)), 1, 100.0, clients, key -> true,
+				new AdaptiveTtl(60, 3600), System::nanoTime);
+
+		updater.withdraw(InetAddress.getByName("192.0.2.1"));
+
+		final ArgumentCaptor<ChangeResourceRecordSetsRequest> captor
+				= ArgumentCaptor.forClass(ChangeResourceRecordSetsRequest.class);
+		verify(route53, timeout(5000)).changeResourceRecordSets(captor.capture());
+		final List<Change> changes = captor.getValue().getChangeBatch().getChanges();
+		assertThat(changes.size(), is(1));
+		assertThat(changes.get(0).getResourceRecordSet().getName(), is("a.example.com."));
+		assertThat(getTtls(captor.getValue()), is(Collections.singletonList(1800L)));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void emptyRecordsThrowsException() {
+		new ShardedRoute53Updater(Arrays.asList(), 1, 1.0, clients, System::nanoTime);
+	}
+
+	private static List<Long> getTtls(ChangeResourceRecordSetsRequest request) {
+		return request.getChangeBatch().getChanges().stream()
+				.map(change -> change.getResourceRecordSet().getTTL())
+				.collect(Collectors.toList());
+	}
+
+	private static ChangeResourceRecordSetsResult createResult() {
+		final ChangeResourceRecordSetsResult result = mock(ChangeResourceRecordSetsResult.class);
+		when(result.getChangeInfo()).thenReturn(mock(ChangeInfo.class));
+		return result;
+	}
+}
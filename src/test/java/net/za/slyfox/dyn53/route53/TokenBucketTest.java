@@ -0,0 +1,52 @@
+/*
+ * Copyright 2015 Philip Cronje
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package net.za.slyfox.dyn53.route53;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+public class TokenBucketTest {
+	private final AtomicLong clock = new AtomicLong();
+
+	@Test
+	public void burstIsLimitedToCapacity() {
+		final TokenBucket bucket = new TokenBucket(2, 1, clock::get);
+		assertThat(bucket.tryAcquire(), is(0L));
+		assertThat(bucket.tryAcquire(), is(0L));
+		assertThat(bucket.tryAcquire(), is(TimeUnit.SECONDS.toNanos(1)));
+	}
+
+	@Test
+	public void tokensAreRefilledAtRate() {
+		final TokenBucket bucket = new TokenBucket(1, 2, clock::get);
+		assertThat(bucket.tryAcquire(), is(0L));
+		clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(250));
+		assertThat(bucket.tryAcquire(), is(TimeUnit.MILLISECONDS.toNanos(250)));
+		clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(250));
+		assertThat(bucket.tryAcquire(), is(0L));
+	}
+
+	@Test
+	public void releasedTokenCanBeTakenAgain() {
+		final TokenBucket bucket = new TokenBucket(1, 1, clock::get);
+		assertThat(bucket.tryAcquire(), is(0L));
+		bucket.release();
+		assertThat(bucket.tryAcquire(), is(0L));
+		assertThat(bucket.tryAcquire(), is(TimeUnit.SECONDS.toNanos(1)));
+	}
+}